@@ -11,6 +11,7 @@ import java.util.concurrent.TimeUnit
 
 import akka.discovery.ServiceDiscovery
 import akka.discovery.ServiceDiscovery.ResolvedTarget
+import com.codahale.metrics.MetricRegistry
 import com.typesafe.config.Config
 import org.slf4j.LoggerFactory
 
@@ -20,8 +21,10 @@ import scala.concurrent.duration._
 
 /**
  * Helper for implementing Akka Discovery based service locators in Lagom.
+ *
+ * @param metrics The registry the counters of the lookup cache are registered in.
  */
-private[lagom] class AkkaDiscoveryHelper(config: Config, serviceDiscovery: ServiceDiscovery)(
+private[lagom] class AkkaDiscoveryHelper(config: Config, serviceDiscovery: ServiceDiscovery, metrics: MetricRegistry)(
     implicit
     ec: ExecutionContext
 ) {
@@ -30,7 +33,20 @@ private[lagom] class AkkaDiscoveryHelper(config: Config, serviceDiscovery: Servi
   private val serviceNameMapper = new ServiceNameMapper(config)
   private val lookupTimeout     = config.getDuration("lookup-timeout", TimeUnit.MILLISECONDS).millis
 
-  def locateAll(name: String): Future[Seq[URI]] = {
+  private val cache: Option[ServiceLookupCache] = {
+    val settings = ServiceLookupCache.Settings(config.getConfig("cache"))
+    if (settings.enabled) Some(new ServiceLookupCache(settings, lookup, metrics)) else None
+  }
+
+  def locateAll(name: String): Future[Seq[URI]] = cache match {
+    case Some(c) => c.get(name)
+    case None    => lookup(name)
+  }
+
+  /** The counters of the lookup cache, if enabled. They are also registered in the metric registry. */
+  def cacheStats: Option[ServiceLookupCache.Stats] = cache.map(_.stats)
+
+  private def lookup(name: String): Future[Seq[URI]] = {
     val serviceLookup = serviceNameMapper.mapLookupQuery(name)
     serviceDiscovery
       .lookup(serviceLookup.lookup, lookupTimeout)
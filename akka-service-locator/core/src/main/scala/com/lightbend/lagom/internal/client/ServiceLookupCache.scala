@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.internal.client
+
+import java.net.URI
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+
+import com.codahale.metrics.Counter
+import com.codahale.metrics.MetricRegistry
+import com.typesafe.config.Config
+import org.slf4j.LoggerFactory
+
+import scala.concurrent.ExecutionContext
+import scala.concurrent.Future
+import scala.concurrent.Promise
+import scala.concurrent.duration._
+import scala.util.Failure
+import scala.util.Success
+import scala.util.Try
+import scala.util.control.NonFatal
+
+/**
+ * Caches the results of service lookups per service name.
+ *
+ *  - Successful, non empty, lookups are cached for `ttl`. Once they are older than `refresh-ahead` times the `ttl`,
+ *    the next access triggers a background refresh while still being served from the cache.
+ *  - Empty and failed lookups are cached for `negative-ttl`.
+ *  - When refreshing an expired entry fails, the expired entry keeps being served for up to `max-stale` past its
+ *    expiry, and isn't refreshed again before `negative-ttl`, so that an outage of the discovery mechanism doesn't
+ *    make every call look up the service again.
+ *
+ * Concurrent lookups of the same service name share a single call to `lookup`.
+ *
+ * The hits, misses, refreshes, refresh failures and stale entries served are counted in the given metric registry,
+ * as `ServiceLocator.cache.hits` and so on, so that they can be exported by any dropwizard reporter.
+ */
+private[lagom] class ServiceLookupCache(
+    settings: ServiceLookupCache.Settings,
+    lookup: String => Future[Seq[URI]],
+    metrics: MetricRegistry,
+    clock: () => Long = () => System.nanoTime()
+)(implicit ec: ExecutionContext) {
+  import ServiceLookupCache._
+
+  private val logger = LoggerFactory.getLogger(this.getClass)
+
+  private val entries  = new ConcurrentHashMap[String, Entry]()
+  private val inFlight = new ConcurrentHashMap[String, Future[Seq[URI]]]()
+
+  private val hits: Counter            = metrics.counter(counterName("hits"))
+  private val misses: Counter          = metrics.counter(counterName("misses"))
+  private val refreshes: Counter       = metrics.counter(counterName("refreshes"))
+  private val refreshFailures: Counter = metrics.counter(counterName("refreshFailures"))
+  private val staleServed: Counter     = metrics.counter(counterName("staleServed"))
+
+  def get(name: String): Future[Seq[URI]] = {
+    val now = clock()
+    entries.get(name) match {
+      case null =>
+        misses.inc()
+        refresh(name)
+
+      case entry if entry.isFresh(now, settings) =>
+        hits.inc()
+        if (entry.isPositive && entry.age(now) > settings.refreshAfter.toNanos) {
+          // Refresh ahead of expiry, without making the caller wait for it
+          refresh(name)
+        }
+        Future.fromTry(entry.result)
+
+      case entry if entry.failure.exists(failure => now - failure.at < settings.negativeTtl.toNanos) =>
+        // Refreshing the expired entry failed recently, so it isn't refreshed again before the negative ttl
+        hits.inc()
+        Future.fromTry(Try(staleOrFail(name, entry, now, entry.failure.get.cause)))
+
+      case entry =>
+        misses.inc()
+        refresh(name).recover {
+          case NonFatal(e) => staleOrFail(name, entry, now, e)
+        }
+    }
+  }
+
+  /** The addresses of the expired entry, if they may still be served, or else the failure to refresh them. */
+  private def staleOrFail(name: String, entry: Entry, now: Long, cause: Throwable): Seq[URI] =
+    if (entry.isServableStale(now, settings)) {
+      staleServed.inc()
+      logger.debug(s"Failed to refresh service lookup of [$name], serving stale addresses", cause)
+      entry.result.get
+    } else throw cause
+
+  /** A snapshot of the counters of the cache, as registered in the metric registry. */
+  def stats: Stats = Stats(
+    hits = hits.getCount,
+    misses = misses.getCount,
+    refreshes = refreshes.getCount,
+    refreshFailures = refreshFailures.getCount,
+    staleServed = staleServed.getCount
+  )
+
+  private def refresh(name: String): Future[Seq[URI]] = {
+    val promise  = Promise[Seq[URI]]()
+    val existing = inFlight.putIfAbsent(name, promise.future)
+    if (existing != null) existing
+    else {
+      refreshes.inc()
+      val looked =
+        try lookup(name)
+        catch { case NonFatal(e) => Future.failed(e) }
+      looked.onComplete { result =>
+        result match {
+          case Success(_) =>
+            entries.put(name, Entry(result, clock()))
+          case Failure(e) =>
+            refreshFailures.inc()
+            val now      = clock()
+            val previous = entries.get(name)
+            // Keep a positive entry around, so that it can still be served while stale, with the failure cached
+            if (previous != null && previous.isServableStale(now, settings))
+              entries.put(name, previous.copy(failure = Some(RefreshFailure(e, now))))
+            else entries.put(name, Entry(result, now))
+        }
+        inFlight.remove(name)
+        promise.complete(result)
+      }
+      promise.future
+    }
+  }
+}
+
+private[lagom] object ServiceLookupCache {
+
+  final case class Settings(
+      enabled: Boolean,
+      ttl: FiniteDuration,
+      refreshAhead: Double,
+      negativeTtl: FiniteDuration,
+      maxStale: FiniteDuration
+  ) {
+    require(refreshAhead > 0 && refreshAhead <= 1, s"refresh-ahead must be in ]0, 1], was [$refreshAhead]")
+
+    val refreshAfter: FiniteDuration = (ttl.toNanos * refreshAhead).toLong.nanos
+  }
+
+  object Settings {
+    def apply(config: Config): Settings = Settings(
+      enabled = config.getBoolean("enabled"),
+      ttl = config.getDuration("ttl", TimeUnit.MILLISECONDS).millis,
+      refreshAhead = config.getDouble("refresh-ahead"),
+      negativeTtl = config.getDuration("negative-ttl", TimeUnit.MILLISECONDS).millis,
+      maxStale = config.getDuration("max-stale", TimeUnit.MILLISECONDS).millis
+    )
+  }
+
+  final case class Stats(hits: Long, misses: Long, refreshes: Long, refreshFailures: Long, staleServed: Long)
+
+  private def counterName(counter: String) = MetricRegistry.name("ServiceLocator", "cache", counter)
+
+  private final case class RefreshFailure(cause: Throwable, at: Long)
+
+  /** @param failure The last failure to refresh this entry once it expired, if any. */
+  private final case class Entry(result: Try[Seq[URI]], createdAt: Long, failure: Option[RefreshFailure] = None) {
+    def isPositive: Boolean = result.toOption.exists(_.nonEmpty)
+
+    def age(now: Long): Long = now - createdAt
+
+    def isFresh(now: Long, settings: Settings): Boolean =
+      age(now) < (if (isPositive) settings.ttl else settings.negativeTtl).toNanos
+
+    def isServableStale(now: Long, settings: Settings): Boolean =
+      isPositive && age(now) < (settings.ttl + settings.maxStale).toNanos
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.internal.client
+
+import java.net.URI
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+import com.codahale.metrics.MetricRegistry
+import org.scalatest.AsyncWordSpec
+import org.scalatest.Matchers
+
+import scala.concurrent.Future
+import scala.concurrent.duration._
+
+class ServiceLookupCacheSpec extends AsyncWordSpec with Matchers {
+  private val settings = ServiceLookupCache.Settings(
+    enabled = true,
+    ttl = 10.seconds,
+    refreshAhead = 0.5,
+    negativeTtl = 1.second,
+    maxStale = 1.minute
+  )
+
+  private val uris = Seq(URI.create("http://10.0.0.1:9000"), URI.create("http://10.0.0.2:9000"))
+
+  private class Fixture(results: Iterator[Future[Seq[URI]]]) {
+    val now     = new AtomicLong(0)
+    val lookups = new AtomicInteger(0)
+    val metrics = new MetricRegistry
+    val cache = new ServiceLookupCache(
+      settings,
+      _ => { lookups.incrementAndGet(); results.next() },
+      metrics,
+      () => now.get()
+    )
+    def advance(duration: FiniteDuration): Unit = now.addAndGet(duration.toNanos)
+  }
+
+  "The ServiceLookupCache" should {
+    "serve fresh entries from the cache" in {
+      val fixture = new Fixture(Iterator.continually(Future.successful(uris)))
+      import fixture._
+      for {
+        first  <- cache.get("service")
+        second <- cache.get("service")
+      } yield {
+        first shouldBe uris
+        second shouldBe uris
+        lookups.get shouldBe 1
+        cache.stats.hits shouldBe 1
+        cache.stats.misses shouldBe 1
+        metrics.counter("ServiceLocator.cache.hits").getCount shouldBe 1
+      }
+    }
+
+    "look up again once entries have expired" in {
+      val fixture = new Fixture(Iterator.continually(Future.successful(uris)))
+      import fixture._
+      for {
+        _ <- cache.get("service")
+        _ = advance(11.seconds)
+        _ <- cache.get("service")
+      } yield lookups.get shouldBe 2
+    }
+
+    "serve stale entries when refreshing them fails" in {
+      val fixture = new Fixture(
+        Iterator(Future.successful(uris)) ++ Iterator.continually(Future.failed(new RuntimeException("boom")))
+      )
+      import fixture._
+      for {
+        _ <- cache.get("service")
+        _ = advance(30.seconds)
+        stale <- cache.get("service")
+      } yield {
+        stale shouldBe uris
+        cache.stats.staleServed shouldBe 1
+        cache.stats.refreshFailures shouldBe 1
+      }
+    }
+
+    "not look up again for the negative ttl after refreshing a stale entry failed" in {
+      val fixture = new Fixture(
+        Iterator(Future.successful(uris)) ++ Iterator.continually(Future.failed(new RuntimeException("boom")))
+      )
+      import fixture._
+      for {
+        _ <- cache.get("service")
+        _ = advance(30.seconds)
+        first  <- cache.get("service")
+        second <- cache.get("service")
+        _ = advance(2.seconds)
+        third <- cache.get("service")
+      } yield {
+        Seq(first, second, third).foreach(_ shouldBe uris)
+        lookups.get shouldBe 3
+        cache.stats.staleServed shouldBe 3
+        cache.stats.refreshFailures shouldBe 2
+      }
+    }
+
+    "fail once stale entries may no longer be served" in {
+      val fixture = new Fixture(
+        Iterator(Future.successful(uris)) ++ Iterator.continually(Future.failed(new RuntimeException("boom")))
+      )
+      import fixture._
+      for {
+        _ <- cache.get("service")
+        _ = advance(2.minutes)
+        failed <- recoverToExceptionIf[RuntimeException](cache.get("service"))
+        again  <- recoverToExceptionIf[RuntimeException](cache.get("service"))
+      } yield {
+        failed.getMessage shouldBe "boom"
+        again.getMessage shouldBe "boom"
+        lookups.get shouldBe 2
+      }
+    }
+
+    "cache empty lookups for the negative ttl" in {
+      val fixture = new Fixture(Iterator.continually(Future.successful(Nil)))
+      import fixture._
+      for {
+        _ <- cache.get("service")
+        _ <- cache.get("service")
+        _ = advance(2.seconds)
+        _ <- cache.get("service")
+      } yield lookups.get shouldBe 2
+    }
+
+    "share concurrent lookups of the same service" in {
+      val fixture = new Fixture(Iterator.continually(Future(uris)))
+      import fixture._
+      Future.sequence(Seq.fill(10)(cache.get("service"))).map { results =>
+        results.foreach(_ shouldBe uris)
+        lookups.get shouldBe 1
+      }
+    }
+  }
+}
@@ -6,7 +6,9 @@ package com.lightbend.lagom.javadsl.akka.discovery;
 
 import akka.actor.ActorSystem;
 import akka.discovery.Discovery;
+import com.codahale.metrics.SharedMetricRegistries;
 import com.lightbend.lagom.internal.client.AkkaDiscoveryHelper;
+import com.lightbend.lagom.internal.client.ServiceClientPolicies;
 import com.lightbend.lagom.javadsl.api.Descriptor;
 import com.lightbend.lagom.javadsl.client.CircuitBreakersPanel;
 import com.lightbend.lagom.javadsl.client.CircuitBreakingServiceLocator;
@@ -35,6 +37,7 @@ public class AkkaDiscoveryServiceLocator extends CircuitBreakingServiceLocator {
         new AkkaDiscoveryHelper(
             actorSystem.settings().config().getConfig("lagom.akka.discovery"),
             Discovery.get(actorSystem).discovery(),
+            SharedMetricRegistries.getOrCreate(ServiceClientPolicies.MetricRegistryName()),
             actorSystem.dispatcher());
   }
 
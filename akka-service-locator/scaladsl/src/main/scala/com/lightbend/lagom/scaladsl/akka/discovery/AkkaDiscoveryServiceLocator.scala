@@ -8,7 +8,9 @@ import java.net.URI
 
 import akka.actor.ActorSystem
 import akka.discovery.Discovery
+import com.codahale.metrics.SharedMetricRegistries
 import com.lightbend.lagom.internal.client.AkkaDiscoveryHelper
+import com.lightbend.lagom.internal.client.ServiceClientPolicies
 import com.lightbend.lagom.scaladsl.api.Descriptor
 import com.lightbend.lagom.scaladsl.api.ServiceLocator
 import com.lightbend.lagom.scaladsl.client.CircuitBreakersPanel
@@ -26,7 +28,8 @@ class AkkaDiscoveryServiceLocator(circuitBreakers: CircuitBreakersPanel, actorSy
 ) extends CircuitBreakingServiceLocator(circuitBreakers) {
   private val helper: AkkaDiscoveryHelper = new AkkaDiscoveryHelper(
     actorSystem.settings.config.getConfig("lagom.akka.discovery"),
-    Discovery(actorSystem).discovery
+    Discovery(actorSystem).discovery,
+    SharedMetricRegistries.getOrCreate(ServiceClientPolicies.MetricRegistryName)
   )
 
   override def locate(name: String, serviceCall: Descriptor.Call[_, _]): Future[Option[URI]] =
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.benchmarks.broker.kafka
+
+import java.util.concurrent.TimeUnit
+
+import com.lightbend.lagom.internal.scaladsl.broker.kafka.ConsumerRecordMetadata
+import com.lightbend.lagom.scaladsl.api.broker.Message
+import com.lightbend.lagom.scaladsl.api.broker.MetadataKey
+import com.lightbend.lagom.scaladsl.broker.kafka.KafkaMetadataKeys
+import org.apache.kafka.clients.consumer.ConsumerRecord
+import org.openjdk.jmh.annotations._
+
+/**
+ * Compares wrapping a consumed record into a [[Message]] by copying all of its metadata into the message
+ * (`eager`, what `Subscriber.withMetadata` used to do) with reading the metadata from the record on demand
+ * (`lookup`).
+ *
+ * Run with `-prof gc` to compare the allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+class MessageMetadataBenchmark {
+  private val record = new ConsumerRecord[String, String]("topic", 3, 42L, "key", "payload")
+
+  private def eager(record: ConsumerRecord[String, String]): Message[String] =
+    Message(record.value) +
+      (MetadataKey.MessageKey[String]  -> record.key()) +
+      (KafkaMetadataKeys.Offset        -> record.offset()) +
+      (KafkaMetadataKeys.Partition     -> record.partition()) +
+      (KafkaMetadataKeys.Topic         -> record.topic()) +
+      (KafkaMetadataKeys.Headers       -> record.headers()) +
+      (KafkaMetadataKeys.Timestamp     -> record.timestamp()) +
+      (KafkaMetadataKeys.TimestampType -> record.timestampType())
+
+  private def lookup(record: ConsumerRecord[String, String]): Message[String] =
+    Message.withMetadataLookup(record.value, new ConsumerRecordMetadata(record))
+
+  @Benchmark
+  def eagerPayloadOnly(): String = eager(record).payload
+
+  @Benchmark
+  def lookupPayloadOnly(): String = lookup(record).payload
+
+  @Benchmark
+  def eagerMessageKey(): String = eager(record).messageKeyAsString
+
+  @Benchmark
+  def lookupMessageKey(): String = lookup(record).messageKeyAsString
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.benchmarks.client
+
+import java.net.URI
+import java.util.concurrent.TimeUnit
+
+import akka.actor.ActorSystem
+import akka.http.scaladsl.Http
+import akka.http.scaladsl.model.AttributeKeys
+import akka.http.scaladsl.model.HttpRequest
+import akka.http.scaladsl.model.HttpResponse
+import akka.http.scaladsl.model.StatusCodes
+import akka.http.scaladsl.model.ws.BinaryMessage
+import akka.stream.Materializer
+import akka.stream.SystemMaterializer
+import akka.stream.scaladsl.Flow
+import akka.stream.scaladsl.Sink
+import akka.stream.scaladsl.Source
+import akka.util.ByteString
+import com.lightbend.lagom.internal.client.WebSocketClientConfig
+import com.lightbend.lagom.internal.scaladsl.client.ScaladslWebSocketClient
+import com.lightbend.lagom.scaladsl.api.deser.DefaultExceptionSerializer
+import com.lightbend.lagom.scaladsl.api.transport.MessageProtocol
+import com.lightbend.lagom.scaladsl.api.transport.Method
+import com.lightbend.lagom.scaladsl.api.transport.RequestHeader
+import com.typesafe.config.ConfigFactory
+import io.netty.handler.codec.http.websocketx.WebSocketVersion
+import org.openjdk.jmh.annotations._
+import play.api.Environment
+import play.api.inject.DefaultApplicationLifecycle
+
+import scala.concurrent.Await
+import scala.concurrent.ExecutionContext
+import scala.concurrent.duration._
+
+/**
+ * Measures the messages per second the WebSocket client receives from a streamed call, whose response is a stream of
+ * 1 KB binary messages, for each event loop transport (`auto` uses epoll when it is available) and buffer allocator.
+ *
+ * Run with `-prof gc` to compare the allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+class WebSocketClientBenchmark {
+  import WebSocketClientBenchmark._
+
+  @Param(Array("nio", "auto"))
+  var transport: String = _
+
+  @Param(Array("pooled", "unpooled"))
+  var bufferAllocator: String = _
+
+  private var system: ActorSystem                             = _
+  private var mat: Materializer                               = _
+  private var lifecycle: DefaultApplicationLifecycle          = _
+  private var client: ScaladslWebSocketClient                 = _
+  private var exceptionSerializer: DefaultExceptionSerializer = _
+  private var requestHeader: RequestHeader                    = _
+
+  @Setup
+  def setup(): Unit = {
+    implicit val actorSystem: ActorSystem = ActorSystem("WebSocketClientBenchmark")
+    implicit val ec: ExecutionContext      = actorSystem.dispatcher
+    system = actorSystem
+    mat = SystemMaterializer(actorSystem).materializer
+
+    val element = BinaryMessage(ByteString(Array.fill[Byte](ElementSize)(42)))
+    val stream  = Flow.fromSinkAndSourceCoupled(Sink.ignore, Source.repeat(element).take(MessagesPerCall))
+    val binding = Await.result(
+      Http()
+        .newServerAt("127.0.0.1", 0)
+        .bindSync { (request: HttpRequest) =>
+          request.attribute(AttributeKeys.webSocketUpgrade) match {
+            case Some(upgrade) => upgrade.handleMessages(stream)
+            case None          => HttpResponse(StatusCodes.BadRequest)
+          }
+        },
+      10.seconds
+    )
+
+    val config = WebSocketClientConfig(
+      ConfigFactory
+        .parseString(s"""
+          lagom.client.websocket.transport = $transport
+          lagom.client.websocket.buffer-allocator = $bufferAllocator
+        """)
+        .withFallback(ConfigFactory.defaultReference())
+    )
+    lifecycle = new DefaultApplicationLifecycle
+    client = new ScaladslWebSocketClient(Environment.simple(), config, lifecycle)
+    exceptionSerializer = new DefaultExceptionSerializer(Environment.simple())
+    requestHeader = RequestHeader(
+      Method.GET,
+      URI.create(s"ws://127.0.0.1:${binding.localAddress.getPort}/stream"),
+      MessageProtocol(Some("application/octet-stream")),
+      Nil,
+      None,
+      Nil
+    )
+  }
+
+  @TearDown
+  def tearDown(): Unit = {
+    Await.ready(lifecycle.stop(), 10.seconds)
+    Await.ready(system.terminate(), 10.seconds)
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(MessagesPerCall)
+  def streamedCall(): Int = {
+    val received = client
+      .connect(exceptionSerializer, WebSocketVersion.V13, requestHeader, Source.never)
+      .flatMap(_._2.runFold(0)((count, _) => count + 1)(mat))(system.dispatcher)
+    Await.result(received, 30.seconds)
+  }
+}
+
+object WebSocketClientBenchmark {
+  final val ElementSize     = 1024
+  final val MessagesPerCall = 10000
+}
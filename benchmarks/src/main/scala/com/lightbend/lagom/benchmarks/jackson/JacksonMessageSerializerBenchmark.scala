@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.benchmarks.jackson
+
+import java.util.Collections
+import java.util.concurrent.TimeUnit
+
+import akka.actor.ActorSystem
+import akka.serialization.jackson.JacksonObjectMapperProvider
+import akka.util.ByteString
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.lightbend.lagom.javadsl.api.transport.MessageProtocol
+import com.lightbend.lagom.javadsl.jackson.JacksonSerializerFactory
+import com.typesafe.config.ConfigFactory
+import org.openjdk.jmh.annotations._
+
+import scala.concurrent.Await
+import scala.concurrent.duration._
+
+/**
+ * Measures the javadsl service side of a strict call with the Jackson serializer factory: looking up the serializer
+ * of the message type, negotiating the format, and reading the request or writing the response, as the service
+ * router does for each call. `readRequestStream` is the baseline of creating the reader and reading the request
+ * through an `InputStream`, as the factory used to.
+ *
+ * Run with `-prof gc` to compare the allocation rates, with and without the Afterburner module.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+class JacksonMessageSerializerBenchmark {
+  import JacksonMessageSerializerBenchmark._
+
+  @Param(Array("off", "on"))
+  var afterburner: String = _
+
+  private val order = OrderPlaced(
+    orderId = "3f2a6c1e-8b7d-4d0a-9a55-0c4e5b6f7a81",
+    customerId = "customer-42",
+    items = (1 to 5).map(i => s"item-$i").toList,
+    total = BigDecimal("99.95"),
+    timestamp = 1600000000000L
+  )
+
+  private val protocol = new MessageProtocol().withContentType("application/json")
+  private val accepted = Collections.singletonList(protocol)
+
+  private var system: ActorSystem               = _
+  private var factory: JacksonSerializerFactory = _
+  private var mapper: ObjectMapper              = _
+  private var request: ByteString               = _
+  private var chunkedRequest: ByteString        = _
+
+  @Setup
+  def setup(): Unit = {
+    val modules = if (afterburner == "on") s"[\"$AfterburnerModule\"]" else "[]"
+    // Resolved with the reference configuration, as Play loads it, so that the bindings include the modules
+    val config = ConfigFactory
+      .parseString(s"lagom.serialization.jackson.service-api.afterburner = $modules")
+      .withFallback(ConfigFactory.parseResources("reference.conf"))
+      .resolve()
+    system = ActorSystem("JacksonMessageSerializerBenchmark", config)
+    factory = new JacksonSerializerFactory(system)
+    mapper = JacksonObjectMapperProvider(system).getOrCreate(JacksonSerializerFactory.BINDING_NAME, None)
+    request = serializeResponse()
+    // A request entity received in several chunks
+    chunkedRequest = request.grouped(32).foldLeft(ByteString.empty)(_ ++ _)
+  }
+
+  @TearDown
+  def tearDown(): Unit = Await.ready(system.terminate(), 10.seconds)
+
+  @Benchmark
+  def serializeResponse(): ByteString =
+    factory.messageSerializerFor[OrderPlaced](classOf[OrderPlaced]).serializerForResponse(accepted).serialize(order)
+
+  @Benchmark
+  def deserializeRequest(): OrderPlaced =
+    factory.messageSerializerFor[OrderPlaced](classOf[OrderPlaced]).deserializer(protocol).deserialize(request)
+
+  @Benchmark
+  def deserializeChunkedRequest(): OrderPlaced =
+    factory.messageSerializerFor[OrderPlaced](classOf[OrderPlaced]).deserializer(protocol).deserialize(chunkedRequest)
+
+  @Benchmark
+  def readRequestStream(): OrderPlaced =
+    mapper.readerFor(classOf[OrderPlaced]).readValue[OrderPlaced](request.iterator.asInputStream)
+}
+
+object JacksonMessageSerializerBenchmark {
+  private val AfterburnerModule = "com.fasterxml.jackson.module.afterburner.AfterburnerModule"
+
+  final case class OrderPlaced(
+      orderId: String,
+      customerId: String,
+      items: List[String],
+      total: BigDecimal,
+      timestamp: Long
+  )
+}
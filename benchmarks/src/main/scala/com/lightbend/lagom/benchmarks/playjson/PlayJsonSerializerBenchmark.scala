@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.benchmarks.playjson
+
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.TimeUnit
+
+import akka.actor.ActorSystem
+import akka.serialization.SerializationExtension
+import akka.serialization.SerializerWithStringManifest
+import com.lightbend.lagom.scaladsl.playjson.JsonMigration
+import com.lightbend.lagom.scaladsl.playjson.JsonSerializer
+import com.lightbend.lagom.scaladsl.playjson.JsonSerializerRegistry
+import org.openjdk.jmh.annotations._
+import play.api.libs.json._
+
+import scala.collection.immutable
+import scala.concurrent.Await
+import scala.concurrent.duration._
+
+/**
+ * Measures the serialization of an event by the play-json persistence serializer, and its deserialization from the
+ * current version and from a version that a migration applies to. `toBinaryStringify` is the baseline of writing the
+ * JSON as a String, and then encoding it, as the serializer used to.
+ *
+ * Run with `-prof gc` to compare the allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+class PlayJsonSerializerBenchmark {
+  import PlayJsonSerializerBenchmark._
+
+  private val event = ItemAdded(
+    orderId = "3f2a6c1e-8b7d-4d0a-9a55-0c4e5b6f7a81",
+    itemId = "item-42",
+    quantity = 3,
+    price = BigDecimal("19.99"),
+    tags = (1 to 5).map(i => s"tag-$i").toList,
+    timestamp = 1600000000000L
+  )
+
+  private var system: ActorSystem                      = _
+  private var serializer: SerializerWithStringManifest = _
+  private var manifest: String                         = _
+  private var bytes: Array[Byte]                       = _
+  private var oldManifest: String                      = _
+  private var oldBytes: Array[Byte]                    = _
+
+  @Setup
+  def setup(): Unit = {
+    system = ActorSystem("PlayJsonSerializerBenchmark", JsonSerializerRegistry.actorSystemSetupFor(Registry))
+    serializer = SerializationExtension(system).findSerializerFor(event).asInstanceOf[SerializerWithStringManifest]
+    manifest = serializer.manifest(event)
+    bytes = serializer.toBinary(event)
+    oldManifest = s"${classOf[ItemAdded].getName}#1"
+    oldBytes = Json.toBytes(Json.toJsObject(event) - "timestamp" + ("time" -> JsNumber(event.timestamp)))
+  }
+
+  @TearDown
+  def tearDown(): Unit = Await.ready(system.terminate(), 10.seconds)
+
+  @Benchmark
+  def toBinary(): Array[Byte] = serializer.toBinary(event)
+
+  @Benchmark
+  def toBinaryStringify(): Array[Byte] = Json.stringify(ItemAdded.format.writes(event)).getBytes(StandardCharsets.UTF_8)
+
+  @Benchmark
+  def fromBinary(): AnyRef = serializer.fromBinary(bytes, manifest)
+
+  @Benchmark
+  def fromBinaryMigrated(): AnyRef = serializer.fromBinary(oldBytes, oldManifest)
+}
+
+object PlayJsonSerializerBenchmark {
+  final case class ItemAdded(
+      orderId: String,
+      itemId: String,
+      quantity: Int,
+      price: BigDecimal,
+      tags: List[String],
+      timestamp: Long
+  )
+
+  object ItemAdded {
+    implicit val format: OFormat[ItemAdded] = Json.format
+  }
+
+  object Registry extends JsonSerializerRegistry {
+    override val serializers: immutable.Seq[JsonSerializer[_]] = immutable.Seq(JsonSerializer[ItemAdded])
+
+    // Version 1 named the timestamp `time`
+    override val migrations: Map[String, JsonMigration] = Map(
+      classOf[ItemAdded].getName -> new JsonMigration(2) {
+        override def transform(fromVersion: Int, json: JsObject): JsObject =
+          if (fromVersion < 2) json - "time" + ("timestamp" -> (json \ "time").get) else json
+      }
+    )
+  }
+}
@@ -6,104 +6,355 @@ package com.lightbend.lagom.javadsl.jackson;
 
 import akka.Done;
 import akka.actor.ActorSystem;
+import akka.japi.pf.PFBuilder;
 import akka.serialization.jackson.JacksonJsonSerializer;
 import akka.serialization.jackson.JacksonObjectMapperProvider;
+import akka.stream.javadsl.Source;
+import akka.stream.scaladsl.Framing.FramingException;
 import akka.util.ByteString;
 import akka.util.ByteString$;
 import akka.util.ByteStringBuilder;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.lightbend.lagom.internal.api.Ndjson$;
+import com.lightbend.lagom.internal.javadsl.api.DelegatingStreamedMessageSerializer;
+import com.lightbend.lagom.internal.javadsl.api.StreamedMessageSerializerProvider;
 import com.lightbend.lagom.javadsl.api.deser.DeserializationException;
 import com.lightbend.lagom.javadsl.api.deser.SerializationException;
 import com.lightbend.lagom.javadsl.api.deser.SerializerFactory;
+import com.lightbend.lagom.javadsl.api.deser.StreamedMessageSerializer;
 import com.lightbend.lagom.javadsl.api.deser.StrictMessageSerializer;
 import com.lightbend.lagom.javadsl.api.transport.MessageProtocol;
+import com.typesafe.config.Config;
 import org.pcollections.PSequence;
 import org.pcollections.TreePVector;
 import scala.Option;
+import scala.PartialFunction;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import java.lang.reflect.Type;
 import java.util.List;
 import java.util.Optional;
-
-/** A Jackson Serializer Factory */
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A Jackson Serializer Factory
+ *
+ * <p>The messages are serialized to JSON, CBOR or Smile, as negotiated with the Content-Type and
+ * Accept headers. Clients accept CBOR and Smile responses in preference to JSON, unless
+ * <code>lagom.serialization.jackson.service-api.accept-binary</code> is off, and send requests in
+ * the format of <code>lagom.serialization.jackson.service-api.request-content-type</code>, JSON by
+ * default, since a service that doesn't support the binary formats can't read them.
+ *
+ * <p>Streams of messages are serialized as newline delimited JSON when the client accepts it,
+ * unless <code>lagom.serialization.jackson.service-api.accept-ndjson</code> is off, and as a
+ * message per element otherwise. Only the streamed responses of the calls that use the framed
+ * streaming transport are negotiated, as WebSocket responses are always in the default format.
+ * Services also answer newline delimited JSON to the plain HTTP requests that accept it, with the
+ * lines as the chunks of the response.
+ *
+ * <p>The serializer of a type, with its readers and writers, is created once and shared by every
+ * call that uses the type. The object mappers of the service api have the Jackson Afterburner
+ * module registered when <code>lagom.serialization.jackson.service-api.afterburner</code> lists
+ * it, as the <code>jackson-modules</code> of their bindings include it.
+ */
 @Singleton
 public class JacksonSerializerFactory implements SerializerFactory {
 
   public static String BINDING_NAME = "jackson-json-serviceapi";
+  public static String CBOR_BINDING_NAME = "jackson-cbor-serviceapi";
+  public static String SMILE_BINDING_NAME = "jackson-smile-serviceapi";
+
+  static final String JSON = "application/json";
+  static final String CBOR = "application/cbor";
+  static final String SMILE = "application/x-jackson-smile";
+  static final String NDJSON = Ndjson$.MODULE$.ContentType();
+
+  private static final PartialFunction<Throwable, Throwable> SERIALIZATION_ERRORS =
+      new PFBuilder<Throwable, Throwable>()
+          .match(JsonProcessingException.class, SerializationException::new)
+          .build();
+  private static final PartialFunction<Throwable, Throwable> DESERIALIZATION_ERRORS =
+      new PFBuilder<Throwable, Throwable>()
+          .match(JsonProcessingException.class, DeserializationException::new)
+          .match(FramingException.class, DeserializationException::new)
+          .build();
+
+  private static final byte[] JSON_NULL = {'n', 'u', 'l', 'l'};
 
   private final MessageProtocol defaultProtocol =
-      new MessageProtocol(Optional.of("application/json"), Optional.of("utf-8"), Optional.empty());
+      new MessageProtocol(Optional.of(JSON), Optional.of("utf-8"), Optional.empty());
+  private final MessageProtocol cborProtocol =
+      new MessageProtocol(Optional.of(CBOR), Optional.empty(), Optional.empty());
+  private final MessageProtocol smileProtocol =
+      new MessageProtocol(Optional.of(SMILE), Optional.empty(), Optional.empty());
+  private final MessageProtocol ndjsonProtocol =
+      new MessageProtocol(Optional.of(NDJSON), Optional.empty(), Optional.empty());
 
   private final ObjectMapper objectMapper;
+  private final ObjectMapper cborMapper;
+  private final ObjectMapper smileMapper;
+  private final PSequence<MessageProtocol> acceptResponseProtocols;
+  private final String requestContentType;
+  private final boolean acceptNdjson;
+  private final int ndjsonMaxLineLength;
+  private final ConcurrentHashMap<Type, StrictMessageSerializer<?>> messageSerializers =
+      new ConcurrentHashMap<>();
 
   @Inject
   public JacksonSerializerFactory(ActorSystem system) {
     // FIXME missing javadsl, Optional
-    this(JacksonObjectMapperProvider.get(system).getOrCreate(BINDING_NAME, Option.empty()));
+    this(
+        JacksonObjectMapperProvider.get(system).getOrCreate(BINDING_NAME, Option.empty()),
+        JacksonObjectMapperProvider.get(system)
+            .getOrCreate(CBOR_BINDING_NAME, Option.apply(new CBORFactory())),
+        JacksonObjectMapperProvider.get(system)
+            .getOrCreate(SMILE_BINDING_NAME, Option.apply(new SmileFactory())),
+        system.settings().config().getConfig("lagom.serialization.jackson.service-api"));
   }
 
-  /** For testing purposes */
+  /**
+   * For testing purposes. The binary formats are read and written with object mappers that only
+   * have the modules found on the classpath registered.
+   */
   public JacksonSerializerFactory(ObjectMapper objectMapper) {
+    this(
+        objectMapper,
+        new ObjectMapper(new CBORFactory()).findAndRegisterModules(),
+        new ObjectMapper(new SmileFactory()).findAndRegisterModules(),
+        true,
+        JSON,
+        true,
+        Ndjson$.MODULE$.DefaultMaxLineLength());
+  }
+
+  private JacksonSerializerFactory(
+      ObjectMapper objectMapper, ObjectMapper cborMapper, ObjectMapper smileMapper, Config config) {
+    this(
+        objectMapper,
+        cborMapper,
+        smileMapper,
+        config.getBoolean("accept-binary"),
+        config.getString("request-content-type"),
+        config.getBoolean("accept-ndjson"),
+        (int) Math.min(Integer.MAX_VALUE, config.getBytes("ndjson-max-line-length")));
+  }
+
+  private JacksonSerializerFactory(
+      ObjectMapper objectMapper,
+      ObjectMapper cborMapper,
+      ObjectMapper smileMapper,
+      boolean acceptBinary,
+      String requestContentType,
+      boolean acceptNdjson,
+      int ndjsonMaxLineLength) {
+    if (!requestContentType.equals(JSON)
+        && !requestContentType.equals(CBOR)
+        && !requestContentType.equals(SMILE)) {
+      throw new IllegalArgumentException(
+          "Unsupported request-content-type ["
+              + requestContentType
+              + "], expected one of ["
+              + JSON
+              + ", "
+              + CBOR
+              + ", "
+              + SMILE
+              + "]");
+    }
     this.objectMapper = objectMapper;
+    this.cborMapper = cborMapper;
+    this.smileMapper = smileMapper;
+    this.requestContentType = requestContentType;
+    this.acceptNdjson = acceptNdjson;
+    this.ndjsonMaxLineLength = ndjsonMaxLineLength;
+    MessageProtocol json =
+        new MessageProtocol(Optional.of(JSON), Optional.empty(), Optional.empty());
+    this.acceptResponseProtocols =
+        acceptBinary
+            ? TreePVector.singleton(cborProtocol).plus(smileProtocol).plus(json)
+            : TreePVector.singleton(json);
   }
 
   @Override
+  @SuppressWarnings("unchecked")
   public <MessageEntity> StrictMessageSerializer<MessageEntity> messageSerializerFor(Type type) {
+    return (StrictMessageSerializer<MessageEntity>)
+        messageSerializers.computeIfAbsent(type, this::createMessageSerializer);
+  }
+
+  private StrictMessageSerializer<?> createMessageSerializer(Type type) {
     if (type == Done.class) return new DoneMessageSerializer<>();
     else if (type == ByteString.class) return new NoopMessageSerializer<>();
     else return new JacksonMessageSerializer<>(type);
   }
 
   private class JacksonMessageSerializer<MessageEntity>
-      implements StrictMessageSerializer<MessageEntity> {
+      implements StrictMessageSerializer<MessageEntity>,
+          StreamedMessageSerializerProvider<MessageEntity> {
 
     private final NegotiatedSerializer<MessageEntity, ByteString> serializer;
     private final NegotiatedDeserializer<MessageEntity, ByteString> deserializer;
+    private final NegotiatedSerializer<MessageEntity, ByteString> cborSerializer;
+    private final NegotiatedDeserializer<MessageEntity, ByteString> cborDeserializer;
+    private final NegotiatedSerializer<MessageEntity, ByteString> smileSerializer;
+    private final NegotiatedDeserializer<MessageEntity, ByteString> smileDeserializer;
+    private final ObjectWriter jsonWriter;
+    private final ObjectReader jsonReader;
+    private final StreamedMessageSerializer<MessageEntity> streamedSerializer;
 
     public JacksonMessageSerializer(Type type) {
       JavaType javaType = objectMapper.constructType(type);
-      serializer = new JacksonSerializer(objectMapper.writerFor(javaType));
-      deserializer = new JacksonDeserializer(objectMapper.readerFor(javaType), type);
+      jsonWriter = objectMapper.writerFor(javaType);
+      jsonReader = objectMapper.readerFor(javaType);
+      serializer = new JacksonSerializer(jsonWriter, defaultProtocol);
+      deserializer = new JacksonDeserializer(jsonReader, jsonReader, type);
+      cborSerializer = new JacksonSerializer(cborMapper.writerFor(javaType), cborProtocol);
+      cborDeserializer = new JacksonDeserializer(cborMapper.readerFor(javaType), jsonReader, type);
+      smileSerializer = new JacksonSerializer(smileMapper.writerFor(javaType), smileProtocol);
+      smileDeserializer =
+          new JacksonDeserializer(smileMapper.readerFor(javaType), jsonReader, type);
+      streamedSerializer = new NdjsonMessageSerializer();
     }
 
     @Override
     public PSequence<MessageProtocol> acceptResponseProtocols() {
-      return TreePVector.singleton(
-          new MessageProtocol(Optional.of("application/json"), Optional.empty(), Optional.empty()));
+      return acceptResponseProtocols;
     }
 
     @Override
     public NegotiatedSerializer<MessageEntity, ByteString> serializerForRequest() {
-      return serializer;
+      return serializerFor(requestContentType);
     }
 
     @Override
     public NegotiatedDeserializer<MessageEntity, ByteString> deserializer(
         MessageProtocol messageProtocol) throws SerializationException {
-      return deserializer;
+      String contentType = messageProtocol.contentType().orElse(JSON);
+      if (contentType.equals(CBOR)) return cborDeserializer;
+      else if (contentType.equals(SMILE)) return smileDeserializer;
+      else return deserializer;
     }
 
+    /** The format of the first accepted protocol that is supported, JSON if there is none. */
     @Override
     public NegotiatedSerializer<MessageEntity, ByteString> serializerForResponse(
         List<MessageProtocol> acceptedMessageProtocols) {
+      for (MessageProtocol accepted : acceptedMessageProtocols) {
+        String contentType = accepted.contentType().orElse(JSON);
+        if (contentType.equals(JSON) || contentType.equals(CBOR) || contentType.equals(SMILE)) {
+          return serializerFor(contentType);
+        }
+      }
       return serializer;
     }
 
+    private NegotiatedSerializer<MessageEntity, ByteString> serializerFor(String contentType) {
+      if (contentType.equals(CBOR)) return cborSerializer;
+      else if (contentType.equals(SMILE)) return smileSerializer;
+      else return serializer;
+    }
+
+    @Override
+    public StreamedMessageSerializer<MessageEntity> streamedMessageSerializer() {
+      return streamedSerializer;
+    }
+
+    /**
+     * Serializes streams of messages as newline delimited JSON, or as a message per element with
+     * this serializer.
+     */
+    private class NdjsonMessageSerializer implements StreamedMessageSerializer<MessageEntity> {
+      private final StreamedMessageSerializer<MessageEntity> delegate =
+          new DelegatingStreamedMessageSerializer<>(JacksonMessageSerializer.this);
+      private final NegotiatedSerializer<Source<MessageEntity, ?>, Source<ByteString, ?>>
+          ndjsonSerializer = new NdjsonSerializer();
+      private final NegotiatedDeserializer<Source<MessageEntity, ?>, Source<ByteString, ?>>
+          ndjsonDeserializer = new NdjsonDeserializer();
+
+      @Override
+      public PSequence<MessageProtocol> acceptResponseProtocols() {
+        if (acceptNdjson) {
+          return TreePVector.singleton(ndjsonProtocol).plusAll(delegate.acceptResponseProtocols());
+        } else {
+          return delegate.acceptResponseProtocols();
+        }
+      }
+
+      @Override
+      public NegotiatedSerializer<Source<MessageEntity, ?>, Source<ByteString, ?>>
+          serializerForRequest() {
+        return delegate.serializerForRequest();
+      }
+
+      @Override
+      public NegotiatedDeserializer<Source<MessageEntity, ?>, Source<ByteString, ?>> deserializer(
+          MessageProtocol messageProtocol) throws SerializationException {
+        if (messageProtocol.contentType().equals(Optional.of(NDJSON))) return ndjsonDeserializer;
+        else return delegate.deserializer(messageProtocol);
+      }
+
+      /** NDJSON if it is accepted before any other supported format. */
+      @Override
+      public NegotiatedSerializer<Source<MessageEntity, ?>, Source<ByteString, ?>>
+          serializerForResponse(List<MessageProtocol> acceptedMessageProtocols) {
+        for (MessageProtocol accepted : acceptedMessageProtocols) {
+          String contentType = accepted.contentType().orElse(JSON);
+          if (contentType.equals(NDJSON)) {
+            return ndjsonSerializer;
+          } else if (contentType.equals(JSON)
+              || contentType.equals(CBOR)
+              || contentType.equals(SMILE)) {
+            break;
+          }
+        }
+        return delegate.serializerForResponse(acceptedMessageProtocols);
+      }
+
+      private class NdjsonSerializer
+          implements NegotiatedSerializer<Source<MessageEntity, ?>, Source<ByteString, ?>> {
+        @Override
+        public MessageProtocol protocol() {
+          return ndjsonProtocol;
+        }
+
+        @Override
+        public Source<ByteString, ?> serialize(Source<MessageEntity, ?> messages) {
+          return messages
+              .via(Ndjson$.MODULE$.<MessageEntity>encoder(jsonWriter))
+              .mapError(SERIALIZATION_ERRORS);
+        }
+      }
+
+      private class NdjsonDeserializer
+          implements NegotiatedDeserializer<Source<MessageEntity, ?>, Source<ByteString, ?>> {
+        @Override
+        public Source<MessageEntity, ?> deserialize(Source<ByteString, ?> lines) {
+          return lines
+              .via(Ndjson$.MODULE$.<MessageEntity>decoder(jsonReader, ndjsonMaxLineLength))
+              .mapError(DESERIALIZATION_ERRORS);
+        }
+      }
+    }
+
     private class JacksonSerializer implements NegotiatedSerializer<MessageEntity, ByteString> {
       private final ObjectWriter writer;
+      private final MessageProtocol protocol;
 
-      public JacksonSerializer(ObjectWriter writer) {
+      public JacksonSerializer(ObjectWriter writer, MessageProtocol protocol) {
         this.writer = writer;
+        this.protocol = protocol;
       }
 
       @Override
       public MessageProtocol protocol() {
-        return defaultProtocol;
+        return protocol;
       }
 
       @Override
@@ -120,10 +371,13 @@ public class JacksonSerializerFactory implements SerializerFactory {
 
     private class JacksonDeserializer implements NegotiatedDeserializer<MessageEntity, ByteString> {
       private final ObjectReader reader;
+      // An empty message is read as JSON null, whatever the format
+      private final ObjectReader jsonReader;
       private final Type type;
 
-      public JacksonDeserializer(ObjectReader reader, Type type) {
+      public JacksonDeserializer(ObjectReader reader, ObjectReader jsonReader, Type type) {
         this.reader = reader;
+        this.jsonReader = jsonReader;
         this.type = type;
       }
 
@@ -131,9 +385,12 @@ public class JacksonSerializerFactory implements SerializerFactory {
       public MessageEntity deserialize(ByteString bytes) {
         try {
           if (bytes.isEmpty() && this.type == Optional.class) {
-            bytes = ByteString.fromString("null");
+            return jsonReader.readValue(JSON_NULL);
           }
-          return reader.readValue(bytes.iterator().asInputStream());
+          // Read from the array of the message without copying it, unless it is made of several
+          // chunks, which are then copied once rather than read through a stream
+          byte[] array = bytes.toArrayUnsafe();
+          return reader.readValue(array, 0, array.length);
         } catch (Exception e) {
           throw new DeserializationException(e);
         }
@@ -5,12 +5,20 @@
 package com.lightbend.lagom.serialization;
 
 import akka.actor.ActorSystem;
+import akka.serialization.jackson.JacksonObjectMapperProvider;
+import akka.stream.Materializer;
+import akka.stream.javadsl.Sink;
+import akka.stream.javadsl.Source;
 import akka.testkit.javadsl.TestKit;
 import akka.util.ByteString;
 import akka.util.ByteString$;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
+import com.lightbend.lagom.internal.javadsl.api.StreamedMessageSerializerProvider;
 import com.lightbend.lagom.javadsl.api.deser.DeserializationException;
+import com.lightbend.lagom.javadsl.api.deser.MessageSerializer.NegotiatedSerializer;
+import com.lightbend.lagom.javadsl.api.deser.StreamedMessageSerializer;
 import com.lightbend.lagom.javadsl.api.deser.StrictMessageSerializer;
 import com.lightbend.lagom.javadsl.api.transport.MessageProtocol;
 import com.lightbend.lagom.javadsl.jackson.JacksonSerializerFactory;
@@ -18,10 +26,20 @@ import com.typesafe.config.ConfigFactory;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import scala.Option;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 public class JacksonSerializerFactoryTest {
 
@@ -100,6 +118,174 @@ public class JacksonSerializerFactoryTest {
     assertEquals(byteString, deserialize);
   }
 
+  @Test
+  public void shouldDeserializeAJsObjectInSeveralChunksToDummy() {
+    StrictMessageSerializer<Dummy> serializer = factory.messageSerializerFor(Dummy.class);
+    ByteString chunked =
+        ByteString.fromString("{\"opt\":").concat(ByteString.fromString("\"abc\"}"));
+    Dummy deserialize = serializer.deserializer(new MessageProtocol()).deserialize(chunked);
+    assertEquals(Optional.of("abc"), deserialize.opt);
+  }
+
+  @Test
+  public void shouldReuseTheSerializerOfAType() {
+    StrictMessageSerializer<Dummy> serializer = factory.messageSerializerFor(Dummy.class);
+    assertSame(serializer, factory.messageSerializerFor(Dummy.class));
+  }
+
+  @Test
+  public void shouldSerializeWithAfterburnerWhenEnabled() {
+    ActorSystem afterburnerSystem =
+        ActorSystem.create(
+            "AfterburnerTest",
+            // Resolved with the reference configuration, as Play loads it, so that the
+            // bindings include the module
+            ConfigFactory.parseString(
+                    "lagom.serialization.jackson.service-api.afterburner = [\""
+                        + AfterburnerModule.class.getName()
+                        + "\"]")
+                .withFallback(ConfigFactory.parseResources("reference.conf"))
+                .resolve());
+    try {
+      for (String binding :
+          Arrays.asList(
+              JacksonSerializerFactory.BINDING_NAME,
+              JacksonSerializerFactory.CBOR_BINDING_NAME,
+              JacksonSerializerFactory.SMILE_BINDING_NAME)) {
+        assertTrue(
+            JacksonObjectMapperProvider.get(afterburnerSystem)
+                .getOrCreate(binding, Option.empty())
+                .getRegisteredModuleIds()
+                .contains(AfterburnerModule.class.getName()));
+      }
+      StrictMessageSerializer<Dummy> serializer =
+          new JacksonSerializerFactory(afterburnerSystem).messageSerializerFor(Dummy.class);
+      ByteString bytes = serializer.serializerForRequest().serialize(new Dummy(Optional.of("abc")));
+      assertEquals(ByteString.fromString("{\"opt\":\"abc\"}"), bytes);
+      Dummy deserialize = serializer.deserializer(new MessageProtocol()).deserialize(bytes);
+      assertEquals(Optional.of("abc"), deserialize.opt);
+    } finally {
+      TestKit.shutdownActorSystem(afterburnerSystem);
+    }
+  }
+
+  @Test
+  public void shouldAcceptBinaryFormatsInPreferenceToJson() {
+    StrictMessageSerializer<Dummy> serializer = factory.messageSerializerFor(Dummy.class);
+    assertEquals(
+        Arrays.asList(
+            Optional.of("application/cbor"),
+            Optional.of("application/x-jackson-smile"),
+            Optional.of("application/json")),
+        serializer.acceptResponseProtocols().stream()
+            .map(MessageProtocol::contentType)
+            .collect(Collectors.toList()));
+  }
+
+  @Test
+  public void shouldSerializeResponsesInTheFirstAcceptedFormat() {
+    StrictMessageSerializer<Dummy> serializer = factory.messageSerializerFor(Dummy.class);
+    for (String contentType : Arrays.asList("application/cbor", "application/x-jackson-smile")) {
+      MessageProtocol protocol = new MessageProtocol().withContentType(contentType);
+      NegotiatedSerializer<Dummy, ByteString> negotiated =
+          serializer.serializerForResponse(
+              Arrays.asList(new MessageProtocol().withContentType("text/html"), protocol));
+      assertEquals(Optional.of(contentType), negotiated.protocol().contentType());
+      ByteString bytes = negotiated.serialize(new Dummy(Optional.of("abc")));
+      assertEquals(Optional.of("abc"), serializer.deserializer(protocol).deserialize(bytes).opt);
+    }
+  }
+
+  @Test
+  public void shouldSerializeResponsesInJsonWhenNoFormatIsAccepted() {
+    StrictMessageSerializer<Dummy> serializer = factory.messageSerializerFor(Dummy.class);
+    NegotiatedSerializer<Dummy, ByteString> negotiated =
+        serializer.serializerForResponse(
+            Collections.singletonList(new MessageProtocol().withContentType("text/html")));
+    assertEquals(Optional.of("application/json"), negotiated.protocol().contentType());
+    assertEquals(
+        ByteString.fromString("{\"opt\":\"abc\"}"),
+        negotiated.serialize(new Dummy(Optional.of("abc"))));
+  }
+
+  @Test
+  public void shouldSerializeRequestsInJson() {
+    StrictMessageSerializer<Dummy> serializer = factory.messageSerializerFor(Dummy.class);
+    assertEquals(
+        Optional.of("application/json"),
+        serializer.serializerForRequest().protocol().contentType());
+  }
+
+  @SuppressWarnings("unchecked")
+  private StreamedMessageSerializer<Dummy> streamedSerializer() {
+    StrictMessageSerializer<Dummy> serializer = factory.messageSerializerFor(Dummy.class);
+    return ((StreamedMessageSerializerProvider<Dummy>) serializer).streamedMessageSerializer();
+  }
+
+  private <T> List<T> run(Source<T, ?> source) throws Exception {
+    return source
+        .runWith(Sink.seq(), Materializer.matFromSystem(system))
+        .toCompletableFuture()
+        .get(10, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void shouldStreamResponsesAsNdjsonWhenAccepted() throws Exception {
+    StreamedMessageSerializer<Dummy> serializer = streamedSerializer();
+    assertEquals(
+        Optional.of("application/x-ndjson"),
+        serializer.acceptResponseProtocols().get(0).contentType());
+    NegotiatedSerializer<Source<Dummy, ?>, Source<ByteString, ?>> negotiated =
+        serializer.serializerForResponse(serializer.acceptResponseProtocols());
+    assertEquals(Optional.of("application/x-ndjson"), negotiated.protocol().contentType());
+
+    List<Dummy> dummies =
+        Arrays.asList(
+            new Dummy(Optional.of("abc")),
+            new Dummy(Optional.empty()),
+            new Dummy(Optional.of("d\ne")));
+    ByteString body =
+        run(negotiated.serialize(Source.from(dummies))).stream()
+            .reduce(ByteString.emptyByteString(), ByteString::concat);
+    assertEquals(3, body.utf8String().split("\n").length);
+    assertTrue(body.utf8String().startsWith("{\"opt\":\"abc\"}\n"));
+
+    // The lines are read whatever the chunks they are received in
+    List<ByteString> chunks =
+        IntStream.range(0, body.length())
+            .mapToObj(i -> body.slice(i, i + 1))
+            .collect(Collectors.toList());
+    List<Dummy> deserialized =
+        run(serializer.deserializer(negotiated.protocol()).deserialize(Source.from(chunks)));
+    assertEquals(
+        Arrays.asList(Optional.of("abc"), Optional.empty(), Optional.of("d\ne")),
+        deserialized.stream().map(dummy -> dummy.opt).collect(Collectors.toList()));
+  }
+
+  @Test
+  public void shouldStreamResponsesAsAMessagePerElementWhenNdjsonIsNotAccepted() throws Exception {
+    StreamedMessageSerializer<Dummy> serializer = streamedSerializer();
+    NegotiatedSerializer<Source<Dummy, ?>, Source<ByteString, ?>> negotiated =
+        serializer.serializerForResponse(Collections.emptyList());
+    assertEquals(Optional.of("application/json"), negotiated.protocol().contentType());
+    assertEquals(
+        Collections.singletonList(ByteString.fromString("{\"opt\":\"abc\"}")),
+        run(negotiated.serialize(Source.single(new Dummy(Optional.of("abc"))))));
+  }
+
+  @Test
+  public void shouldFailToDeserializeATruncatedNdjsonStream() throws Exception {
+    StreamedMessageSerializer<Dummy> serializer = streamedSerializer();
+    MessageProtocol ndjson = new MessageProtocol().withContentType("application/x-ndjson");
+    Source<ByteString, ?> truncated = Source.single(ByteString.fromString("{\"opt\":\"abc\"}\n{"));
+    try {
+      run(serializer.deserializer(ndjson).deserialize(truncated));
+      throw new AssertionError("Expected the truncated stream to fail");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof DeserializationException);
+    }
+  }
+
   @Test
   public void shouldSerializeByteStringToByteString() {
     StrictMessageSerializer<ByteString> serializer = factory.messageSerializerFor(ByteString.class);
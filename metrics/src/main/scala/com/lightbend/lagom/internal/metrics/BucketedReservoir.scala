@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.internal.metrics
+
+import java.io.OutputStream
+import java.io.OutputStreamWriter
+import java.io.PrintWriter
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.atomic.AtomicLongArray
+
+import com.codahale.metrics.Reservoir
+import com.codahale.metrics.Snapshot
+
+/**
+ * A dropwizard reservoir that counts the values in buckets rather than sampling them, so that an update is a single
+ * atomic increment, without locks nor allocations, and the snapshots cover all the values recorded since it was
+ * created.
+ *
+ * The values below 8 have a bucket each, and each power of two above is split in 8 buckets, so that the quantiles are
+ * within 12.5% of the values recorded. Negative values are counted as 0.
+ */
+private[lagom] final class BucketedReservoir extends Reservoir {
+  import BucketedReservoir._
+
+  private val counts = new AtomicLongArray(BucketCount)
+
+  override def size(): Int = getSnapshot.size()
+
+  override def update(value: Long): Unit = counts.incrementAndGet(bucketOf(value))
+
+  override def getSnapshot: Snapshot = {
+    val snapshot = new Array[Long](BucketCount)
+    var i        = 0
+    while (i < BucketCount) {
+      snapshot(i) = counts.get(i)
+      i += 1
+    }
+    new BucketedSnapshot(snapshot)
+  }
+}
+
+private[lagom] object BucketedReservoir {
+  private val SubBucketBits = 3
+  private val SubBuckets    = 1 << SubBucketBits
+
+  private[metrics] val BucketCount = (64 - SubBucketBits) * SubBuckets
+
+  private[metrics] def bucketOf(value: Long): Int =
+    if (value < SubBuckets) math.max(value, 0L).toInt
+    else {
+      val exponent = 63 - java.lang.Long.numberOfLeadingZeros(value)
+      val sub      = ((value >>> (exponent - SubBucketBits)) & (SubBuckets - 1)).toInt
+      (exponent - SubBucketBits + 1) * SubBuckets + sub
+    }
+
+  /** The value in the middle of the given bucket, that the values in it are reported as. */
+  private[metrics] def valueOf(bucket: Int): Long =
+    if (bucket < SubBuckets) bucket.toLong
+    else {
+      val shift = bucket / SubBuckets - 1
+      val lower = (SubBuckets + bucket % SubBuckets).toLong << shift
+      lower + ((1L << shift) - 1) / 2
+    }
+
+  /**
+   * The counts of the buckets. Its values are the values of the buckets that were updated, rather than every value
+   * recorded.
+   */
+  private final class BucketedSnapshot(counts: Array[Long]) extends Snapshot {
+    private val count = counts.sum
+
+    override def getValue(quantile: Double): Double = {
+      if (quantile < 0.0 || quantile > 1.0 || quantile.isNaN)
+        throw new IllegalArgumentException(s"$quantile is not in [0..1]")
+      if (count == 0) 0.0
+      else {
+        val rank = math.max(1L, math.ceil(quantile * count).toLong)
+        var seen = counts(0)
+        var i    = 0
+        while (seen < rank) {
+          i += 1
+          seen += counts(i)
+        }
+        valueOf(i).toDouble
+      }
+    }
+
+    override def getValues: Array[Long] = counts.indices.filter(counts(_) > 0).map(valueOf).toArray
+
+    override def size(): Int = math.min(count, Int.MaxValue.toLong).toInt
+
+    override def getMax: Long = {
+      val i = counts.lastIndexWhere(_ > 0)
+      if (i < 0) 0 else valueOf(i)
+    }
+
+    override def getMin: Long = {
+      val i = counts.indexWhere(_ > 0)
+      if (i < 0) 0 else valueOf(i)
+    }
+
+    override def getMean: Double =
+      if (count == 0) 0.0
+      else counts.indices.foldLeft(0.0)((sum, i) => sum + counts(i).toDouble * valueOf(i)) / count
+
+    override def getStdDev: Double =
+      if (count <= 1) 0.0
+      else {
+        val mean = getMean
+        val variance = counts.indices.foldLeft(0.0) { (sum, i) =>
+          val diff = valueOf(i) - mean
+          sum + counts(i).toDouble * diff * diff
+        } / (count - 1)
+        math.sqrt(variance)
+      }
+
+    override def dump(output: OutputStream): Unit = {
+      val out = new PrintWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8))
+      try getValues.foreach(value => out.printf("%d%n", java.lang.Long.valueOf(value)))
+      finally out.close()
+    }
+  }
+}
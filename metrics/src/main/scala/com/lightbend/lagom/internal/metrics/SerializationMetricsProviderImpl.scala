@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.internal.metrics
+
+import akka.actor.ActorSystem
+import akka.actor.ExtendedActorSystem
+import akka.actor.Extension
+import akka.actor.ExtensionId
+import akka.actor.ExtensionIdProvider
+import com.codahale.metrics.Histogram
+import com.codahale.metrics.MetricRegistry
+import com.codahale.metrics.SharedMetricRegistries
+import com.lightbend.lagom.internal.spi.SerializationMetrics
+import com.lightbend.lagom.internal.spi.SerializationMetricsProvider
+
+/**
+ * The default serialization metrics, histograms of the durations in nanoseconds and sizes in bytes of the payloads,
+ * registered in the shared dropwizard metric registry named [[SerializationMetricsProviderImpl.MetricRegistryName]],
+ * so that they can be exported by any dropwizard reporter.
+ *
+ * The histograms count the values in buckets, see [[BucketedReservoir]], so that recording them is lock free, and
+ * every instance of this provider records in the same histograms.
+ */
+class SerializationMetricsProviderImpl extends SerializationMetricsProvider {
+  private val registry = SharedMetricRegistries.getOrCreate(SerializationMetricsProviderImpl.MetricRegistryName)
+
+  override def start(serializer: String, key: String): SerializationMetrics =
+    new SerializationMetricsImpl(registry, serializer, key)
+}
+
+object SerializationMetricsProviderImpl {
+  val MetricRegistryName = "lagom.serialization"
+}
+
+object SerializationMetricsImpl {
+  private final def name(serializer: String, key: String, metric: String) =
+    MetricRegistry.name("Serialization", serializer, key, metric)
+
+  private val newHistogram = new MetricRegistry.MetricSupplier[Histogram] {
+    override def newMetric(): Histogram = new Histogram(new BucketedReservoir)
+  }
+}
+
+class SerializationMetricsImpl(registry: MetricRegistry, val serializer: String, val key: String)
+    extends SerializationMetrics {
+  import SerializationMetricsImpl._
+
+  val serializationNanos: Histogram   = registry.histogram(name(serializer, key, "serializationNanos"), newHistogram)
+  val serializedBytes: Histogram      = registry.histogram(name(serializer, key, "serializedBytes"), newHistogram)
+  val deserializationNanos: Histogram = registry.histogram(name(serializer, key, "deserializationNanos"), newHistogram)
+  val deserializedBytes: Histogram    = registry.histogram(name(serializer, key, "deserializedBytes"), newHistogram)
+
+  override def onSerialization(elapsedNanos: Long, bytes: Int): Unit = {
+    serializationNanos.update(elapsedNanos)
+    serializedBytes.update(bytes)
+  }
+
+  override def onDeserialization(elapsedNanos: Long, bytes: Int): Unit = {
+    deserializationNanos.update(elapsedNanos)
+    deserializedBytes.update(bytes)
+  }
+}
+
+/**
+ * Holds the serialization metrics provider of an actor system, so that the service clients, the services and the
+ * play-json serializer share the one configured with `lagom.spi.serialization-metrics-class`, created once.
+ */
+private[lagom] object SerializationMetricsExtension
+    extends ExtensionId[SerializationMetricsExtension]
+    with ExtensionIdProvider {
+  override def get(system: ActorSystem): SerializationMetricsExtension = super.get(system)
+
+  override def lookup = SerializationMetricsExtension
+
+  override def createExtension(system: ExtendedActorSystem): SerializationMetricsExtension =
+    new SerializationMetricsExtension(system)
+}
+
+private[lagom] final class SerializationMetricsExtension(system: ExtendedActorSystem) extends Extension {
+
+  /** The configured provider, if the serialization is measured. */
+  val provider: Option[SerializationMetricsProvider] =
+    system.settings.config.getString("lagom.spi.serialization-metrics-class") match {
+      case "off" => None
+      case ""    => Some(new SerializationMetricsProviderImpl)
+      case className =>
+        val dynamicAccess = system.dynamicAccess
+        Some(
+          dynamicAccess
+            .createInstanceFor[SerializationMetricsProvider](className, List(classOf[ActorSystem] -> system))
+            .recoverWith {
+              case _: NoSuchMethodException =>
+                dynamicAccess.createInstanceFor[SerializationMetricsProvider](className, Nil)
+            }
+            .get
+        )
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.internal.metrics
+
+import org.scalatest.FlatSpec
+import org.scalatest.Matchers
+
+class BucketedReservoirSpec extends FlatSpec with Matchers {
+  behavior.of("BucketedReservoir")
+
+  it should "count each value below 8 in a bucket of its own" in {
+    (0L until 8L).foreach { value =>
+      BucketedReservoir.valueOf(BucketedReservoir.bucketOf(value)) shouldBe value
+    }
+  }
+
+  it should "report the values within 12.5% of what was recorded" in {
+    val values = Seq(9L, 100L, 1234L, 98765L, 123456789L, Long.MaxValue)
+    values.foreach { value =>
+      val reported = BucketedReservoir.valueOf(BucketedReservoir.bucketOf(value))
+      math.abs(reported.toDouble - value) should be <= value * 0.125
+    }
+    BucketedReservoir.bucketOf(Long.MaxValue) shouldBe BucketedReservoir.BucketCount - 1
+  }
+
+  it should "count negative values as 0" in {
+    BucketedReservoir.bucketOf(-42) shouldBe 0
+  }
+
+  it should "compute the quantiles of all the values recorded" in {
+    val reservoir = new BucketedReservoir
+    (1 to 1000).foreach(i => reservoir.update(i.toLong))
+
+    val snapshot = reservoir.getSnapshot
+    snapshot.size shouldBe 1000
+    snapshot.getMin shouldBe 1
+    snapshot.getMax.toDouble shouldBe 1000.0 +- 125.0
+    snapshot.getMedian shouldBe 500.0 +- 62.5
+    snapshot.get99thPercentile shouldBe 990.0 +- 124.0
+    snapshot.getMean shouldBe 500.5 +- 62.5
+  }
+
+  it should "have an empty snapshot when nothing was recorded" in {
+    val snapshot = new BucketedReservoir().getSnapshot
+    snapshot.size shouldBe 0
+    snapshot.getMax shouldBe 0
+    snapshot.getMedian shouldBe 0.0
+    snapshot.getValues shouldBe empty
+  }
+}
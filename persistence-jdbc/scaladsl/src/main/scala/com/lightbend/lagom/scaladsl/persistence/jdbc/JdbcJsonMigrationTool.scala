@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.scaladsl.persistence.jdbc
+
+import akka.NotUsed
+import akka.actor.ActorSystem
+import akka.persistence.jdbc.config.JournalTableConfiguration
+import akka.persistence.jdbc.config.SnapshotTableConfiguration
+import akka.persistence.jdbc.journal.dao.JournalTables
+import akka.persistence.jdbc.snapshot.dao.SnapshotTables
+import akka.persistence.serialization.MessageFormats.PersistentMessage
+import akka.persistence.serialization.Snapshot
+import akka.protobufv3.internal.{ ByteString => ProtobufByteString }
+import akka.serialization.SerializationExtension
+import akka.stream.Materializer
+import akka.stream.SystemMaterializer
+import akka.stream.scaladsl.Source
+import com.lightbend.lagom.scaladsl.playjson.PlayJsonSerializer
+import org.slf4j.LoggerFactory
+import slick.jdbc.JdbcBackend.Database
+import slick.jdbc.JdbcProfile
+
+import scala.concurrent.ExecutionContext
+import scala.concurrent.Future
+
+/**
+ * Rewrites the events and snapshots stored by the JDBC journal and snapshot store with the current version of their
+ * play-json serializers, so that replaying them, for instance when rebuilding a read-side, no longer applies the
+ * [[com.lightbend.lagom.scaladsl.playjson.JsonMigration]]s of the earlier versions to each of them.
+ *
+ * It is meant to be run offline, while no service writes to the journal, after a backup of the database, in an actor
+ * system set up with the [[com.lightbend.lagom.scaladsl.playjson.JsonSerializerRegistry]] and the journal and snapshot
+ * store configuration of the service.
+ *
+ * The rows are read in pages of `batchSize` rows, migrated by `parallelism` concurrent tasks, and written back in a
+ * transaction per batch. Only the events stored with an earlier version, or class name, of a play-json serializer are
+ * written back, and the other events are left as they are.
+ *
+ * @param db The database of the journal and snapshot store.
+ * @param profile The Slick profile of the database.
+ */
+final class JdbcJsonMigrationTool(
+    system: ActorSystem,
+    db: Database,
+    profile: JdbcProfile,
+    parallelism: Int = 8,
+    batchSize: Int = 500
+) {
+  require(parallelism > 0, s"parallelism must be > 0, was [$parallelism]")
+  require(batchSize > 0, s"batchSize must be > 0, was [$batchSize]")
+
+  import profile.api._
+
+  private val log = LoggerFactory.getLogger(getClass)
+
+  private implicit val ec: ExecutionContext = system.dispatcher
+  private implicit val mat: Materializer    = SystemMaterializer(system).materializer
+
+  private val serialization = SerializationExtension(system)
+
+  private val playJsonSerializer: PlayJsonSerializer =
+    serialization.serializerByIdentity.values
+      .collectFirst { case serializer: PlayJsonSerializer => serializer }
+      .getOrElse(throw new IllegalStateException("No play-json serializer is configured in the actor system"))
+
+  private val journalTables = new JournalTables {
+    override val journalTableCfg: JournalTableConfiguration =
+      new JournalTableConfiguration(system.settings.config.getConfig("jdbc-journal"))
+    override val profile: JdbcProfile = JdbcJsonMigrationTool.this.profile
+  }
+
+  private val snapshotTables = new SnapshotTables {
+    override val snapshotTableCfg: SnapshotTableConfiguration =
+      new SnapshotTableConfiguration(system.settings.config.getConfig("jdbc-snapshot-store"))
+    override val profile: JdbcProfile = JdbcJsonMigrationTool.this.profile
+  }
+
+  /**
+   * Rewrites the events stored with an earlier version of their play-json serializer.
+   *
+   * @return The number of events rewritten.
+   */
+  def migrateJournal(): Future[Long] = {
+    val journal = journalTables.JournalTable
+
+    // Paged by the ordering of the events, rather than streamed, so that no transaction is kept open while migrating
+    val pages = Source.unfoldAsync(0L) { after =>
+      db.run(
+          journal
+            .filter(_.ordering > after)
+            .sortBy(_.ordering)
+            .take(batchSize)
+            .map(row => (row.ordering, row.persistenceId, row.sequenceNumber, row.message))
+            .result
+        )
+        .map(rows => rows.lastOption.map(last => last._1 -> rows))
+    }
+
+    migrate(pages) {
+      case (_, persistenceId, sequenceNumber, message) =>
+        migrateEvent(message).map(migrated => (persistenceId, sequenceNumber, migrated))
+    } {
+      case (persistenceId, sequenceNumber, message) =>
+        journal
+          .filter(row => row.persistenceId === persistenceId && row.sequenceNumber === sequenceNumber)
+          .map(_.message)
+          .update(message)
+    }
+  }
+
+  /**
+   * Rewrites the snapshots serialized with a play-json serializer. Their manifest isn't read, so they are all written
+   * back, at the current version.
+   *
+   * @return The number of snapshots rewritten.
+   */
+  def migrateSnapshots(): Future[Long] = {
+    val snapshots = snapshotTables.SnapshotTable
+
+    val pages = Source.unfoldAsync(Option.empty[(String, Long)]) { after =>
+      val remaining = after match {
+        case None => snapshots
+        case Some((persistenceId, sequenceNumber)) =>
+          snapshots.filter(
+            row =>
+              row.persistenceId > persistenceId ||
+                (row.persistenceId === persistenceId && row.sequenceNumber > sequenceNumber)
+          )
+      }
+      db.run(
+          remaining
+            .sortBy(row => (row.persistenceId, row.sequenceNumber))
+            .take(batchSize)
+            .map(row => (row.persistenceId, row.sequenceNumber, row.snapshot))
+            .result
+        )
+        .map(rows => rows.lastOption.map(last => Some((last._1, last._2)) -> rows))
+    }
+
+    migrate(pages) {
+      case (persistenceId, sequenceNumber, snapshot) =>
+        migrateSnapshot(snapshot).map(migrated => (persistenceId, sequenceNumber, migrated))
+    } {
+      case (persistenceId, sequenceNumber, snapshot) =>
+        snapshots
+          .filter(row => row.persistenceId === persistenceId && row.sequenceNumber === sequenceNumber)
+          .map(_.snapshot)
+          .update(snapshot)
+    }
+  }
+
+  private def migrate[Row, Migrated](pages: Source[Seq[Row], NotUsed])(migrateRow: Row => Option[Migrated])(
+      update: Migrated => DBIO[Int]
+  ): Future[Long] =
+    pages
+      .mapConcat(_.toList)
+      .mapAsyncUnordered(parallelism)(row => Future(migrateRow(row)))
+      .collect { case Some(migrated) => migrated }
+      .grouped(batchSize)
+      .mapAsyncUnordered(parallelism) { batch =>
+        db.run(DBIO.sequence(batch.map(update)).transactionally).map(_ => batch.size.toLong)
+      }
+      .runFold(0L) { (total, migrated) =>
+        log.debug(s"Migrated [${total + migrated}] rows")
+        total + migrated
+      }
+
+  /**
+   * The serialized persistent representation of an event, with its payload migrated to the current version if it was
+   * stored with an earlier version of its play-json serializer.
+   */
+  private[jdbc] def migrateEvent(message: Array[Byte]): Option[Array[Byte]] = {
+    val persistent = PersistentMessage.parseFrom(message)
+    val payload    = persistent.getPayload
+    if (payload.getSerializerId != playJsonSerializer.identifier) None
+    else
+      playJsonSerializer
+        .migrateToCurrentVersion(payload.getPayload.toByteArray, payload.getPayloadManifest.toStringUtf8)
+        .map {
+          case (bytes, manifest) =>
+            persistent.toBuilder
+              .setPayload(
+                payload.toBuilder
+                  .setPayload(ProtobufByteString.copyFrom(bytes))
+                  .setPayloadManifest(ProtobufByteString.copyFromUtf8(manifest))
+              )
+              .build()
+              .toByteArray
+        }
+  }
+
+  /** The serialized snapshot, written again if its state is serialized with a play-json serializer. */
+  private[jdbc] def migrateSnapshot(snapshot: Array[Byte]): Option[Array[Byte]] = {
+    val data = serialization.deserialize(snapshot, classOf[Snapshot]).get.data.asInstanceOf[AnyRef]
+    if (serialization.findSerializerFor(data) ne playJsonSerializer) None
+    else Some(serialization.serialize(Snapshot(data)).get)
+  }
+}
+
+object JdbcJsonMigrationTool {
+
+  /**
+   * Rewrites the events and then the snapshots, see [[JdbcJsonMigrationTool]].
+   *
+   * @return The number of events and snapshots rewritten.
+   */
+  def migrate(system: ActorSystem, db: Database, profile: JdbcProfile): Future[(Long, Long)] = {
+    val tool = new JdbcJsonMigrationTool(system, db, profile)
+    import system.dispatcher
+    for {
+      events    <- tool.migrateJournal()
+      snapshots <- tool.migrateSnapshots()
+    } yield (events, snapshots)
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.scaladsl.persistence.jdbc
+
+import akka.persistence.PersistentRepr
+import akka.persistence.jdbc.config.JournalTableConfiguration
+import akka.persistence.jdbc.journal.dao.JournalTables
+import akka.persistence.serialization.MessageFormats.PersistentMessage
+import akka.persistence.serialization.MessageFormats.PersistentPayload
+import akka.protobufv3.internal.{ ByteString => ProtobufByteString }
+import akka.serialization.SerializationExtension
+import com.lightbend.lagom.scaladsl.playjson.JsonMigrations
+import com.lightbend.lagom.scaladsl.playjson.JsonSerializer
+import com.lightbend.lagom.scaladsl.playjson.JsonSerializerRegistry
+import com.lightbend.lagom.scaladsl.playjson.PlayJsonSerializer
+import play.api.libs.json._
+import slick.jdbc.JdbcProfile
+
+import scala.collection.immutable
+import scala.concurrent.Await
+import scala.concurrent.duration._
+
+object JdbcJsonMigrationToolSpec {
+  case class ItemRenamed(name: String)
+
+  object Registry extends JsonSerializerRegistry {
+    override def serializers: immutable.Seq[JsonSerializer[_]] =
+      immutable.Seq(JsonSerializer(Json.format[ItemRenamed]))
+
+    override def migrations = Map(
+      JsonMigrations.transform[ItemRenamed](
+        immutable.SortedMap(
+          1 -> __.json
+            .update((__ \ "name").json.copyFrom((__ \ "oldName").json.pick))
+            .andThen((__ \ "oldName").json.prune)
+        )
+      )
+    )
+  }
+}
+
+class JdbcJsonMigrationToolSpec extends JdbcPersistenceSpec(JdbcJsonMigrationToolSpec.Registry) {
+  import JdbcJsonMigrationToolSpec._
+
+  private lazy val serialization = SerializationExtension(system)
+
+  private lazy val journalTables = new JournalTables {
+    override val journalTableCfg: JournalTableConfiguration =
+      new JournalTableConfiguration(system.settings.config.getConfig("jdbc-journal"))
+    override val profile: JdbcProfile = slick.profile
+  }
+
+  private def await[T](future: scala.concurrent.Future[T]): T = Await.result(future, 20.seconds)
+
+  private def insertEvent(persistenceId: String, sequenceNr: Long, message: Array[Byte]): Unit = {
+    import slick.profile.api._
+    await(
+      slick.db.run(
+        journalTables.JournalTable
+          .map(row => (row.persistenceId, row.sequenceNumber, row.deleted, row.message)) +=
+          ((persistenceId, sequenceNr, false, message))
+      )
+    )
+  }
+
+  private def storedEvents(persistenceId: String): Seq[Array[Byte]] = {
+    import slick.profile.api._
+    await(
+      slick.db.run(
+        journalTables.JournalTable
+          .filter(_.persistenceId === persistenceId)
+          .sortBy(_.sequenceNumber)
+          .map(_.message)
+          .result
+      )
+    )
+  }
+
+  "The JdbcJsonMigrationTool" should {
+    "rewrite the events stored with an earlier version at the current version" in {
+      val playJsonSerializer = serialization.findSerializerFor(ItemRenamed("")).asInstanceOf[PlayJsonSerializer]
+
+      val oldEvent = PersistentMessage
+        .newBuilder()
+        .setPersistenceId("item-1")
+        .setSequenceNr(1)
+        .setPayload(
+          PersistentPayload
+            .newBuilder()
+            .setSerializerId(playJsonSerializer.identifier)
+            .setPayload(ProtobufByteString.copyFromUtf8("""{"oldName":"old"}"""))
+            .setPayloadManifest(ProtobufByteString.copyFromUtf8(classOf[ItemRenamed].getName))
+        )
+        .build()
+        .toByteArray
+      insertEvent("item-1", 1, oldEvent)
+      insertEvent("item-1", 2, serialization.serialize(PersistentRepr(ItemRenamed("current"), 2, "item-1")).get)
+
+      val tool = new JdbcJsonMigrationTool(system, slick.db, slick.profile, parallelism = 2, batchSize = 1)
+      await(tool.migrateJournal()) should ===(1L)
+
+      val events = storedEvents("item-1")
+      events.map(serialization.deserialize(_, classOf[PersistentRepr]).get.payload) should ===(
+        Seq(ItemRenamed("old"), ItemRenamed("current"))
+      )
+      PersistentMessage.parseFrom(events.head).getPayload.getPayloadManifest.toStringUtf8 should ===(
+        classOf[ItemRenamed].getName + "#2"
+      )
+
+      await(tool.migrateJournal()) should ===(0L)
+    }
+  }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.scaladsl.playjson
+
+import java.nio.ByteBuffer
+import java.util.Arrays
+
+import com.github.luben.zstd.{ Zstd => ZstdJni }
+import com.github.luben.zstd.ZstdDictCompress
+import com.github.luben.zstd.ZstdDictDecompress
+import net.jpountz.lz4.LZ4Factory
+
+import scala.collection.immutable
+
+/**
+ * Compresses the JSON of the messages registered with [[JsonSerializer.compressed]], when it is larger than
+ * `lagom.serialization.json.compress-larger-than`.
+ *
+ * Each codec starts its payloads with its own magic bytes, so that the serializer reads the payloads of the codec a
+ * message is registered with, of any of the built-in codecs, and uncompressed JSON. The codec of a message can then be
+ * changed while the events and snapshots stored with the previous one are still read.
+ *
+ * The codecs are shared by all the serializations, so they must be thread safe.
+ */
+trait CompressionCodec {
+
+  /**
+   * The bytes every payload of this codec starts with, which must differ from those of the other codecs, and can't
+   * start a JSON document.
+   */
+  def magic: immutable.Seq[Byte]
+
+  def compress(bytes: Array[Byte]): Array[Byte]
+
+  def decompress(bytes: Array[Byte]): Array[Byte]
+
+  /**
+   * Decompresses the given payload, failing with an `IllegalArgumentException` instead of allocating more than
+   * `maxLength` bytes when the codec can tell the decompressed length beforehand. The serializer uses it with
+   * `lagom.serialization.json.max-decompressed-size`. Only the other `decompress` has to be implemented.
+   */
+  def decompress(bytes: Array[Byte], maxLength: Int): Array[Byte] = decompress(bytes)
+
+  /** Whether the given bytes are a payload of this codec. */
+  def isCompressed(bytes: Array[Byte]): Boolean = bytes.startsWith(magic)
+}
+
+object CompressionCodec {
+
+  /** GZIP, the default codec. */
+  val Gzip: CompressionCodec = new CompressionCodec {
+    override val magic: immutable.Seq[Byte]                  = immutable.Seq(0x1f.toByte, 0x8b.toByte)
+    override def compress(bytes: Array[Byte]): Array[Byte]   = Compression.compress(bytes)
+    override def decompress(bytes: Array[Byte]): Array[Byte] = Compression.decompress(bytes)
+  }
+
+  /**
+   * LZ4, which compresses less than GZIP, but is much faster, in particular to decompress.
+   */
+  val Lz4: CompressionCodec = new Lz4Codec
+
+  /**
+   * Zstandard, which compresses about as well as GZIP, and is faster.
+   *
+   * @param level The compression level, from 1 to 22, the higher the smaller and the slower.
+   */
+  def zstd(level: Int): CompressionCodec = new ZstdCodec(level, None)
+
+  /** Zstandard at its default level, 3. */
+  val Zstd: CompressionCodec = zstd(3)
+
+  /**
+   * Zstandard with a dictionary, which compresses the small messages much better, when they are alike. A dictionary can
+   * be trained with [[trainZstdDictionary]] on samples of the JSON of the messages.
+   *
+   * The messages compressed with a dictionary can only be read with the same dictionary, so it must be kept for as
+   * long as they are stored.
+   *
+   * @param level The compression level, from 1 to 22, the higher the smaller and the slower.
+   */
+  def zstd(level: Int, dictionary: Array[Byte]): CompressionCodec = new ZstdCodec(level, Some(dictionary))
+
+  /**
+   * Trains a Zstandard dictionary on the given samples of serialized JSON.
+   *
+   * @param maxSize The maximum size of the dictionary, typically about 100 KiB.
+   */
+  def trainZstdDictionary(samples: immutable.Seq[Array[Byte]], maxSize: Int): Array[Byte] = {
+    val dictionary = new Array[Byte](maxSize)
+    val size       = ZstdJni.trainFromBuffer(samples.toArray, dictionary)
+    if (ZstdJni.isError(size))
+      throw new IllegalArgumentException(
+        s"Failed to train a Zstandard dictionary: ${ZstdJni.getErrorName(size)}"
+      )
+    Arrays.copyOf(dictionary, size.toInt)
+  }
+
+  /** The codecs read whatever codec the message is registered with. */
+  private[playjson] val BuiltIn: immutable.Seq[CompressionCodec] = immutable.Seq(Gzip, Lz4, Zstd)
+
+  /**
+   * An LZ4 block, preceded by the length of the uncompressed bytes. The compressor and the decompressor are thread
+   * safe, and reused for all the messages.
+   */
+  private final class Lz4Codec extends CompressionCodec {
+    private val HeaderSize = 8
+
+    private val factory      = LZ4Factory.fastestInstance()
+    private val compressor   = factory.fastCompressor()
+    private val decompressor = factory.safeDecompressor()
+
+    // "LZ4" followed by the version of the format
+    override val magic: immutable.Seq[Byte] = immutable.Seq('L'.toByte, 'Z'.toByte, '4'.toByte, 1.toByte)
+
+    override def compress(bytes: Array[Byte]): Array[Byte] = {
+      val maxLength = compressor.maxCompressedLength(bytes.length)
+      val payload   = new Array[Byte](HeaderSize + maxLength)
+      magic.copyToArray(payload)
+      ByteBuffer.wrap(payload).putInt(magic.length, bytes.length)
+      val length = compressor.compress(bytes, 0, bytes.length, payload, HeaderSize, maxLength)
+      Arrays.copyOf(payload, HeaderSize + length)
+    }
+
+    override def decompress(bytes: Array[Byte]): Array[Byte] = decompress(bytes, Int.MaxValue)
+
+    override def decompress(bytes: Array[Byte], maxLength: Int): Array[Byte] = {
+      if (bytes.length < HeaderSize)
+        throw new IllegalArgumentException(s"Truncated LZ4 payload of [${bytes.length}] bytes")
+      // The length is read before allocating, so that a corrupt or hostile payload can't exhaust the heap
+      val length = ByteBuffer.wrap(bytes).getInt(magic.length)
+      if (length < 0 || length > maxLength)
+        throw new IllegalArgumentException(s"Invalid LZ4 decompressed length [$length], the maximum is [$maxLength]")
+      val result = new Array[Byte](length)
+      decompressor.decompress(bytes, HeaderSize, bytes.length - HeaderSize, result, 0, length)
+      result
+    }
+  }
+
+  /**
+   * A Zstandard frame, whose magic bytes are those of the format. The dictionary is digested once, and reused for all
+   * the messages.
+   */
+  private final class ZstdCodec(level: Int, dictionary: Option[Array[Byte]]) extends CompressionCodec {
+    require(level >= 1 && level <= 22, s"Zstandard compression level must be between 1 and 22, was [$level]")
+
+    private val dictCompress   = dictionary.map(new ZstdDictCompress(_, level))
+    private val dictDecompress = dictionary.map(new ZstdDictDecompress(_))
+
+    override val magic: immutable.Seq[Byte] = immutable.Seq(0x28.toByte, 0xb5.toByte, 0x2f.toByte, 0xfd.toByte)
+
+    override def compress(bytes: Array[Byte]): Array[Byte] = dictCompress match {
+      case Some(dict) => ZstdJni.compress(bytes, dict)
+      case None       => ZstdJni.compress(bytes, level)
+    }
+
+    override def decompress(bytes: Array[Byte]): Array[Byte] = decompress(bytes, Int.MaxValue)
+
+    override def decompress(bytes: Array[Byte], maxLength: Int): Array[Byte] = {
+      // The frames written by compress always have their content size
+      val length = ZstdJni.decompressedSize(bytes)
+      if (length <= 0 || length > maxLength)
+        throw new IllegalArgumentException(s"Invalid Zstandard content size [$length], the maximum is [$maxLength]")
+      dictDecompress match {
+        case Some(dict) => ZstdJni.decompress(bytes, dict, length.toInt)
+        case None       => ZstdJni.decompress(bytes, length.toInt)
+      }
+    }
+  }
+}
@@ -49,9 +49,41 @@ object JsonSerializer {
   def compressed[T: ClassTag](format: Format[T]): JsonSerializer[T] =
     CompressedJsonSerializerImpl(implicitly[ClassTag[T]].runtimeClass.asInstanceOf[Class[T]], format)
 
+  /**
+   * Create a serializer for the PlayJsonSerializationRegistry that will compress the generated JSON content with the
+   * given codec when it is larger than <code>compress-larger-than</code> bytes, describes how a specific class can be
+   * read and written as json using separate play-json [[Reads]] and [[Writes]].
+   */
+  def compressed[T: ClassTag: Format](codec: CompressionCodec): JsonSerializer[T] =
+    CompressedJsonSerializerImpl(
+      implicitly[ClassTag[T]].runtimeClass.asInstanceOf[Class[T]],
+      implicitly[Format[T]],
+      codec
+    )
+
+  /**
+   * Create a serializer for the PlayJsonSerializationRegistry that will compress the generated JSON content with the
+   * given codec when it is larger than <code>compress-larger-than</code> bytes, describes how a specific class can be
+   * read and written as json using separate play-json [[Reads]] and [[Writes]].
+   */
+  def compressed[T: ClassTag](format: Format[T], codec: CompressionCodec): JsonSerializer[T] =
+    CompressedJsonSerializerImpl(implicitly[ClassTag[T]].runtimeClass.asInstanceOf[Class[T]], format, codec)
+
   private[lagom] case class JsonSerializerImpl[T](entityClass: Class[T], format: Format[T]) extends JsonSerializer[T]
-  private[lagom] case class CompressedJsonSerializerImpl[T](entityClass: Class[T], format: Format[T])
-      extends JsonSerializer[T]
+  private[lagom] case class CompressedJsonSerializerImpl[T](
+      entityClass: Class[T],
+      format: Format[T],
+      codec: CompressionCodec
+  ) extends JsonSerializer[T] {
+    // Binary compatibility with the serializers compressed with GZIP only
+    def this(entityClass: Class[T], format: Format[T]) = this(entityClass, format, CompressionCodec.Gzip)
+  }
+
+  private[lagom] object CompressedJsonSerializerImpl {
+    // Binary compatibility with the serializers compressed with GZIP only
+    def apply[T](entityClass: Class[T], format: Format[T]): CompressedJsonSerializerImpl[T] =
+      new CompressedJsonSerializerImpl(entityClass, format, CompressionCodec.Gzip)
+  }
 }
 
 /**
@@ -6,7 +6,8 @@ package com.lightbend.lagom.scaladsl.playjson
 
 import java.io.ByteArrayInputStream
 import java.io.ByteArrayOutputStream
-import java.nio.charset.StandardCharsets
+import java.util.concurrent.ConcurrentHashMap
+import java.util.function.{ Function => JFunction }
 import java.util.zip.GZIPInputStream
 import java.util.zip.GZIPOutputStream
 
@@ -14,9 +15,13 @@ import akka.actor.ExtendedActorSystem
 import akka.event.Logging
 import akka.serialization.BaseSerializer
 import akka.serialization.SerializerWithStringManifest
+import com.lightbend.lagom.internal.metrics.SerializationMetricsExtension
+import com.lightbend.lagom.internal.spi.SerializationMetrics
+import com.lightbend.lagom.internal.spi.SerializationMetricsProvider
 import play.api.libs.json._
 
 import scala.annotation.tailrec
+import scala.collection.immutable
 
 /**
  * Internal API
@@ -26,14 +31,20 @@ import scala.annotation.tailrec
 private[lagom] final class PlayJsonSerializer(val system: ExtendedActorSystem, registry: JsonSerializerRegistry)
     extends SerializerWithStringManifest
     with BaseSerializer {
-  import Compression._
+  import PlayJsonSerializer._
 
-  private val charset        = StandardCharsets.UTF_8
   private val log            = Logging.getLogger(system, getClass)
   private val conf           = system.settings.config.getConfig("lagom.serialization.json")
   private val isDebugEnabled = log.isDebugEnabled
 
   private val compressLargerThan: Long = conf.getBytes("compress-larger-than")
+  private val maxDecompressedSize: Int =
+    math.min(Int.MaxValue.toLong, conf.getBytes("max-decompressed-size")).toInt
+
+  private val metricsProvider: Option[SerializationMetricsProvider] = SerializationMetricsExtension(system).provider
+
+  // The serialization is only timed when it is measured or logged
+  private val isTimed = isDebugEnabled || metricsProvider.isDefined
 
   /** maps a manifestClassName to a suitable play-json Format */
   private val formatters: Map[String, Format[AnyRef]] = {
@@ -49,125 +60,191 @@ private[lagom] final class PlayJsonSerializer(val system: ExtendedActorSystem, r
     }.toMap
   }
 
-  private def migrations: Map[String, JsonMigration] = registry.migrations
-
-  override def manifest(o: AnyRef): String = {
-    val className = o.getClass.getName
-    migrations.get(className) match {
-      case Some(migration) => className + "#" + migration.currentVersion
-      case None            => className
+  // The migrations of a composed registry are concatenated on each call
+  private val migrations: Map[String, JsonMigration] = registry.migrations
+
+  // The manifests, and how to serialize and deserialize, are resolved once per class and per manifest
+  private val manifests        = new ConcurrentHashMap[Class[_], String]
+  private val serializations   = new ConcurrentHashMap[Class[_], Serialization]
+  private val deserializations = new ConcurrentHashMap[String, Deserialization]
+
+  private val resolveManifest = new JFunction[Class[_], String] {
+    override def apply(clazz: Class[_]): String = {
+      val className = clazz.getName
+      migrations.get(className) match {
+        case Some(migration) => className + "#" + migration.currentVersion
+        case None            => className
+      }
     }
   }
 
-  override def toBinary(o: AnyRef): Array[Byte] = {
-    val startTime = if (isDebugEnabled) System.nanoTime else 0L
-
-    val (_, manifestClassName: String) = parseManifest(manifest(o))
+  private val resolveSerialization = new JFunction[Class[_], Serialization] {
+    override def apply(clazz: Class[_]): Serialization = {
+      val manifestClassName = clazz.getName
 
-    val format = formatters.getOrElse(
-      manifestClassName,
-      throw new RuntimeException(s"Missing play-json serializer for [$manifestClassName]")
-    )
-
-    val json               = format.writes(o)
-    val bytes: Array[Byte] = Json.stringify(json).getBytes(charset)
+      val format = formatters.getOrElse(
+        manifestClassName,
+        throw new RuntimeException(s"Missing play-json serializer for [$manifestClassName]")
+      )
 
-    val result = serializers(manifestClassName) match {
-      case JsonSerializer.CompressedJsonSerializerImpl(_, _) if bytes.length > compressLargerThan => compress(bytes)
-      case _                                                                                      => bytes
+      new Serialization(format, codecOf(manifestClassName), metricsOf(manifestClassName))
     }
+  }
 
-    if (isDebugEnabled) {
-      val durationMicros = (System.nanoTime - startTime) / 1000
-
-      log.debug(
-        "Serialization of [{}] took [{}] µs, size [{}] bytes",
-        o.getClass.getName,
-        durationMicros,
-        result.length
+  private val resolveDeserialization = new JFunction[String, Deserialization] {
+    override def apply(manifest: String): Deserialization = {
+      val (fromVersion: Int, manifestClassName: String) = parseManifest(manifest)
+
+      val renameMigration = migrations.get(manifestClassName)
+
+      val migratedManifest = renameMigration match {
+        case Some(migration) if fromVersion < migration.currentVersion =>
+          migration.transformClassName(fromVersion, manifestClassName)
+        case Some(migration) if fromVersion == migration.currentVersion =>
+          manifestClassName
+        case Some(migration) if fromVersion <= migration.supportedForwardVersion =>
+          migration.transformClassName(fromVersion, manifestClassName)
+        case Some(migration) if fromVersion > migration.supportedForwardVersion =>
+          throw new IllegalStateException(
+            s"Migration supported version ${migration.supportedForwardVersion} is " +
+              s"behind version $fromVersion of deserialized type [$manifestClassName]"
+          )
+        case None => manifestClassName
+      }
+
+      val transformMigration = migrations.get(migratedManifest) match {
+        case Some(migration) if fromVersion == migration.currentVersion          => None
+        case Some(migration) if fromVersion <= migration.supportedForwardVersion => Some(migration)
+        case Some(migration) =>
+          throw new IllegalStateException(
+            s"Migration supported version ${migration.supportedForwardVersion} is " +
+              s"behind version $fromVersion of deserialized type [$migratedManifest]"
+          )
+        case None => None
+      }
+
+      val format = formatters.getOrElse(
+        migratedManifest,
+        throw new RuntimeException(
+          s"Missing play-json serializer for [$migratedManifest], " +
+            s"defined are [${formatters.keys.mkString(", ")}]"
+        )
       )
+      // The codec the type is registered with first, since it has the dictionary a payload may need
+      val codecs = (codecOf(migratedManifest).toList ++ CompressionCodec.BuiltIn).distinct
+
+      // The migration of the stored version is chained once, rather than matched on each message
+      val migrate: JsValue => JsValue = transformMigration match {
+        case None => identity
+        case Some(migration) => {
+          case js: JsObject => migration.transform(fromVersion, js)
+          case js: JsValue  => migration.transformValue(fromVersion, js)
+        }
+      }
+
+      // Only the earlier versions are outdated, the later ones were written by a more recent version of the service
+      val outdated = renameMigration.exists(fromVersion < _.currentVersion)
+
+      new Deserialization(migratedManifest, outdated, migrate, format, codecs, metricsOf(migratedManifest))
     }
-    result
   }
 
-  override def fromBinary(storedBytes: Array[Byte], manifest: String): AnyRef = {
-    val startTime = if (isDebugEnabled) System.nanoTime else 0L
-
-    val (fromVersion: Int, manifestClassName: String) = parseManifest(manifest)
-
-    val renameMigration = migrations.get(manifestClassName)
-
-    val migratedManifest = renameMigration match {
-      case Some(migration) if fromVersion < migration.currentVersion =>
-        migration.transformClassName(fromVersion, manifestClassName)
-      case Some(migration) if fromVersion == migration.currentVersion =>
-        manifestClassName
-      case Some(migration) if fromVersion <= migration.supportedForwardVersion =>
-        migration.transformClassName(fromVersion, manifestClassName)
-      case Some(migration) if fromVersion > migration.supportedForwardVersion =>
-        throw new IllegalStateException(
-          s"Migration supported version ${migration.supportedForwardVersion} is " +
-            s"behind version $fromVersion of deserialized type [$manifestClassName]"
-        )
-      case None => manifestClassName
+  private def codecOf(manifestClassName: String): Option[CompressionCodec] =
+    serializers.get(manifestClassName).collect {
+      case JsonSerializer.CompressedJsonSerializerImpl(_, _, codec) => codec
     }
 
-    val transformMigration = migrations.get(migratedManifest)
+  private def metricsOf(manifestClassName: String): Option[SerializationMetrics] =
+    metricsProvider.map(_.start(MetricsSerializerId, manifestClassName))
+
+  /**
+   * The given payload written again with the current version of its type, and its manifest, if it was stored with an
+   * earlier version or class name, so that the stored messages can be migrated once and for all rather than each time
+   * they are read.
+   */
+  private[lagom] def migrateToCurrentVersion(
+      storedBytes: Array[Byte],
+      manifest: String
+  ): Option[(Array[Byte], String)] =
+    if (!deserializations.computeIfAbsent(manifest, resolveDeserialization).outdated) None
+    else {
+      val obj = fromBinary(storedBytes, manifest)
+      Some(toBinary(obj) -> this.manifest(obj))
+    }
 
-    val format = formatters.getOrElse(
-      migratedManifest,
-      throw new RuntimeException(
-        s"Missing play-json serializer for [$migratedManifest], " +
-          s"defined are [${formatters.keys.mkString(", ")}]"
-      )
-    )
+  override def manifest(o: AnyRef): String = manifests.computeIfAbsent(o.getClass, resolveManifest)
+
+  override def toBinary(o: AnyRef): Array[Byte] = {
+    val startTime = if (isTimed) System.nanoTime else 0L
 
-    val bytes =
-      if (isGZipped(storedBytes))
-        decompress(storedBytes)
-      else
-        storedBytes
+    val serialization = serializations.computeIfAbsent(o.getClass, resolveSerialization)
 
-    val json = Json.parse(bytes) match {
-      case jsValue: JsValue => jsValue
-      case other =>
-        throw new RuntimeException(
-          "Unexpected serialized json data. " +
-            s"Expected a JSON object, but was [${other.getClass.getName}]"
+    // Written by the Jackson generator straight to bytes, rather than to a String first
+    val bytes: Array[Byte] = Json.toBytes(serialization.format.writes(o))
+
+    val result = serialization.codec match {
+      case Some(codec) if bytes.length > compressLargerThan => codec.compress(bytes)
+      case _                                                => bytes
+    }
+
+    if (isTimed) {
+      val elapsedNanos = System.nanoTime - startTime
+
+      serialization.metrics match {
+        case Some(metrics) => metrics.onSerialization(elapsedNanos, result.length)
+        case None          =>
+      }
+
+      if (isDebugEnabled)
+        log.debug(
+          "Serialization of [{}] took [{}] µs, size [{}] bytes",
+          o.getClass.getName,
+          elapsedNanos / 1000,
+          result.length
         )
     }
+    result
+  }
 
-    val migratedJson = transformMigration match {
-      case None                                                       => json
-      case Some(migration) if fromVersion == migration.currentVersion => json
-      case Some(migration) if fromVersion <= migration.supportedForwardVersion =>
-        json match {
-          case js: JsObject =>
-            migration.transform(fromVersion, js)
-          case js: JsValue =>
-            migration.transformValue(fromVersion, js)
-        }
+  override def fromBinary(storedBytes: Array[Byte], manifest: String): AnyRef = {
+    val startTime = if (isTimed) System.nanoTime else 0L
+
+    val deserialization = deserializations.computeIfAbsent(manifest, resolveDeserialization)
+
+    val bytes = deserialization.codecs.find(_.isCompressed(storedBytes)) match {
+      case Some(codec) => codec.decompress(storedBytes, maxDecompressedSize)
+      case None        => storedBytes
     }
 
-    val result = format.reads(migratedJson) match {
+    val json = Json.parse(bytes)
+
+    val migratedJson = deserialization.migrate(json)
+
+    val result = deserialization.format.reads(migratedJson) match {
       case JsSuccess(obj, _) => obj
       case JsError(errors) =>
         throw new JsonSerializationFailed(
-          s"Failed to de-serialize bytes with manifest [$migratedManifest]",
+          s"Failed to de-serialize bytes with manifest [${deserialization.migratedManifest}]",
           errors,
           migratedJson
         )
     }
 
-    if (isDebugEnabled) {
-      val durationMicros = (System.nanoTime - startTime) / 1000
+    if (isTimed) {
+      val elapsedNanos = System.nanoTime - startTime
 
-      log.debug(
-        "Deserialization of [{}] took [{}] µs, size [{}] bytes",
-        manifest,
-        durationMicros,
-        bytes.length
-      )
+      deserialization.metrics match {
+        case Some(metrics) => metrics.onDeserialization(elapsedNanos, storedBytes.length)
+        case None          =>
+      }
+
+      if (isDebugEnabled)
+        log.debug(
+          "Deserialization of [{}] took [{}] µs, size [{}] bytes",
+          manifest,
+          elapsedNanos / 1000,
+          bytes.length
+        )
     }
     result
   }
@@ -180,6 +257,34 @@ private[lagom] final class PlayJsonSerializer(val system: ExtendedActorSystem, r
   }
 }
 
+private[lagom] object PlayJsonSerializer {
+  private val MetricsSerializerId = "play-json"
+
+  /**
+   * @param metrics The metrics of the type, if the serialization is measured
+   */
+  private final class Serialization(
+      val format: Format[AnyRef],
+      val codec: Option[CompressionCodec],
+      val metrics: Option[SerializationMetrics]
+  )
+
+  /**
+   * @param outdated Whether the manifest is of an earlier version, or class name, than the current one
+   * @param migrate The migration of the JSON of the stored version, identity if it needs none
+   * @param codecs The codecs the stored bytes may be compressed with
+   * @param metrics The metrics of the migrated type, if the serialization is measured
+   */
+  private final class Deserialization(
+      val migratedManifest: String,
+      val outdated: Boolean,
+      val migrate: JsValue => JsValue,
+      val format: Format[AnyRef],
+      val codecs: immutable.Seq[CompressionCodec],
+      val metrics: Option[SerializationMetrics]
+  )
+}
+
 // This code is copied from JacksonJsonSerializer
 private[lagom] object Compression {
   private final val BufferSize = 1024 * 4
@@ -4,18 +4,25 @@
 
 package com.lightbend.lagom.scaladsl.playjson
 
+import java.nio.ByteBuffer
 import java.nio.charset.StandardCharsets
+import java.util.concurrent.ConcurrentLinkedQueue
 
 import akka.actor.ActorSystem
+import akka.actor.BootstrapSetup
 import akka.serialization.SerializationExtension
 import akka.serialization.SerializerWithStringManifest
 import akka.testkit.TestKit
+import com.lightbend.lagom.internal.spi.SerializationMetrics
+import com.lightbend.lagom.internal.spi.SerializationMetricsProvider
+import com.typesafe.config.ConfigFactory
 import org.scalatest.Matchers
 import org.scalatest.WordSpec
 import play.api.libs.json._
 
 import scala.collection.immutable.Seq
 import scala.collection.immutable.SortedMap
+import scala.collection.JavaConverters._
 
 case class Event1(name: String, increment: Int)
 object Event1 {
@@ -150,6 +157,16 @@ object TestRegistryWithCompression extends JsonSerializerRegistry {
     )
 }
 
+object TestRegistryWithCodecs extends JsonSerializerRegistry {
+  implicit val innerFormat = Json.format[Inner]
+
+  override def serializers: Seq[JsonSerializer[_]] =
+    Seq(
+      JsonSerializer.compressed[Event1](CompressionCodec.Lz4),
+      JsonSerializer.compressed(Json.format[Event2], CompressionCodec.Zstd)
+    )
+}
+
 object TestRegistryWithJson extends JsonSerializerRegistry {
   override def serializers: Seq[JsonSerializer[_]] = Seq(
     JsonSerializer(Json.format[Name])
@@ -158,6 +175,20 @@ object TestRegistryWithJson extends JsonSerializerRegistry {
 
 case class Box(surprise: Option[String])
 
+class RecordingSerializationMetricsProvider(system: ActorSystem) extends SerializationMetricsProvider {
+  override def start(serializer: String, key: String): SerializationMetrics = new SerializationMetrics {
+    override def onSerialization(elapsedNanos: Long, bytes: Int): Unit =
+      RecordingSerializationMetricsProvider.recorded.add((serializer, key, "serialization", bytes))
+
+    override def onDeserialization(elapsedNanos: Long, bytes: Int): Unit =
+      RecordingSerializationMetricsProvider.recorded.add((serializer, key, "deserialization", bytes))
+  }
+}
+
+object RecordingSerializationMetricsProvider {
+  val recorded = new ConcurrentLinkedQueue[(String, String, String, Int)]
+}
+
 class PlayJsonSerializerSpec extends WordSpec with Matchers {
   // this is a magic number copied from src/main/reference.conf.
   val COMPRESSION_THRESHOLD = 32 * 1024
@@ -300,6 +331,72 @@ class PlayJsonSerializerSpec extends WordSpec with Matchers {
         deserialized should be(expectedEvent)
     }
 
+    "serialize to the bytes of the stringified JSON" in withActorSystem(TestRegistry1) { system =>
+      val event = Event2("test2", Inner(on = true))
+
+      val serializeExt = SerializationExtension(system)
+      val serializer   = serializeExt.findSerializerFor(event).asInstanceOf[SerializerWithStringManifest]
+
+      val expected = Json.stringify(Json.obj("name" -> "test2", "inner" -> Json.obj("on" -> true)))
+      new String(serializer.toBinary(event), StandardCharsets.UTF_8) should be(expected)
+    }
+
+    "apply the migrations of a manifest each time it is deserialized" in withActorSystem(TestRegistry2) { system =>
+      val expectedEvent = MigratedEvent(addedField = 2, newName = "some value")
+      val oldJsonBytes = Json
+        .stringify(JsObject(Seq("removedField" -> JsString("doesn't matter"), "oldName" -> JsString("some value"))))
+        .getBytes(StandardCharsets.UTF_8)
+
+      val serializeExt = SerializationExtension(system)
+      val serializer   = serializeExt.findSerializerFor(expectedEvent).asInstanceOf[SerializerWithStringManifest]
+
+      val oldManifest     = expectedVersionedManifest(classOf[MigratedEvent], 1)
+      val currentManifest = serializer.manifest(expectedEvent)
+      val currentBytes    = serializer.toBinary(expectedEvent)
+      (1 to 3).foreach { _ =>
+        serializer.fromBinary(oldJsonBytes, oldManifest) should be(expectedEvent)
+        serializer.fromBinary(currentBytes, currentManifest) should be(expectedEvent)
+      }
+    }
+
+    "record the serialization metrics of each type with the configured provider" in withActorSystem(
+      TestRegistryWithCompression,
+      s"""lagom.spi.serialization-metrics-class = "${classOf[RecordingSerializationMetricsProvider].getName}""""
+    ) { system =>
+      RecordingSerializationMetricsProvider.recorded.clear()
+      val event1 = Event1("test", 1)
+      val event2 = Event2("a" * COMPRESSION_THRESHOLD, Inner(on = true))
+
+      val serializeExt = SerializationExtension(system)
+      val serializer   = serializeExt.findSerializerFor(event1).asInstanceOf[SerializerWithStringManifest]
+
+      val bytes1 = serializer.toBinary(event1)
+      val bytes2 = serializer.toBinary(event2)
+      serializer.fromBinary(bytes2, serializer.manifest(event2)) should be(event2)
+
+      RecordingSerializationMetricsProvider.recorded.asScala.toList should be(
+        List(
+          ("play-json", classOf[Event1].getName, "serialization", bytes1.length),
+          ("play-json", classOf[Event2].getName, "serialization", bytes2.length),
+          ("play-json", classOf[Event2].getName, "deserialization", bytes2.length)
+        )
+      )
+    }
+
+    "not measure the serialization when the metrics are off" in withActorSystem(
+      TestRegistry1,
+      "lagom.spi.serialization-metrics-class = off"
+    ) { system =>
+      RecordingSerializationMetricsProvider.recorded.clear()
+      val event = Event1("test", 1)
+
+      val serializeExt = SerializationExtension(system)
+      val serializer   = serializeExt.findSerializerFor(event).asInstanceOf[SerializerWithStringManifest]
+
+      serializer.fromBinary(serializer.toBinary(event), serializer.manifest(event)) should be(event)
+      RecordingSerializationMetricsProvider.recorded.isEmpty should be(true)
+    }
+
     "downcast a future version" in withActorSystem(TestRegistry4) { system =>
       // Looks like MigratedEvent, except `newName` is called `newerName`. That field needs downcasting.
       val newerJsonBytes = Json
@@ -325,6 +422,40 @@ class PlayJsonSerializerSpec extends WordSpec with Matchers {
       deserialized should be(expectedEvent)
     }
 
+    "migrate the payloads of earlier versions and class names to the current version" in withActorSystem(
+      TestRegistry2
+    ) { system =>
+      val expectedEvent = MigratedEvent(addedField = 2, newName = "some value")
+      val oldJsonBytes = Json
+        .stringify(JsObject(Seq("removedField" -> JsString("doesn't matter"), "oldName" -> JsString("some value"))))
+        .getBytes(StandardCharsets.UTF_8)
+
+      val serializer = SerializationExtension(system).findSerializerFor(expectedEvent).asInstanceOf[PlayJsonSerializer]
+
+      val currentManifest = serializer.manifest(expectedEvent)
+      val currentBytes    = serializer.toBinary(expectedEvent)
+      serializer.migrateToCurrentVersion(currentBytes, currentManifest) should be(None)
+
+      val Some((migratedBytes, migratedManifest)) =
+        serializer.migrateToCurrentVersion(oldJsonBytes, expectedVersionedManifest(classOf[MigratedEvent], 1))
+      migratedManifest should be(currentManifest)
+      migratedBytes should be(currentBytes)
+
+      val event1 = Event1("something", 25)
+      val Some((_, renamedManifest)) =
+        serializer.migrateToCurrentVersion(serializer.toBinary(event1), "event1.old.ClassName")
+      renamedManifest should be(serializer.manifest(event1))
+    }
+
+    "not migrate the payloads of future versions" in withActorSystem(TestRegistry4) { system =>
+      val expectedEvent = MigratedEvent(addedField = 2, newName = "some value")
+      val serializer =
+        SerializationExtension(system).findSerializerFor(expectedEvent).asInstanceOf[PlayJsonSerializer]
+
+      val futureManifest = expectedVersionedManifest(classOf[MigratedEvent], TestRegistry4.supportedVersion)
+      serializer.migrateToCurrentVersion(Array.emptyByteArray, futureManifest) should be(None)
+    }
+
     "use compression when enabled and payload is bigger than threshold" in withActorSystem(TestRegistryWithCompression) {
       system =>
         val serializeExt = SerializationExtension(system)
@@ -361,11 +492,86 @@ class PlayJsonSerializerSpec extends WordSpec with Matchers {
         }
     }
 
+    "use the codec of the registration when payload is bigger than threshold" in withActorSystem(
+      TestRegistryWithCodecs
+    ) { system =>
+      val serializeExt = SerializationExtension(system)
+      val longContent  = "t" * COMPRESSION_THRESHOLD
+      List(
+        Event1(longContent, 1)                -> CompressionCodec.Lz4,
+        Event2(longContent, Inner(on = true)) -> CompressionCodec.Zstd
+      ).foreach {
+        case (event, codec) =>
+          val serializer = serializeExt.findSerializerFor(event).asInstanceOf[SerializerWithStringManifest]
+
+          val bytes = serializer.toBinary(event)
+          bytes.length should be < COMPRESSION_THRESHOLD
+          codec.isCompressed(bytes) should be(true)
+
+          serializer.fromBinary(bytes, serializer.manifest(event)) should be(event)
+      }
+    }
+
+    "read payloads compressed with another codec than the one of the registration" in withActorSystem(
+      TestRegistryWithCodecs
+    ) { system =>
+      val event        = Event1("t" * COMPRESSION_THRESHOLD, 1)
+      val serializeExt = SerializationExtension(system)
+      val serializer   = serializeExt.findSerializerFor(event).asInstanceOf[SerializerWithStringManifest]
+      val json         = Json.stringify(Json.toJson(event)).getBytes(StandardCharsets.UTF_8)
+
+      List(CompressionCodec.Gzip, CompressionCodec.Zstd, CompressionCodec.zstd(19)).foreach { codec =>
+        serializer.fromBinary(codec.compress(json), serializer.manifest(event)) should be(event)
+      }
+      serializer.fromBinary(json, serializer.manifest(event)) should be(event)
+    }
+
     def expectedVersionedManifest[T](clazz: Class[T], migrationVersion: Int) = {
       s"${clazz.getName}#$migrationVersion"
     }
   }
 
+  "The Zstandard codec" should {
+    "compress with a trained dictionary" in {
+      val samples = (1 to 1000).map { i =>
+        Json
+          .stringify(Json.obj("orderId" -> s"order-$i", "itemId" -> s"item-${i % 17}", "quantity" -> i % 5))
+          .getBytes(StandardCharsets.UTF_8)
+      }
+      val dictionary = CompressionCodec.trainZstdDictionary(samples, 16 * 1024)
+      val codec      = CompressionCodec.zstd(3, dictionary)
+
+      samples.take(10).foreach { sample =>
+        val compressed = codec.compress(sample)
+        codec.isCompressed(compressed) should be(true)
+        compressed.length should be < CompressionCodec.Zstd.compress(sample).length
+        codec.decompress(compressed) should be(sample)
+      }
+    }
+  }
+
+  "The LZ4 codec" should {
+    def payload(length: Int) = {
+      val bytes = new Array[Byte](16)
+      CompressionCodec.Lz4.magic.copyToArray(bytes)
+      ByteBuffer.wrap(bytes).putInt(CompressionCodec.Lz4.magic.length, length)
+      bytes
+    }
+
+    "reject a negative decompressed length" in {
+      an[IllegalArgumentException] should be thrownBy CompressionCodec.Lz4.decompress(payload(-1))
+    }
+
+    "reject a decompressed length over the limit before allocating it" in {
+      an[IllegalArgumentException] should be thrownBy CompressionCodec.Lz4.decompress(payload(Int.MaxValue), 1024)
+    }
+
+    "decompress the payloads within the limit" in {
+      val json = ("{\"name\":\"" + "t" * 1000 + "\"}").getBytes(StandardCharsets.UTF_8)
+      CompressionCodec.Lz4.decompress(CompressionCodec.Lz4.compress(json), json.length) should be(json)
+    }
+  }
+
   "The provided serializers" should {
     object Singleton
 
@@ -391,11 +597,14 @@ class PlayJsonSerializerSpec extends WordSpec with Matchers {
   }
 
   private var counter = 0
-  def withActorSystem(registry: JsonSerializerRegistry)(test: ActorSystem => Unit): Unit = {
+  def withActorSystem(registry: JsonSerializerRegistry, config: String = "")(test: ActorSystem => Unit): Unit = {
     var system: ActorSystem = null
     try {
       counter += 1
-      system = ActorSystem(s"PlayJsonSerializerSpec-$counter", JsonSerializerRegistry.actorSystemSetupFor(registry))
+      val setup = JsonSerializerRegistry
+        .actorSystemSetupFor(registry)
+        .and(BootstrapSetup(ConfigFactory.parseString(config).withFallback(ConfigFactory.load())))
+      system = ActorSystem(s"PlayJsonSerializerSpec-$counter", setup)
       test(system)
     } finally {
       if (system ne null) TestKit.shutdownActorSystem(actorSystem = system, verifySystemShutdown = true)
@@ -149,6 +149,7 @@ object Dependencies {
   private val akkaHttpCore      = "com.typesafe.akka" %% "akka-http-core"       % Versions.AkkaHttp
   private val akkaHttpRouteDsl  = "com.typesafe.akka" %% "akka-http"            % Versions.AkkaHttp
   private val akkaHttpSprayJson = "com.typesafe.akka" %% "akka-http-spray-json" % Versions.AkkaHttp
+  private val akkaHttp2Support  = "com.typesafe.akka" %% "akka-http2-support"   % Versions.AkkaHttp
   private val akkaParsing       = "com.typesafe.akka" %% "akka-parsing"         % Versions.AkkaHttp
 
   private val sprayJson = "io.spray" %% "spray-json" % "1.3.6"
@@ -208,6 +209,14 @@ object Dependencies {
 
   private val mockitoCore = "org.mockito" % "mockito-core" % "3.2.4"
 
+  private val jacksonCbor  = "com.fasterxml.jackson.dataformat" % "jackson-dataformat-cbor"  % Versions.JacksonDatatype
+  private val jacksonSmile = "com.fasterxml.jackson.dataformat" % "jackson-dataformat-smile" % Versions.JacksonDatatype
+  private val jacksonAfterburner =
+    "com.fasterxml.jackson.module" % "jackson-module-afterburner" % Versions.JacksonDatatype
+
+  private val lz4Java = "org.lz4"          % "lz4-java" % "1.8.0"
+  private val zstdJni = "com.github.luben" % "zstd-jni" % "1.3.7-1"
+
   private val jacksonFamily =
     libraryFamily("com.fasterxml.jackson.core", Versions.JacksonCore)(
       "jackson-annotations",
@@ -270,6 +279,9 @@ object Dependencies {
       akkaHttpCore,
       akkaHttpRouteDsl,
       akkaHttpSprayJson,
+      akkaHttp2Support,
+      jacksonSmile,
+      jacksonAfterburner,
       akkaStreamKafka,
       akkaJackson,
       akkaParsing,
@@ -349,8 +361,8 @@ object Dependencies {
       "joda-time"           % "joda-time"               % "2.10.5",
       "junit"               % "junit"                   % Versions.JUnit,
       "net.jodah"           % "typetools"               % "0.5.0",
-      "org.lz4"             % "lz4-java"                % "1.8.0",
-      "com.github.luben"    % "zstd-jni"                % "1.3.7-1",
+      lz4Java,
+      zstdJni,
       "org.agrona"          % "agrona"                  % "1.9.0",
       commonsLang,
       kafkaClients,
@@ -522,7 +534,8 @@ object Dependencies {
     jnra64asm,
     jnrConstants,
     slf4jApi,
-    scalaJava8Compat
+    scalaJava8Compat,
+    scalaTest % Test
   ) ++ jacksonFamily ++ ow2asmDeps // to match whitelist versions
 
   val `api-javadsl` = libraryDependencies ++= Seq(
@@ -537,6 +550,8 @@ object Dependencies {
 
   val `api-scaladsl` = libraryDependencies ++= Seq(
     scalaCollectionCompat,
+    jacksonCbor,
+    jacksonSmile,
     // Upgrades needed to match whitelist versions
     sslConfig,
     scalaTest % Test
@@ -544,7 +559,15 @@ object Dependencies {
 
   val immutables = libraryDependencies += "org.immutables" % "value" % Versions.Immutables
 
+  val metrics = libraryDependencies ++= Seq(
+    akkaActor,
+    dropwizardMetricsCore,
+    scalaTest % Test
+  )
+
   val jackson = libraryDependencies ++= jacksonFamily ++ Seq(
+    jacksonSmile,
+    jacksonAfterburner,
     // Upgrades needed to match whitelist versions
     sslConfig,
     pcollections,
@@ -561,6 +584,8 @@ object Dependencies {
   val `play-json` = libraryDependencies ++= Seq(
     playJson,
     akkaActor,
+    lz4Java,
+    zstdJni,
     akkaTestkit % Test,
     scalaTest   % Test,
     // Upgrades needed to match whitelist versions
@@ -603,9 +628,12 @@ object Dependencies {
     slf4jApi,
     playWs,
     playAhcWs,
+    akkaHttpCore,
+    akkaHttp2Support,
     dropwizardMetricsCore,
     "com.typesafe.netty" % "netty-reactive-streams" % Versions.NettyReactiveStreams,
     "io.netty"           % "netty-codec-http" % Versions.Netty,
+    "io.netty"           % "netty-transport-native-epoll" % Versions.Netty,
     scalaTest            % Test,
     // Upgrades needed to match whitelist versions
     sslConfig,
@@ -734,6 +762,7 @@ object Dependencies {
 
   val `lagom-akka-discovery-service-locator-core` = libraryDependencies ++= Seq(
     akkaDiscovery,
+    dropwizardMetricsCore,
     slf4jApi,
     scalaTest % Test,
     // Upgrades needed to match whitelist versions
@@ -1023,6 +1052,7 @@ object Dependencies {
 
   val `kafka-broker` = libraryDependencies ++= Seq(
     kafkaClients,
+    scalaTest % Test,
     // Upgrades needed to match whitelist versions
     jnrConstants,
     pcollections,
@@ -0,0 +1,18 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.internal.api
+
+import scala.concurrent.duration.FiniteDuration
+
+/**
+ * The hedging of a service call, as described by the javadsl or scaladsl `Hedging` of the call.
+ *
+ * Exactly one of `delay` and `percentile` is defined.
+ */
+private[lagom] final case class HedgingPolicy(
+    delay: Option[FiniteDuration],
+    percentile: Option[Double],
+    maxExtraRequests: Int
+)
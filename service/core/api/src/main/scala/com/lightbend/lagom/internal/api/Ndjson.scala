@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.internal.api
+
+import akka.NotUsed
+import akka.stream.Attributes
+import akka.stream.FlowShape
+import akka.stream.Inlet
+import akka.stream.Outlet
+import akka.stream.scaladsl.Flow
+import akka.stream.scaladsl.Framing.FramingException
+import akka.stream.stage.GraphStage
+import akka.stream.stage.GraphStageLogic
+import akka.stream.stage.InHandler
+import akka.stream.stage.OutHandler
+import akka.util.ByteString
+import com.fasterxml.jackson.core.JsonToken
+import com.fasterxml.jackson.core.async.ByteArrayFeeder
+import com.fasterxml.jackson.databind.ObjectReader
+import com.fasterxml.jackson.databind.ObjectWriter
+import com.fasterxml.jackson.databind.SerializationFeature
+import com.fasterxml.jackson.databind.util.TokenBuffer
+
+/**
+ * Newline delimited JSON, for streams of messages: each message is written as a line of JSON, and the lines are read
+ * whatever the chunks they are received in, so that a stream can be sent with a message, or many, per chunk.
+ *
+ * The encoder writes the messages with a builder per stream, whose buffer is reused for every message. The decoder
+ * parses the chunks as they come with the Jackson non-blocking parser, keeping only the message being received.
+ */
+private[lagom] object Ndjson {
+  val ContentType = "application/x-ndjson"
+
+  /** The default maximum length of a line, beyond which the decoder fails. */
+  val DefaultMaxLineLength: Int = 1024 * 1024
+
+  private val Newline: Byte = '\n'
+
+  /** Writes each message as a line of JSON. */
+  def encoder[Message](writer: ObjectWriter): Flow[Message, ByteString, NotUsed] = {
+    // Indentation would split the messages across lines
+    val lineWriter = writer.without(SerializationFeature.INDENT_OUTPUT)
+    Flow[Message].statefulMapConcat { () =>
+      val builder = ByteString.newBuilder
+      val output  = builder.asOutputStream
+
+      { message =>
+        builder.clear()
+        lineWriter.writeValue(output, message)
+        builder.putByte(Newline)
+        builder.result() :: Nil
+      }
+    }
+  }
+
+  /**
+   * Reads the lines of JSON in the chunks, failing with a [[FramingException]] if a line is longer than the given
+   * length, or if the stream ends within a line.
+   */
+  def decoder[Message](reader: ObjectReader, maxLineLength: Int): Flow[ByteString, Message, NotUsed] =
+    Flow.fromGraph(new Decoder[Message](reader, maxLineLength))
+
+  private final class Decoder[Message](reader: ObjectReader, maxLineLength: Int)
+      extends GraphStage[FlowShape[ByteString, Message]] {
+    val in: Inlet[ByteString]                          = Inlet("Ndjson.in")
+    val out: Outlet[Message]                           = Outlet("Ndjson.out")
+    override val shape: FlowShape[ByteString, Message] = FlowShape(in, out)
+
+    override def createLogic(inheritedAttributes: Attributes): GraphStageLogic =
+      new GraphStageLogic(shape) with InHandler with OutHandler {
+        private val parser = reader.getFactory.createNonBlockingByteArrayParser()
+        private val feeder = parser.getNonBlockingInputFeeder.asInstanceOf[ByteArrayFeeder]
+
+        private var tokens = new TokenBuffer(parser)
+        private var depth  = 0
+        // The number of bytes fed to the parser, and its offset at the end of the last message
+        private var fed: Long         = 0
+        private var lastMessage: Long = 0
+
+        override def onPush(): Unit = {
+          val chunk = grab(in)
+          // The parser only reads the array, so a compact chunk is fed without copying it
+          feeder.feedInput(chunk.toArrayUnsafe(), 0, chunk.length)
+          fed += chunk.length
+          val messages = parse()
+          if (fed - lastMessage > maxLineLength)
+            failStage(new FramingException(s"NDJSON line longer than [$maxLineLength] bytes"))
+          else if (messages.isEmpty) pull(in)
+          else emitMultiple(out, messages)
+        }
+
+        override def onUpstreamFinish(): Unit = {
+          feeder.endOfInput()
+          val messages = parse()
+          if (depth > 0) failStage(new FramingException("NDJSON stream ended within a line"))
+          else if (messages.isEmpty) completeStage()
+          else emitMultiple(out, messages, () => completeStage())
+        }
+
+        override def onPull(): Unit = pull(in)
+
+        override def postStop(): Unit = parser.close()
+
+        /** Reads the messages that the input fed so far completes. */
+        private def parse(): Vector[Message] = {
+          val messages = Vector.newBuilder[Message]
+          var token    = parser.nextToken()
+          while (token != null && token != JsonToken.NOT_AVAILABLE) {
+            tokens.copyCurrentEvent(parser)
+            if (token.isStructStart) depth += 1
+            else if (token.isStructEnd) depth -= 1
+            if (depth == 0) {
+              messages += reader.readValue[Message](tokens.asParser())
+              tokens = new TokenBuffer(parser)
+              lastMessage = parser.getCurrentLocation.getByteOffset
+            }
+            token = parser.nextToken()
+          }
+          messages.result()
+        }
+
+        setHandlers(in, out, this)
+      }
+  }
+}
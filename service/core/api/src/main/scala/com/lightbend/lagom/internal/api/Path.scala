@@ -4,6 +4,7 @@
 
 package com.lightbend.lagom.internal.api
 
+import java.net.URLEncoder
 import java.util.regex.Pattern
 
 import akka.util.ByteString
@@ -16,6 +17,9 @@ case class Path(pathSpec: String, parts: Seq[PathPart], queryParams: Seq[String]
   private val dynamicParts = parts.collect {
     case dyn: DynamicPathPart => dyn
   }
+  // Precomputed once, as paths are formatted for every call made by service clients
+  private val partsArray             = parts.toArray
+  private val encodedQueryParamNames = queryParams.map(URLEncoder.encode(_, "utf-8")).toArray
 
   def extract(path: String, query: Map[String, Seq[String]]): Option[Seq[Seq[String]]] = {
     regex.unapplySeq(path).map { partValues =>
@@ -33,34 +37,51 @@ case class Path(pathSpec: String, parts: Seq[PathPart], queryParams: Seq[String]
   }
 
   def format(allParams: Seq[Seq[String]]): (String, Map[String, Seq[String]]) = {
+    checkParamCount(allParams)
+    val params = allParams.iterator
+    val path   = new java.lang.StringBuilder(pathSpec.length + 16)
+    writePath(path, params)
+    path.toString -> queryParams.iterator.zip(params).toMap
+  }
+
+  /**
+   * Formats the given parameters into the path and query string of a request, with the query parameters URL encoded.
+   */
+  def formatPathAndQuery(allParams: Seq[Seq[String]]): String = {
+    checkParamCount(allParams)
+    val params = allParams.iterator
+    val result = new java.lang.StringBuilder(pathSpec.length + 16)
+    writePath(result, params)
+    var separator = '?'
+    encodedQueryParamNames.foreach { name =>
+      params.next().foreach { value =>
+        result.append(separator).append(name).append('=').append(URLEncoder.encode(value, "utf-8"))
+        separator = '&'
+      }
+    }
+    result.toString
+  }
+
+  private def checkParamCount(allParams: Seq[Seq[String]]): Unit =
     if (dynamicParts.size + queryParams.size != allParams.size) {
       throw new IllegalArgumentException(
         s"Param number mismatch, attempt to encode ${allParams.size} params into path spec $pathSpec"
       )
     }
 
-    val (resultPathParts, leftOverParams) = parts.foldLeft((Seq.empty[String], allParams)) {
-      case ((pathParts, params), StaticPathPart(path)) => (pathParts :+ path, params)
-      case ((pathParts, params), DynamicPathPart(name, _, encoded)) =>
-        val encodedValue = params.head match {
+  private def writePath(result: java.lang.StringBuilder, params: Iterator[Seq[String]]): Unit =
+    partsArray.foreach {
+      case StaticPathPart(path) => result.append(path)
+      case DynamicPathPart(_, _, encoded) =>
+        params.next() match {
           case Seq(value) =>
-            if (encoded) {
-              UriEncoding.encodePathSegment(value, ByteString.UTF_8)
-            } else {
-              value
-            }
+            result.append(if (encoded) UriEncoding.encodePathSegment(value, ByteString.UTF_8) else value)
           case other =>
             throw new IllegalArgumentException(
               "Illegal attempt to encode zero or multiple parts into a path segment: " + other
             )
         }
-        (pathParts :+ encodedValue, params.tail)
     }
-    val path = resultPathParts.mkString
-
-    val queryValues = queryParams.zip(leftOverParams).toMap
-    path -> queryValues
-  }
 }
 
 sealed trait PathPart {
@@ -9,6 +9,7 @@ import java.security.Principal
 
 import akka.stream.scaladsl.Source
 import akka.util.ByteString
+import com.lightbend.lagom.internal.api.HedgingPolicy
 
 import scala.collection.immutable
 import scala.concurrent.ExecutionContext
@@ -44,6 +45,7 @@ trait LagomServiceApiBridge {
   type RequestHeader <: MessageHeader
   def requestHeaderMethod(rh: RequestHeader): String
   def requestHeaderUri(rh: RequestHeader): URI
+  def requestHeaderWithUri(rh: RequestHeader, uri: URI): RequestHeader
   def requestHeaderAcceptedResponseProtocols(rh: RequestHeader): immutable.Seq[MessageProtocol]
   def newRequestHeader(
       method: Method,
@@ -119,6 +121,9 @@ trait LagomServiceApiBridge {
   def methodForCall(call: Call[_, _]): Method
   def callRequestSerializer[Request, W](call: Call[Request, _]): MessageSerializer[Request, W]
   def callResponseSerializer[Response, W](call: Call[_, Response]): MessageSerializer[Response, W]
+  def callName(call: Call[_, _]): String
+  def callHedging(call: Call[_, _]): Option[HedgingPolicy]
+  def callFramedStreaming(call: Call[_, _]): Boolean
 
   type Method
   def methodName(m: Method): String
@@ -143,6 +148,21 @@ trait LagomServiceApiBridge {
       call: Call[_, _],
       block: URI => Future[T]
   )(implicit ec: ExecutionContext): Future[Option[T]]
+  def serviceLocatorLocateAll(serviceLocator: ServiceLocator, descriptor: Descriptor, call: Call[_, _])(
+      implicit ec: ExecutionContext
+  ): Future[immutable.Seq[URI]]
+
+  /**
+   * Runs the block with the given instance of the service, through the circuit breaker and instance selector the
+   * service locator uses for that instance, if the service locator can call a given instance.
+   */
+  def serviceLocatorDoWithInstance[T](
+      serviceLocator: ServiceLocator,
+      descriptor: Descriptor,
+      call: Call[_, _],
+      uri: URI,
+      block: URI => Future[T]
+  )(implicit ec: ExecutionContext): Option[Future[T]]
 
   // Exceptions
   def newPayloadTooLarge(msg: String): Throwable
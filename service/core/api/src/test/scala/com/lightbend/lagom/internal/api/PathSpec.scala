@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.internal.api
+
+import org.scalatest.FlatSpec
+import org.scalatest.Matchers
+
+class PathSpec extends FlatSpec with Matchers {
+  behavior.of("Path")
+
+  it should "format a static path" in {
+    val path = Path.parse("/orders/pending")
+    path.formatPathAndQuery(Nil) should ===("/orders/pending")
+    path.format(Nil) should ===("/orders/pending" -> Map.empty[String, Seq[String]])
+  }
+
+  it should "encode the value of a single segment dynamic part" in {
+    Path.parse("/users/:id/orders").formatPathAndQuery(Seq(Seq("a b/c"))) should ===("/users/a%20b%2Fc/orders")
+  }
+
+  it should "not encode the value of a multiple segments or regex dynamic part" in {
+    Path.parse("/files/*path").formatPathAndQuery(Seq(Seq("docs/a b"))) should ===("/files/docs/a b")
+    Path.parse("/items/$id<[0-9]+>").formatPathAndQuery(Seq(Seq("42"))) should ===("/items/42")
+  }
+
+  it should "repeat the query params that have several values" in {
+    Path.parse("/items?tag").formatPathAndQuery(Seq(Seq("new", "sale"))) should ===("/items?tag=new&tag=sale")
+  }
+
+  it should "leave out the query params that have no value" in {
+    val path = Path.parse("/items?tag&page")
+    path.formatPathAndQuery(Seq(Nil, Seq("2"))) should ===("/items?page=2")
+    path.formatPathAndQuery(Seq(Seq("new"), Nil)) should ===("/items?tag=new")
+    path.formatPathAndQuery(Seq(Nil, Nil)) should ===("/items")
+  }
+
+  it should "URL encode the values of the query params" in {
+    Path.parse("/search?q").formatPathAndQuery(Seq(Seq("a b&c=d é"))) should ===("/search?q=a+b%26c%3Dd+%C3%A9")
+  }
+
+  it should "format the path and query params of the dynamic parts and query params in order" in {
+    val path   = Path.parse("/users/:userId/orders/:orderId?expand&fields")
+    val params = Seq(Seq("alice"), Seq("42"), Seq("items"), Seq("id", "total"))
+    path.formatPathAndQuery(params) should ===("/users/alice/orders/42?expand=items&fields=id&fields=total")
+    path.format(params) should ===(
+      "/users/alice/orders/42" -> Map("expand" -> Seq("items"), "fields" -> Seq("id", "total"))
+    )
+  }
+
+  it should "extract the parameters it formats" in {
+    val path   = Path.parse("/users/:id?tag")
+    val params = Seq(Seq("a b/c"), Seq("new", "sale"))
+
+    val (formattedPath, query) = path.format(params)
+    path.extract(formattedPath, query) should ===(Some(params))
+  }
+
+  it should "fail when the number of parameters doesn't match the path spec" in {
+    val path   = Path.parse("/users/:id?tag")
+    val tooFew = the[IllegalArgumentException] thrownBy path.formatPathAndQuery(Seq(Seq("alice")))
+    tooFew.getMessage should include("/users/:id?tag")
+    an[IllegalArgumentException] should be thrownBy path.formatPathAndQuery(Seq(Seq("alice"), Nil, Nil))
+    an[IllegalArgumentException] should be thrownBy path.format(Seq(Seq("alice")))
+  }
+
+  it should "fail when a dynamic part is given zero or several values" in {
+    val path = Path.parse("/users/:id")
+    an[IllegalArgumentException] should be thrownBy path.formatPathAndQuery(Seq(Nil))
+    an[IllegalArgumentException] should be thrownBy path.formatPathAndQuery(Seq(Seq("alice", "bob")))
+  }
+}
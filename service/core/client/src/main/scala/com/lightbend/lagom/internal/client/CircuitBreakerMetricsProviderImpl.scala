@@ -4,6 +4,8 @@
 
 package com.lightbend.lagom.internal.client
 
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
 import java.util.concurrent.atomic.AtomicReference
 import java.util.concurrent.CopyOnWriteArrayList
 import java.util.concurrent.TimeUnit
@@ -69,14 +71,22 @@ object CircuitBreakerMetricsImpl {
   private final def throughputName(breakerId: String) = MetricRegistry.name("CircuitBreaker", "throughput", breakerId)
   private final def failureThroughputName(breakerId: String) =
     MetricRegistry.name("CircuitBreaker", "failureThroughput", breakerId)
+  private final def concurrencyLimitName(breakerId: String) =
+    MetricRegistry.name("CircuitBreaker", "concurrencyLimit", breakerId)
+  private final def inFlightName(breakerId: String) = MetricRegistry.name("CircuitBreaker", "inFlight", breakerId)
+  private final def rejectionCountName(breakerId: String) =
+    MetricRegistry.name("CircuitBreaker", "rejectionCount", breakerId)
 }
 
 class CircuitBreakerMetricsImpl(val breakerId: String, provider: CircuitBreakerMetricsProviderImpl)
     extends CircuitBreakerMetrics {
   import CircuitBreakerMetricsImpl._
 
-  private val log        = Logger(getClass)
-  private val stateValue = new AtomicReference[String](Closed)
+  private val log                   = Logger(getClass)
+  private val stateValue            = new AtomicReference[String](Closed)
+  private val limitValue            = new AtomicInteger(0)
+  private val inFlightValue         = new AtomicInteger(0)
+  private val concurrencyRegistered = new AtomicBoolean(false)
 
   private def registry = provider.registry
 
@@ -88,6 +98,7 @@ class CircuitBreakerMetricsImpl(val breakerId: String, provider: CircuitBreakerM
   val state: Gauge[String] = registry.register(stateName(breakerId), new Gauge[String] {
     override def getValue: String = stateValue.get
   })
+  val rejectionCount: Counter = registry.counter(rejectionCountName(breakerId))
 
   override def onOpen(): Unit = {
     stateValue.compareAndSet(Closed, Open)
@@ -132,6 +143,22 @@ class CircuitBreakerMetricsImpl(val breakerId: String, provider: CircuitBreakerM
     updateFailureCount()
   }
 
+  override def onConcurrencyLimitChanged(limit: Int): Unit = {
+    registerConcurrencyGauges()
+    limitValue.set(limit)
+  }
+
+  override def onInFlightChanged(inFlight: Int): Unit = {
+    registerConcurrencyGauges()
+    inFlightValue.set(inFlight)
+  }
+
+  override def onCallConcurrencyLimitRejection(): Unit = {
+    updateThroughput()
+    updateFailureThroughput()
+    rejectionCount.inc()
+  }
+
   override def stop(): Unit = {
     registry.remove(successCountName(breakerId))
     registry.remove(failureCountName(breakerId))
@@ -139,9 +166,23 @@ class CircuitBreakerMetricsImpl(val breakerId: String, provider: CircuitBreakerM
     registry.remove(throughputName(breakerId))
     registry.remove(failureThroughputName(breakerId))
     registry.remove(stateName(breakerId))
+    registry.remove(rejectionCountName(breakerId))
+    registry.remove(concurrencyLimitName(breakerId))
+    registry.remove(inFlightName(breakerId))
     provider.remove(this)
   }
 
+  // Only registered when concurrency limiting is enabled for the circuit breaker
+  private def registerConcurrencyGauges(): Unit =
+    if (!concurrencyRegistered.get && concurrencyRegistered.compareAndSet(false, true)) {
+      registry.register(concurrencyLimitName(breakerId), new Gauge[Int] {
+        override def getValue: Int = limitValue.get
+      })
+      registry.register(inFlightName(breakerId), new Gauge[Int] {
+        override def getValue: Int = inFlightValue.get
+      })
+    }
+
   private def updateSuccessCount(): Unit =
     successCount.inc()
 
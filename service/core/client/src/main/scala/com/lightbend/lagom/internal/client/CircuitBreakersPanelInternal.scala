@@ -4,10 +4,13 @@
 
 package com.lightbend.lagom.internal.client
 
+import java.net.URI
 import java.util.concurrent.TimeUnit.MILLISECONDS
+import java.util.concurrent.TimeUnit.NANOSECONDS
 import java.util.concurrent.CompletionException
 import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.TimeoutException
+import java.util.concurrent.atomic.AtomicLong
 import java.util.function.{ Function => JFunction }
 
 import akka.actor.ActorSystem
@@ -32,85 +35,228 @@ import scala.util.Try
 private[lagom] class CircuitBreakersPanelInternal(
     system: ActorSystem,
     circuitBreakerConfig: CircuitBreakerConfig,
-    metricsProvider: CircuitBreakerMetricsProvider
+    metricsProvider: CircuitBreakerMetricsProvider,
+    clock: () => Long
 ) {
+  def this(
+      system: ActorSystem,
+      circuitBreakerConfig: CircuitBreakerConfig,
+      metricsProvider: CircuitBreakerMetricsProvider
+  ) =
+    this(system, circuitBreakerConfig, metricsProvider, () => System.nanoTime())
+
   private final case class CircuitBreakerHolder(
       breaker: AkkaCircuitBreaker,
       metrics: CircuitBreakerMetrics,
-      failedCallDefinition: Try[_] => Boolean
+      failedCallDefinition: Try[_] => Boolean,
+      limiter: Option[ConcurrencyLimiter]
   )
 
+  /** The circuit breaker of an instance, and when it was last used. */
+  private final class InstanceBreaker(val holder: Option[CircuitBreakerHolder]) {
+    @volatile var lastUsed: Long = clock()
+  }
+
   private lazy val config               = circuitBreakerConfig.config
   private lazy val defaultBreakerConfig = circuitBreakerConfig.default
 
-  private val breakers = new ConcurrentHashMap[String, Option[CircuitBreakerHolder]]
-
-  def withCircuitBreaker[T](id: String)(body: => Future[T]): Future[T] = {
-    breaker(id) match {
-      case Some(CircuitBreakerHolder(b, metrics, failedCallDefinition)) =>
-        val startTime = System.nanoTime()
-
-        def elapsed: Long = System.nanoTime() - startTime
-
-        val result: Future[T] = b.withCircuitBreaker(body, failedCallDefinition)
-        result.onComplete {
-          case Success(_)                                                   => metrics.onCallSuccess(elapsed)
-          case failure @ Failure(_) if !failedCallDefinition.apply(failure) => metrics.onCallSuccess(elapsed)
-          case Failure(_: CircuitBreakerOpenException)                      => metrics.onCallBreakerOpenFailure()
-          case Failure(_: TimeoutException)                                 => metrics.onCallTimeoutFailure(elapsed)
-          case Failure(_)                                                   => metrics.onCallFailure(elapsed)
-        }(system.dispatcher)
-        result
-      case None => body
-    }
+  private val breakers         = new ConcurrentHashMap[String, Option[CircuitBreakerHolder]]
+  private val instanceBreakers = new ConcurrentHashMap[(String, URI), InstanceBreaker]
+
+  // Configurations that predate the eviction of per-instance circuit breakers may not define it
+  private lazy val instanceIdleTimeoutNanos =
+    if (defaultBreakerConfig.hasPath("per-instance-idle-timeout"))
+      defaultBreakerConfig.getDuration("per-instance-idle-timeout", NANOSECONDS)
+    else 10.minutes.toNanos
+  private lazy val lastEviction = new AtomicLong(clock())
+
+  /** The load balancers used by the circuit breaking service locators. */
+  lazy val loadBalancing: LoadBalancing = new LoadBalancing(circuitBreakerConfig.loadBalancing)
+
+  /** The outlier detectors used by the circuit breaking service locators. */
+  lazy val outlierDetection: OutlierDetection = new OutlierDetection(circuitBreakerConfig.outlierDetection)
+
+  private val instanceSelectors = new ConcurrentHashMap[String, Option[InstanceSelector]]
+  private val createInstanceSelector = new JFunction[String, Option[InstanceSelector]] {
+    override def apply(serviceName: String): Option[InstanceSelector] =
+      (loadBalancing.forService(serviceName), outlierDetection.forService(serviceName)) match {
+        case (None, None)         => None
+        case (balancer, detector) => Some(new InstanceSelector(balancer, detector))
+      }
   }
 
-  private val createCircuitBreaker = new JFunction[String, Option[CircuitBreakerHolder]] {
-    private val allExceptionAsFailure: Try[_] => Boolean = {
-      case _: Success[_] => false
-      case _             => true
+  /**
+   * Selects the instances calls to the given service are sent to, if load balancing or outlier detection is
+   * configured for it.
+   */
+  def instanceSelector(serviceName: String): Option[InstanceSelector] =
+    instanceSelectors.computeIfAbsent(serviceName, createInstanceSelector)
+
+  def withCircuitBreaker[T](id: String)(body: => Future[T]): Future[T] =
+    withBreaker(breaker(id))(body)
+
+  /**
+   * Runs the given call to the given instance of a service through the circuit breaker with the given id, or through
+   * a circuit breaker dedicated to that instance when `per-instance` is enabled for that id.
+   */
+  def withCircuitBreaker[T](id: String, uri: URI)(body: => Future[T]): Future[T] =
+    withCircuitBreaker(id, uri, None)(body)
+
+  /**
+   * Runs the given call to the given instance of a service like `withCircuitBreaker(id, uri)`, reporting its outcome
+   * and its latency, as measured by the circuit breaker, to the given instance selector.
+   */
+  def withCircuitBreaker[T](id: String, uri: URI, selector: Option[InstanceSelector])(
+      body: => Future[T]
+  ): Future[T] = {
+    val holder =
+      if (perInstance(id)) instanceBreaker(id, uri)
+      else breaker(id)
+    withBreaker(holder, selector.map(uri -> _))(body)
+  }
+
+  private def instanceBreaker(id: String, uri: URI): Option[CircuitBreakerHolder] = {
+    val now = clock()
+    evictIdleInstanceBreakers(now)
+    val instance = instanceBreakers.computeIfAbsent((id, uri), createInstanceCircuitBreaker)
+    instance.lastUsed = now
+    instance.holder
+  }
+
+  /**
+   * Removes the circuit breakers of the instances that weren't called for `per-instance-idle-timeout`, stopping their
+   * metrics, so that the instances that are gone don't pile up. It looks for them at most every half of that timeout.
+   */
+  private def evictIdleInstanceBreakers(now: Long): Unit = {
+    val last = lastEviction.get
+    // Compares differences of nano times, which may overflow
+    if (now - last > instanceIdleTimeoutNanos / 2 && lastEviction.compareAndSet(last, now)) {
+      val instances = instanceBreakers.entrySet.iterator
+      while (instances.hasNext) {
+        val entry = instances.next()
+        val instance = entry.getValue
+        if (now - instance.lastUsed > instanceIdleTimeoutNanos && instanceBreakers.remove(entry.getKey, instance))
+          instance.holder.foreach(_.metrics.stop())
+      }
     }
+  }
+
+  /** The number of instances that have a circuit breaker, for testing. */
+  private[client] def instanceBreakerCount: Int = instanceBreakers.size
 
-    private def ignoredException(ex: Any, whitelist: Set[String]): Boolean = ex match {
-      case ce: CompletionException => ce.getCause != null && whitelist.contains(ce.getCause.getClass.getName)
-      case _                       => whitelist.contains(ex.getClass.getName)
+  private def withBreaker[T](holder: Option[CircuitBreakerHolder], instance: Option[(URI, InstanceSelector)] = None)(
+      body: => Future[T]
+  ): Future[T] = {
+    holder match {
+      case Some(CircuitBreakerHolder(b, metrics, failedCallDefinition, limiter)) =>
+        def call: Future[T] = {
+          instance.foreach { case (uri, selector) => selector.onCallStarted(uri) }
+          val startTime = System.nanoTime()
+
+          val result: Future[T] = b.withCircuitBreaker(body, failedCallDefinition)
+          result.onComplete { outcome =>
+            val elapsed = System.nanoTime() - startTime
+            outcome match {
+              case Success(_)                                                   => metrics.onCallSuccess(elapsed)
+              case failure @ Failure(_) if !failedCallDefinition.apply(failure) => metrics.onCallSuccess(elapsed)
+              case Failure(_: CircuitBreakerOpenException)                      => metrics.onCallBreakerOpenFailure()
+              case Failure(_: TimeoutException)                                 => metrics.onCallTimeoutFailure(elapsed)
+              case Failure(_)                                                   => metrics.onCallFailure(elapsed)
+            }
+            instance.foreach { case (uri, selector) => selector.onCallCompleted(uri, elapsed, outcome.isFailure) }
+          }(system.dispatcher)
+          result
+        }
+        limiter match {
+          case Some(l) => l(call)
+          case None    => call
+        }
+      case None =>
+        instance match {
+          case Some((uri, selector)) => selector.track(uri)(body)(system.dispatcher)
+          case None                  => body
+        }
     }
+  }
+
+  private val createCircuitBreaker = new JFunction[String, Option[CircuitBreakerHolder]] {
+    override def apply(id: String): Option[CircuitBreakerHolder] = newCircuitBreaker(id, id)
+  }
 
-    private def failureDefinition(whitelist: Set[String]): Try[_] => Boolean = {
-      case _: Success[_]                                => false
-      case Failure(t) if ignoredException(t, whitelist) => false
-      case _                                            => true
+  private val createInstanceCircuitBreaker = new JFunction[(String, URI), InstanceBreaker] {
+    override def apply(key: (String, URI)): InstanceBreaker = {
+      val (id, uri) = key
+      new InstanceBreaker(newCircuitBreaker(id, s"$id@${uri.getAuthority}"))
     }
+  }
+
+  private val allExceptionAsFailure: Try[_] => Boolean = {
+    case _: Success[_] => false
+    case _             => true
+  }
+
+  private def ignoredException(ex: Any, whitelist: Set[String]): Boolean = ex match {
+    case ce: CompletionException => ce.getCause != null && whitelist.contains(ce.getCause.getClass.getName)
+    case _                       => whitelist.contains(ex.getClass.getName)
+  }
+
+  private def failureDefinition(whitelist: Set[String]): Try[_] => Boolean = {
+    case _: Success[_]                                => false
+    case Failure(t) if ignoredException(t, whitelist) => false
+    case _                                            => true
+  }
 
-    override def apply(id: String): Option[CircuitBreakerHolder] = {
-      val breakerConfig =
-        if (config.hasPath(id)) config.getConfig(id).withFallback(defaultBreakerConfig)
-        else defaultBreakerConfig
+  private def newCircuitBreaker(id: String, metricsId: String): Option[CircuitBreakerHolder] = {
+    val breakerConfig = breakerConfigFor(id)
 
-      if (breakerConfig.getBoolean("enabled")) {
-        val maxFailures  = breakerConfig.getInt("max-failures")
-        val callTimeout  = breakerConfig.getDuration("call-timeout", MILLISECONDS).millis
-        val resetTimeout = breakerConfig.getDuration("reset-timeout", MILLISECONDS).millis
+    if (breakerConfig.getBoolean("enabled")) {
+      val maxFailures  = breakerConfig.getInt("max-failures")
+      val callTimeout  = breakerConfig.getDuration("call-timeout", MILLISECONDS).millis
+      val resetTimeout = breakerConfig.getDuration("reset-timeout", MILLISECONDS).millis
 
-        import scala.collection.JavaConverters.asScalaBufferConverter
-        val exceptionWhitelist: Set[String] = breakerConfig.getStringList("exception-whitelist").asScala.toSet
+      import scala.collection.JavaConverters.asScalaBufferConverter
+      val exceptionWhitelist: Set[String] = breakerConfig.getStringList("exception-whitelist").asScala.toSet
 
-        val definitionOfFailure =
-          if (exceptionWhitelist.isEmpty) allExceptionAsFailure else failureDefinition(exceptionWhitelist)
+      val definitionOfFailure =
+        if (exceptionWhitelist.isEmpty) allExceptionAsFailure else failureDefinition(exceptionWhitelist)
 
-        val breaker =
-          new AkkaCircuitBreaker(system.scheduler, maxFailures, callTimeout, resetTimeout)(system.dispatcher)
-        val metrics = metricsProvider.start(id)
+      val breaker =
+        new AkkaCircuitBreaker(system.scheduler, maxFailures, callTimeout, resetTimeout)(system.dispatcher)
+      val metrics = metricsProvider.start(metricsId)
 
-        breaker.onClose(metrics.onClose())
-        breaker.onOpen(metrics.onOpen())
-        breaker.onHalfOpen(metrics.onHalfOpen())
+      breaker.onClose(metrics.onClose())
+      breaker.onOpen(metrics.onOpen())
+      breaker.onHalfOpen(metrics.onHalfOpen())
 
-        Some(CircuitBreakerHolder(breaker, metrics, definitionOfFailure))
-      } else None
+      // Configurations that predate concurrency limiting may not define it
+      val limiter =
+        if (breakerConfig.hasPath("concurrency-limit") && breakerConfig.getBoolean("concurrency-limit.enabled"))
+          Some(
+            ConcurrencyLimiter(metricsId, breakerConfig.getConfig("concurrency-limit"), metrics, system.scheduler)(
+              system.dispatcher
+            )
+          )
+        else None
+
+      Some(CircuitBreakerHolder(breaker, metrics, definitionOfFailure, limiter))
+    } else None
+  }
+
+  private def breakerConfigFor(id: String): Config =
+    if (config.hasPath(id)) config.getConfig(id).withFallback(defaultBreakerConfig)
+    else defaultBreakerConfig
+
+  private val perInstanceIds = new ConcurrentHashMap[String, java.lang.Boolean]
+  private val readPerInstance = new JFunction[String, java.lang.Boolean] {
+    override def apply(id: String): java.lang.Boolean = {
+      val breakerConfig = breakerConfigFor(id)
+      // Configurations that predate per-instance circuit breakers may not define it
+      breakerConfig.hasPath("per-instance") && breakerConfig.getBoolean("per-instance")
     }
   }
 
+  private def perInstance(id: String): Boolean = perInstanceIds.computeIfAbsent(id, readPerInstance)
+
   private def breaker(id: String): Option[CircuitBreakerHolder] =
     breakers.computeIfAbsent(id, createCircuitBreaker)
 }
@@ -119,4 +265,8 @@ private[lagom] class CircuitBreakersPanelInternal(
 class CircuitBreakerConfig @Inject() (val configuration: Config) {
   val config: Config  = configuration.getConfig("lagom.circuit-breaker")
   val default: Config = config.getConfig("default")
+
+  // Read lazily, only once a service locator selects the instances of a service
+  lazy val loadBalancing: Config    = configuration.getConfig("lagom.client.load-balancing")
+  lazy val outlierDetection: Config = configuration.getConfig("lagom.client.outlier-detection")
 }
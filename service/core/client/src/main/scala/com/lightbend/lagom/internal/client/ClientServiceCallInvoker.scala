@@ -5,7 +5,8 @@
 package com.lightbend.lagom.internal.client
 
 import java.net.URI
-import java.net.URLEncoder
+import java.util.concurrent.ConcurrentHashMap
+import java.util.function.{ Function => JFunction }
 
 import akka.NotUsed
 import akka.stream.Materializer
@@ -13,120 +14,398 @@ import akka.stream.scaladsl.Sink
 import akka.stream.scaladsl.Source
 import akka.util.ByteString
 import com.lightbend.lagom.internal.api.HeaderUtils
+import com.lightbend.lagom.internal.api.Ndjson
+import com.lightbend.lagom.internal.api.Path
 import com.lightbend.lagom.internal.api.transport.LagomServiceApiBridge
 import play.api.http.HeaderNames
+import play.api.http.Status
 import play.api.libs.streams.AkkaStreams
 import play.api.libs.ws.InMemoryBody
 import play.api.libs.ws.WSClient
 
+import scala.collection.immutable
 import scala.concurrent.ExecutionContext
 import scala.concurrent.Future
+import scala.concurrent.duration.Duration
 
+private[lagom] object ClientServiceCallInvoker {
+  private val IdempotentMethods = Set("GET", "HEAD", "OPTIONS", "PUT", "DELETE")
+
+  /** The outcome of the lookup of the response to a call in the response cache, done before the call is sent. */
+  private final case class CachedResponse(key: Option[RequestKey], lookup: ResponseCache.Lookup)
+}
+
+/**
+ * Invokes a service call.
+ *
+ * An invoker is created once for each call of a service client, and precomputes everything that doesn't depend on the
+ * parameters of an invocation: the method, serializers and headers of the call, and the writer of its path.
+ */
 private[lagom] abstract class ClientServiceCallInvoker[Request, Response](
     ws: WSClient,
     serviceName: String,
-    path: String,
-    queryParams: Map[String, Seq[String]]
+    pathSpec: Path
 )(implicit ec: ExecutionContext, mat: Materializer)
     extends LagomServiceApiBridge {
+  import ClientServiceCallInvoker._
+
   val descriptor: Descriptor
   val serviceLocator: ServiceLocator
   val call: Call[Request, Response]
   def headerFilter: HeaderFilter = descriptorHeaderFilter(descriptor)
 
+  // Lazy, as the abstract members above are only initialized once the subclass is constructed
+  private lazy val method                     = methodForCall(call)
+  private lazy val requestSerializer          = callRequestSerializer[Request, Any](call)
+  private lazy val responseSerializer         = callResponseSerializer[Response, Any](call)
+  private lazy val requestSerializerStreamed  = messageSerializerIsStreamed(requestSerializer)
+  private lazy val responseSerializerStreamed = messageSerializerIsStreamed(responseSerializer)
+  private lazy val strict                     = !requestSerializerStreamed && !responseSerializerStreamed
+  private lazy val negotiatedRequestSerializer =
+    messageSerializerSerializerForRequest(requestSerializer.asInstanceOf[MessageSerializer[Request, ByteString]])
+  private lazy val requestProtocol         = negotiatedSerializerProtocol(negotiatedRequestSerializer)
+  private lazy val acceptResponseProtocols = messageSerializerAcceptResponseProtocols(responseSerializer)
+  private lazy val defaultAcceptHeader     = acceptHeaderFor(acceptResponseProtocols)
+  private lazy val requestContentTypeHeader =
+    messageProtocolToContentTypeHeader(requestProtocol).toSeq.map(HeaderNames.CONTENT_TYPE -> _)
+  private lazy val servicePrincipal        = Option(newServicePrincipal(serviceName))
+  private lazy val callKey                 = s"${descriptorName(descriptor)}.${callName(call)}"
+
+  // Only strict calls of idempotent methods are hedged, as they may be sent more than once
+  private lazy val hedging = callHedging(call).filter(_ => strict && IdempotentMethods(methodName(method)))
+
+  // Whether to send the strict calls over HTTP/2
+  private lazy val http2 = ServiceClientPolicies(mat.system).http2.enabled(descriptorName(descriptor))
+
+  // Only calls with a strict request and a streamed response can be framed in a chunked HTTP response
+  private lazy val framedStreaming =
+    callFramedStreaming(call) && !requestSerializerStreamed && responseSerializerStreamed
+
+  // Whether to ask the service to compress the messages it streams over a WebSocket
+  private lazy val messageDeflate =
+    ServiceClientPolicies(mat.system).messageDeflate.enabled(descriptorName(descriptor), callName(call))
+
+  // Whether to ask the service to batch the messages it streams over a WebSocket
+  private lazy val messageBatching =
+    ServiceClientPolicies(mat.system).messageBatching.enabled(descriptorName(descriptor), callName(call))
+
+  // The serialization metrics of the strict messages of the call
+  private lazy val serializationMetrics =
+    ServiceClientPolicies(mat.system).serializationMetrics
+      .forCall(MessageSerializationMetrics.Client, descriptorName(descriptor), callName(call))
+
+  private lazy val responseCache = ServiceClientPolicies(mat.system).responseCache
+
+  // Only strict GET calls without a request message can share the response of an identical call in progress
+  private lazy val coalescable =
+    strict && methodName(method) == "GET" && !messageSerializerIsUsed(requestSerializer) &&
+      ServiceClientPolicies(mat.system).requestCoalescing.enabled(descriptorName(descriptor))
+
+  private val responseDeserializers =
+    new ConcurrentHashMap[MessageProtocol, NegotiatedDeserializer[Response, ByteString]]()
+  private val createResponseDeserializer =
+    new JFunction[MessageProtocol, NegotiatedDeserializer[Response, ByteString]] {
+      override def apply(protocol: MessageProtocol): NegotiatedDeserializer[Response, ByteString] =
+        messageSerializerDeserializer(
+          responseSerializer.asInstanceOf[MessageSerializer[Response, ByteString]],
+          protocol
+        )
+    }
+
+  /**
+   * Invokes the call.
+   *
+   * @param pathParams The serialized path and query parameters of the call, in the order of its path spec.
+   */
   def doInvoke(
+      pathParams: Seq[Seq[String]],
       request: Request,
       requestHeaderHandler: RequestHeader => RequestHeader
   ): Future[(ResponseHeader, Response)] = {
-    serviceLocatorDoWithService(
-      serviceLocator,
-      descriptor,
-      call,
-      uri => {
-        val queryString = if (queryParams.nonEmpty) {
-          queryParams
-            .flatMap {
-              case (name, values) =>
-                values.map(value => URLEncoder.encode(name, "utf-8") + "=" + URLEncoder.encode(value, "utf-8"))
-            }
-            .mkString("?", "&", "")
-        } else ""
-        val url = s"$uri$path$queryString"
-
-        val method = methodForCall(call)
-
-        val requestSerializer  = callRequestSerializer(call)
-        val serializer         = messageSerializerSerializerForRequest[Request, Nothing](requestSerializer)
-        val responseSerializer = callResponseSerializer(call)
-
-        val requestHeader = requestHeaderHandler(
-          newRequestHeader(
-            method,
-            URI.create(url),
-            negotiatedSerializerProtocol(serializer),
-            messageSerializerAcceptResponseProtocols(responseSerializer),
-            Option(newServicePrincipal(serviceName)),
-            Map.empty
-          )
-        )
+    val pathAndQuery = pathSpec.formatPathAndQuery(pathParams)
+    // The request header handler and the header filter are applied once per call, to the path of the call, which is
+    // then resolved against the instance of the service each request of the call is sent to
+    val requestHeader = headerFilterTransformClientRequest(
+      headerFilter,
+      requestHeaderHandler(newCallRequestHeader(URI.create(pathAndQuery)))
+    )
 
-        val requestSerializerStreamed  = messageSerializerIsStreamed(requestSerializer)
-        val responseSerializerStreamed = messageSerializerIsStreamed(responseSerializer)
-
-        val result: Future[(ResponseHeader, Response)] =
-          (requestSerializerStreamed, responseSerializerStreamed) match {
-            case (false, false) =>
-              makeStrictCall(
-                headerFilterTransformClientRequest(headerFilter, requestHeader),
-                requestSerializer.asInstanceOf[MessageSerializer[Request, ByteString]],
-                responseSerializer.asInstanceOf[MessageSerializer[Response, ByteString]],
-                request
-              )
+    if (coalescable) {
+      val key = RequestKey(
+        descriptorName(descriptor),
+        methodName(method),
+        requestHeaderUri(requestHeader).toString,
+        messageHeaderHeaders(requestHeader).map { case (name, values) => name -> values.map(_._2) }
+      )
+      val coalescing = ServiceClientPolicies(mat.system).requestCoalescing
+      coalescing.coalesce(callKey, key)(invoke(pathAndQuery, request, requestHeader))
+    } else invoke(pathAndQuery, request, requestHeader)
+  }
 
-            case (false, true) =>
-              makeStreamedResponseCall(
-                headerFilterTransformClientRequest(headerFilter, requestHeader),
-                requestSerializer.asInstanceOf[MessageSerializer[Request, ByteString]],
-                responseSerializer.asInstanceOf[MessageSerializer[Response, AkkaStreamsSource[ByteString, NotUsed]]],
-                request
-              )
+  private def invoke(
+      pathAndQuery: String,
+      request: Request,
+      requestHeader: RequestHeader
+  ): Future[(ResponseHeader, Response)] =
+    localService.flatMap(invokeLocally(_, pathAndQuery, request, requestHeader)) match {
+      case Some(response) => response
+      case None =>
+        // A fresh cached response is served without locating the service, nor going through its circuit breaker
+        val cacheKey = responseCacheKey(requestHeader)
+        cacheKey.fold[ResponseCache.Lookup](ResponseCache.Miss)(responseCache.lookup(callKey, _)) match {
+          case ResponseCache.Fresh(entry) =>
+            Future.successful(
+              entry.responseHeader.asInstanceOf[ResponseHeader] -> entry.response.asInstanceOf[Response]
+            )
+          case cached => invokeRemotely(pathAndQuery, request, requestHeader, CachedResponse(cacheKey, cached))
+        }
+    }
 
-            case (true, false) =>
-              makeStreamedRequestCall(
-                headerFilterTransformClientRequest(headerFilter, requestHeader),
-                requestSerializer.asInstanceOf[MessageSerializer[Request, AkkaStreamsSource[ByteString, NotUsed]]],
-                responseSerializer.asInstanceOf[MessageSerializer[Response, ByteString]],
-                request
-              )
+  /** The service called, if it is bound in this actor system and a strict call to it can be invoked locally. */
+  private def localService: Option[LocalService] =
+    if (strict) ServiceClientPolicies(mat.system).localServices.lookup(descriptorName(descriptor))
+    else None
 
-            case (true, true) =>
-              makeStreamedCall(
-                headerFilterTransformClientRequest(headerFilter, requestHeader),
-                requestSerializer.asInstanceOf[MessageSerializer[Request, AkkaStreamsSource[ByteString, NotUsed]]],
-                responseSerializer.asInstanceOf[MessageSerializer[Response, AkkaStreamsSource[ByteString, NotUsed]]],
-                request
-              )
-          }
+  /**
+   * Invokes the call on the given local service, applying the header filter and exception serializer of the client to
+   * its response as if it had been received over the network.
+   */
+  private def invokeLocally(
+      service: LocalService,
+      pathAndQuery: String,
+      request: Request,
+      requestHeader: RequestHeader
+  ): Option[Future[(ResponseHeader, Response)]] = {
+    service.invoke(methodName(method), pathAndQuery, requestHeader, request).map(_.map {
+      case LocalService.Success(transportResponseHeader, response) =>
+        val responseHeader = headerFilterTransformClientResponse(
+          headerFilter,
+          transportResponseHeader.asInstanceOf[ResponseHeader],
+          requestHeader
+        )
+        responseHeader -> response.asInstanceOf[Response]
 
-        result
-      }
-    ).map {
+      case LocalService.Failure(transportResponseHeader, body) =>
+        val responseHeader = headerFilterTransformClientResponse(
+          headerFilter,
+          transportResponseHeader.asInstanceOf[ResponseHeader],
+          requestHeader
+        )
+        throw exceptionSerializerDeserializeHttpException(
+          descriptorExceptionSerializer(descriptor),
+          responseHeaderStatus(responseHeader),
+          messageHeaderProtocol(responseHeader),
+          body
+        )
+    })
+  }
+
+  private def invokeRemotely(
+      pathAndQuery: String,
+      request: Request,
+      requestHeader: RequestHeader,
+      cached: CachedResponse
+  ): Future[(ResponseHeader, Response)] =
+    hedging match {
+      case Some(policy) =>
+        // Each extra request is sent to an instance that wasn't sent one of the previous requests, if there is one.
+        // That instance is picked first, so that the request goes through its own circuit breaker and is accounted
+        // to it by the instance selector, rather than to the instance the service locator would have selected.
+        val usedUris             = ConcurrentHashMap.newKeySet[URI]()
+        lazy val alternativeUris = serviceLocatorLocateAll(serviceLocator, descriptor, call)
+        val hedging              = ServiceClientPolicies(mat.system).hedging
+        val invokeOnInstance: URI => Future[(ResponseHeader, Response)] =
+          uri => invokeOn(uri, pathAndQuery, request, requestHeader, cached)
+        def invokeOnLocated = withService { uri =>
+          usedUris.add(uri)
+          invokeOnInstance(uri)
+        }
+        hedging.hedge(callKey, policy) { attempt =>
+          if (attempt == 0) invokeOnLocated
+          else
+            alternativeUris.flatMap { uris =>
+              uris
+                .find(usedUris.add)
+                .flatMap(serviceLocatorDoWithInstance(serviceLocator, descriptor, call, _, invokeOnInstance))
+                // The service locator can't call a given instance, or every instance was already sent a request
+                .getOrElse(invokeOnLocated)
+            }
+        }
+      case None =>
+        withService(uri => invokeOn(uri, pathAndQuery, request, requestHeader, cached))
+    }
+
+  private def withService[T](block: URI => Future[T]): Future[T] =
+    serviceLocatorDoWithService(serviceLocator, descriptor, call, block).map {
       case Some(response) => response
       case None =>
         throw new IllegalStateException(s"Service ${descriptorName(descriptor)} was not found by service locator")
     }
+
+  private def newCallRequestHeader(uri: URI): RequestHeader =
+    newRequestHeader(method, uri, requestProtocol, acceptResponseProtocols, servicePrincipal, Map.empty)
+
+  private def invokeOn(
+      uri: URI,
+      pathAndQuery: String,
+      request: Request,
+      callRequestHeader: RequestHeader,
+      cached: CachedResponse
+  ): Future[(ResponseHeader, Response)] = {
+    val url           = new java.lang.StringBuilder().append(uri).append(pathAndQuery).toString
+    val requestHeader = requestHeaderWithUri(callRequestHeader, URI.create(url))
+
+    (requestSerializerStreamed, responseSerializerStreamed) match {
+      case (false, false) =>
+        makeStrictCall(
+          requestHeader,
+          requestSerializer.asInstanceOf[MessageSerializer[Request, ByteString]],
+          request,
+          cached
+        )
+
+      case (false, true) =>
+        makeStreamedResponseCall(
+          requestHeader,
+          requestSerializer.asInstanceOf[MessageSerializer[Request, ByteString]],
+          responseSerializer.asInstanceOf[MessageSerializer[Response, AkkaStreamsSource[ByteString, NotUsed]]],
+          request
+        )
+
+      case (true, false) =>
+        makeStreamedRequestCall(
+          requestHeader,
+          requestSerializer.asInstanceOf[MessageSerializer[Request, AkkaStreamsSource[ByteString, NotUsed]]],
+          responseSerializer.asInstanceOf[MessageSerializer[Response, ByteString]],
+          request
+        )
+
+      case (true, true) =>
+        makeStreamedCall(
+          requestHeader,
+          requestSerializer.asInstanceOf[MessageSerializer[Request, AkkaStreamsSource[ByteString, NotUsed]]],
+          responseSerializer.asInstanceOf[MessageSerializer[Response, AkkaStreamsSource[ByteString, NotUsed]]],
+          request
+        )
+    }
   }
 
   /**
    * A call that has a strict request and a streamed response.
    *
-   * Currently implemented using a WebSocket, and sending the request as the first and only message.
+   * Implemented using a chunked HTTP response if the call uses the framed streaming transport and the service supports
+   * it, and using a WebSocket, sending the request as the first and only message, otherwise.
    */
   private def makeStreamedResponseCall(
       requestHeader: RequestHeader,
       requestSerializer: MessageSerializer[Request, ByteString],
       responseSerializer: MessageSerializer[_, AkkaStreamsSource[ByteString, NotUsed]],
       request: Request
+  ): Future[(ResponseHeader, Response)] =
+    if (framedStreaming && ServiceClientPolicies(mat.system).framedStreaming.supported(descriptorName(descriptor)))
+      makeFramedStreamedResponseCall(requestHeader, requestSerializer, responseSerializer, request).flatMap {
+        case Some(response) => Future.successful(response)
+        case None =>
+          ServiceClientPolicies(mat.system).framedStreaming.unsupported(descriptorName(descriptor))
+          makeWebSocketStreamedResponseCall(requestHeader, requestSerializer, responseSerializer, request)
+      }
+    else makeWebSocketStreamedResponseCall(requestHeader, requestSerializer, responseSerializer, request)
+
+  /**
+   * Sends the request of a call that has a strict request and a streamed response with the framed streaming transport.
+   *
+   * @return The response, or `None` if the service answered `426 Upgrade Required` as it doesn't support the framed
+   *         transport.
+   */
+  private def makeFramedStreamedResponseCall(
+      requestHeader: RequestHeader,
+      requestSerializer: MessageSerializer[Request, ByteString],
+      responseSerializer: MessageSerializer[_, AkkaStreamsSource[ByteString, NotUsed]],
+      request: Request
+  ): Future[Option[(ResponseHeader, Response)]] = {
+    val requestHolder =
+      ws.url(requestHeaderUri(requestHeader).toString)
+        .withHttpHeaders(contentTypeHeaderFor(requestHeader): _*)
+        .withMethod(requestHeaderMethod(requestHeader))
+        // The response is streamed for as long as the service produces messages, like a WebSocket
+        .withRequestTimeout(Duration.Inf)
+
+    val requestWithBody =
+      if (messageSerializerIsUsed(requestSerializer))
+        requestHolder.withBody(InMemoryBody(negotiatedSerializerSerialize(negotiatedRequestSerializer, request)))
+      else requestHolder
+
+    requestWithBody
+      .withHttpHeaders(httpHeadersFor(requestHeader) :+ (FramedStreaming.TransportHeader -> FramedStreaming.Framed): _*)
+      .stream()
+      .flatMap { response =>
+        val framed = response.header(FramedStreaming.TransportHeader).contains(FramedStreaming.Framed)
+        if (!framed && response.status == Status.UPGRADE_REQUIRED) {
+          response.bodyAsSource.runWith(Sink.cancelled)
+          Future.successful(None)
+        } else {
+          val protocol = messageProtocolFromContentTypeHeader(response.header(HeaderNames.CONTENT_TYPE))
+          val headers = response.headers.map {
+            case (key, values) => HeaderUtils.normalize(key) -> values.map(key -> _).toIndexedSeq
+          }
+          val transportResponseHeader = newResponseHeader(response.status, protocol, headers)
+
+          if (response.status >= 400 && response.status <= 599) {
+            response.bodyAsSource.runFold(ByteString.empty)(_ ++ _).map { body =>
+              val responseHeader =
+                headerFilterTransformClientResponse(headerFilter, transportResponseHeader, requestHeader)
+              throw exceptionSerializerDeserializeHttpException(
+                descriptorExceptionSerializer(descriptor),
+                responseHeaderStatus(responseHeader),
+                protocol,
+                body
+              )
+            }
+          } else if (!framed) {
+            response.bodyAsSource.runWith(Sink.cancelled)
+            Future.failed(
+              new IllegalStateException(
+                s"Service ${descriptorName(descriptor)} answered a framed call with status ${response.status} " +
+                  "without the framed streaming transport"
+              )
+            )
+          } else {
+            // Newline delimited JSON is sent without frames, and read by the deserializer of the response stream
+            val messages =
+              if (messageProtocolContentType(protocol).contains(Ndjson.ContentType))
+                response.bodyAsSource.mapMaterializedValue(_ => NotUsed)
+              else {
+                val maxFrameLength = ServiceClientPolicies(mat.system).framedStreaming.maxFrameLength
+                response.bodyAsSource
+                  .via(FramedStreaming.decoder(maxFrameLength))
+                  .map {
+                    case FramedStreaming.MessageFrame(message) => message
+                    case FramedStreaming.ErrorFrame(errorCode, message) =>
+                      throw exceptionSerializerDeserializeHttpException(
+                        descriptorExceptionSerializer(descriptor),
+                        errorCode,
+                        protocol,
+                        message
+                      )
+                  }
+                  .mapMaterializedValue(_ => NotUsed)
+              }
+            Future.successful(
+              Some(deserializeResponseStream(responseSerializer, requestHeader)(transportResponseHeader, messages))
+            )
+          }
+        }
+      }
+  }
+
+  /**
+   * A call that has a strict request and a streamed response, made using a WebSocket.
+   */
+  private def makeWebSocketStreamedResponseCall(
+      requestHeader: RequestHeader,
+      requestSerializer: MessageSerializer[Request, ByteString],
+      responseSerializer: MessageSerializer[_, AkkaStreamsSource[ByteString, NotUsed]],
+      request: Request
   ): Future[(ResponseHeader, Response)] = {
     val serializer = messageSerializerSerializerForRequest[Request, ByteString](requestSerializer)
 
@@ -140,7 +419,7 @@ private[lagom] abstract class ClientServiceCallInvoker[Request, Response](
         Source.maybe[ByteString].mapMaterializedValue(_ => NotUsed)
       }
 
-    doMakeStreamedCall(requestAsStream, serializer, requestHeader).map(
+    doMakeStreamedCall(requestAsStream, serializer, requestHeader, messageDeflate, messageBatching).map(
       (deserializeResponseStream(responseSerializer, requestHeader) _).tupled
     )
   }
@@ -168,7 +447,9 @@ private[lagom] abstract class ClientServiceCallInvoker[Request, Response](
       (transportResponseHeader, responseStream) <- doMakeStreamedCall(
         akkaStreamsSourceAsScala(requestStream),
         negotiatedSerializer,
-        requestHeader
+        requestHeader,
+        messageDeflate,
+        messageBatching
       )
       // We want to take the first element (if it exists), and then ignore all subsequent elements. Ignoring, rather
       // than cancelling the stream, is important, because this is a WebSocket connection, we want the upstream to
@@ -198,7 +479,13 @@ private[lagom] abstract class ClientServiceCallInvoker[Request, Response](
     val requestStream =
       negotiatedSerializerSerialize(negotiatedSerializer, request.asInstanceOf[AkkaStreamsSource[Any, NotUsed]])
 
-    doMakeStreamedCall(akkaStreamsSourceAsScala(requestStream), negotiatedSerializer, requestHeader).map(
+    doMakeStreamedCall(
+      akkaStreamsSourceAsScala(requestStream),
+      negotiatedSerializer,
+      requestHeader,
+      messageDeflate,
+      messageBatching
+    ).map(
       (deserializeResponseStream(responseSerializer, requestHeader) _).tupled
     )
   }
@@ -218,72 +505,161 @@ private[lagom] abstract class ClientServiceCallInvoker[Request, Response](
       .asInstanceOf[Response]
   }
 
+  /**
+   * Makes a call over a WebSocket.
+   *
+   * @param messageDeflate Whether to ask the service to compress the messages it streams, see [[MessageDeflate]].
+   * @param messageBatching Whether to ask the service to batch the messages it streams, see [[MessageBatching]].
+   */
   protected def doMakeStreamedCall(
       requestStream: Source[ByteString, NotUsed],
       requestSerializer: NegotiatedSerializer[_, _],
-      requestHeader: RequestHeader
+      requestHeader: RequestHeader,
+      messageDeflate: Boolean,
+      messageBatching: Boolean
   ): Future[(ResponseHeader, Source[ByteString, NotUsed])]
 
   /**
    * A call that is strict in both directions.
+   *
+   * The response of a GET call may be revalidated against, and stored in, the response cache.
    */
   private def makeStrictCall(
       requestHeader: RequestHeader,
       requestSerializer: MessageSerializer[Request, ByteString],
-      responseSerializer: MessageSerializer[Response, ByteString],
-      request: Request
+      request: Request,
+      cachedResponse: CachedResponse
   ): Future[(ResponseHeader, Response)] = {
-    val contentTypeHeader =
-      messageProtocolToContentTypeHeader(messageHeaderProtocol(requestHeader)).toSeq.map(HeaderNames.CONTENT_TYPE -> _)
+    val contentTypeHeader = contentTypeHeaderFor(requestHeader)
+
+    val url = requestHeaderUri(requestHeader).toString
+    val body =
+      if (messageSerializerIsUsed(requestSerializer))
+        Some(
+          MessageSerializationMetrics.serialize(serializationMetrics)(
+            negotiatedSerializerSerialize(negotiatedRequestSerializer, request)
+          )
+        )
+      else None
 
-    val requestHolder =
-      ws.url(requestHeaderUri(requestHeader).toString)
-        .withHttpHeaders(contentTypeHeader: _*)
-        .withMethod(requestHeaderMethod(requestHeader))
+    val CachedResponse(cacheKey, cached) = cachedResponse
 
-    val requestWithBody =
-      if (messageSerializerIsUsed(requestSerializer)) {
-        val negotiatedSerializer = messageSerializerSerializerForRequest(requestSerializer)
-        val body                 = negotiatedSerializerSerialize(negotiatedSerializer, request)
+    val conditionalHeader = cached match {
+      case ResponseCache.Stale(entry) => entry.etag.map(HeaderNames.IF_NONE_MATCH -> _).toSeq
+      case _                          => Nil
+    }
 
-        requestHolder.withBody(InMemoryBody(body))
-      } else requestHolder
+    val httpHeaders = httpHeadersFor(requestHeader) ++ conditionalHeader
+    val response =
+      if (http2)
+        ServiceClientPolicies(mat.system).http2.execute(
+          requestHeaderMethod(requestHeader),
+          url,
+          httpHeaders,
+          contentTypeHeader.headOption.map(_._2),
+          body
+        )
+      else {
+        val requestHolder =
+          ws.url(url)
+            .withHttpHeaders(contentTypeHeader: _*)
+            .withMethod(requestHeaderMethod(requestHeader))
+        body
+          .fold(requestHolder)(bytes => requestHolder.withBody(InMemoryBody(bytes)))
+          .withHttpHeaders(httpHeaders: _*)
+          .execute()
+          .map(response => StrictResponse(response.status, response.headers, response.bodyAsBytes))
+      }
 
+    response.map {
+      response =>
+        (cached, cacheKey) match {
+          case (ResponseCache.Stale(entry), Some(key)) if response.status == 304 =>
+            responseCache.revalidated(key, entry, response.header(HeaderNames.CACHE_CONTROL))
+            entry.responseHeader.asInstanceOf[ResponseHeader] -> entry.response.asInstanceOf[Response]
+
+          case _ =>
+            // Create the message header
+            val protocol = messageProtocolFromContentTypeHeader(response.header(HeaderNames.CONTENT_TYPE))
+            val headers = response.headers.map {
+              case (key, values) => HeaderUtils.normalize(key) -> values.map(key -> _).toIndexedSeq
+            }
+            val transportResponseHeader = newResponseHeader(response.status, protocol, headers)
+            val responseHeader =
+              headerFilterTransformClientResponse(headerFilter, transportResponseHeader, requestHeader)
+
+            if (responseHeaderStatus(responseHeader) >= 400 && responseHeaderStatus(responseHeader) <= 599) {
+              throw exceptionSerializerDeserializeHttpException(
+                descriptorExceptionSerializer(descriptor),
+                responseHeaderStatus(responseHeader),
+                protocol,
+                response.body
+              )
+            } else {
+              val negotiatedDeserializer = responseDeserializers
+                .computeIfAbsent(messageHeaderProtocol(responseHeader), createResponseDeserializer)
+              val deserialized = MessageSerializationMetrics.deserialize(serializationMetrics, response.body)(
+                negotiatedDeserializerDeserialize(negotiatedDeserializer, response.body)
+              )
+              cacheKey.foreach { key =>
+                if (cached.isInstanceOf[ResponseCache.Stale]) responseCache.changed(callKey)
+                if (response.status == 200)
+                  responseCache.store(
+                    callKey,
+                    key,
+                    response.header(HeaderNames.CACHE_CONTROL),
+                    response.header(HeaderNames.ETAG),
+                    responseHeader,
+                    deserialized,
+                    response.header(HeaderNames.VARY)
+                  )
+              }
+              responseHeader -> deserialized
+            }
+        }
+    }
+  }
+
+  /**
+   * The key of the cached response to the given request, if it is a GET request to a service whose responses are
+   * cached.
+   */
+  private def responseCacheKey(requestHeader: RequestHeader): Option[RequestKey] =
+    if (strict && requestHeaderMethod(requestHeader) == "GET" && responseCache.enabled(descriptorName(descriptor))) {
+      val uri = requestHeaderUri(requestHeader)
+      Some(
+        RequestKey(
+          descriptorName(descriptor),
+          "GET",
+          uri.getRawPath + Option(uri.getRawQuery).fold("")("?" + _),
+          messageHeaderHeaders(requestHeader).map { case (name, values) => name -> values.map(_._2) }
+        )
+      )
+    } else None
+
+  private def contentTypeHeaderFor(requestHeader: RequestHeader): Seq[(String, String)] = {
+    val protocol = messageHeaderProtocol(requestHeader)
+    if (protocol == requestProtocol) requestContentTypeHeader
+    else messageProtocolToContentTypeHeader(protocol).toSeq.map(HeaderNames.CONTENT_TYPE -> _)
+  }
+
+  /** The headers of the given request header, and the Accept header of its accepted response protocols. */
+  private def httpHeadersFor(requestHeader: RequestHeader): Seq[(String, String)] = {
     val requestHeaders = messageHeaderHeaders(requestHeader).toSeq.collect {
       case (_, values) if values.nonEmpty => values.head._1 -> values.map(_._2).mkString(", ")
     }
 
-    val acceptHeader = {
-      val accept = requestHeaderAcceptedResponseProtocols(requestHeader)
-        .flatMap { accept =>
-          messageProtocolToContentTypeHeader(accept)
-        }
-        .mkString(", ")
-      if (accept.nonEmpty) Seq(HeaderNames.ACCEPT -> accept)
-      else Nil
-    }
+    val acceptedResponseProtocols = requestHeaderAcceptedResponseProtocols(requestHeader)
+    val acceptHeader =
+      if (acceptedResponseProtocols eq acceptResponseProtocols) defaultAcceptHeader
+      else acceptHeaderFor(acceptedResponseProtocols)
 
-    requestWithBody.withHttpHeaders(requestHeaders ++ acceptHeader: _*).execute().map { response =>
-      // Create the message header
-      val protocol = messageProtocolFromContentTypeHeader(response.header(HeaderNames.CONTENT_TYPE))
-      val headers = response.headers.map {
-        case (key, values) => HeaderUtils.normalize(key) -> values.map(key -> _).toIndexedSeq
-      }
-      val transportResponseHeader = newResponseHeader(response.status, protocol, headers)
-      val responseHeader          = headerFilterTransformClientResponse(headerFilter, transportResponseHeader, requestHeader)
+    requestHeaders ++ acceptHeader
+  }
 
-      if (responseHeaderStatus(responseHeader) >= 400 && responseHeaderStatus(responseHeader) <= 599) {
-        throw exceptionSerializerDeserializeHttpException(
-          descriptorExceptionSerializer(descriptor),
-          responseHeaderStatus(responseHeader),
-          protocol,
-          response.bodyAsBytes
-        )
-      } else {
-        val negotiatedDeserializer =
-          messageSerializerDeserializer(responseSerializer, messageHeaderProtocol(responseHeader))
-        responseHeader -> negotiatedDeserializerDeserialize(negotiatedDeserializer, response.bodyAsBytes)
-      }
-    }
+  private def acceptHeaderFor(protocols: immutable.Seq[MessageProtocol]): Seq[(String, String)] = {
+    val accept = protocols.flatMap(messageProtocolToContentTypeHeader).mkString(", ")
+    if (accept.nonEmpty) Seq(HeaderNames.ACCEPT -> accept)
+    else Nil
   }
 }
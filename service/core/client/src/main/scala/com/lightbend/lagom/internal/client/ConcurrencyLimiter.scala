@@ -0,0 +1,252 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.internal.client
+
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.TimeoutException
+
+import akka.actor.Scheduler
+import akka.pattern.CircuitBreakerOpenException
+import com.lightbend.lagom.internal.spi.CircuitBreakerMetrics
+import com.typesafe.config.Config
+
+import scala.collection.mutable
+import scala.concurrent.ExecutionContext
+import scala.concurrent.Future
+import scala.concurrent.Promise
+import scala.concurrent.duration._
+import scala.util.Failure
+import scala.util.Try
+import scala.util.control.NonFatal
+
+/**
+ * Signals that a call was rejected because the concurrency limit of its circuit breaker was reached.
+ *
+ * Callers see it as the circuit breaker failing fast, which it is from their point of view.
+ */
+private[lagom] class ConcurrencyLimitExceededException(message: String)
+    extends CircuitBreakerOpenException(Duration.Zero, message)
+
+/**
+ * Limits the number of calls in progress through a circuit breaker, adapting the limit to the latency of the calls.
+ *
+ * Calls over the limit wait in a queue of up to `max-queue-size` calls for at most `queue-timeout`, and are rejected
+ * with a [[ConcurrencyLimitExceededException]] otherwise.
+ */
+private[lagom] class ConcurrencyLimiter(
+    id: String,
+    settings: ConcurrencyLimiter.Settings,
+    algorithm: ConcurrencyLimiter.Algorithm,
+    metrics: CircuitBreakerMetrics,
+    scheduler: Scheduler
+)(implicit ec: ExecutionContext) {
+  private var inFlight     = 0
+  private var currentLimit = settings.initialLimit
+  private val waiting      = mutable.Queue.empty[Promise[Unit]]
+
+  metrics.onConcurrencyLimitChanged(currentLimit)
+
+  def limit: Int = synchronized(currentLimit)
+
+  def apply[T](body: => Future[T]): Future[T] =
+    acquire() match {
+      case None => run(body)
+      case Some(permit) =>
+        permit.future.flatMap(_ => run(body))
+    }
+
+  /** Takes a slot right away if one is free, or returns the promise that is completed when one is given to it. */
+  private def acquire(): Option[Promise[Unit]] = {
+    val (queued, inFlightNow) = synchronized {
+      if (inFlight < currentLimit) {
+        inFlight += 1
+        (None, Some(inFlight))
+      } else if (waiting.size < settings.maxQueueSize) {
+        val permit = Promise[Unit]()
+        waiting.enqueue(permit)
+        (Some(permit), None)
+      } else (None, None)
+    }
+    (queued, inFlightNow) match {
+      case (None, Some(n)) =>
+        metrics.onInFlightChanged(n)
+        None
+      case (Some(permit), _) =>
+        scheduler.scheduleOnce(settings.queueTimeout) {
+          // The permit is only still queued if no slot was given to it in time
+          val timedOut = synchronized(waiting.dequeueFirst(_ eq permit).isDefined)
+          if (timedOut) reject(permit)
+        }
+        Some(permit)
+      case (None, None) =>
+        val rejected = Promise[Unit]()
+        reject(rejected)
+        Some(rejected)
+    }
+  }
+
+  private def reject(permit: Promise[Unit]): Unit = {
+    metrics.onCallConcurrencyLimitRejection()
+    permit.failure(new ConcurrencyLimitExceededException(s"Concurrency limit of circuit breaker [$id] reached"))
+  }
+
+  private def run[T](body: => Future[T]): Future[T] = {
+    val startTime = System.nanoTime()
+    val result =
+      try body
+      catch { case NonFatal(e) => Future.failed(e) }
+    result.onComplete(outcome => release(System.nanoTime() - startTime, outcome))
+    result
+  }
+
+  private def release(elapsedNanos: Long, outcome: Try[_]): Unit = {
+    val dropped = outcome match {
+      case Failure(_: TimeoutException) => true
+      case _                            => false
+    }
+    val (next, changedLimit, inFlightNow) = synchronized {
+      val previousLimit = currentLimit
+      currentLimit = algorithm.update(currentLimit, inFlight, elapsedNanos, dropped)
+      inFlight -= 1
+      // The free slots, including the ones the limit grew by, are handed over to the waiting calls
+      val next = List.newBuilder[Promise[Unit]]
+      while (inFlight < currentLimit && waiting.nonEmpty) {
+        next += waiting.dequeue()
+        inFlight += 1
+      }
+      (next.result(), if (currentLimit != previousLimit) Some(currentLimit) else None, inFlight)
+    }
+    changedLimit.foreach(metrics.onConcurrencyLimitChanged)
+    metrics.onInFlightChanged(inFlightNow)
+    next.foreach(_.trySuccess(()))
+  }
+}
+
+private[lagom] object ConcurrencyLimiter {
+
+  final case class Settings(
+      initialLimit: Int,
+      minLimit: Int,
+      maxLimit: Int,
+      maxQueueSize: Int,
+      queueTimeout: FiniteDuration
+  ) {
+    require(minLimit > 0, s"min-limit must be > 0, was [$minLimit]")
+    require(
+      minLimit <= initialLimit && initialLimit <= maxLimit,
+      s"initial-limit must be between min-limit and max-limit, was [$initialLimit]"
+    )
+    require(maxQueueSize >= 0, s"max-queue-size must be >= 0, was [$maxQueueSize]")
+  }
+
+  def apply(id: String, config: Config, metrics: CircuitBreakerMetrics, scheduler: Scheduler)(
+      implicit ec: ExecutionContext
+  ): ConcurrencyLimiter = {
+    val settings = Settings(
+      initialLimit = config.getInt("initial-limit"),
+      minLimit = config.getInt("min-limit"),
+      maxLimit = config.getInt("max-limit"),
+      maxQueueSize = config.getInt("max-queue-size"),
+      queueTimeout = config.getDuration("queue-timeout", TimeUnit.MILLISECONDS).millis
+    )
+    val algorithm = config.getString("algorithm") match {
+      case "aimd" =>
+        val aimd = config.getConfig("aimd")
+        new Aimd(
+          settings.minLimit,
+          settings.maxLimit,
+          aimd.getDouble("backoff-ratio"),
+          aimd.getDuration("latency-threshold", TimeUnit.NANOSECONDS)
+        )
+      case "gradient" =>
+        val gradient = config.getConfig("gradient")
+        new Gradient(
+          settings.minLimit,
+          settings.maxLimit,
+          settings.initialLimit,
+          gradient.getDouble("tolerance"),
+          gradient.getDouble("smoothing"),
+          gradient.getInt("long-window")
+        )
+      case other =>
+        throw new IllegalArgumentException(
+          s"Unknown concurrency limit algorithm [$other] for circuit breaker [$id], expected one of [aimd, gradient]"
+        )
+    }
+    new ConcurrencyLimiter(id, settings, algorithm, metrics, scheduler)
+  }
+
+  /** Computes the new limit after each call. Always invoked while holding the lock of the limiter. */
+  sealed trait Algorithm {
+    def update(limit: Int, inFlight: Int, elapsedNanos: Long, dropped: Boolean): Int
+  }
+
+  /**
+   * Additive increase, multiplicative decrease: the limit grows by one for every `limit` calls completed in time
+   * while the limit is used, and is multiplied by `backoff-ratio` when a call times out or is slower than
+   * `latency-threshold`.
+   */
+  final class Aimd(minLimit: Int, maxLimit: Int, backoffRatio: Double, latencyThresholdNanos: Long)
+      extends Algorithm {
+    require(backoffRatio > 0 && backoffRatio < 1, s"backoff-ratio must be in ]0, 1[, was [$backoffRatio]")
+
+    private var increase = 0.0
+
+    override def update(limit: Int, inFlight: Int, elapsedNanos: Long, dropped: Boolean): Int =
+      if (dropped || elapsedNanos > latencyThresholdNanos) {
+        increase = 0
+        math.max(minLimit, (limit * backoffRatio).toInt)
+      } else if (inFlight * 2 >= limit) {
+        increase += 1.0 / limit
+        if (increase >= 1) {
+          increase = 0
+          math.min(maxLimit, limit + 1)
+        } else limit
+      } else limit
+  }
+
+  /**
+   * Compares the latency of the latest calls with the long term average latency: the limit shrinks in proportion to
+   * how much the former exceeds the latter, beyond `tolerance`, and grows by the square root of the limit otherwise.
+   */
+  final class Gradient(
+      minLimit: Int,
+      maxLimit: Int,
+      initialLimit: Int,
+      tolerance: Double,
+      smoothing: Double,
+      longWindow: Int
+  ) extends Algorithm {
+    require(tolerance >= 1, s"tolerance must be >= 1, was [$tolerance]")
+    require(smoothing > 0 && smoothing <= 1, s"smoothing must be in ]0, 1], was [$smoothing]")
+
+    private val shortWindow      = 10
+    private var shortRtt: Double = 0
+    private var longRtt: Double  = 0
+    private var samples: Long    = 0
+    private var estimatedLimit   = initialLimit.toDouble
+
+    override def update(limit: Int, inFlight: Int, elapsedNanos: Long, dropped: Boolean): Int = {
+      samples += 1
+      shortRtt = average(shortRtt, elapsedNanos, math.min(samples, shortWindow))
+      longRtt = average(longRtt, elapsedNanos, math.min(samples, longWindow))
+
+      // Calls while the limit isn't used don't tell whether the limit is too high
+      if (!dropped && inFlight * 2 < limit) limit
+      else {
+        val gradient =
+          if (dropped) 0.5
+          else if (shortRtt <= 0) 1.0
+          else math.max(0.5, math.min(1.0, tolerance * longRtt / shortRtt))
+        val newLimit = estimatedLimit * gradient + math.sqrt(estimatedLimit)
+        estimatedLimit = math.max(minLimit, math.min(maxLimit, estimatedLimit * (1 - smoothing) + newLimit * smoothing))
+        estimatedLimit.toInt
+      }
+    }
+
+    private def average(current: Double, sample: Long, window: Long): Double =
+      current + (sample - current) / window
+  }
+}
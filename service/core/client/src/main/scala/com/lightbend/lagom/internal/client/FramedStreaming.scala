@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.internal.client
+
+import java.nio.ByteOrder
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+
+import akka.NotUsed
+import akka.stream.scaladsl.Flow
+import akka.stream.scaladsl.Framing
+import akka.stream.scaladsl.Framing.FramingException
+import akka.util.ByteString
+import com.typesafe.config.Config
+
+/**
+ * The framed transport of the calls with a strict request and a streamed response: the response messages are sent as
+ * the length prefixed frames of a chunked HTTP response, instead of the frames of a WebSocket.
+ *
+ * A client asks for this transport with the [[FramedStreaming.TransportHeader]] request header, which the service
+ * echoes in its response when it supports it. A service that predates this transport routes the request to the
+ * WebSocket of the call, which answers it with `426 Upgrade Required`: only then does the client fall back to a
+ * WebSocket, any other response without the header is an error.
+ *
+ * Each frame is a 4 bytes big endian length, followed by a type byte and the frame content. A message frame contains
+ * a serialized response message. An error frame contains the 4 bytes big endian HTTP status code, followed by the
+ * exception the response stream failed with, as serialized by the exception serializer of the service. An error frame
+ * is always the last frame of the response.
+ *
+ * A response stream serialized as newline delimited JSON, see [[com.lightbend.lagom.internal.api.Ndjson]], is sent
+ * without frames, with the `application/x-ndjson` content type, as the lines already delimit the messages.
+ */
+private[lagom] object FramedStreaming {
+  val TransportHeader = "Lagom-Streaming-Transport"
+  val Framed          = "framed"
+
+  private val MessageFrameType: Byte = 0
+  private val ErrorFrameType: Byte   = 1
+
+  private val LengthSize = 4
+  private val TypeSize   = 1
+  private val CodeSize   = 4
+
+  sealed trait Frame
+  final case class MessageFrame(message: ByteString)              extends Frame
+  final case class ErrorFrame(errorCode: Int, message: ByteString) extends Frame
+
+  def messageFrame(message: ByteString): ByteString = {
+    val builder = ByteString.newBuilder
+    builder.sizeHint(LengthSize + TypeSize + message.length)
+    builder.putInt(TypeSize + message.length)(ByteOrder.BIG_ENDIAN)
+    builder.putByte(MessageFrameType)
+    builder.append(message)
+    builder.result()
+  }
+
+  def errorFrame(errorCode: Int, message: ByteString): ByteString = {
+    val builder = ByteString.newBuilder
+    builder.sizeHint(LengthSize + TypeSize + CodeSize + message.length)
+    builder.putInt(TypeSize + CodeSize + message.length)(ByteOrder.BIG_ENDIAN)
+    builder.putByte(ErrorFrameType)
+    builder.putInt(errorCode)(ByteOrder.BIG_ENDIAN)
+    builder.append(message)
+    builder.result()
+  }
+
+  /**
+   * Splits the body of a response into its frames, failing if a frame content is longer than the given length.
+   */
+  def decoder(maxFrameLength: Int): Flow[ByteString, Frame, NotUsed] =
+    Framing
+      .lengthField(LengthSize, 0, LengthSize + TypeSize + CodeSize + maxFrameLength, ByteOrder.BIG_ENDIAN)
+      .map { frame =>
+        frame(LengthSize) match {
+          case MessageFrameType => MessageFrame(frame.drop(LengthSize + TypeSize))
+          case ErrorFrameType =>
+            val content = frame.drop(LengthSize + TypeSize)
+            ErrorFrame(content.iterator.getInt(ByteOrder.BIG_ENDIAN), content.drop(CodeSize))
+          case other => throw new FramingException(s"Unknown frame type [$other]")
+        }
+      }
+}
+
+/**
+ * The services that don't support the framed transport, which are sent the framed calls over a WebSocket for
+ * `unsupported-retry-after`, after which they are asked for the framed transport again, in case they were upgraded.
+ */
+private[lagom] final class FramedStreamingSupport(config: Config, nanoTime: () => Long = () => System.nanoTime()) {
+  val maxFrameLength: Int = math.min(Int.MaxValue.toLong - 16, config.getBytes("max-frame-length")).toInt
+
+  private val retryAfter = config.getDuration("unsupported-retry-after", TimeUnit.NANOSECONDS)
+
+  require(retryAfter >= 0, s"unsupported-retry-after must be >= 0, was [$retryAfter ns]")
+
+  private val unsupportedUntil = new ConcurrentHashMap[String, java.lang.Long]
+
+  /** Whether the given service may support the framed transport. */
+  def supported(serviceName: String): Boolean = {
+    val until = unsupportedUntil.get(serviceName)
+    if (until == null) true
+    else if (nanoTime() - until < 0) false
+    else {
+      unsupportedUntil.remove(serviceName, until)
+      true
+    }
+  }
+
+  /** Records that the given service answered a framed call with `426 Upgrade Required`. */
+  def unsupported(serviceName: String): Unit = unsupportedUntil.put(serviceName, nanoTime() + retryAfter)
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.internal.client
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.function.{ Function => JFunction }
+
+import akka.actor.Scheduler
+import com.codahale.metrics.Counter
+import com.codahale.metrics.MetricRegistry
+import com.lightbend.lagom.internal.api.HedgingPolicy
+import com.typesafe.config.Config
+
+import scala.concurrent.ExecutionContext
+import scala.concurrent.Future
+import scala.concurrent.Promise
+import scala.concurrent.duration._
+import scala.util.Failure
+import scala.util.Success
+import scala.util.control.NonFatal
+
+/**
+ * Sends extra requests for the calls that haven't been answered after the delay of their hedging policy, and
+ * completes each call with the first successful response.
+ *
+ * The extra requests are paid for out of a budget that every call adds `budget-ratio` to, up to `budget-burst`, so
+ * that they never amount to more than that fraction of the calls made by the client. As every client enforces the
+ * same ratio, this also bounds the extra requests made across the cluster.
+ *
+ * The responses to the requests that lose the race are ignored: the underlying HTTP client can't abort requests in
+ * progress.
+ */
+private[lagom] class Hedger(settings: Hedger.Settings, metrics: MetricRegistry, scheduler: Scheduler)(
+    implicit ec: ExecutionContext
+) {
+  private val budget = new Hedger.Budget(settings.budgetRatio, settings.budgetBurst)
+
+  private val calls = new ConcurrentHashMap[String, Hedger.CallState]()
+  private val createCallState = new JFunction[String, Hedger.CallState] {
+    override def apply(key: String): Hedger.CallState =
+      new Hedger.CallState(
+        new Hedger.LatencyWindow(settings.latencyWindow, settings.minSamples),
+        metrics.counter(MetricRegistry.name("ServiceCall", key, "hedgesFired")),
+        metrics.counter(MetricRegistry.name("ServiceCall", key, "hedgesWon")),
+        metrics.counter(MetricRegistry.name("ServiceCall", key, "hedgesDenied"))
+      )
+  }
+
+  /** The delay after which an extra request is sent for the call with the given key, if known. */
+  def delay(key: String, policy: HedgingPolicy): Option[FiniteDuration] =
+    policy.delay.orElse(
+      policy.percentile.flatMap(calls.computeIfAbsent(key, createCallState).latencies.percentile).map(_.nanos)
+    )
+
+  /**
+   * Makes the call with the given key, sending up to `maxExtraRequests` extra requests after the delay of the policy.
+   *
+   * @param attempt Sends the request with the given attempt number, starting at 0.
+   * @return The first successful response, or the last failure if all the requests sent failed.
+   */
+  def hedge[T](key: String, policy: HedgingPolicy)(attempt: Int => Future[T]): Future[T] = {
+    val state    = calls.computeIfAbsent(key, createCallState)
+    val result   = Promise[T]()
+    val pending  = new AtomicInteger(0)
+    val answered = new AtomicBoolean(false)
+
+    def send(n: Int): Unit = {
+      pending.incrementAndGet()
+      val startTime = System.nanoTime()
+      val response =
+        try attempt(n)
+        catch { case NonFatal(e) => Future.failed(e) }
+      response.onComplete {
+        case Success(value) =>
+          state.latencies.record(System.nanoTime() - startTime)
+          // The winner is counted before completing the call, so that the metrics are up to date once it completes
+          if (answered.compareAndSet(false, true)) {
+            if (n > 0) state.won.inc()
+            result.trySuccess(value)
+          }
+        case Failure(e) =>
+          if (pending.decrementAndGet() == 0) result.tryFailure(e)
+      }
+    }
+
+    def scheduleHedge(n: Int, delay: FiniteDuration): Unit =
+      scheduler.scheduleOnce(delay) {
+        if (!result.isCompleted) {
+          if (budget.tryWithdraw()) {
+            state.fired.inc()
+            send(n)
+            if (n < policy.maxExtraRequests) scheduleHedge(n + 1, delay)
+          } else state.denied.inc()
+        }
+      }
+
+    budget.deposit()
+    val hedgeDelay = delay(key, policy)
+    send(0)
+    hedgeDelay.foreach(scheduleHedge(1, _))
+    result.future
+  }
+}
+
+private[lagom] object Hedger {
+
+  final case class Settings(budgetRatio: Double, budgetBurst: Int, latencyWindow: Int, minSamples: Int) {
+    require(budgetRatio >= 0 && budgetRatio <= 1, s"budget-ratio must be in [0, 1], was [$budgetRatio]")
+    require(budgetBurst >= 1, s"budget-burst must be >= 1, was [$budgetBurst]")
+    require(
+      minSamples > 0 && minSamples <= latencyWindow,
+      s"min-samples must be between 1 and latency-window, was [$minSamples]"
+    )
+  }
+
+  object Settings {
+    def apply(config: Config): Settings = Settings(
+      budgetRatio = config.getDouble("budget-ratio"),
+      budgetBurst = config.getInt("budget-burst"),
+      latencyWindow = config.getInt("latency-window"),
+      minSamples = config.getInt("min-samples")
+    )
+  }
+
+  private final class CallState(val latencies: LatencyWindow, val fired: Counter, val won: Counter, val denied: Counter)
+
+  /** A token bucket that every call adds `ratio` tokens to, up to `burst`, and every extra request takes one from. */
+  private[client] final class Budget(ratio: Double, burst: Int) {
+    private var tokens: Double = burst
+
+    def deposit(): Unit = synchronized {
+      tokens = math.min(burst.toDouble, tokens + ratio)
+    }
+
+    def tryWithdraw(): Boolean = synchronized {
+      if (tokens >= 1) {
+        tokens -= 1
+        true
+      } else false
+    }
+  }
+
+  /**
+   * The latencies of the last `size` calls. The percentiles are read from a sorted copy of the latencies, which is
+   * refreshed after every tenth of the window, rather than on every call.
+   */
+  private[client] final class LatencyWindow(size: Int, minSamples: Int) {
+    private val samples          = new Array[Long](size)
+    private var count            = 0L
+    private var sinceRefresh     = 0
+    private val refreshInterval  = math.max(1, size / 10)
+    @volatile private var sorted = Array.emptyLongArray
+
+    def record(elapsedNanos: Long): Unit = {
+      val refreshed = synchronized {
+        samples((count % size).toInt) = elapsedNanos
+        count += 1
+        sinceRefresh += 1
+        if (count >= minSamples && sinceRefresh >= refreshInterval) {
+          sinceRefresh = 0
+          val copy = java.util.Arrays.copyOf(samples, math.min(count, size.toLong).toInt)
+          Some(copy)
+        } else None
+      }
+      refreshed.foreach { copy =>
+        java.util.Arrays.sort(copy)
+        sorted = copy
+      }
+    }
+
+    /** The given percentile of the latencies in nanoseconds, once at least `minSamples` latencies were recorded. */
+    def percentile(p: Double): Option[Long] = {
+      val snapshot = sorted
+      if (snapshot.isEmpty) None
+      else Some(snapshot(math.min(snapshot.length - 1, (snapshot.length * p / 100).toInt)))
+    }
+  }
+}
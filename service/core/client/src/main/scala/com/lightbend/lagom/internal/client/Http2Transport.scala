@@ -0,0 +1,258 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.internal.client
+
+import java.net.URI
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.TimeoutException
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicReferenceArray
+import java.util.function.{ Function => JFunction }
+
+import akka.Done
+import akka.actor.ActorSystem
+import akka.actor.CoordinatedShutdown
+import akka.http.scaladsl.Http
+import akka.http.scaladsl.model.AttributeKey
+import akka.http.scaladsl.model.ContentType
+import akka.http.scaladsl.model.ContentTypes
+import akka.http.scaladsl.model.HttpEntity
+import akka.http.scaladsl.model.HttpMethod
+import akka.http.scaladsl.model.HttpMethods
+import akka.http.scaladsl.model.HttpRequest
+import akka.http.scaladsl.model.HttpResponse
+import akka.http.scaladsl.model.RequestResponseAssociation
+import akka.http.scaladsl.model.Uri
+import akka.http.scaladsl.model.headers.RawHeader
+import akka.stream.Materializer
+import akka.stream.OverflowStrategy
+import akka.stream.QueueOfferResult
+import akka.stream.SystemMaterializer
+import akka.stream.scaladsl.Keep
+import akka.stream.scaladsl.Sink
+import akka.stream.scaladsl.Source
+import akka.util.ByteString
+import com.typesafe.config.Config
+import play.api.http.HeaderNames
+
+import scala.annotation.tailrec
+import scala.concurrent.ExecutionContext
+import scala.concurrent.Future
+import scala.concurrent.Promise
+import scala.concurrent.duration._
+import scala.util.Failure
+import scala.util.Success
+
+/**
+ * The response of a strict call, with its body read in memory, whichever transport it was received with.
+ */
+private[lagom] final case class StrictResponse(
+    status: Int,
+    headers: Map[String, collection.Seq[String]],
+    body: ByteString
+) {
+  def header(name: String): Option[String] =
+    headers.collectFirst { case (key, values) if key.equalsIgnoreCase(name) && values.nonEmpty => values.head }
+}
+
+/**
+ * Sends the strict calls to the services listed in `lagom.client.http2` over HTTP/2 connections, that many calls are
+ * multiplexed over, instead of the HTTP/1.1 connections of Play WS.
+ *
+ * Each instance of a service is sent requests over `connections-per-instance` connections, which are opened on first
+ * use and reopened once closed. Plain `http` instances are connected to with prior knowledge (h2c), `https` instances
+ * negotiate HTTP/2 with ALPN. The connections are closed when the actor system shuts down.
+ */
+private[lagom] class Http2Transport(config: Config, system: ActorSystem) {
+  import Http2Transport._
+
+  private implicit lazy val mat: Materializer = SystemMaterializer(system).materializer
+  private implicit val ec: ExecutionContext   = system.dispatcher
+
+  private val setting                = new PerServiceSetting(config)
+  private val connectionsPerInstance = config.getInt("connections-per-instance")
+  private val maxPendingRequests     = config.getInt("max-pending-requests")
+  private val entityTimeout          = config.getDuration("entity-timeout", TimeUnit.MILLISECONDS).millis
+  private val requestTimeout         = config.getDuration("request-timeout", TimeUnit.MILLISECONDS).millis
+
+  require(connectionsPerInstance > 0, s"connections-per-instance must be > 0, was [$connectionsPerInstance]")
+  require(requestTimeout > Duration.Zero, s"request-timeout must be > 0, was [$requestTimeout]")
+
+  private val instances = new ConcurrentHashMap[Authority, Instance]
+  private val createInstance = new JFunction[Authority, Instance] {
+    override def apply(authority: Authority): Instance = new Instance(authority)
+  }
+
+  CoordinatedShutdown(system).addTask(CoordinatedShutdown.PhaseServiceStop, "lagom-client-http2-connections") { () =>
+    shutdown()
+    Future.successful(Done)
+  }
+
+  /** Whether the strict calls to the given service are sent over HTTP/2. */
+  def enabled(serviceName: String): Boolean = setting.enabled(serviceName)
+
+  /**
+   * Sends a request over one of the connections to the instance of the given URL, and reads its response.
+   *
+   * @param contentType The content type of the body, which can't be passed as a raw header.
+   */
+  def execute(
+      method: String,
+      url: String,
+      headers: Seq[(String, String)],
+      contentType: Option[String],
+      body: Option[ByteString]
+  ): Future[StrictResponse] = {
+    val uri = URI.create(url)
+    val entity = body match {
+      case Some(bytes) =>
+        val parsedContentType = contentType.flatMap(ContentType.parse(_).toOption)
+        HttpEntity(parsedContentType.getOrElse(ContentTypes.`application/octet-stream`), bytes)
+      case None => HttpEntity.Empty
+    }
+    val request = HttpRequest(
+      method = HttpMethods.getForKey(method).getOrElse(HttpMethod.custom(method)),
+      uri = Uri(url),
+      headers = headers.iterator.map { case (name, value) => RawHeader(name, value) }.toList,
+      entity = entity
+    )
+
+    val strictResponse = instances
+      .computeIfAbsent(Authority(uri.getScheme, uri.getHost, portOf(uri)), createInstance)
+      .connection()
+      .dispatch(request)
+      .flatMap { response =>
+        response.entity.toStrict(entityTimeout).map { strictEntity =>
+          val contentTypeHeader =
+            if (strictEntity.contentType == ContentTypes.NoContentType) Nil
+            else List(HeaderNames.CONTENT_TYPE -> List(strictEntity.contentType.value))
+          val responseHeaders = response.headers.groupBy(_.name).map {
+            case (name, values) => name -> values.map(_.value)
+          }
+          StrictResponse(response.status.intValue, responseHeaders ++ contentTypeHeader, strictEntity.data)
+        }
+      }
+
+    // The timeout covers the whole request: waiting for a connection, for the response and for its body
+    val result = Promise[StrictResponse]()
+    val timeout = system.scheduler.scheduleOnce(requestTimeout) {
+      result.tryFailure(new TimeoutException(s"Request to [$url] timed out after [$requestTimeout]"))
+    }
+    result.tryCompleteWith(strictResponse)
+    result.future.onComplete(_ => timeout.cancel())
+    result.future
+  }
+
+  /** Closes the connections to every instance, failing the requests in progress. */
+  def shutdown(): Unit =
+    instances.keySet.forEach { authority =>
+      val instance = instances.remove(authority)
+      if (instance != null) instance.close()
+    }
+
+  private def portOf(uri: URI): Int =
+    if (uri.getPort != -1) uri.getPort
+    else if (uri.getScheme == "https") 443
+    else 80
+
+  /** The connections to an instance, that the requests are spread over in turn. */
+  private final class Instance(authority: Authority) {
+    private val connections = new AtomicReferenceArray[Connection](connectionsPerInstance)
+    private val next        = new AtomicInteger(0)
+
+    def connection(): Connection = connectionAt(math.abs(next.getAndIncrement() % connectionsPerInstance))
+
+    @tailrec
+    private def connectionAt(slot: Int): Connection = {
+      val current = connections.get(slot)
+      if (current != null && current.isOpen) current
+      else {
+        val opened = new Connection(authority)
+        if (connections.compareAndSet(slot, current, opened)) opened
+        else {
+          // Another request replaced the connection first, with one that may already be closed again
+          opened.close()
+          connectionAt(slot)
+        }
+      }
+    }
+
+    def close(): Unit =
+      for (slot <- 0 until connectionsPerInstance) {
+        val connection = connections.getAndSet(slot, null)
+        if (connection != null) connection.close()
+      }
+  }
+
+  /**
+   * A single HTTP/2 connection. The responses, which may arrive in any order, are matched to their request with an
+   * attribute that the connection copies from the request to its response.
+   */
+  private final class Connection(authority: Authority) {
+    private val pending = ConcurrentHashMap.newKeySet[Promise[HttpResponse]]()
+    @volatile private var open = true
+
+    private val connectionFlow = {
+      val builder = Http(system).connectionTo(authority.host).toPort(authority.port)
+      if (authority.scheme == "https") builder.http2() else builder.http2WithPriorKnowledge()
+    }
+
+    private val (queue, closed) = Source
+      .queue[HttpRequest](maxPendingRequests, OverflowStrategy.dropNew)
+      .via(connectionFlow)
+      .toMat(Sink.foreach { response =>
+        response.attribute(ResponsePromiseKey).foreach(_.promise.trySuccess(response))
+      })(Keep.both)
+      .run()
+
+    closed.onComplete { outcome =>
+      open = false
+      val cause = outcome match {
+        case Failure(e) => e
+        case Success(_) => new IllegalStateException(s"HTTP/2 connection to [$authority] closed")
+      }
+      pending.forEach(_.tryFailure(cause))
+    }
+
+    def isOpen: Boolean = open
+
+    def close(): Unit = {
+      open = false
+      queue.complete()
+      pending.forEach(_.tryFailure(new IllegalStateException(s"HTTP/2 connection to [$authority] closed")))
+    }
+
+    def dispatch(request: HttpRequest): Future[HttpResponse] = {
+      val promise = Promise[HttpResponse]()
+      pending.add(promise)
+      promise.future.onComplete(_ => pending.remove(promise))
+      if (!open) promise.tryFailure(new IllegalStateException(s"HTTP/2 connection to [$authority] closed"))
+      else
+        queue.offer(request.addAttribute(ResponsePromiseKey, ResponsePromise(promise))).onComplete {
+          case Success(QueueOfferResult.Enqueued) => ()
+          case Success(QueueOfferResult.Dropped) =>
+            promise.tryFailure(
+              new IllegalStateException(s"More than [$maxPendingRequests] requests pending to [$authority]")
+            )
+          case Success(QueueOfferResult.Failure(e)) => promise.tryFailure(e)
+          case Success(QueueOfferResult.QueueClosed) =>
+            promise.tryFailure(new IllegalStateException(s"HTTP/2 connection to [$authority] closed"))
+          case Failure(e) => promise.tryFailure(e)
+        }
+      promise.future
+    }
+  }
+}
+
+private[lagom] object Http2Transport {
+  private final case class Authority(scheme: String, host: String, port: Int) {
+    override def toString: String = s"$scheme://$host:$port"
+  }
+
+  private final case class ResponsePromise(promise: Promise[HttpResponse]) extends RequestResponseAssociation
+
+  private val ResponsePromiseKey = AttributeKey[ResponsePromise]("lagom-response-promise")
+}
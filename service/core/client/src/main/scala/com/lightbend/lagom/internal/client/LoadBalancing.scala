@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.internal.client
+
+import java.net.URI
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ThreadLocalRandom
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.function.{ Function => JFunction }
+
+import com.typesafe.config.Config
+import com.typesafe.config.ConfigUtil
+
+import scala.concurrent.ExecutionContext
+import scala.concurrent.Future
+import scala.util.control.NonFatal
+
+/**
+ * Selects the instance of a service a call is sent to, based on the outcome of the previous calls sent to each
+ * instance.
+ */
+private[lagom] abstract class LoadBalancer {
+  private val instances = new ConcurrentHashMap[URI, InstanceStats]()
+  private val createStats = new JFunction[URI, InstanceStats] {
+    override def apply(uri: URI): InstanceStats = new InstanceStats(decayNanos)
+  }
+  @volatile private var lastCandidates: collection.Seq[URI] = Nil
+
+  /** The time constant of the moving average of the latencies of each instance. */
+  protected def decayNanos: Long
+
+  /** Selects one of the candidates, if any. */
+  def select(candidates: collection.Seq[URI]): Option[URI] = candidates.size match {
+    case 0 => None
+    case 1 => Some(candidates.head)
+    case _ => Some(selectAmong(candidates))
+  }
+
+  /** Selects one of at least two candidates. */
+  protected def selectAmong(candidates: collection.Seq[URI]): URI
+
+  protected def stats(uri: URI): InstanceStats = instances.computeIfAbsent(uri, createStats)
+
+  def onCallStarted(uri: URI): Unit = stats(uri).onCallStarted()
+
+  def onCallCompleted(uri: URI, elapsedNanos: Long): Unit = {
+    // The instance may have been forgotten since the call started
+    val instance = instances.get(uri)
+    if (instance != null) instance.onCallCompleted(elapsedNanos)
+  }
+
+  /**
+   * Forgets the statistics of the instances that aren't among the given candidates anymore, so that the instances that
+   * are gone aren't kept forever, and an address reused by a new instance starts afresh.
+   */
+  def retain(candidates: collection.Seq[URI]): Unit =
+    if (instances.size > candidates.size || candidates != lastCandidates) {
+      instances.keySet.removeIf(uri => !candidates.contains(uri))
+      lastCandidates = candidates
+    }
+
+  protected def randomPair(candidates: collection.Seq[URI]): (URI, URI) = {
+    val random = ThreadLocalRandom.current()
+    val first  = random.nextInt(candidates.size)
+    // Picks a second index distinct from the first one
+    val second = (first + 1 + random.nextInt(candidates.size - 1)) % candidates.size
+    (candidates(first), candidates(second))
+  }
+}
+
+/**
+ * Outstanding calls and peak exponentially weighted moving average of the latency of an instance of a service.
+ *
+ * The moving average reacts immediately to latencies higher than the current average, and decays towards lower ones
+ * with the given time constant.
+ */
+private[lagom] final class InstanceStats(decayNanos: Long) {
+  private val outstandingCalls = new AtomicInteger(0)
+
+  private var cost: Double    = 0
+  private var lastUpdate: Long = System.nanoTime()
+
+  def outstanding: Int = outstandingCalls.get()
+
+  def onCallStarted(): Unit = outstandingCalls.incrementAndGet()
+
+  def onCallCompleted(elapsedNanos: Long): Unit = {
+    outstandingCalls.decrementAndGet()
+    synchronized {
+      val now = System.nanoTime()
+      if (elapsedNanos > cost) cost = elapsedNanos
+      else {
+        val weight = math.exp(-(now - lastUpdate).toDouble / decayNanos)
+        cost = cost * weight + elapsedNanos * (1 - weight)
+      }
+      lastUpdate = now
+    }
+  }
+
+  /**
+   * The expected cost of sending a call to this instance: its average latency weighted by its outstanding calls.
+   * Instances with outstanding calls but no completed call yet are given a high cost so that they aren't flooded.
+   */
+  def load: Double = synchronized {
+    val pending = outstanding
+    if (cost == 0 && pending != 0) InstanceStats.Penalty + pending
+    else cost * (pending + 1)
+  }
+}
+
+private[lagom] object InstanceStats {
+  private val Penalty: Double = Long.MaxValue.toDouble / 2
+}
+
+private[lagom] object LoadBalancer {
+
+  /** Selects the candidate with the fewest outstanding calls, breaking ties randomly. */
+  final class LeastOutstandingRequests(protected val decayNanos: Long) extends LoadBalancer {
+    override protected def selectAmong(candidates: collection.Seq[URI]): URI = {
+      val offset = ThreadLocalRandom.current().nextInt(candidates.size)
+      var best   = candidates(offset)
+      var i      = 1
+      while (i < candidates.size) {
+        val candidate = candidates((offset + i) % candidates.size)
+        if (stats(candidate).outstanding < stats(best).outstanding) best = candidate
+        i += 1
+      }
+      best
+    }
+  }
+
+  /** Selects, out of two random candidates, the one with the fewest outstanding calls. */
+  final class PowerOfTwoChoices(protected val decayNanos: Long) extends LoadBalancer {
+    override protected def selectAmong(candidates: collection.Seq[URI]): URI = {
+      val (first, second) = randomPair(candidates)
+      if (stats(second).outstanding < stats(first).outstanding) second else first
+    }
+  }
+
+  /**
+   * Selects, out of two random candidates, the one with the lowest peak exponentially weighted moving average
+   * latency, weighted by its outstanding calls.
+   */
+  final class PeakEwma(protected val decayNanos: Long) extends LoadBalancer {
+    override protected def selectAmong(candidates: collection.Seq[URI]): URI = {
+      val (first, second) = randomPair(candidates)
+      if (stats(second).load < stats(first).load) second else first
+    }
+  }
+}
+
+/**
+ * The load balancers of each service, as configured in `lagom.client.load-balancing`.
+ */
+private[lagom] class LoadBalancing(config: Config) {
+  private val defaultStrategy = config.getString("strategy")
+  private val services        = config.getConfig("services")
+  private val decayNanos      = config.getDuration("peak-ewma.decay-time", TimeUnit.NANOSECONDS)
+
+  private val balancers = new ConcurrentHashMap[String, Option[LoadBalancer]]
+  private val createBalancer = new JFunction[String, Option[LoadBalancer]] {
+    override def apply(serviceName: String): Option[LoadBalancer] = {
+      val path     = ConfigUtil.joinPath(serviceName)
+      val strategy = if (services.hasPath(path)) services.getString(path) else defaultStrategy
+      strategy match {
+        case "none"                       => None
+        case "least-outstanding-requests" => Some(new LoadBalancer.LeastOutstandingRequests(decayNanos))
+        case "power-of-two-choices"       => Some(new LoadBalancer.PowerOfTwoChoices(decayNanos))
+        case "peak-ewma"                  => Some(new LoadBalancer.PeakEwma(decayNanos))
+        case other =>
+          throw new IllegalArgumentException(
+            s"Unknown load balancing strategy [$other] for service [$serviceName], expected one of " +
+              "[none, least-outstanding-requests, power-of-two-choices, peak-ewma]"
+          )
+      }
+    }
+  }
+
+  /** The load balancer of the given service, if a strategy other than `none` is configured for it. */
+  def forService(serviceName: String): Option[LoadBalancer] =
+    balancers.computeIfAbsent(serviceName, createBalancer)
+}
+
+/**
+ * Selects the instance of a service a call is sent to, among the ones that aren't ejected by its outlier detector, with
+ * its load balancer, or randomly when it has none. The state kept for the instances that aren't candidates anymore is
+ * dropped on selection.
+ */
+private[lagom] final class InstanceSelector(balancer: Option[LoadBalancer], detector: Option[OutlierDetector]) {
+
+  def select(candidates: collection.Seq[URI]): Option[URI] = {
+    balancer.foreach(_.retain(candidates))
+    detector.foreach(_.retain(candidates))
+    val available = detector.fold(candidates)(_.filter(candidates))
+    balancer match {
+      case Some(b)                   => b.select(available)
+      case None if available.isEmpty => None
+      case None                      => Some(available(ThreadLocalRandom.current().nextInt(available.size)))
+    }
+  }
+
+  def onCallStarted(uri: URI): Unit = balancer.foreach(_.onCallStarted(uri))
+
+  def onCallCompleted(uri: URI, elapsedNanos: Long, failed: Boolean): Unit = {
+    balancer.foreach(_.onCallCompleted(uri, elapsedNanos))
+    detector.foreach(_.onCallCompleted(uri, elapsedNanos, failed))
+  }
+
+  /** Runs the given call to the given instance, keeping track of its outcome. */
+  def track[T](uri: URI)(call: => Future[T])(implicit ec: ExecutionContext): Future[T] = {
+    onCallStarted(uri)
+    val startTime = System.nanoTime()
+    val result =
+      try call
+      catch { case NonFatal(e) => Future.failed(e) }
+    result.onComplete(outcome => onCallCompleted(uri, System.nanoTime() - startTime, outcome.isFailure))
+    result
+  }
+}
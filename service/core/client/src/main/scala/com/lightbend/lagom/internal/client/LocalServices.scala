@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.internal.client
+
+import java.util.concurrent.ConcurrentHashMap
+
+import akka.util.ByteString
+import com.typesafe.config.Config
+
+import scala.concurrent.Future
+
+/**
+ * A service bound by the Lagom server running in the same actor system as a service client, that the client can
+ * invoke without going through the network.
+ *
+ * The request and response headers and messages are the ones of the DSL of the server, which is also the DSL of its
+ * clients, and the messages are passed as they are, without being serialized.
+ */
+private[lagom] trait LocalService {
+
+  /**
+   * Invokes the call of the service that the given method and path route to.
+   *
+   * The request header must have been transformed by the header filter of the client, the header filter of the service
+   * is applied by this method.
+   *
+   * @return The response, or `None` if no call of the service can be invoked locally for the given method and path,
+   *         in which case the request must be sent over the network.
+   */
+  def invoke(
+      method: String,
+      pathAndQuery: String,
+      requestHeader: Any,
+      request: Any
+  ): Option[Future[LocalService.Response]]
+}
+
+private[lagom] object LocalService {
+  sealed trait Response
+
+  /** The call succeeded, the response header has been transformed by the header filter of the service. */
+  final case class Success(responseHeader: Any, response: Any) extends Response
+
+  /**
+   * The call failed, and its exception was serialized by the exception serializer of the service, so that it can be
+   * deserialized by the exception serializer of the client, as if it had been received over the network.
+   */
+  final case class Failure(responseHeader: Any, body: ByteString) extends Response
+}
+
+/**
+ * The services bound in this actor system, by name, that can be called locally as configured in
+ * `lagom.client.local-transport`.
+ */
+private[lagom] class LocalServices(config: Config) {
+  private val setting = new PerServiceSetting(config)
+
+  private val registered = new ConcurrentHashMap[String, LocalService]
+
+  /** Whether the calls to the given service are invoked locally when it is bound in this actor system. */
+  def enabled(serviceName: String): Boolean = setting.enabled(serviceName)
+
+  def register(serviceName: String, service: LocalService): Unit = registered.put(serviceName, service)
+
+  /** Unregisters the given service, unless another service was registered with the same name since. */
+  def unregister(serviceName: String, service: LocalService): Unit = registered.remove(serviceName, service)
+
+  /** The given service, if it is bound in this actor system and its calls are invoked locally. */
+  def lookup(serviceName: String): Option[LocalService] =
+    if (registered.isEmpty || !enabled(serviceName)) None
+    else Option(registered.get(serviceName))
+}
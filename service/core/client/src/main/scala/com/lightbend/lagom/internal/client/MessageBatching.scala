@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.internal.client
+
+import java.nio.ByteOrder
+import java.util.concurrent.TimeUnit
+
+import akka.NotUsed
+import akka.stream.scaladsl.Flow
+import akka.stream.scaladsl.Framing.FramingException
+import akka.util.ByteString
+import com.typesafe.config.Config
+
+import scala.collection.immutable
+import scala.concurrent.duration._
+
+/**
+ * Packs the messages a service streams to a client over a WebSocket into batches, so that a stream of many small
+ * messages is sent in fewer, larger WebSocket messages. A batch is sent once it reaches `max-batch-size` bytes, or
+ * once its first message has waited `max-latency`, whichever comes first.
+ *
+ * A client asks for it with the [[MessageBatching.RequestHeader]] request header. A service that batches the messages
+ * of the call sends a ping with the [[MessageBatching.Confirmation]] payload before any message, and then sends each
+ * batch as a binary message, made of the 4 bytes big endian length of each message followed by the message. A client
+ * that doesn't get the ping reads the messages as they are. The client unpacks the batches before they reach the
+ * message deserializer.
+ *
+ * When the messages are compressed too, see [[MessageDeflate]], the batches are compressed.
+ *
+ * Which calls the clients ask to batch is configured in `lagom.client.message-batching`, which calls the services
+ * batch and how in `lagom.server.message-batching`, read by this class.
+ */
+private[lagom] class MessageBatching(config: Config) {
+  import MessageBatching._
+
+  private val setting      = new PerServiceSetting(config)
+  private val maxBatchSize = config.getBytes("max-batch-size").longValue
+  private val maxLatency   = config.getDuration("max-latency", TimeUnit.MILLISECONDS).millis
+
+  require(maxBatchSize > 0, s"max-batch-size must be > 0, was [$maxBatchSize]")
+  require(maxLatency > Duration.Zero, s"max-latency must be > 0, was [$maxLatency]")
+
+  /** Whether the messages the given call streams are batched, when both of its ends enable it. */
+  def enabled(serviceName: String, callName: String): Boolean =
+    setting.enabled(serviceName, callName)
+
+  /**
+   * Packs the messages into batches. A message longer than the maximum batch size is sent in a batch of its own.
+   */
+  def batcher: Flow[ByteString, ByteString, NotUsed] =
+    Flow[ByteString]
+      .groupedWeightedWithin(maxBatchSize, maxLatency)(message => LengthSize + message.length.toLong)
+      .map(encode)
+}
+
+private[lagom] object MessageBatching {
+  val RequestHeader   = "Lagom-Message-Batching"
+  val LengthDelimited = "length-delimited"
+
+  /** The payload of the ping a service confirms the batching with. */
+  val Confirmation = ByteString("lagom-message-batching")
+
+  private val LengthSize = 4
+
+  def encode(messages: immutable.Seq[ByteString]): ByteString = {
+    val builder = ByteString.newBuilder
+    builder.sizeHint(messages.foldLeft(0)(_ + LengthSize + _.length))
+    messages.foreach { message =>
+      builder.putInt(message.length)(ByteOrder.BIG_ENDIAN)
+      builder.append(message)
+    }
+    builder.result()
+  }
+
+  @throws[FramingException]
+  def decode(batch: ByteString): immutable.Seq[ByteString] = {
+    val messages = Vector.newBuilder[ByteString]
+    var rest     = batch
+    while (rest.nonEmpty) {
+      if (rest.length < LengthSize) throw new FramingException("Truncated message length in batch")
+      val length = rest.iterator.getInt(ByteOrder.BIG_ENDIAN)
+      if (length < 0 || rest.length - LengthSize < length)
+        throw new FramingException(s"Message of [$length] bytes truncated in batch")
+      messages += rest.slice(LengthSize, LengthSize + length)
+      rest = rest.drop(LengthSize + length)
+    }
+    messages.result()
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.internal.client
+
+import java.util.zip.DataFormatException
+import java.util.zip.Deflater
+import java.util.zip.Inflater
+
+import akka.util.ByteString
+import com.typesafe.config.Config
+
+/**
+ * Compresses the messages a service streams to a client over a WebSocket with DEFLATE, as the permessage-deflate
+ * WebSocket extension does. The extension itself can't be negotiated by the Play server, so the compression is
+ * negotiated by Lagom.
+ *
+ * A client asks for it with the [[MessageDeflate.RequestHeader]] request header. A service that compresses the
+ * messages of the call sends a ping with the [[MessageDeflate.Confirmation]] payload before any message, and then
+ * sends each message as a binary message, made of a flag byte saying whether it is deflated, followed by the message.
+ * A client that doesn't get the ping reads the messages as they are.
+ *
+ * The messages are deflated as with permessage-deflate: raw DEFLATE, flushed at the end of each message, without the
+ * trailing empty block. With context takeover, each message may refer to the previous ones, which compresses small
+ * similar messages better, but keeps a deflater per stream. The messages shorter than `min-message-size` are sent as
+ * they are.
+ *
+ * Which calls the clients ask to compress is configured in `lagom.client.message-deflate`, which calls the services
+ * compress and how in `lagom.server.message-deflate`, read by this class.
+ */
+private[lagom] class MessageDeflate(config: Config) {
+  import MessageDeflate._
+
+  private val setting          = new PerServiceSetting(config)
+  private val compressionLevel = config.getInt("compression-level")
+  private val contextTakeover  = config.getBoolean("context-takeover")
+  private val minMessageSize   = math.min(Int.MaxValue.toLong, config.getBytes("min-message-size")).toInt
+
+  require(
+    compressionLevel == Deflater.DEFAULT_COMPRESSION ||
+      (compressionLevel >= Deflater.NO_COMPRESSION && compressionLevel <= Deflater.BEST_COMPRESSION),
+    s"compression-level must be -1 or between 0 and 9, was [$compressionLevel]"
+  )
+
+  /** Whether the messages the given call streams are compressed, when both of its ends enable it. */
+  def enabled(serviceName: String, callName: String): Boolean =
+    setting.enabled(serviceName, callName)
+
+  def newCompressor(): Compressor = new Compressor(compressionLevel, contextTakeover, minMessageSize)
+}
+
+private[lagom] object MessageDeflate {
+  val RequestHeader = "Lagom-Message-Deflate"
+  val Deflate       = "deflate"
+
+  /** The payload of the ping a service confirms the compression with. */
+  val Confirmation = ByteString("lagom-message-deflate")
+
+  private val RawFlag: Byte      = 0
+  private val DeflatedFlag: Byte = 1
+
+  private val RawPrefix        = ByteString(Array(RawFlag))
+  private val SyncFlushTrailer = ByteString(Array[Byte](0, 0, -1, -1))
+  private val BufferSize       = 8192
+
+  /** Compresses the messages of a stream. It isn't thread safe, and must be closed once the stream is done. */
+  final class Compressor private[MessageDeflate] (level: Int, contextTakeover: Boolean, minMessageSize: Int) {
+    private val deflater = new Deflater(level, true)
+    private val buffer   = new Array[Byte](BufferSize)
+
+    def compress(message: ByteString): ByteString =
+      if (message.length < minMessageSize) RawPrefix ++ message
+      else {
+        if (!contextTakeover) deflater.reset()
+        deflater.setInput(message.toArray)
+        val builder = ByteString.newBuilder
+        builder.putByte(DeflatedFlag)
+        // The output is complete once the deflater doesn't fill the buffer
+        var length = buffer.length
+        while (length == buffer.length) {
+          length = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH)
+          builder.putBytes(buffer, 0, length)
+        }
+        val deflated = builder.result()
+        if (deflated.endsWith(SyncFlushTrailer)) deflated.dropRight(SyncFlushTrailer.length) else deflated
+      }
+
+    def close(): Unit = deflater.end()
+  }
+
+  /** Decompresses the messages of a stream. It isn't thread safe, and must be closed once the stream is done. */
+  final class Decompressor(maxMessageLength: Int) {
+    private val inflater = new Inflater(true)
+    private val buffer   = new Array[Byte](BufferSize)
+
+    @throws[DataFormatException]
+    def decompress(frame: ByteString): ByteString =
+      if (frame.isEmpty) throw new DataFormatException("Empty compressed message")
+      else
+        frame.head match {
+          case RawFlag => frame.drop(1)
+          case DeflatedFlag =>
+            inflater.setInput((frame.drop(1) ++ SyncFlushTrailer).toArray)
+            val builder = ByteString.newBuilder
+            var length  = inflater.inflate(buffer)
+            while (length > 0) {
+              builder.putBytes(buffer, 0, length)
+              if (builder.length > maxMessageLength)
+                throw new DataFormatException(s"Inflated message longer than [$maxMessageLength] bytes")
+              length = inflater.inflate(buffer)
+            }
+            builder.result()
+          case other => throw new DataFormatException(s"Unknown compressed message flag [$other]")
+        }
+
+    def close(): Unit = inflater.end()
+  }
+}
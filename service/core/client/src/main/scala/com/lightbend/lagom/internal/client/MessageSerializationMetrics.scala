@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.internal.client
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.function.{ Function => JFunction }
+
+import akka.util.ByteString
+import com.lightbend.lagom.internal.spi.SerializationMetrics
+import com.lightbend.lagom.internal.spi.SerializationMetricsProvider
+
+/**
+ * The serialization metrics of the strict messages of the service calls, per service and call, measured by the
+ * service clients and by the services.
+ */
+private[lagom] final class MessageSerializationMetrics(provider: Option[SerializationMetricsProvider]) {
+  private val calls = new ConcurrentHashMap[(String, String, String), SerializationMetrics]
+  private val start = new JFunction[(String, String, String), SerializationMetrics] {
+    override def apply(call: (String, String, String)): SerializationMetrics = {
+      val (serializer, serviceName, callName) = call
+      provider.get.start(serializer, s"$serviceName.$callName")
+    }
+  }
+
+  /**
+   * The metrics of the given call, if the serialization is measured.
+   *
+   * @param serializer [[MessageSerializationMetrics.Client]] or [[MessageSerializationMetrics.Server]]
+   */
+  def forCall(serializer: String, serviceName: String, callName: String): Option[SerializationMetrics] =
+    if (provider.isEmpty) None
+    else Some(calls.computeIfAbsent((serializer, serviceName, callName), start))
+}
+
+private[lagom] object MessageSerializationMetrics {
+  val Client = "service-client"
+  val Server = "service-server"
+
+  def serialize(metrics: Option[SerializationMetrics])(serialize: => ByteString): ByteString = metrics match {
+    case None => serialize
+    case Some(m) =>
+      val startTime = System.nanoTime
+      val bytes     = serialize
+      m.onSerialization(System.nanoTime - startTime, bytes.length)
+      bytes
+  }
+
+  def deserialize[Message](metrics: Option[SerializationMetrics], bytes: ByteString)(
+      deserialize: => Message
+  ): Message = metrics match {
+    case None => deserialize
+    case Some(m) =>
+      val startTime = System.nanoTime
+      val message   = deserialize
+      m.onDeserialization(System.nanoTime - startTime, bytes.length)
+      message
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.internal.client
+
+import java.net.URI
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+import java.util.function.{ Function => JFunction }
+
+import com.typesafe.config.Config
+import com.typesafe.config.ConfigUtil
+import org.slf4j.LoggerFactory
+
+/**
+ * Temporarily removes the instances of a service that fail, or respond too slowly, from the candidates calls to the
+ * service are sent to.
+ *
+ * An instance is ejected after `consecutive-failures` consecutive failed or slow calls, for `base-ejection-time`
+ * times the number of times it has been ejected, up to `max-ejection-time`. No more than `max-ejection-percent` of
+ * the candidates are ever ejected: the instances whose ejection ends first are kept when more would be.
+ */
+private[lagom] class OutlierDetector(
+    serviceName: String,
+    settings: OutlierDetector.Settings,
+    clock: () => Long = () => System.nanoTime()
+) {
+  import OutlierDetector._
+
+  private val logger = LoggerFactory.getLogger(this.getClass)
+
+  private val instances = new ConcurrentHashMap[URI, InstanceState]()
+  private val createState = new JFunction[URI, InstanceState] {
+    override def apply(uri: URI): InstanceState = new InstanceState
+  }
+  @volatile private var lastCandidates: collection.Seq[URI] = Nil
+
+  /**
+   * Forgets the state of the instances that aren't among the given candidates anymore, so that the instances that are
+   * gone aren't kept forever, and an address reused by a new instance isn't ejected for the failures of the old one.
+   */
+  def retain(candidates: collection.Seq[URI]): Unit =
+    if (instances.size > candidates.size || candidates != lastCandidates) {
+      instances.keySet.removeIf(uri => !candidates.contains(uri))
+      lastCandidates = candidates
+    }
+
+  /** The candidates that aren't ejected. */
+  def filter(candidates: collection.Seq[URI]): collection.Seq[URI] = {
+    val now     = clock()
+    val ejected = candidates.filter(uri => isEjected(uri, now))
+    if (ejected.isEmpty) candidates
+    else {
+      val maxEjected = candidates.size * settings.maxEjectionPercent / 100
+      val readmitted = ejected.sortBy(uri => instances.get(uri).ejectedUntil - now).take(ejected.size - maxEjected).toSet
+      candidates.filter(uri => readmitted(uri) || !ejected.contains(uri))
+    }
+  }
+
+  def isEjected(uri: URI): Boolean = isEjected(uri, clock())
+
+  private def isEjected(uri: URI, now: Long): Boolean = {
+    val state = instances.get(uri)
+    state != null && state.isEjected(now)
+  }
+
+  def onCallCompleted(uri: URI, elapsedNanos: Long, failed: Boolean): Unit = {
+    val state = instances.computeIfAbsent(uri, createState)
+    if (failed || (settings.slowCallThresholdNanos > 0 && elapsedNanos > settings.slowCallThresholdNanos)) {
+      state.synchronized {
+        state.consecutiveFailures += 1
+        val now = clock()
+        if (state.consecutiveFailures >= settings.consecutiveFailures && !state.isEjected(now)) {
+          state.ejections += 1
+          val ejectionTime = math.min(settings.baseEjectionTimeNanos * state.ejections, settings.maxEjectionTimeNanos)
+          state.ejectedUntil = now + ejectionTime
+          state.everEjected = true
+          state.consecutiveFailures = 0
+          logger.info(
+            s"Ejecting instance [$uri] of service [$serviceName] for [${ejectionTime / 1000000}ms] " +
+              s"after [${settings.consecutiveFailures}] consecutive failed or slow calls"
+          )
+        }
+      }
+    } else {
+      state.synchronized {
+        state.consecutiveFailures = 0
+        // Healthy instances are forgiven their previous ejections once their last ejection is long over
+        if (state.ejections > 0 && clock() - state.ejectedUntil > settings.maxEjectionTimeNanos) state.ejections = 0
+      }
+    }
+  }
+}
+
+private[lagom] object OutlierDetector {
+
+  final case class Settings(
+      enabled: Boolean,
+      consecutiveFailures: Int,
+      slowCallThresholdNanos: Long,
+      baseEjectionTimeNanos: Long,
+      maxEjectionTimeNanos: Long,
+      maxEjectionPercent: Int
+  ) {
+    require(consecutiveFailures > 0, s"consecutive-failures must be > 0, was [$consecutiveFailures]")
+    require(
+      maxEjectionPercent >= 0 && maxEjectionPercent <= 100,
+      s"max-ejection-percent must be in [0, 100], was [$maxEjectionPercent]"
+    )
+  }
+
+  object Settings {
+    def apply(config: Config): Settings = Settings(
+      enabled = config.getBoolean("enabled"),
+      consecutiveFailures = config.getInt("consecutive-failures"),
+      slowCallThresholdNanos = config.getDuration("slow-call-threshold", TimeUnit.NANOSECONDS),
+      baseEjectionTimeNanos = config.getDuration("base-ejection-time", TimeUnit.NANOSECONDS),
+      maxEjectionTimeNanos = config.getDuration("max-ejection-time", TimeUnit.NANOSECONDS),
+      maxEjectionPercent = config.getInt("max-ejection-percent")
+    )
+  }
+
+  private final class InstanceState {
+    var consecutiveFailures: Int = 0
+    var ejections: Int           = 0
+    @volatile var ejectedUntil: Long    = 0
+    @volatile var everEjected: Boolean = false
+
+    // Compares differences of nano times, which may overflow
+    def isEjected(now: Long): Boolean = everEjected && ejectedUntil - now > 0
+  }
+}
+
+/**
+ * The outlier detectors of each service, as configured in `lagom.client.outlier-detection`.
+ */
+private[lagom] class OutlierDetection(config: Config) {
+  private val services = config.getConfig("services")
+
+  private val detectors = new ConcurrentHashMap[String, Option[OutlierDetector]]
+  private val createDetector = new JFunction[String, Option[OutlierDetector]] {
+    override def apply(serviceName: String): Option[OutlierDetector] = {
+      val path = ConfigUtil.joinPath(serviceName)
+      val serviceConfig =
+        if (services.hasPath(path)) services.getConfig(path).withFallback(config)
+        else config
+      val settings = OutlierDetector.Settings(serviceConfig)
+      if (settings.enabled) Some(new OutlierDetector(serviceName, settings)) else None
+    }
+  }
+
+  /** The outlier detector of the given service, if outlier detection is enabled for it. */
+  def forService(serviceName: String): Option[OutlierDetector] =
+    detectors.computeIfAbsent(serviceName, createDetector)
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.internal.client
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.function.{ Function => JFunction }
+
+import com.typesafe.config.Config
+import com.typesafe.config.ConfigUtil
+
+/**
+ * Whether a client feature is enabled for a service, or for a call of a service, as configured by the `enabled`
+ * default of the feature, overridden for each service in `services`, and for each call in `calls` if the feature has
+ * it. The setting of each service and call is only read once.
+ */
+private[lagom] final class PerServiceSetting(config: Config) {
+  private val enabledByDefault = config.getBoolean("enabled")
+  private val services         = config.getConfig("services")
+  private val calls            = if (config.hasPath("calls")) Some(config.getConfig("calls")) else None
+
+  private val enabledServices = new ConcurrentHashMap[String, java.lang.Boolean]
+  private val isServiceEnabled = new JFunction[String, java.lang.Boolean] {
+    override def apply(serviceName: String): java.lang.Boolean = {
+      val path = ConfigUtil.joinPath(serviceName)
+      if (services.hasPath(path)) services.getBoolean(path) else enabledByDefault
+    }
+  }
+
+  private val enabledCalls = new ConcurrentHashMap[(String, String), java.lang.Boolean]
+  private val isCallEnabled = new JFunction[(String, String), java.lang.Boolean] {
+    override def apply(serviceAndCall: (String, String)): java.lang.Boolean = {
+      val (serviceName, callName) = serviceAndCall
+      val path                    = ConfigUtil.joinPath(serviceName, callName)
+      calls match {
+        case Some(c) if c.hasPath(path) => c.getBoolean(path)
+        case _                          => enabled(serviceName)
+      }
+    }
+  }
+
+  /** Whether the feature is enabled for the given service. */
+  def enabled(serviceName: String): Boolean = enabledServices.computeIfAbsent(serviceName, isServiceEnabled)
+
+  /** Whether the feature is enabled for the given call, falling back to the setting of its service. */
+  def enabled(serviceName: String, callName: String): Boolean =
+    enabledCalls.computeIfAbsent((serviceName, callName), isCallEnabled)
+}
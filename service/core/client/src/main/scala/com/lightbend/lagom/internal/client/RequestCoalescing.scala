@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.internal.client
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.function.{ Function => JFunction }
+
+import com.codahale.metrics.Counter
+import com.codahale.metrics.MetricRegistry
+import com.typesafe.config.Config
+
+import scala.concurrent.ExecutionContext
+import scala.concurrent.Future
+import scala.concurrent.Promise
+import scala.util.control.NonFatal
+
+/**
+ * Shares a single request, and its response, between the identical calls made while it is in progress.
+ *
+ * Calls are identical when they have the same [[RequestKey]]. Coalescing is enabled for the services listed in
+ * `lagom.client.request-coalescing`.
+ */
+private[lagom] class RequestCoalescing(config: Config, metrics: MetricRegistry)(implicit ec: ExecutionContext) {
+  private val setting = new PerServiceSetting(config)
+
+  private val inFlight = new ConcurrentHashMap[RequestKey, Future[Any]]
+
+  private val counters = new ConcurrentHashMap[String, Counter]
+  private val createCounter = new JFunction[String, Counter] {
+    override def apply(call: String): Counter = metrics.counter(MetricRegistry.name("ServiceCall", call, "coalesced"))
+  }
+
+  /** Whether the calls to the given service are coalesced. */
+  def enabled(serviceName: String): Boolean = setting.enabled(serviceName)
+
+  /**
+   * Makes the given call, unless an identical call is in progress, in which case its response is shared.
+   *
+   * @param callName The name of the call, that the coalesced calls are counted under.
+   */
+  def coalesce[T](callName: String, key: RequestKey)(call: => Future[T]): Future[T] = {
+    val promise  = Promise[Any]()
+    val existing = inFlight.putIfAbsent(key, promise.future)
+    if (existing != null) {
+      counters.computeIfAbsent(callName, createCounter).inc()
+      existing.asInstanceOf[Future[T]]
+    } else {
+      val result =
+        try call
+        catch { case NonFatal(e) => Future.failed(e) }
+      // The call is removed before its response is shared, so that no call made afterwards gets a stale response
+      result.onComplete { outcome =>
+        inFlight.remove(key, promise.future)
+        promise.complete(outcome)
+      }
+      promise.future.asInstanceOf[Future[T]]
+    }
+  }
+}
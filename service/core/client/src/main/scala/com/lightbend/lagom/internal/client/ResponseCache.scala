@@ -0,0 +1,244 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.internal.client
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+import java.util.function.{ Function => JFunction }
+import java.util.{ LinkedHashMap => JLinkedHashMap }
+import java.util.{ Map => JMap }
+
+import com.codahale.metrics.Counter
+import com.codahale.metrics.MetricRegistry
+import com.codahale.metrics.RatioGauge
+import com.lightbend.lagom.internal.api.HeaderUtils
+import com.typesafe.config.Config
+
+import scala.collection.JavaConverters._
+import scala.util.Try
+
+/**
+ * Caches the deserialized responses of strict GET calls, following the `Cache-Control`, `ETag` and `Vary` headers of
+ * the responses.
+ *
+ * Responses are cached by service and URL. A cached response is only used for the requests that have the same values
+ * as the request it answered for the headers listed in its `Vary` header, and responses that vary on `*` are never
+ * cached.
+ *
+ * A response is reused without any request for the `max-age` of its `Cache-Control` header. Once stale, or if it has
+ * `no-cache`, it is revalidated with an `If-None-Match` request when it has an `ETag`, and a `304 Not Modified`
+ * response makes it fresh again. Responses with `no-store` are never cached. Up to `max-entries` responses are kept,
+ * evicting the least recently used ones.
+ *
+ * The cache is shared by every caller of the service clients of the actor system, so it only stores the responses a
+ * shared cache may store: responses with `private` are never cached, nor are the responses to requests that carry one
+ * of the `credential-headers`, such as `Authorization`, unless they have `public` or `s-maxage`. The `s-maxage` of a
+ * response takes precedence over its `max-age`.
+ */
+private[lagom] class ResponseCache(
+    config: Config,
+    metrics: MetricRegistry,
+    clock: () => Long = () => System.nanoTime()
+) {
+  import ResponseCache._
+
+  private val setting    = new PerServiceSetting(config)
+  private val maxEntries = config.getInt("max-entries")
+  private val credentialHeaders: Seq[String] =
+    config.getStringList("credential-headers").asScala.map(HeaderUtils.normalize).toList
+
+  private val calls = new ConcurrentHashMap[String, CallMetrics]()
+  private val createCallMetrics = new JFunction[String, CallMetrics] {
+    override def apply(callName: String): CallMetrics = {
+      val callMetrics = new CallMetrics(
+        metrics.counter(MetricRegistry.name("ServiceCall", callName, "cacheHits")),
+        metrics.counter(MetricRegistry.name("ServiceCall", callName, "cacheMisses")),
+        metrics.counter(MetricRegistry.name("ServiceCall", callName, "cacheRevalidations")),
+        metrics.counter(MetricRegistry.name("ServiceCall", callName, "cacheEvictions"))
+      )
+      // The counters are shared by every cache using the registry, so is the gauge: it is only registered once
+      val hitRate = MetricRegistry.name("ServiceCall", callName, "cacheHitRate")
+      if (!metrics.getGauges.containsKey(hitRate)) {
+        try metrics.register(hitRate, new HitRate(callMetrics))
+        catch { case _: IllegalArgumentException => () } // registered concurrently
+      }
+      callMetrics
+    }
+  }
+
+  // An LRU map, always accessed while holding its lock
+  private val entries = new JLinkedHashMap[RequestKey, Entry](16, 0.75f, true) {
+    override def removeEldestEntry(eldest: JMap.Entry[RequestKey, Entry]): Boolean =
+      if (size() > maxEntries) {
+        callMetrics(eldest.getValue.callName).evictions.inc()
+        true
+      } else false
+  }
+
+  /** Whether the responses of the calls to the given service are cached. */
+  def enabled(serviceName: String): Boolean = setting.enabled(serviceName)
+
+  /**
+   * Looks up the cached response to the given request. Counts a hit for a fresh response, and a miss when there is no
+   * response, or a stale response that can't be revalidated.
+   */
+  def lookup(callName: String, key: RequestKey): Lookup = {
+    val now = clock()
+    val result = entries.synchronized {
+      entries.get(primaryKey(key)) match {
+        case null                         => Miss
+        case entry if !entry.matches(key) => Miss
+        case entry if entry.isFresh(now)  => Fresh(entry)
+        case entry if entry.etag.nonEmpty => Stale(entry)
+        case _ =>
+          entries.remove(primaryKey(key))
+          Miss
+      }
+    }
+    result match {
+      case Fresh(_) => callMetrics(callName).hits.inc()
+      case Stale(_) => ()
+      case Miss     => callMetrics(callName).misses.inc()
+    }
+    result
+  }
+
+  /**
+   * Caches the response to the given request, if its `Cache-Control` and `Vary` headers allow it.
+   */
+  def store(
+      callName: String,
+      key: RequestKey,
+      cacheControl: Option[String],
+      etag: Option[String],
+      responseHeader: Any,
+      response: Any,
+      vary: Option[String] = None
+  ): Unit = {
+    val varyNames  = vary.fold(Seq.empty[String])(parseVary)
+    val directives = cacheControl.fold(Map.empty[String, Option[String]])(parseCacheControl)
+    if (!varyNames.contains("*") && shareable(key, directives))
+      expiry(directives, etag).foreach { expiresAt =>
+        val varyHeaders = varyNames.map(name => name -> key.headers.getOrElse(name, Nil)).toMap
+        entries.synchronized {
+          entries.put(primaryKey(key), Entry(callName, responseHeader, response, etag, expiresAt, varyHeaders))
+        }
+      }
+  }
+
+  /**
+   * Makes the given stale response fresh again, after a `304 Not Modified` response with the given `Cache-Control`
+   * header. Counts a revalidation.
+   */
+  def revalidated(key: RequestKey, entry: Entry, cacheControl: Option[String]): Unit = {
+    callMetrics(entry.callName).revalidations.inc()
+    expiry(cacheControl.fold(Map.empty[String, Option[String]])(parseCacheControl), entry.etag) match {
+      case Some(expiresAt) => entries.synchronized(entries.put(primaryKey(key), entry.copy(expiresAt = expiresAt)))
+      case None            => entries.synchronized(entries.remove(primaryKey(key)))
+    }
+  }
+
+  /** Counts a miss for a stale response whose revalidation returned a new response. */
+  def changed(callName: String): Unit = callMetrics(callName).misses.inc()
+
+  private def callMetrics(callName: String): CallMetrics = calls.computeIfAbsent(callName, createCallMetrics)
+
+  /**
+   * Whether a response with the given `Cache-Control` directives to the given request may be stored by a shared cache,
+   * as it is not `private`, and it was not requested with credentials or is explicitly shareable.
+   */
+  private def shareable(key: RequestKey, directives: Map[String, Option[String]]): Boolean =
+    !directives.contains("private") && (
+      directives.contains("public") || directives.contains("s-maxage") ||
+      !credentialHeaders.exists(name => key.headers.get(name).exists(_.nonEmpty))
+    )
+
+  /** When a response with the given `Cache-Control` directives stops being fresh, if it can be cached at all. */
+  private def expiry(directives: Map[String, Option[String]], etag: Option[String]): Option[Long] = {
+    if (directives.contains("no-store")) None
+    else {
+      def seconds(directive: String) = directives.get(directive).flatten.flatMap(age => Try(age.toLong).toOption)
+      val maxAge =
+        if (directives.contains("no-cache")) 0L
+        else seconds("s-maxage").orElse(seconds("max-age")).getOrElse(0L)
+      // Responses without a max-age are only worth keeping if they can be revalidated
+      if (maxAge <= 0 && etag.isEmpty) None
+      else Some(clock() + TimeUnit.SECONDS.toNanos(math.max(0L, maxAge)))
+    }
+  }
+}
+
+private[lagom] object ResponseCache {
+
+  sealed trait Lookup
+
+  /** A response that can be used without any request. */
+  final case class Fresh(entry: Entry) extends Lookup
+
+  /** A response that can be used once revalidated with its `ETag`. */
+  final case class Stale(entry: Entry) extends Lookup
+
+  case object Miss extends Lookup
+
+  /**
+   * A cached response.
+   *
+   * @param varyHeaders The values of the headers listed in the `Vary` header of the response, by lower case name, in
+   *                    the request it answered.
+   */
+  final case class Entry(
+      callName: String,
+      responseHeader: Any,
+      response: Any,
+      etag: Option[String],
+      expiresAt: Long,
+      varyHeaders: Map[String, Seq[String]] = Map.empty
+  ) {
+    // Compares differences of nano times, which may overflow
+    def isFresh(now: Long): Boolean = expiresAt - now > 0
+
+    /** Whether the given request has the same values as the request it answered for the headers it varies on. */
+    def matches(key: RequestKey): Boolean =
+      varyHeaders.forall { case (name, values) => key.headers.getOrElse(name, Nil) == values }
+  }
+
+  // The responses are cached by service and URL, whatever the headers of the request
+  private def primaryKey(key: RequestKey): RequestKey = key.copy(headers = Map.empty)
+
+  private final class CallMetrics(
+      val hits: Counter,
+      val misses: Counter,
+      val revalidations: Counter,
+      val evictions: Counter
+  )
+
+  private final class HitRate(callMetrics: CallMetrics) extends RatioGauge {
+    override def getRatio: RatioGauge.Ratio = {
+      val served = callMetrics.hits.getCount + callMetrics.revalidations.getCount
+      RatioGauge.Ratio.of(served.toDouble, (served + callMetrics.misses.getCount).toDouble)
+    }
+  }
+
+  /** The lower case names of the headers listed in a `Vary` header. */
+  def parseVary(header: String): Seq[String] =
+    header.split(',').iterator.map(name => HeaderUtils.normalize(name.trim)).filter(_.nonEmpty).toList
+
+  /** The directives of a `Cache-Control` header, by lower case name, with their value if any. */
+  def parseCacheControl(header: String): Map[String, Option[String]] =
+    header
+      .split(',')
+      .iterator
+      .map(_.trim)
+      .filter(_.nonEmpty)
+      .map { directive =>
+        directive.indexOf('=') match {
+          case -1 => directive.toLowerCase -> None
+          case i =>
+            val value = directive.substring(i + 1).trim.stripPrefix("\"").stripSuffix("\"")
+            directive.substring(0, i).trim.toLowerCase -> Some(value)
+        }
+      }
+      .toMap
+}
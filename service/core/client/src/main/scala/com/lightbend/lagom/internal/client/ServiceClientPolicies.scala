@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.internal.client
+
+import akka.actor.ActorSystem
+import akka.actor.ExtendedActorSystem
+import akka.actor.Extension
+import akka.actor.ExtensionId
+import akka.actor.ExtensionIdProvider
+import com.codahale.metrics.MetricRegistry
+import com.codahale.metrics.SharedMetricRegistries
+import com.lightbend.lagom.internal.metrics.SerializationMetricsExtension
+
+/**
+ * Holds the state that the service clients of an actor system share across calls, such as the latencies and budget
+ * used to hedge calls, the calls in progress that identical calls can share, the cached responses, the services
+ * bound in the same actor system, the HTTP/2 connections to the instances of services, the compression and
+ * batching of the streamed messages, or the serialization metrics.
+ *
+ * The service call invokers are created for each call, and are only given a materializer, so this Akka extension
+ * is how they reach that state.
+ */
+private[lagom] object ServiceClientPolicies
+    extends ExtensionId[ServiceClientPolicies]
+    with ExtensionIdProvider {
+  override def get(system: ActorSystem): ServiceClientPolicies = super.get(system)
+
+  override def lookup = ServiceClientPolicies
+
+  override def createExtension(system: ExtendedActorSystem): ServiceClientPolicies =
+    new ServiceClientPolicies(system)
+
+  /**
+   * The name of the shared dropwizard metric registry the service client metrics are registered in, so that they can
+   * be exported by any dropwizard reporter.
+   */
+  val MetricRegistryName = "lagom.client"
+}
+
+private[lagom] class ServiceClientPolicies(system: ExtendedActorSystem) extends Extension {
+  private val config = system.settings.config.getConfig("lagom.client")
+
+  val metrics: MetricRegistry = SharedMetricRegistries.getOrCreate(ServiceClientPolicies.MetricRegistryName)
+
+  val hedging: Hedger = new Hedger(Hedger.Settings(config.getConfig("hedging")), metrics, system.scheduler)(
+    system.dispatcher
+  )
+
+  val requestCoalescing: RequestCoalescing =
+    new RequestCoalescing(config.getConfig("request-coalescing"), metrics)(system.dispatcher)
+
+  val responseCache: ResponseCache = new ResponseCache(config.getConfig("response-cache"), metrics)
+
+  val localServices: LocalServices = new LocalServices(config.getConfig("local-transport"))
+
+  val http2: Http2Transport = new Http2Transport(config.getConfig("http2"), system)
+
+  val framedStreaming: FramedStreamingSupport = new FramedStreamingSupport(config.getConfig("framed-streaming"))
+
+  /** The calls the client asks the services to compress the streamed messages of, see [[MessageDeflate]]. */
+  val messageDeflate: PerServiceSetting = new PerServiceSetting(config.getConfig("message-deflate"))
+
+  /** The calls the client asks the services to batch the streamed messages of, see [[MessageBatching]]. */
+  val messageBatching: PerServiceSetting = new PerServiceSetting(config.getConfig("message-batching"))
+
+  val serializationMetrics: MessageSerializationMetrics =
+    new MessageSerializationMetrics(SerializationMetricsExtension(system).provider)
+}
+
+/**
+ * Identifies identical requests: to the same service, with the same method, path and query, and headers.
+ */
+private[lagom] final case class RequestKey(
+    serviceName: String,
+    method: String,
+    url: String,
+    headers: Map[String, Seq[String]]
+)
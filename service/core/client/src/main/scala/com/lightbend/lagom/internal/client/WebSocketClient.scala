@@ -7,6 +7,7 @@ package com.lightbend.lagom.internal.client
 import java.net.URI
 import java.util.concurrent.TimeUnit
 import java.util.concurrent.atomic.AtomicReference
+import java.util.zip.DataFormatException
 
 import akka.NotUsed
 import akka.stream.Attributes
@@ -14,18 +15,27 @@ import akka.stream.FlowShape
 import akka.stream.Inlet
 import akka.stream.Outlet
 import akka.stream.scaladsl._
+import akka.stream.scaladsl.Framing.FramingException
 import akka.stream.stage._
 import akka.util.ByteString
 import com.lightbend.lagom.internal.NettyFutureConverters._
 import com.lightbend.lagom.internal.api.HeaderUtils
+import com.lightbend.lagom.internal.api.Ndjson
 import com.lightbend.lagom.internal.api.transport.LagomServiceApiBridge
 import com.typesafe.config.Config
 import com.typesafe.netty.HandlerPublisher
 import com.typesafe.netty.HandlerSubscriber
 import io.netty.bootstrap.Bootstrap
+import io.netty.buffer.ByteBufAllocator
 import io.netty.buffer.ByteBufHolder
+import io.netty.buffer.ByteBufUtil
+import io.netty.buffer.PooledByteBufAllocator
 import io.netty.buffer.Unpooled
+import io.netty.buffer.UnpooledByteBufAllocator
 import io.netty.channel._
+import io.netty.channel.epoll.Epoll
+import io.netty.channel.epoll.EpollEventLoopGroup
+import io.netty.channel.epoll.EpollSocketChannel
 import io.netty.channel.group.DefaultChannelGroup
 import io.netty.channel.nio.NioEventLoopGroup
 import io.netty.channel.socket.SocketChannel
@@ -61,8 +71,9 @@ private[lagom] abstract class WebSocketClient(
   val channelGroup = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE)
   val client = new Bootstrap()
     .group(eventLoop)
-    .channel(classOf[NioSocketChannel])
+    .channel(WebSocketClient.channelClass(eventLoop))
     .option(ChannelOption.AUTO_READ, java.lang.Boolean.FALSE)
+    .option(ChannelOption.ALLOCATOR, config.bufferAllocator)
     .handler(new ChannelInitializer[SocketChannel] {
       def initChannel(ch: SocketChannel) = {
         channelGroup.add(ch)
@@ -72,12 +83,17 @@ private[lagom] abstract class WebSocketClient(
 
   /**
    * Connect to the given URI
+   *
+   * @param messageDeflate Whether to ask the service to compress the messages it sends, see [[MessageDeflate]].
+   * @param messageBatching Whether to ask the service to batch the messages it sends, see [[MessageBatching]].
    */
   def connect(
       exceptionSerializer: ExceptionSerializer,
       version: WebSocketVersion,
       requestHeader: RequestHeader,
-      outgoing: Source[ByteString, NotUsed]
+      outgoing: Source[ByteString, NotUsed],
+      messageDeflate: Boolean = false,
+      messageBatching: Boolean = false
   ): Future[(ResponseHeader, Source[ByteString, NotUsed])] = {
     val normalized = requestHeaderUri(requestHeader).normalize()
     val tgt = if (normalized.getPath == null || normalized.getPath.trim().isEmpty) {
@@ -88,7 +104,10 @@ private[lagom] abstract class WebSocketClient(
     messageProtocolToContentTypeHeader(messageHeaderProtocol(requestHeader)).foreach { ct =>
       headers.add(HeaderNames.CONTENT_TYPE, ct)
     }
+    // The handshake response doesn't tell the negotiated protocol, so the messages are read in the default protocol of
+    // the response serializer, and the service mustn't be asked for another format instead
     val accept = requestHeaderAcceptedResponseProtocols(requestHeader)
+      .filter(accept => WebSocketClient.acceptedOverWebSocket(messageProtocolContentType(accept)))
       .flatMap { accept =>
         messageProtocolToContentTypeHeader(accept)
       }
@@ -102,6 +121,12 @@ private[lagom] abstract class WebSocketClient(
           headers.add(value._1, value._2)
         }
     }
+    if (messageDeflate) {
+      headers.add(MessageDeflate.RequestHeader, MessageDeflate.Deflate)
+    }
+    if (messageBatching) {
+      headers.add(MessageBatching.RequestHeader, MessageBatching.LengthDelimited)
+    }
 
     val channelFuture = client.connect(tgt.getHost, tgt.getPort)
     for {
@@ -126,7 +151,9 @@ private[lagom] abstract class WebSocketClient(
             handshaker,
             outgoing,
             incomingPromise,
-            messageHeaderProtocol(requestHeader)
+            messageHeaderProtocol(requestHeader),
+            messageDeflate,
+            messageBatching
           )
         )
       _ = channel.read()
@@ -143,7 +170,9 @@ private[lagom] abstract class WebSocketClient(
       handshaker: WebSocketClientHandshaker,
       outgoing: Source[ByteString, NotUsed],
       incomingPromise: Promise[(ResponseHeader, Source[ByteString, NotUsed])],
-      requestProtocol: MessageProtocol
+      requestProtocol: MessageProtocol,
+      messageDeflate: Boolean,
+      messageBatching: Boolean
   ) extends ChannelDuplexHandler {
     private val NormalClosure = 1000
 
@@ -157,6 +186,10 @@ private[lagom] abstract class WebSocketClient(
 
     private var state: State                              = Handshake
     private var responseProtocol: Option[MessageProtocol] = None
+    // Set once the server confirmed that it compresses the messages it sends
+    private var decompressor: Option[MessageDeflate.Decompressor] = None
+    // Set once the server confirmed that it batches the messages it sends
+    private var batched = false
 
     override def channelRead(ctx: ChannelHandlerContext, msg: Object) = {
       msg match {
@@ -316,6 +349,11 @@ private[lagom] abstract class WebSocketClient(
           ctx.pipeline().remove("websocket-publisher")
 
         case ping: PingWebSocketFrame if state == Open =>
+          if (messageDeflate && decompressor.isEmpty && isConfirmation(ping, MessageDeflate.Confirmation)) {
+            decompressor = Some(new MessageDeflate.Decompressor(config.maxFrameLength))
+          } else if (messageBatching && !batched && isConfirmation(ping, MessageBatching.Confirmation)) {
+            batched = true
+          }
           // ping, send pong
           ctx.writeAndFlush(new PongWebSocketFrame(ping.content()))
 
@@ -333,7 +371,17 @@ private[lagom] abstract class WebSocketClient(
           val message = msg.asInstanceOf[WebSocketFrame]
           val bytes   = toByteString(message)
           ReferenceCountUtil.release(message)
-          ctx.fireChannelRead(bytes)
+          try {
+            val inflated = decompressor match {
+              case Some(inflater) => inflater.decompress(bytes)
+              case None           => bytes
+            }
+            if (batched) MessageBatching.decode(inflated).foreach(ctx.fireChannelRead)
+            else ctx.fireChannelRead(inflated)
+          } catch {
+            case e @ (_: DataFormatException | _: FramingException) =>
+              protocolError(ctx, newPolicyViolation("InvalidMessage", e.getMessage))
+          }
 
         case _ =>
           ReferenceCountUtil.release(msg)
@@ -344,14 +392,15 @@ private[lagom] abstract class WebSocketClient(
     override def write(ctx: ChannelHandlerContext, msg: scala.Any, promise: ChannelPromise) = {
       msg match {
         case bytes: ByteString if state == Open =>
+          // The bytes are wrapped rather than copied, the frame encoder copies them anyway to mask them
           val frame = if (messageProtocolIsUtf8(requestProtocol)) {
             // If we're speaking UTF-8, we can place the bytes in a TextMessage as is
-            new TextWebSocketFrame(Unpooled.copiedBuffer(bytes.asByteBuffers.toArray: _*))
+            new TextWebSocketFrame(Unpooled.wrappedBuffer(bytes.asByteBuffers.toArray: _*))
           } else if (messageProtocolIsText(requestProtocol)) {
             // Otherwise, if it's text, we need to decode as a String
             new TextWebSocketFrame(bytes.decodeString(messageProtocolCharset(requestProtocol).getOrElse("utf-8")))
           } else {
-            new BinaryWebSocketFrame(Unpooled.copiedBuffer(bytes.asByteBuffers.toArray: _*))
+            new BinaryWebSocketFrame(Unpooled.wrappedBuffer(bytes.asByteBuffers.toArray: _*))
           }
           ctx.write(frame, promise)
 
@@ -370,11 +419,18 @@ private[lagom] abstract class WebSocketClient(
       }
     }
 
+    // The content is copied once, straight into the array of the ByteString, as the buffer may be pooled and reused
+    // once released
     private def toByteString(data: ByteBufHolder) = {
-      val builder = ByteString.newBuilder
-      data.content().readBytes(builder.asOutputStream, data.content().readableBytes())
-      val bytes = builder.result()
-      bytes
+      val content = data.content()
+      val bytes   = new Array[Byte](content.readableBytes())
+      content.readBytes(bytes)
+      ByteString.fromArrayUnsafe(bytes)
+    }
+
+    private def isConfirmation(ping: PingWebSocketFrame, confirmation: ByteString): Boolean = {
+      val content = ping.content()
+      content.readableBytes() == confirmation.length && ByteBufUtil.getBytes(content).sameElements(confirmation)
     }
 
     private def protocolError(ctx: ChannelHandlerContext, error: Throwable) = {
@@ -403,6 +459,8 @@ private[lagom] abstract class WebSocketClient(
       if (!incomingPromise.isCompleted) {
         incomingPromise.failure(new IllegalStateException("WebSocket connection closed before handshake complete"))
       }
+      decompressor.foreach(_.close())
+      decompressor = None
     }
 
     private def clientInitiatedClose(ctx: ChannelHandlerContext): Unit = {
@@ -433,8 +491,25 @@ private[lagom] abstract class WebSocketClient(
 }
 
 private[lagom] object WebSocketClient {
-  private[lagom] def createEventLoopGroup(lifecycle: ApplicationLifecycle): EventLoopGroup = {
-    val eventLoop = new NioEventLoopGroup()
+
+  /**
+   * The formats that the serializers of JSON messages only negotiate for strict and framed streamed calls: CBOR, Smile
+   * and newline delimited JSON.
+   */
+  private val HttpOnlyContentTypes = Set("application/cbor", "application/x-jackson-smile", Ndjson.ContentType)
+
+  /** Whether a response protocol of the given content type may be asked for in the Accept header of a WebSocket. */
+  private[lagom] def acceptedOverWebSocket(contentType: Option[String]): Boolean =
+    !contentType.exists(HttpOnlyContentTypes)
+
+  /**
+   * Creates the event loop group configured in `lagom.client.websocket`, shut down when the application stops.
+   */
+  private[lagom] def createEventLoopGroup(
+      config: WebSocketClientConfig,
+      lifecycle: ApplicationLifecycle
+  ): EventLoopGroup = {
+    val eventLoop = newEventLoopGroup(config)
     lifecycle.addStopHook { () =>
       // The first argument here is a quiet period, between which events will be rejected, and shutdown actually starts.
       // We want no quiet period, if we want to shutdown, we want to shutdown.
@@ -442,6 +517,33 @@ private[lagom] object WebSocketClient {
     }
     eventLoop
   }
+
+  /**
+   * Creates the event loop group configured in `lagom.client.websocket`: a native epoll one if requested and available,
+   * a NIO one otherwise. The caller is responsible for shutting it down.
+   */
+  private[lagom] def newEventLoopGroup(config: WebSocketClientConfig): EventLoopGroup =
+    if (useEpoll(config.transport, Epoll.isAvailable)) new EpollEventLoopGroup(config.eventLoopThreads)
+    else new NioEventLoopGroup(config.eventLoopThreads)
+
+  /** Whether the given transport uses epoll, given whether the native epoll transport is available. */
+  private[client] def useEpoll(transport: String, epollAvailable: Boolean): Boolean = transport match {
+    case "epoll" =>
+      if (!epollAvailable)
+        throw new IllegalStateException(
+          "lagom.client.websocket.transport is epoll, but the native epoll transport isn't available",
+          Epoll.unavailabilityCause()
+        )
+      true
+    case "auto" => epollAvailable
+    case _      => false
+  }
+
+  /** The channels matching the given event loop group. */
+  private[lagom] def channelClass(eventLoop: EventLoopGroup): Class[_ <: SocketChannel] = eventLoop match {
+    case _: EpollEventLoopGroup => classOf[EpollSocketChannel]
+    case _                      => classOf[NioSocketChannel]
+  }
 }
 
 private[lagom] class WebSocketException(s: String, th: Throwable) extends java.io.IOException(s, th) {
@@ -450,6 +552,14 @@ private[lagom] class WebSocketException(s: String, th: Throwable) extends java.i
 
 private[lagom] sealed trait WebSocketClientConfig {
   def maxFrameLength: Int
+
+  /** The event loop transport: nio, epoll, or auto to use epoll when it is available. */
+  def transport: String
+
+  /** The number of event loop threads, 0 for the Netty default of twice the number of cores. */
+  def eventLoopThreads: Int
+
+  def bufferAllocator: ByteBufAllocator
 }
 
 private[lagom] object WebSocketClientConfig {
@@ -458,5 +568,24 @@ private[lagom] object WebSocketClientConfig {
 
   class WebSocketClientConfigImpl(conf: Config) extends WebSocketClientConfig {
     val maxFrameLength = math.min(Int.MaxValue.toLong, conf.getBytes("frame.maxLength")).toInt
+
+    val transport = conf.getString("transport") match {
+      case t @ ("nio" | "epoll" | "auto") => t
+      case other =>
+        throw new IllegalArgumentException(
+          s"Unknown lagom.client.websocket.transport [$other], expected one of [nio, epoll, auto]"
+        )
+    }
+
+    val eventLoopThreads = conf.getInt("event-loop-threads")
+
+    val bufferAllocator = conf.getString("buffer-allocator") match {
+      case "pooled"   => PooledByteBufAllocator.DEFAULT
+      case "unpooled" => UnpooledByteBufAllocator.DEFAULT
+      case other =>
+        throw new IllegalArgumentException(
+          s"Unknown lagom.client.websocket.buffer-allocator [$other], expected one of [pooled, unpooled]"
+        )
+    }
   }
 }
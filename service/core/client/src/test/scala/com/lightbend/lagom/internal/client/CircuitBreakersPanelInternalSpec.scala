@@ -4,8 +4,13 @@
 
 package com.lightbend.lagom.internal.client
 
+import java.net.URI
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.atomic.AtomicLong
+
 import akka.actor.ActorSystem
 import akka.pattern.CircuitBreakerOpenException
+import com.lightbend.lagom.internal.spi.CircuitBreakerMetrics
 import com.lightbend.lagom.internal.spi.CircuitBreakerMetricsProvider
 import com.typesafe.config.ConfigFactory
 import org.scalatest.concurrent.Futures
@@ -13,8 +18,10 @@ import org.scalatest.AsyncFlatSpec
 import org.scalatest.BeforeAndAfterAll
 import org.scalatest.Matchers
 
+import scala.collection.JavaConverters._
 import scala.concurrent.Await
 import scala.concurrent.Future
+import scala.concurrent.Promise
 import scala.concurrent.duration._
 
 class CircuitBreakersPanelInternalSpec extends AsyncFlatSpec with Matchers with BeforeAndAfterAll with Futures {
@@ -65,6 +72,97 @@ class CircuitBreakersPanelInternalSpec extends AsyncFlatSpec with Matchers with
     }
   }
 
+  it should "keep the circuit of the other instances closed with per-instance circuit breakers" in {
+    val config = ConfigFactory
+      .parseString("lagom.circuit-breaker.cb.per-instance = on")
+      .withFallback(configWithWhiteList())
+    val panel = new CircuitBreakersPanelInternal(
+      actorSystem,
+      new CircuitBreakerConfig(config),
+      new CircuitBreakerMetricsProviderImpl(actorSystem)
+    )
+    val failing = URI.create("http://10.0.0.1:9000")
+    val healthy = URI.create("http://10.0.0.2:9000")
+
+    for {
+      _ <- panel.withCircuitBreaker("cb", failing)(Future.failed(new FakeException("boo"))).recover { case _ => "" }
+      open <- panel.withCircuitBreaker("cb", failing)(Future.successful("123")).failed
+      x    <- panel.withCircuitBreaker("cb", healthy)(Future.successful("456"))
+    } yield {
+      open shouldBe a[CircuitBreakerOpenException]
+      x should be("456")
+    }
+  }
+
+  it should "report the calls guarded by a circuit breaker to the instance selector" in {
+    val panel     = panelWith(Array.empty)
+    val instance  = URI.create("http://10.0.0.1:9000")
+    val completed = Promise[(URI, Long)]()
+    val balancer = new LoadBalancer {
+      override protected def decayNanos: Long                                  = 10.seconds.toNanos
+      override protected def selectAmong(candidates: collection.Seq[URI]): URI = candidates.head
+      override def onCallCompleted(uri: URI, elapsedNanos: Long): Unit = {
+        super.onCallCompleted(uri, elapsedNanos)
+        completed.trySuccess((uri, elapsedNanos))
+      }
+    }
+    val selector = new InstanceSelector(Some(balancer), None)
+
+    for {
+      result                   <- panel.withCircuitBreaker("cb", instance, Some(selector))(Future.successful("123"))
+      (reported, elapsedNanos) <- completed.future
+    } yield {
+      result should be("123")
+      reported should be(instance)
+      elapsedNanos should be >= 0L
+    }
+  }
+
+  it should "evict the per-instance circuit breakers that are idle and stop their metrics" in {
+    val config = ConfigFactory
+      .parseString("""
+                     |lagom.circuit-breaker.cb.per-instance = on
+                     |lagom.circuit-breaker.default.per-instance-idle-timeout = 10m
+                     |""".stripMargin)
+      .withFallback(configWithWhiteList())
+    val stopped = new ConcurrentLinkedQueue[String]
+    val metricsProvider = new CircuitBreakerMetricsProviderImpl(actorSystem) {
+      override def start(breakerId: String): CircuitBreakerMetrics = {
+        val metrics = super.start(breakerId)
+        new CircuitBreakerMetrics {
+          override def onOpen(): Unit                                 = metrics.onOpen()
+          override def onClose(): Unit                                = metrics.onClose()
+          override def onHalfOpen(): Unit                             = metrics.onHalfOpen()
+          override def onCallSuccess(elapsedNanos: Long): Unit        = metrics.onCallSuccess(elapsedNanos)
+          override def onCallFailure(elapsedNanos: Long): Unit        = metrics.onCallFailure(elapsedNanos)
+          override def onCallTimeoutFailure(elapsedNanos: Long): Unit = metrics.onCallTimeoutFailure(elapsedNanos)
+          override def onCallBreakerOpenFailure(): Unit               = metrics.onCallBreakerOpenFailure()
+          override def stop(): Unit = {
+            stopped.add(breakerId)
+            metrics.stop()
+          }
+        }
+      }
+    }
+    val now   = new AtomicLong(0L)
+    val panel =
+      new CircuitBreakersPanelInternal(actorSystem, new CircuitBreakerConfig(config), metricsProvider, () => now.get)
+    val gone  = URI.create("http://10.0.0.1:9000")
+    val alive = URI.create("http://10.0.0.2:9000")
+
+    for {
+      _ <- panel.withCircuitBreaker("cb", gone)(Future.successful("123"))
+      _ = now.set(6.minutes.toNanos)
+      _ <- panel.withCircuitBreaker("cb", alive)(Future.successful("123"))
+      _ = now.set(12.minutes.toNanos)
+      x <- panel.withCircuitBreaker("cb", alive)(Future.successful("456"))
+    } yield {
+      x should be("456")
+      stopped.asScala.toList should be(List("cb@10.0.0.1:9000"))
+      panel.instanceBreakerCount should be(1)
+    }
+  }
+
   // ---------------------------------------------------------
 
   private def successfulCall(panel: CircuitBreakersPanelInternal, mockedResponse: String) = {
@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.internal.client
+
+import java.util.concurrent.atomic.AtomicInteger
+
+import akka.actor.ActorSystem
+import akka.pattern.CircuitBreakerOpenException
+import com.lightbend.lagom.internal.spi.CircuitBreakerMetrics
+import org.scalatest.AsyncFlatSpec
+import org.scalatest.BeforeAndAfterAll
+import org.scalatest.Matchers
+
+import scala.concurrent.Await
+import scala.concurrent.Future
+import scala.concurrent.Promise
+import scala.concurrent.duration._
+
+class ConcurrencyLimiterSpec extends AsyncFlatSpec with Matchers with BeforeAndAfterAll {
+  val actorSystem = ActorSystem("ConcurrencyLimiterSpec")
+
+  override def afterAll() = {
+    Await.ready(actorSystem.terminate(), 10.seconds)
+  }
+
+  private class RecordingMetrics extends CircuitBreakerMetrics {
+    val limit      = new AtomicInteger(0)
+    val inFlight   = new AtomicInteger(0)
+    val rejections = new AtomicInteger(0)
+
+    override def onConcurrencyLimitChanged(l: Int): Unit = limit.set(l)
+    override def onInFlightChanged(n: Int): Unit         = inFlight.set(n)
+    override def onCallConcurrencyLimitRejection(): Unit = rejections.incrementAndGet()
+
+    override def onOpen(): Unit                                 = ()
+    override def onClose(): Unit                                = ()
+    override def onHalfOpen(): Unit                             = ()
+    override def onCallSuccess(elapsedNanos: Long): Unit        = ()
+    override def onCallFailure(elapsedNanos: Long): Unit        = ()
+    override def onCallTimeoutFailure(elapsedNanos: Long): Unit = ()
+    override def onCallBreakerOpenFailure(): Unit               = ()
+    override def stop(): Unit                                   = ()
+  }
+
+  private def limiter(metrics: CircuitBreakerMetrics, maxQueueSize: Int) =
+    new ConcurrencyLimiter(
+      "cb",
+      ConcurrencyLimiter.Settings(
+        initialLimit = 1,
+        minLimit = 1,
+        maxLimit = 10,
+        maxQueueSize = maxQueueSize,
+        queueTimeout = 3.seconds
+      ),
+      new ConcurrencyLimiter.Aimd(
+        minLimit = 1,
+        maxLimit = 10,
+        backoffRatio = 0.5,
+        latencyThresholdNanos = 1.minute.toNanos
+      ),
+      metrics,
+      actorSystem.scheduler
+    )
+
+  behavior.of("ConcurrencyLimiter")
+
+  it should "reject calls over the limit when queueing is disabled" in {
+    val metrics = new RecordingMetrics
+    val limited = limiter(metrics, maxQueueSize = 0)
+    val pending = Promise[String]()
+
+    val first = limited(pending.future)
+    metrics.inFlight.get shouldBe 1
+    recoverToSucceededIf[ConcurrencyLimitExceededException](limited(Future.successful("second"))).flatMap { _ =>
+      metrics.rejections.get shouldBe 1
+      pending.success("first")
+      first.map(_ shouldBe "first")
+    }
+  }
+
+  it should "run queued calls once a call completes" in {
+    val metrics = new RecordingMetrics
+    val limited = limiter(metrics, maxQueueSize = 1)
+    val pending = Promise[String]()
+    val started = new AtomicInteger(0)
+
+    val first  = limited(pending.future)
+    val second = limited { started.incrementAndGet(); Future.successful("second") }
+    started.get shouldBe 0
+    pending.success("first")
+    for {
+      _      <- first
+      result <- second
+    } yield {
+      result shouldBe "second"
+      started.get shouldBe 1
+      metrics.rejections.get shouldBe 0
+    }
+  }
+
+  it should "run as many queued calls as the limit allows once it grows" in {
+    val metrics     = new RecordingMetrics
+    val limited     = limiter(metrics, maxQueueSize = 2)
+    val pending     = Promise[String]()
+    val blocked     = Promise[String]()
+    val started     = new AtomicInteger(0)
+    val bothStarted = Promise[Unit]()
+    def queued = limited {
+      if (started.incrementAndGet() == 2) bothStarted.success(())
+      blocked.future
+    }
+
+    val first  = limited(pending.future)
+    val second = queued
+    val third  = queued
+    started.get shouldBe 0
+    // The limit grows from 1 to 2 once the first call completes in time, which frees two slots
+    pending.success("first")
+    for {
+      _ <- first
+      _ <- Future.firstCompletedOf(Seq(bothStarted.future, second.map(_ => ()), third.map(_ => ())))
+    } yield {
+      started.get shouldBe 2
+      metrics.limit.get shouldBe 2
+      metrics.inFlight.get shouldBe 2
+      blocked.success("done")
+      succeed
+    }
+  }
+
+  it should "reject calls as if the circuit breaker were open" in {
+    val limited = limiter(new RecordingMetrics, maxQueueSize = 0)
+    val pending = Promise[String]()
+
+    limited(pending.future)
+    recoverToSucceededIf[CircuitBreakerOpenException](limited(Future.successful("second"))).map { result =>
+      pending.success("first")
+      result
+    }
+  }
+
+  behavior.of("The AIMD algorithm")
+
+  it should "increase the limit while calls complete in time and decrease it when they are dropped" in {
+    val aimd =
+      new ConcurrencyLimiter.Aimd(minLimit = 1, maxLimit = 100, backoffRatio = 0.5, latencyThresholdNanos = 100)
+    val grown  = (1 to 11).foldLeft(10)((limit, _) => aimd.update(limit, limit, 10, dropped = false))
+    val shrunk = aimd.update(grown, grown, 10, dropped = true)
+    grown shouldBe 11
+    shrunk shouldBe 5
+    aimd.update(shrunk, shrunk, 1000, dropped = false) shouldBe 2
+  }
+
+  behavior.of("The gradient algorithm")
+
+  it should "decrease the limit when the latency increases" in {
+    val gradient = new ConcurrencyLimiter.Gradient(
+      minLimit = 1,
+      maxLimit = 100,
+      initialLimit = 20,
+      tolerance = 1.5,
+      smoothing = 1.0,
+      longWindow = 100
+    )
+    val steady = (1 to 50).foldLeft(20)((limit, _) => gradient.update(limit, limit, 10, dropped = false))
+    val slow   = (1 to 20).foldLeft(steady)((limit, _) => gradient.update(limit, limit, 1000, dropped = false))
+    slow should be < steady
+  }
+}
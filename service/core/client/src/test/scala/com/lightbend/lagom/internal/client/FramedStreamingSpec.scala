@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.internal.client
+
+import akka.actor.ActorSystem
+import akka.stream.scaladsl.Framing.FramingException
+import akka.stream.scaladsl.Sink
+import akka.stream.scaladsl.Source
+import akka.util.ByteString
+import com.typesafe.config.ConfigFactory
+import org.scalatest.AsyncFlatSpec
+import org.scalatest.BeforeAndAfterAll
+import org.scalatest.Matchers
+
+import scala.concurrent.Await
+import scala.concurrent.duration._
+
+class FramedStreamingSpec extends AsyncFlatSpec with Matchers with BeforeAndAfterAll {
+  implicit val actorSystem = ActorSystem("FramedStreamingSpec")
+
+  override def afterAll() = {
+    Await.ready(actorSystem.terminate(), 10.seconds)
+  }
+
+  private def decode(bytes: ByteString, chunkSize: Int, maxFrameLength: Int = 1024) =
+    Source(bytes.grouped(chunkSize).toList)
+      .via(FramedStreaming.decoder(maxFrameLength))
+      .runWith(Sink.seq)
+
+  behavior.of("FramedStreaming")
+
+  it should "decode the message and error frames it encodes, however the bytes are chunked" in {
+    val bytes =
+      FramedStreaming.messageFrame(ByteString("first")) ++
+        FramedStreaming.messageFrame(ByteString.empty) ++
+        FramedStreaming.errorFrame(503, ByteString("""{"name":"Unavailable"}"""))
+    decode(bytes, chunkSize = 3).map { frames =>
+      frames shouldBe Seq(
+        FramedStreaming.MessageFrame(ByteString("first")),
+        FramedStreaming.MessageFrame(ByteString.empty),
+        FramedStreaming.ErrorFrame(503, ByteString("""{"name":"Unavailable"}"""))
+      )
+    }
+  }
+
+  it should "fail on frames longer than the maximum length" in {
+    recoverToSucceededIf[FramingException](
+      decode(FramedStreaming.messageFrame(ByteString("x" * 100)), chunkSize = 16, maxFrameLength = 10)
+    )
+  }
+
+  behavior.of("FramedStreamingSupport")
+
+  private def support(nanoTime: () => Long) =
+    new FramedStreamingSupport(
+      ConfigFactory
+        .parseString("unsupported-retry-after = 1s")
+        .withFallback(ConfigFactory.defaultReference().getConfig("lagom.client.framed-streaming")),
+      nanoTime
+    )
+
+  it should "only stop asking the services that don't support the framed transport" in {
+    val s = support(() => 0L)
+    s.unsupported("old-service")
+    s.supported("old-service") shouldBe false
+    s.supported("new-service") shouldBe true
+  }
+
+  it should "ask the services that didn't support the framed transport again after a while" in {
+    var now = 0L
+    val s   = support(() => now)
+    s.unsupported("old-service")
+    now = 999.millis.toNanos
+    s.supported("old-service") shouldBe false
+    now = 1.second.toNanos
+    s.supported("old-service") shouldBe true
+    now = 2.seconds.toNanos
+    s.supported("old-service") shouldBe true
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.internal.client
+
+import java.util.concurrent.atomic.AtomicInteger
+
+import akka.actor.ActorSystem
+import com.codahale.metrics.MetricRegistry
+import com.lightbend.lagom.internal.api.HedgingPolicy
+import org.scalatest.AsyncFlatSpec
+import org.scalatest.BeforeAndAfterAll
+import org.scalatest.Matchers
+
+import scala.concurrent.Await
+import scala.concurrent.Future
+import scala.concurrent.Promise
+import scala.concurrent.duration._
+
+class HedgerSpec extends AsyncFlatSpec with Matchers with BeforeAndAfterAll {
+  val actorSystem = ActorSystem("HedgerSpec")
+
+  override def afterAll() = {
+    Await.ready(actorSystem.terminate(), 10.seconds)
+  }
+
+  private def hedger(metrics: MetricRegistry, budgetBurst: Int = 10) =
+    new Hedger(
+      Hedger.Settings(budgetRatio = 0, budgetBurst = budgetBurst, latencyWindow = 10, minSamples = 5),
+      metrics,
+      actorSystem.scheduler
+    )
+
+  private val policy = HedgingPolicy(Some(50.millis), None, maxExtraRequests = 2)
+
+  private def counter(metrics: MetricRegistry, name: String) =
+    metrics.counter(MetricRegistry.name("ServiceCall", "call", name)).getCount
+
+  behavior.of("Hedger")
+
+  it should "complete with the first successful response" in {
+    val metrics = new MetricRegistry
+    val slow    = Promise[String]()
+    hedger(metrics).hedge("call", policy) {
+      case 0 => slow.future
+      case n => Future.successful(s"hedge $n")
+    }.map { result =>
+      result shouldBe "hedge 1"
+      counter(metrics, "hedgesFired") shouldBe 1
+      counter(metrics, "hedgesWon") shouldBe 1
+    }
+  }
+
+  it should "not send extra requests for calls answered before the delay" in {
+    val metrics = new MetricRegistry
+    val sent    = new AtomicInteger(0)
+    hedger(metrics).hedge("call", policy)(_ => Future.successful(sent.incrementAndGet())).map { result =>
+      result shouldBe 1
+      counter(metrics, "hedgesFired") shouldBe 0
+    }
+  }
+
+  it should "fail once all the requests sent failed" in {
+    val metrics = new MetricRegistry
+    val failing = Promise[String]()
+    val result = hedger(metrics, budgetBurst = 1).hedge("call", policy) {
+      case 0 => failing.future
+      case _ => Future.failed(new IllegalStateException("hedge failed"))
+    }
+    recoverToSucceededIf[IllegalStateException] {
+      akka.pattern.after(200.millis, actorSystem.scheduler) {
+        failing.failure(new IllegalStateException("first failed"))
+        result
+      }
+    }.map { _ =>
+      counter(metrics, "hedgesFired") shouldBe 1
+    }
+  }
+
+  it should "not send more extra requests than its budget allows" in {
+    val metrics = new MetricRegistry
+    val pending = Promise[String]()
+    val result  = hedger(metrics, budgetBurst = 1).hedge("call", policy)(_ => pending.future)
+    akka.pattern.after(300.millis, actorSystem.scheduler)(Future.successful(())).flatMap { _ =>
+      counter(metrics, "hedgesFired") shouldBe 1
+      counter(metrics, "hedgesDenied") shouldBe 1
+      pending.success("done")
+      result.map(_ shouldBe "done")
+    }
+  }
+
+  behavior.of("Hedger latency window")
+
+  it should "only report percentiles once it has enough latencies" in {
+    val window = new Hedger.LatencyWindow(size = 10, minSamples = 5)
+    (1 to 4).foreach(n => window.record(n))
+    window.percentile(50) shouldBe None
+    (5 to 10).foreach(n => window.record(n))
+    window.percentile(50) shouldBe Some(6)
+    window.percentile(99) shouldBe Some(10)
+  }
+}
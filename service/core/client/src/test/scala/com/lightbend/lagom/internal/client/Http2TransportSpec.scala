@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.internal.client
+
+import java.net.ServerSocket
+import java.util.concurrent.TimeoutException
+
+import akka.actor.ActorSystem
+import akka.util.ByteString
+import com.typesafe.config.ConfigFactory
+import org.scalatest.BeforeAndAfterAll
+import org.scalatest.FlatSpec
+import org.scalatest.Matchers
+
+import scala.concurrent.Await
+import scala.concurrent.duration._
+
+class Http2TransportSpec extends FlatSpec with Matchers with BeforeAndAfterAll {
+  val actorSystem = ActorSystem("Http2TransportSpec")
+
+  override def afterAll() = {
+    Await.ready(actorSystem.terminate(), 10.seconds)
+  }
+
+  behavior.of("Http2Transport")
+
+  it should "reject a configuration without connections" in {
+    an[IllegalArgumentException] should be thrownBy new Http2Transport(
+      ConfigFactory
+        .parseString("connections-per-instance = 0")
+        .withFallback(ConfigFactory.defaultReference().getConfig("lagom.client.http2")),
+      actorSystem
+    )
+  }
+
+  it should "fail the requests that take longer than the request timeout" in withSilentServer { port =>
+    val transport = newTransport("request-timeout = 200ms")
+    val result    = transport.execute("GET", s"http://localhost:$port/silent", Nil, None, None)
+    a[TimeoutException] should be thrownBy Await.result(result, 5.seconds)
+    transport.shutdown()
+  }
+
+  it should "fail the requests in progress when it is shut down" in withSilentServer { port =>
+    val transport = newTransport("request-timeout = 1 minute")
+    val result    = transport.execute("GET", s"http://localhost:$port/silent", Nil, None, None)
+    transport.shutdown()
+    an[IllegalStateException] should be thrownBy Await.result(result, 5.seconds)
+  }
+
+  private def newTransport(config: String) =
+    new Http2Transport(
+      ConfigFactory
+        .parseString(config)
+        .withFallback(ConfigFactory.defaultReference().getConfig("lagom.client.http2")),
+      actorSystem
+    )
+
+  // A server that accepts connections but never answers
+  private def withSilentServer(block: Int => Unit): Unit = {
+    val server = new ServerSocket(0)
+    try block(server.getLocalPort)
+    finally server.close()
+  }
+
+  behavior.of("StrictResponse")
+
+  it should "look up headers regardless of their case" in {
+    val response = StrictResponse(200, Map("ETag" -> Seq("\"v1\""), "Empty" -> Nil), ByteString.empty)
+    response.header("etag") shouldBe Some("\"v1\"")
+    response.header("empty") shouldBe None
+    response.header("cache-control") shouldBe None
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.internal.client
+
+import java.net.URI
+
+import com.typesafe.config.ConfigFactory
+import org.scalatest.FlatSpec
+import org.scalatest.Matchers
+
+import scala.concurrent.duration._
+
+class LoadBalancingSpec extends FlatSpec with Matchers {
+  private val loadBalancing = new LoadBalancing(
+    ConfigFactory
+      .parseString("""
+        strategy = power-of-two-choices
+        services {
+          "legacy-service" = none
+          "inventory-service" = peak-ewma
+          "search-service" = least-outstanding-requests
+        }
+      """)
+      .withFallback(ConfigFactory.defaultReference().getConfig("lagom.client.load-balancing"))
+  )
+
+  private val fast = URI.create("http://10.0.0.1:9000")
+  private val slow = URI.create("http://10.0.0.2:9000")
+  private val busy = URI.create("http://10.0.0.3:9000")
+
+  behavior.of("LoadBalancing")
+
+  it should "read the strategy of each service, falling back to the default one" in {
+    loadBalancing.forService("legacy-service") shouldBe None
+    loadBalancing.forService("inventory-service").get shouldBe a[LoadBalancer.PeakEwma]
+    loadBalancing.forService("search-service").get shouldBe a[LoadBalancer.LeastOutstandingRequests]
+    loadBalancing.forService("other-service").get shouldBe a[LoadBalancer.PowerOfTwoChoices]
+  }
+
+  it should "share the load balancer of a service" in {
+    loadBalancing.forService("inventory-service").get shouldBe theSameInstanceAs(
+      loadBalancing.forService("inventory-service").get
+    )
+  }
+
+  it should "select nothing among no candidates" in {
+    new LoadBalancer.PeakEwma(10.seconds.toNanos).select(Nil) shouldBe None
+  }
+
+  "least-outstanding-requests" should "select the instance with the fewest calls in progress" in {
+    val balancer = new LoadBalancer.LeastOutstandingRequests(10.seconds.toNanos)
+    balancer.onCallStarted(busy)
+    balancer.onCallStarted(busy)
+    balancer.onCallStarted(slow)
+    all(Seq.fill(20)(balancer.select(Seq(busy, slow, fast)))) shouldBe Some(fast)
+  }
+
+  "power-of-two-choices" should "select the least busy of two instances" in {
+    val balancer = new LoadBalancer.PowerOfTwoChoices(10.seconds.toNanos)
+    balancer.onCallStarted(busy)
+    all(Seq.fill(20)(balancer.select(Seq(busy, fast)))) shouldBe Some(fast)
+  }
+
+  "peak-ewma" should "select the instance with the lowest latency" in {
+    val balancer = new LoadBalancer.PeakEwma(10.seconds.toNanos)
+    balancer.onCallStarted(fast)
+    balancer.onCallCompleted(fast, 5.millis.toNanos)
+    balancer.onCallStarted(slow)
+    balancer.onCallCompleted(slow, 500.millis.toNanos)
+    all(Seq.fill(20)(balancer.select(Seq(slow, fast)))) shouldBe Some(fast)
+  }
+
+  it should "avoid instances with calls in progress but no latency yet" in {
+    val balancer = new LoadBalancer.PeakEwma(10.seconds.toNanos)
+    balancer.onCallStarted(slow)
+    balancer.onCallCompleted(slow, 500.millis.toNanos)
+    balancer.onCallStarted(busy)
+    all(Seq.fill(20)(balancer.select(Seq(busy, slow)))) shouldBe Some(slow)
+  }
+
+  "InstanceSelector" should "forget the latency of the instances that aren't candidates anymore" in {
+    val balancer = new LoadBalancer.PeakEwma(10.seconds.toNanos)
+    val selector = new InstanceSelector(Some(balancer), None)
+    balancer.onCallStarted(slow)
+    balancer.onCallCompleted(slow, 500.millis.toNanos)
+    selector.select(Seq(fast)) shouldBe Some(fast)
+    // An instance that reuses the address of a former one starts afresh
+    balancer.onCallStarted(fast)
+    balancer.onCallCompleted(fast, 5.millis.toNanos)
+    all(Seq.fill(20)(selector.select(Seq(slow, fast)))) shouldBe Some(slow)
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.internal.client
+
+import com.typesafe.config.ConfigFactory
+import org.scalatest.FlatSpec
+import org.scalatest.Matchers
+
+import scala.concurrent.Future
+
+class LocalServicesSpec extends FlatSpec with Matchers {
+  private def localServices =
+    new LocalServices(
+      ConfigFactory
+        .parseString("""services { "product-service" = on }""")
+        .withFallback(ConfigFactory.defaultReference().getConfig("lagom.client.local-transport"))
+    )
+
+  private class Service extends LocalService {
+    override def invoke(
+        method: String,
+        pathAndQuery: String,
+        requestHeader: Any,
+        request: Any
+    ): Option[Future[LocalService.Response]] = Some(Future.successful(LocalService.Success(requestHeader, request)))
+  }
+
+  behavior.of("LocalServices")
+
+  it should "only look up the registered services it is enabled for" in {
+    val services = localServices
+    val product  = new Service
+    services.lookup("product-service") shouldBe None
+    services.register("product-service", product)
+    services.register("other-service", new Service)
+    services.lookup("product-service") shouldBe Some(product)
+    services.lookup("other-service") shouldBe None
+  }
+
+  it should "only unregister the service registered with the given name" in {
+    val services = localServices
+    val first    = new Service
+    val second   = new Service
+    services.register("product-service", first)
+    services.register("product-service", second)
+    services.unregister("product-service", first)
+    services.lookup("product-service") shouldBe Some(second)
+    services.unregister("product-service", second)
+    services.lookup("product-service") shouldBe None
+  }
+}
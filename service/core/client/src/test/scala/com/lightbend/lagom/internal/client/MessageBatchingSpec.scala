@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.internal.client
+
+import akka.actor.ActorSystem
+import akka.stream.scaladsl.Framing.FramingException
+import akka.stream.scaladsl.Sink
+import akka.stream.scaladsl.Source
+import akka.util.ByteString
+import com.typesafe.config.ConfigFactory
+import org.scalatest.AsyncFlatSpec
+import org.scalatest.BeforeAndAfterAll
+import org.scalatest.Matchers
+
+import scala.concurrent.Await
+import scala.concurrent.duration._
+
+class MessageBatchingSpec extends AsyncFlatSpec with Matchers with BeforeAndAfterAll {
+  implicit val actorSystem = ActorSystem("MessageBatchingSpec")
+
+  override def afterAll() = {
+    Await.ready(actorSystem.terminate(), 10.seconds)
+  }
+
+  private def messageBatching(config: String) =
+    new MessageBatching(
+      ConfigFactory
+        .parseString(config)
+        .withFallback(ConfigFactory.parseString("""
+          enabled = on
+          max-batch-size = 32 KiB
+          max-latency = 5ms
+          services {}
+          calls {}
+        """))
+    )
+
+  private val ticks = (1 to 10).map(i => ByteString(s"""{"tick":$i}"""))
+
+  behavior.of("MessageBatching")
+
+  it should "decode the batches it encodes" in {
+    MessageBatching.decode(MessageBatching.encode(ticks :+ ByteString.empty)) shouldBe (ticks :+ ByteString.empty)
+  }
+
+  it should "fail on truncated batches" in {
+    val batch = MessageBatching.encode(ticks)
+    a[FramingException] should be thrownBy MessageBatching.decode(batch.dropRight(1))
+    a[FramingException] should be thrownBy MessageBatching.decode(batch.take(2))
+  }
+
+  it should "pack the messages into batches of at most the maximum size" in {
+    // Each tick is 10 or 11 bytes long, plus its 4 bytes length
+    Source(ticks)
+      .via(messageBatching("max-batch-size = 32, max-latency = 1s").batcher)
+      .runWith(Sink.seq)
+      .map { batches =>
+        batches.map(MessageBatching.decode(_).size) shouldBe Seq(2, 2, 2, 2, 2)
+        batches.flatMap(MessageBatching.decode) shouldBe ticks
+      }
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.internal.client
+
+import java.util.zip.DataFormatException
+
+import akka.util.ByteString
+import com.typesafe.config.ConfigFactory
+import org.scalatest.FlatSpec
+import org.scalatest.Matchers
+
+class MessageDeflateSpec extends FlatSpec with Matchers {
+  private def messageDeflate(config: String) =
+    new MessageDeflate(
+      ConfigFactory
+        .parseString(config)
+        .withFallback(ConfigFactory.parseString("""
+          enabled = on
+          compression-level = -1
+          context-takeover = on
+          min-message-size = 256
+          services {}
+          calls {}
+        """))
+    )
+
+  private val events = (1 to 20).map { i =>
+    val padding = "x" * 300
+    ByteString(s"""{"type":"ItemAdded","orderId":"order-$i","itemId":"item-$i","quantity":$i,"padding":"$padding"}""")
+  }
+
+  behavior.of("MessageDeflate")
+
+  it should "decompress the messages it compresses, with context takeover" in {
+    val compressor   = messageDeflate("context-takeover = on").newCompressor()
+    val decompressor = new MessageDeflate.Decompressor(65536)
+    val compressed   = events.map(compressor.compress)
+    compressed.map(decompressor.decompress) shouldBe events
+    compressed.map(_.length).sum should be < events.map(_.length).sum / 5
+    compressor.close()
+    decompressor.close()
+  }
+
+  it should "decompress the messages it compresses, without context takeover" in {
+    val compressor   = messageDeflate("context-takeover = off").newCompressor()
+    val decompressor = new MessageDeflate.Decompressor(65536)
+    events.map(compressor.compress).map(decompressor.decompress) shouldBe events
+    compressor.close()
+    decompressor.close()
+  }
+
+  it should "send the messages shorter than the minimum size uncompressed" in {
+    val compressor   = messageDeflate("min-message-size = 16").newCompressor()
+    val decompressor = new MessageDeflate.Decompressor(65536)
+    val compressed   = compressor.compress(ByteString("short"))
+    compressed shouldBe ByteString(Array[Byte](0)) ++ ByteString("short")
+    decompressor.decompress(compressed) shouldBe ByteString("short")
+    compressor.close()
+    decompressor.close()
+  }
+
+  it should "fail on messages that inflate to more than the maximum length" in {
+    val compressor   = messageDeflate("min-message-size = 0").newCompressor()
+    val decompressor = new MessageDeflate.Decompressor(1024)
+    a[DataFormatException] should be thrownBy decompressor.decompress(compressor.compress(ByteString("x" * 100000)))
+    compressor.close()
+    decompressor.close()
+  }
+}
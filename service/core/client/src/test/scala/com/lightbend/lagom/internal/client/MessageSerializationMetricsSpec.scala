@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.internal.client
+
+import akka.util.ByteString
+import com.codahale.metrics.SharedMetricRegistries
+import com.lightbend.lagom.internal.metrics.SerializationMetricsProviderImpl
+import org.scalatest.FlatSpec
+import org.scalatest.Matchers
+
+class MessageSerializationMetricsSpec extends FlatSpec with Matchers {
+  private def histogram(name: String) =
+    SharedMetricRegistries.getOrCreate(SerializationMetricsProviderImpl.MetricRegistryName).histogram(name)
+
+  behavior.of("MessageSerializationMetrics")
+
+  it should "record the histograms of each call in the shared registry" in {
+    val metrics = new MessageSerializationMetrics(Some(new SerializationMetricsProviderImpl))
+    val call    = metrics.forCall(MessageSerializationMetrics.Client, "metrics-spec", "orders")
+    call shouldBe defined
+    val again = metrics.forCall(MessageSerializationMetrics.Client, "metrics-spec", "orders")
+    again.get should be theSameInstanceAs call.get
+
+    val bytes = ByteString("""{"id":"order-1"}""")
+    MessageSerializationMetrics.serialize(call)(bytes) shouldBe bytes
+    MessageSerializationMetrics.deserialize(call, bytes)("order-1") shouldBe "order-1"
+
+    val prefix = "Serialization.service-client.metrics-spec.orders"
+    histogram(s"$prefix.serializationNanos").getCount shouldBe 1
+    histogram(s"$prefix.serializedBytes").getSnapshot.getMax shouldBe bytes.length
+    histogram(s"$prefix.deserializationNanos").getCount shouldBe 1
+    histogram(s"$prefix.deserializedBytes").getSnapshot.getMax shouldBe bytes.length
+  }
+
+  it should "measure nothing without a provider" in {
+    val metrics = new MessageSerializationMetrics(None)
+    val call    = metrics.forCall(MessageSerializationMetrics.Server, "metrics-spec", "orders")
+    call shouldBe empty
+    MessageSerializationMetrics.serialize(call)(ByteString("x")) shouldBe ByteString("x")
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.internal.client
+
+import java.net.URI
+import java.util.concurrent.atomic.AtomicLong
+
+import com.typesafe.config.ConfigFactory
+import org.scalatest.FlatSpec
+import org.scalatest.Matchers
+
+import scala.concurrent.duration._
+
+class OutlierDetectorSpec extends FlatSpec with Matchers {
+  private val settings = OutlierDetector.Settings(
+    enabled = true,
+    consecutiveFailures = 3,
+    slowCallThresholdNanos = 1.second.toNanos,
+    baseEjectionTimeNanos = 10.seconds.toNanos,
+    maxEjectionTimeNanos = 1.minute.toNanos,
+    maxEjectionPercent = 50
+  )
+
+  private val first  = URI.create("http://10.0.0.1:9000")
+  private val second = URI.create("http://10.0.0.2:9000")
+  private val third  = URI.create("http://10.0.0.3:9000")
+  private val fourth = URI.create("http://10.0.0.4:9000")
+
+  private class Fixture {
+    val now      = new AtomicLong(0)
+    val detector = new OutlierDetector("service", settings, () => now.get())
+    def advance(duration: FiniteDuration): Unit = now.addAndGet(duration.toNanos)
+    def fail(uri: URI, times: Int): Unit        = (1 to times).foreach(_ => detector.onCallCompleted(uri, 0, failed = true))
+  }
+
+  behavior.of("OutlierDetector")
+
+  it should "eject an instance after consecutive failures" in new Fixture {
+    fail(first, 2)
+    detector.isEjected(first) shouldBe false
+    fail(first, 1)
+    detector.isEjected(first) shouldBe true
+    detector.filter(Seq(first, second, third)) shouldBe Seq(second, third)
+  }
+
+  it should "not count failures that are interleaved with successful calls" in new Fixture {
+    fail(first, 2)
+    detector.onCallCompleted(first, 0, failed = false)
+    fail(first, 2)
+    detector.isEjected(first) shouldBe false
+  }
+
+  it should "count slow calls as failures" in new Fixture {
+    (1 to 3).foreach(_ => detector.onCallCompleted(first, 2.seconds.toNanos, failed = false))
+    detector.isEjected(first) shouldBe true
+  }
+
+  it should "readmit an instance once its ejection is over, and eject it longer the next time" in new Fixture {
+    fail(first, 3)
+    advance(11.seconds)
+    detector.isEjected(first) shouldBe false
+    fail(first, 3)
+    advance(11.seconds)
+    detector.isEjected(first) shouldBe true
+    advance(10.seconds)
+    detector.isEjected(first) shouldBe false
+  }
+
+  it should "not eject more than the maximum percentage of the candidates" in new Fixture {
+    fail(first, 3)
+    advance(1.second)
+    fail(second, 3)
+    advance(1.second)
+    fail(third, 3)
+    detector.filter(Seq(first, second, third, fourth)) shouldBe Seq(first, fourth)
+  }
+
+  it should "forget the instances that aren't candidates anymore" in new Fixture {
+    fail(first, 3)
+    detector.retain(Seq(first, second))
+    detector.isEjected(first) shouldBe true
+    detector.retain(Seq(second, third))
+    detector.isEjected(first) shouldBe false
+  }
+
+  "OutlierDetection" should "read the settings of each service, falling back to the default ones" in {
+    val outlierDetection = new OutlierDetection(
+      ConfigFactory
+        .parseString("""services { "inventory-service" { enabled = on } }""")
+        .withFallback(ConfigFactory.defaultReference().getConfig("lagom.client.outlier-detection"))
+    )
+    outlierDetection.forService("inventory-service") shouldBe defined
+    outlierDetection.forService("other-service") shouldBe None
+  }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.internal.client
+
+import com.typesafe.config.ConfigFactory
+import org.scalatest.FlatSpec
+import org.scalatest.Matchers
+
+class PerServiceSettingSpec extends FlatSpec with Matchers {
+  private def setting(config: String) = new PerServiceSetting(ConfigFactory.parseString(config))
+
+  behavior.of("PerServiceSetting")
+
+  it should "only be enabled for the configured services" in {
+    val s = setting("""
+      enabled = off
+      services { "product-service" = on, "order-service" = off }
+    """)
+    s.enabled("product-service") shouldBe true
+    s.enabled("order-service") shouldBe false
+    s.enabled("other-service") shouldBe false
+  }
+
+  it should "be enabled for the services that don't override the default" in {
+    val s = setting("""
+      enabled = on
+      services { "order-service" = off }
+    """)
+    s.enabled("product-service") shouldBe true
+    s.enabled("order-service") shouldBe false
+  }
+
+  it should "support service names that aren't valid config keys" in {
+    val s = setting("""
+      enabled = off
+      services { "product.service" = on }
+    """)
+    s.enabled("product.service") shouldBe true
+    s.enabled("product") shouldBe false
+  }
+
+  it should "fall back to the setting of the service for the calls that aren't configured" in {
+    val s = setting("""
+      enabled = off
+      services { "product-service" = on }
+      calls { "product-service" { "prices" = off }, "order-service" { "events" = on } }
+    """)
+    s.enabled("product-service", "events") shouldBe true
+    s.enabled("product-service", "prices") shouldBe false
+    s.enabled("order-service", "events") shouldBe true
+    s.enabled("order-service", "orders") shouldBe false
+  }
+
+  it should "use the setting of the service for every call when the calls aren't configurable" in {
+    val s = setting("""
+      enabled = off
+      services { "product-service" = on }
+    """)
+    s.enabled("product-service", "events") shouldBe true
+    s.enabled("order-service", "events") shouldBe false
+  }
+}
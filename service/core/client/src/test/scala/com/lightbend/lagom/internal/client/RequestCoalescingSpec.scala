@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.internal.client
+
+import java.util.concurrent.atomic.AtomicInteger
+
+import com.codahale.metrics.MetricRegistry
+import com.typesafe.config.ConfigFactory
+import org.scalatest.AsyncFlatSpec
+import org.scalatest.Matchers
+
+import scala.concurrent.Future
+import scala.concurrent.Promise
+
+class RequestCoalescingSpec extends AsyncFlatSpec with Matchers {
+  private def coalescing(metrics: MetricRegistry) =
+    new RequestCoalescing(
+      ConfigFactory
+        .parseString("""services { "product-service" = on }""")
+        .withFallback(ConfigFactory.defaultReference().getConfig("lagom.client.request-coalescing")),
+      metrics
+    )
+
+  private def key(url: String, headers: Map[String, Seq[String]] = Map.empty) =
+    RequestKey("product-service", "GET", url, headers)
+
+  private def coalesced(metrics: MetricRegistry) =
+    metrics.counter(MetricRegistry.name("ServiceCall", "call", "coalesced")).getCount
+
+  behavior.of("RequestCoalescing")
+
+  it should "share the response of an identical call in progress" in {
+    val metrics  = new MetricRegistry
+    val c        = coalescing(metrics)
+    val sent     = new AtomicInteger(0)
+    val response = Promise[String]()
+    val first    = c.coalesce("call", key("/api/product/1")) { sent.incrementAndGet(); response.future }
+    val second   = c.coalesce("call", key("/api/product/1")) { sent.incrementAndGet(); Future.successful("other") }
+    response.success("product")
+    for {
+      r1 <- first
+      r2 <- second
+    } yield {
+      r1 shouldBe "product"
+      r2 shouldBe "product"
+      sent.get shouldBe 1
+      coalesced(metrics) shouldBe 1
+    }
+  }
+
+  it should "not share the response of calls with different URLs or headers" in {
+    val metrics  = new MetricRegistry
+    val c        = coalescing(metrics)
+    val response = Promise[String]()
+    c.coalesce("call", key("/api/product/1"))(response.future)
+    val otherUrl = c.coalesce("call", key("/api/product/2"))(Future.successful("2"))
+    val otherHeaders =
+      c.coalesce("call", key("/api/product/1", Map("Authorization" -> Seq("token"))))(Future.successful("auth"))
+    response.success("1")
+    for {
+      r1 <- otherUrl
+      r2 <- otherHeaders
+    } yield {
+      r1 shouldBe "2"
+      r2 shouldBe "auth"
+      coalesced(metrics) shouldBe 0
+    }
+  }
+
+  it should "send a new request once the previous identical call completed" in {
+    val c = coalescing(new MetricRegistry)
+    for {
+      r1 <- c.coalesce("call", key("/api/product/1"))(Future.successful("first"))
+      r2 <- c.coalesce("call", key("/api/product/1"))(Future.successful("second"))
+    } yield {
+      r1 shouldBe "first"
+      r2 shouldBe "second"
+    }
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.internal.client
+
+import java.util.concurrent.atomic.AtomicLong
+
+import com.codahale.metrics.MetricRegistry
+import com.typesafe.config.ConfigFactory
+import org.scalatest.FlatSpec
+import org.scalatest.Matchers
+
+import scala.concurrent.duration._
+
+class ResponseCacheSpec extends FlatSpec with Matchers {
+  private class Fixture(maxEntries: Int = 10) {
+    val metrics = new MetricRegistry
+    val now     = new AtomicLong(0)
+    val cache = new ResponseCache(
+      ConfigFactory
+        .parseString(s"""
+          max-entries = $maxEntries
+          services { "product-service" = on }
+        """)
+        .withFallback(ConfigFactory.defaultReference().getConfig("lagom.client.response-cache")),
+      metrics,
+      () => now.get
+    )
+
+    def count(name: String): Long = metrics.counter(MetricRegistry.name("ServiceCall", "call", name)).getCount
+  }
+
+  private def key(url: String) = RequestKey("product-service", "GET", url, Map.empty)
+
+  behavior.of("ResponseCache")
+
+  it should "serve responses for their max-age" in new Fixture {
+    cache.lookup("call", key("/p/1")) shouldBe ResponseCache.Miss
+    cache.store("call", key("/p/1"), Some("public, max-age=60"), None, "header", "product")
+    cache.lookup("call", key("/p/1")) match {
+      case ResponseCache.Fresh(entry) => entry.response shouldBe "product"
+      case other                      => fail(s"Expected a fresh response, got $other")
+    }
+    now.set(61.seconds.toNanos)
+    cache.lookup("call", key("/p/1")) shouldBe ResponseCache.Miss
+    count("cacheHits") shouldBe 1
+    count("cacheMisses") shouldBe 2
+  }
+
+  it should "revalidate stale responses that have an ETag" in new Fixture {
+    cache.store("call", key("/p/1"), Some("no-cache"), Some("\"v1\""), "header", "product")
+    val stale = cache.lookup("call", key("/p/1")) match {
+      case ResponseCache.Stale(entry) => entry
+      case other                      => fail(s"Expected a stale response, got $other")
+    }
+    stale.etag shouldBe Some("\"v1\"")
+    cache.revalidated(key("/p/1"), stale, Some("max-age=10"))
+    cache.lookup("call", key("/p/1")) shouldBe a[ResponseCache.Fresh]
+    count("cacheRevalidations") shouldBe 1
+  }
+
+  it should "not store responses that can't be reused" in new Fixture {
+    cache.store("call", key("/p/1"), Some("no-store, max-age=60"), Some("\"v1\""), "header", "product")
+    cache.store("call", key("/p/2"), None, None, "header", "product")
+    cache.lookup("call", key("/p/1")) shouldBe ResponseCache.Miss
+    cache.lookup("call", key("/p/2")) shouldBe ResponseCache.Miss
+  }
+
+  it should "never store private responses" in new Fixture {
+    cache.store("call", key("/p/1"), Some("private, max-age=60"), Some("\"v1\""), "header", "product")
+    cache.lookup("call", key("/p/1")) shouldBe ResponseCache.Miss
+  }
+
+  it should "only store the responses to requests with credentials that are explicitly shareable" in new Fixture {
+    def authorized(url: String, user: String) = key(url).copy(headers = Map("authorization" -> Seq(s"Bearer $user")))
+    cache.store("call", authorized("/p/1", "alice"), Some("max-age=60"), Some("\"v1\""), "header", "alice")
+    cache.lookup("call", authorized("/p/1", "bob")) shouldBe ResponseCache.Miss
+    cache.lookup("call", key("/p/1")) shouldBe ResponseCache.Miss
+
+    cache.store("call", authorized("/p/2", "alice"), Some("public, max-age=60"), None, "header", "public")
+    cache.store("call", authorized("/p/3", "alice"), Some("s-maxage=60"), None, "header", "shared")
+    cache.lookup("call", authorized("/p/2", "bob")) shouldBe a[ResponseCache.Fresh]
+    cache.lookup("call", authorized("/p/3", "bob")) shouldBe a[ResponseCache.Fresh]
+  }
+
+  it should "not store the responses to requests with any of the configured credential headers" in {
+    val cache = new ResponseCache(
+      ConfigFactory
+        .parseString("""
+          credential-headers = ["Authorization", "X-Api-Key"]
+          services { "product-service" = on }
+        """)
+        .withFallback(ConfigFactory.defaultReference().getConfig("lagom.client.response-cache")),
+      new MetricRegistry,
+      () => 0L
+    )
+    val withApiKey = key("/p/1").copy(headers = Map("x-api-key" -> Seq("secret")))
+    cache.store("call", withApiKey, Some("max-age=60"), None, "header", "product")
+    cache.lookup("call", withApiKey) shouldBe ResponseCache.Miss
+  }
+
+  it should "keep the responses for their s-maxage rather than their max-age" in new Fixture {
+    cache.store("call", key("/p/1"), Some("max-age=10, s-maxage=60"), None, "header", "product")
+    now.set(30.seconds.toNanos)
+    cache.lookup("call", key("/p/1")) shouldBe a[ResponseCache.Fresh]
+  }
+
+  it should "evict the least recently used responses" in new Fixture(maxEntries = 2) {
+    cache.store("call", key("/p/1"), Some("max-age=60"), None, "header", "1")
+    cache.store("call", key("/p/2"), Some("max-age=60"), None, "header", "2")
+    cache.lookup("call", key("/p/1")) shouldBe a[ResponseCache.Fresh]
+    cache.store("call", key("/p/3"), Some("max-age=60"), None, "header", "3")
+    cache.lookup("call", key("/p/2")) shouldBe ResponseCache.Miss
+    cache.lookup("call", key("/p/1")) shouldBe a[ResponseCache.Fresh]
+    count("cacheEvictions") shouldBe 1
+  }
+
+  it should "only serve responses to the requests that have the same values for the headers they vary on" in new Fixture {
+    def keyFor(language: String) =
+      RequestKey("product-service", "GET", "/p/1", Map("accept-language" -> Seq(language), "x-trace" -> Seq(language)))
+    cache.store("call", keyFor("en"), Some("max-age=60"), None, "header", "product", Some("Accept-Language"))
+    cache.lookup("call", keyFor("en").copy(headers = keyFor("en").headers.updated("x-trace", Seq("1")))) shouldBe
+      a[ResponseCache.Fresh]
+    cache.lookup("call", keyFor("fr")) shouldBe ResponseCache.Miss
+    cache.lookup("call", key("/p/1")) shouldBe ResponseCache.Miss
+  }
+
+  it should "not store responses that vary on every header" in new Fixture {
+    cache.store("call", key("/p/1"), Some("max-age=60"), None, "header", "product", Some("*"))
+    cache.lookup("call", key("/p/1")) shouldBe ResponseCache.Miss
+  }
+
+  it should "register the hit rate of a call once for every cache sharing the metrics" in new Fixture {
+    val other = new ResponseCache(ConfigFactory.defaultReference().getConfig("lagom.client.response-cache"), metrics)
+    val hitRate = MetricRegistry.name("ServiceCall", "call", "cacheHitRate")
+    cache.store("call", key("/p/1"), Some("max-age=60"), None, "header", "product")
+    cache.lookup("call", key("/p/1"))
+    val gauge = metrics.getGauges.get(hitRate)
+    other.lookup("call", key("/p/1")) shouldBe ResponseCache.Miss
+    metrics.getGauges.get(hitRate) should be theSameInstanceAs gauge
+    gauge.getValue shouldBe 0.5
+  }
+
+  it should "parse Cache-Control directives" in {
+    ResponseCache.parseCacheControl("""Private, Max-Age="30", no-cache""") shouldBe Map(
+      "private"  -> None,
+      "max-age"  -> Some("30"),
+      "no-cache" -> None
+    )
+  }
+
+  it should "parse Vary headers" in {
+    ResponseCache.parseVary("Accept-Language, X-Tenant,") shouldBe Seq("accept-language", "x-tenant")
+  }
+}
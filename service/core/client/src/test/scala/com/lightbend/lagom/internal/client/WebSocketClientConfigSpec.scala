@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.internal.client
+
+import java.util.concurrent.TimeUnit
+
+import com.typesafe.config.ConfigFactory
+import io.netty.channel.MultithreadEventLoopGroup
+import io.netty.channel.epoll.Epoll
+import io.netty.channel.epoll.EpollEventLoopGroup
+import io.netty.channel.nio.NioEventLoopGroup
+import org.scalatest.FlatSpec
+import org.scalatest.Matchers
+
+class WebSocketClientConfigSpec extends FlatSpec with Matchers {
+  private def config(websocket: String) =
+    WebSocketClientConfig(
+      ConfigFactory.parseString(s"lagom.client.websocket { $websocket }").withFallback(ConfigFactory.defaultReference())
+    )
+
+  behavior.of("WebSocketClientConfig")
+
+  it should "default to the NIO transport with the Netty default number of threads" in {
+    val c = config("")
+    c.transport shouldBe "nio"
+    c.eventLoopThreads shouldBe 0
+  }
+
+  it should "read the transport and the number of event loop threads" in {
+    val c = config("transport = auto, event-loop-threads = 3")
+    c.transport shouldBe "auto"
+    c.eventLoopThreads shouldBe 3
+  }
+
+  it should "reject unknown transports" in {
+    an[IllegalArgumentException] should be thrownBy config("transport = kqueue")
+  }
+
+  behavior.of("WebSocketClient")
+
+  it should "only use epoll when it is requested, or automatically when it is available" in {
+    WebSocketClient.useEpoll("nio", epollAvailable = true) shouldBe false
+    WebSocketClient.useEpoll("auto", epollAvailable = true) shouldBe true
+    WebSocketClient.useEpoll("auto", epollAvailable = false) shouldBe false
+    WebSocketClient.useEpoll("epoll", epollAvailable = true) shouldBe true
+  }
+
+  it should "fail when epoll is requested but unavailable" in {
+    an[IllegalStateException] should be thrownBy WebSocketClient.useEpoll("epoll", epollAvailable = false)
+  }
+
+  it should "only ask for the default formats, as the handshake response can't tell which one was negotiated" in {
+    WebSocketClient.acceptedOverWebSocket(Some("application/cbor")) shouldBe false
+    WebSocketClient.acceptedOverWebSocket(Some("application/x-jackson-smile")) shouldBe false
+    WebSocketClient.acceptedOverWebSocket(Some("application/x-ndjson")) shouldBe false
+    WebSocketClient.acceptedOverWebSocket(Some("application/json")) shouldBe true
+    WebSocketClient.acceptedOverWebSocket(None) shouldBe true
+  }
+
+  it should "create an event loop group with the configured number of threads" in {
+    val eventLoop = WebSocketClient.newEventLoopGroup(config("transport = auto, event-loop-threads = 3"))
+    try {
+      if (Epoll.isAvailable) eventLoop shouldBe an[EpollEventLoopGroup]
+      else eventLoop shouldBe a[NioEventLoopGroup]
+      eventLoop.asInstanceOf[MultithreadEventLoopGroup].executorCount() shouldBe 3
+    } finally eventLoop.shutdownGracefully(0, 10, TimeUnit.SECONDS)
+  }
+}
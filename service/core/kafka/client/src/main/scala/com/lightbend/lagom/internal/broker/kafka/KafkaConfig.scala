@@ -9,6 +9,8 @@ import java.util.concurrent.TimeUnit
 import akka.actor.ActorSystem
 import akka.kafka.CommitterSettings
 import com.typesafe.config.Config
+import com.typesafe.config.ConfigFactory
+import com.typesafe.config.ConfigUtil
 import com.typesafe.config.ConfigValueType
 
 import scala.collection.JavaConverters._
@@ -26,6 +28,12 @@ sealed trait KafkaConfig {
 
   /** A mapping of Lagom topic id to real Kafka topic name. */
   def topicNameMapping: Map[String, String]
+
+  /** Presets of Kafka producer properties, by preset name. */
+  def producerPresets: Map[String, Map[String, String]]
+
+  /** The settings of the topic with the given Lagom topic id. */
+  def topicConfig(topicId: String): TopicConfig
 }
 
 object KafkaConfig {
@@ -43,6 +51,64 @@ object KafkaConfig {
         key -> conf.getString("topic-name-mappings." + key)
       }
       .toMap
+
+    override val producerPresets: Map[String, Map[String, String]] = {
+      val presets = conf.getConfig("producer-presets")
+      presets.root.keySet.asScala.map(name => name -> stringMap(presets, ConfigUtil.joinPath(name))).toMap
+    }
+
+    override def topicConfig(topicId: String): TopicConfig = {
+      val path = ConfigUtil.joinPath("topics", topicId)
+      if (conf.hasPath(path)) TopicConfig(conf.getConfig(path))
+      else TopicConfig(ConfigFactory.empty)
+    }
+  }
+
+  /** Reads a flat object of the given config as a map of strings, without interpreting dots in its keys. */
+  private[kafka] def stringMap(conf: Config, path: String): Map[String, String] =
+    if (conf.hasPath(path))
+      conf.getObject(path).asScala.map { case (key, value) => key -> value.unwrapped.toString }.toMap
+    else Map.empty
+}
+
+sealed trait TopicConfig {
+
+  /** The name of the producer preset to use for this topic, if any. */
+  def producerPreset: Option[String]
+
+  /** Kafka producer properties for this topic, applied on top of the producer preset. */
+  def producerProperties: Map[String, String]
+
+  /** How many messages of this topic may be serialized concurrently, if overridden. */
+  def serializationParallelism: Option[Int]
+
+  /** How many records of this topic may await an acknowledgement from Kafka, if overridden. */
+  def producerParallelism: Option[Int]
+}
+
+object TopicConfig {
+  def apply(conf: Config): TopicConfig = new TopicConfigImpl(conf)
+
+  private final class TopicConfigImpl(conf: Config) extends TopicConfig {
+    override val producerPreset: Option[String] =
+      if (conf.hasPath("producer-preset")) Some(conf.getString("producer-preset")).filter(_.nonEmpty)
+      else None
+
+    override val producerProperties: Map[String, String] = KafkaConfig.stringMap(conf, "producer-properties")
+
+    override val serializationParallelism: Option[Int] =
+      if (conf.hasPath("serialization-parallelism")) Some(conf.getInt("serialization-parallelism"))
+      else None
+    serializationParallelism.foreach { parallelism =>
+      require(parallelism > 0, s"serialization-parallelism must be strictly greater than zero, was [$parallelism]")
+    }
+
+    override val producerParallelism: Option[Int] =
+      if (conf.hasPath("producer-parallelism")) Some(conf.getInt("producer-parallelism"))
+      else None
+    producerParallelism.foreach { parallelism =>
+      require(parallelism > 0, s"producer-parallelism must be strictly greater than zero, was [$parallelism]")
+    }
   }
 }
 
@@ -64,6 +130,7 @@ object ClientConfig {
 
 sealed trait ProducerConfig extends ClientConfig {
   def role: Option[String]
+  def serializationParallelism: Int
 }
 
 object ProducerConfig {
@@ -75,12 +142,18 @@ object ProducerConfig {
       case ""    => None
       case other => Some(other)
     }
+    val serializationParallelism = conf.getInt("serialization-parallelism")
+    require(
+      serializationParallelism > 0,
+      s"serialization-parallelism must be strictly greater than zero, was [$serializationParallelism]"
+    )
   }
 }
 
 sealed trait ConsumerConfig extends ClientConfig {
   def offsetBuffer: Int
   def committerSettings: CommitterSettings
+  def deserialization: DeserializationConfig
 }
 
 object ConsumerConfig {
@@ -99,9 +172,57 @@ object ConsumerConfig {
       .withMaxBatch(conf.getInt("batching-size"))
       .withMaxInterval(conf.getDuration("batching-interval"))
       .withParallelism(conf.getInt("batching-parallelism"))
+
+    override val deserialization: DeserializationConfig = DeserializationConfig(conf.getConfig("deserialization"))
+  }
+}
+
+sealed trait DeserializationConfig {
+
+  /** How many records may be deserialized concurrently by the subscriber stream. */
+  def parallelism: Int
+
+  /** What to do with a record whose value can't be deserialized. */
+  def failureStrategy: DeserializationFailureStrategy
+}
+
+object DeserializationConfig {
+  def apply(conf: Config): DeserializationConfig = new DeserializationConfigImpl(conf)
+
+  private final class DeserializationConfigImpl(conf: Config) extends DeserializationConfig {
+    override val parallelism: Int = conf.getInt("parallelism")
+    require(parallelism > 0, s"deserialization.parallelism must be strictly greater than zero, was [$parallelism]")
+
+    override val failureStrategy: DeserializationFailureStrategy = conf.getString("failure-strategy") match {
+      case "fail" => DeserializationFailureStrategy.Fail
+      case "skip" => DeserializationFailureStrategy.Skip
+      case "dead-letter" =>
+        DeserializationFailureStrategy.DeadLetter(Some(conf.getString("dead-letter-topic")).filter(_.nonEmpty))
+      case other =>
+        throw new IllegalArgumentException(
+          s"Unknown deserialization.failure-strategy [$other], expected one of [fail, skip, dead-letter]"
+        )
+    }
   }
 }
 
+sealed trait DeserializationFailureStrategy
+
+object DeserializationFailureStrategy {
+
+  /** Fail the subscriber stream. */
+  case object Fail extends DeserializationFailureStrategy
+
+  /** Log and drop the record. */
+  case object Skip extends DeserializationFailureStrategy
+
+  /**
+   * Publish the raw record to a dead letter topic and drop it. When no topic is given, the
+   * subscribed topic name suffixed with `.DLT` is used.
+   */
+  final case class DeadLetter(topic: Option[String]) extends DeserializationFailureStrategy
+}
+
 private[lagom] final class NoKafkaBrokersException(serviceName: String)
     extends RuntimeException(s"No Kafka brokers found in service locator for Kafka service name [$serviceName]")
     with NoStackTrace
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.internal.broker.kafka
+
+import akka.NotUsed
+import akka.actor.ActorSystem
+import akka.kafka.ConsumerSettings
+import akka.kafka.ProducerSettings
+import akka.stream.scaladsl.Flow
+import org.apache.kafka.clients.CommonClientConfigs
+import org.apache.kafka.clients.consumer.ConsumerRecord
+import org.apache.kafka.clients.producer.Callback
+import org.apache.kafka.clients.producer.Producer
+import org.apache.kafka.clients.producer.ProducerRecord
+import org.apache.kafka.clients.producer.RecordMetadata
+import org.apache.kafka.common.serialization.ByteArraySerializer
+import org.apache.kafka.common.serialization.Deserializer
+import org.apache.kafka.common.serialization.StringSerializer
+import org.slf4j.LoggerFactory
+
+import scala.concurrent.ExecutionContext
+import scala.concurrent.Future
+import scala.concurrent.Promise
+import scala.util.Try
+import scala.util.control.NonFatal
+
+/**
+ * Deserializes the raw values of consumed Kafka records outside of the Kafka consumer's poll loop.
+ *
+ * Records are deserialized in an order-preserving stage that runs up to `config.parallelism` deserializations
+ * concurrently. Records that fail to deserialize are handled according to `config.failureStrategy`. Each record
+ * travels with a context (typically its committable offset) that is passed through untouched, except for dropped
+ * records whose context is dropped too.
+ */
+private[lagom] class KafkaRecordDeserializer[Payload](
+    deserializer: Deserializer[Payload],
+    config: DeserializationConfig,
+    system: ActorSystem
+)(implicit ec: ExecutionContext) {
+  import KafkaRecordDeserializer._
+
+  def flow[Ctx](
+      consumerSettings: ConsumerSettings[String, Array[Byte]]
+  ): Flow[(Ctx, ConsumerRecord[String, Array[Byte]]), (Ctx, ConsumerRecord[String, Payload]), NotUsed] =
+    Flow
+      .fromMaterializer { (_, _) =>
+        val deadLetters = new DeadLetters(consumerSettings)
+        Flow[(Ctx, ConsumerRecord[String, Array[Byte]])]
+          .mapAsync(config.parallelism) {
+            case (ctx, record) =>
+              deserialize(record)
+                .map(Some(_))
+                .recoverWith {
+                  case NonFatal(e) => handleFailure(record, e, deadLetters)
+                }
+                .map(ctx -> _)
+          }
+          .collect {
+            case (ctx, Some(record)) => ctx -> record
+          }
+          .watchTermination() { (mat, done) =>
+            done.onComplete(_ => deadLetters.close())
+            mat
+          }
+      }
+      .mapMaterializedValue(_ => NotUsed)
+
+  /** Like [[flow]], for records that don't carry any context. */
+  def recordFlow(
+      consumerSettings: ConsumerSettings[String, Array[Byte]]
+  ): Flow[ConsumerRecord[String, Array[Byte]], ConsumerRecord[String, Payload], NotUsed] =
+    Flow[ConsumerRecord[String, Array[Byte]]]
+      .map(NotUsed -> _)
+      .via(flow[NotUsed](consumerSettings))
+      .map(_._2)
+
+  private def deserialize(record: ConsumerRecord[String, Array[Byte]]): Future[ConsumerRecord[String, Payload]] = {
+    def run() = withValue(record, deserializer.deserialize(record.topic, record.headers, record.value))
+    // Don't pay for a thread hop when records are handled one at a time anyway
+    if (config.parallelism == 1) Future.fromTry(Try(run()))
+    else Future(run())
+  }
+
+  private def handleFailure(
+      record: ConsumerRecord[String, Array[Byte]],
+      cause: Throwable,
+      deadLetters: DeadLetters
+  ): Future[Option[ConsumerRecord[String, Payload]]] =
+    config.failureStrategy match {
+      case DeserializationFailureStrategy.Fail =>
+        Future.failed(cause)
+
+      case DeserializationFailureStrategy.Skip =>
+        log.warn(
+          s"Skipping record at offset [${record.offset}] of partition [${record.partition}] of topic [${record.topic}] that failed to deserialize",
+          cause
+        )
+        Future.successful(None)
+
+      case DeserializationFailureStrategy.DeadLetter(topic) =>
+        val deadLetterTopic = topic.getOrElse(record.topic + DeadLetterTopicSuffix)
+        log.warn(
+          s"Publishing record at offset [${record.offset}] of partition [${record.partition}] of topic [${record.topic}] that failed to deserialize to dead letter topic [$deadLetterTopic]",
+          cause
+        )
+        deadLetters.publish(deadLetterTopic, record).map(_ => None)
+    }
+
+  /**
+   * Lazily creates the producer used to publish dead letters, so that it only exists when a record actually
+   * failed to deserialize. It connects to the brokers as the consumer does.
+   */
+  private class DeadLetters(consumerSettings: ConsumerSettings[String, Array[Byte]]) {
+    @volatile private var producerCreated = false
+    private lazy val producer: Producer[String, Array[Byte]] = {
+      val settings = ProducerSettings(system, new StringSerializer, new ByteArraySerializer)
+        .withProperties(connectionProperties(consumerSettings.properties))
+      producerCreated = true
+      settings.createKafkaProducer()
+    }
+
+    def publish(topic: String, record: ConsumerRecord[String, Array[Byte]]): Future[RecordMetadata] = {
+      val published = Promise[RecordMetadata]()
+      producer.send(
+        new ProducerRecord[String, Array[Byte]](topic, null, record.key, record.value, record.headers),
+        new Callback {
+          override def onCompletion(metadata: RecordMetadata, exception: Exception): Unit =
+            if (exception == null) published.success(metadata)
+            else published.failure(exception)
+        }
+      )
+      published.future
+    }
+
+    def close(): Unit = if (producerCreated) producer.close()
+  }
+}
+
+private[lagom] object KafkaRecordDeserializer {
+  private val log = LoggerFactory.getLogger(classOf[KafkaRecordDeserializer[_]])
+
+  val DeadLetterTopicSuffix = ".DLT"
+
+  private val ConnectionConfigs = Set(
+    CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG,
+    CommonClientConfigs.CLIENT_DNS_LOOKUP_CONFIG,
+    CommonClientConfigs.SECURITY_PROTOCOL_CONFIG
+  )
+  private val SecurityConfigPrefixes = List("ssl.", "sasl.")
+
+  /**
+   * The kafka-clients properties of a consumer that a producer needs to connect to the same brokers: the brokers
+   * themselves, and the security protocol with its SSL and SASL settings.
+   */
+  private[kafka] def connectionProperties(consumerProperties: Map[String, String]): Map[String, String] =
+    consumerProperties.filter {
+      case (name, _) => ConnectionConfigs(name) || SecurityConfigPrefixes.exists(name.startsWith)
+    }
+
+  /** Copies a record, replacing its value. */
+  private def withValue[V](record: ConsumerRecord[String, Array[Byte]], value: V): ConsumerRecord[String, V] =
+    new ConsumerRecord[String, V](
+      record.topic,
+      record.partition,
+      record.offset,
+      record.timestamp,
+      record.timestampType,
+      java.lang.Long.valueOf(ConsumerRecord.NULL_CHECKSUM),
+      record.serializedKeySize,
+      record.serializedValueSize,
+      record.key,
+      value,
+      record.headers
+    )
+}
@@ -38,7 +38,8 @@ private[lagom] class KafkaSubscriberActor[Payload, SubscriberPayload](
     locateService: String => Future[Seq[URI]],
     topicId: String,
     flow: Flow[SubscriberPayload, Done, _],
-    consumerSettings: ConsumerSettings[String, Payload],
+    consumerSettings: ConsumerSettings[String, Array[Byte]],
+    recordDeserializer: KafkaRecordDeserializer[Payload],
     subscription: AutoSubscription,
     streamCompleted: Promise[Done],
     transform: ConsumerRecord[String, Payload] => SubscriberPayload
@@ -120,7 +121,9 @@ private[lagom] class KafkaSubscriberActor[Payload, SubscriberPayload](
     }
     val pairedCommittableSource = ReactiveConsumer
       .committableSource(consumerSettingsWithUri, subscription)
-      .map(committableMessage => (committableMessage.committableOffset, transform(committableMessage.record)))
+      .map(committableMessage => (committableMessage.committableOffset, committableMessage.record))
+      .via(recordDeserializer.flow[CommittableOffset](consumerSettingsWithUri))
+      .map { case (offset, record) => (offset, transform(record)) }
 
     val committOffsetFlow = Flow.fromGraph(GraphDSL.create(flow) { implicit builder => flow =>
       import GraphDSL.Implicits._
@@ -154,7 +157,8 @@ object KafkaSubscriberActor {
       locateService: String => Future[Seq[URI]],
       topicId: String,
       flow: Flow[SubscriberPayload, Done, _],
-      consumerSettings: ConsumerSettings[String, Payload],
+      consumerSettings: ConsumerSettings[String, Array[Byte]],
+      recordDeserializer: KafkaRecordDeserializer[Payload],
       subscription: AutoSubscription,
       streamCompleted: Promise[Done],
       transform: ConsumerRecord[String, Payload] => SubscriberPayload
@@ -167,6 +171,7 @@ object KafkaSubscriberActor {
         topicId,
         flow,
         consumerSettings,
+        recordDeserializer,
         subscription,
         streamCompleted,
         transform
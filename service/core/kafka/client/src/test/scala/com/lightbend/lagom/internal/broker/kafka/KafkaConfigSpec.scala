@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.internal.broker.kafka
+
+import com.typesafe.config.ConfigFactory
+import org.scalatest.FlatSpec
+import org.scalatest.Matchers
+
+class KafkaConfigSpec extends FlatSpec with Matchers {
+  private val kafkaConfig = KafkaConfig(
+    ConfigFactory
+      .parseString("""
+        lagom.broker.kafka.topics {
+          audit-events {
+            producer-preset = throughput
+            producer-properties {
+              "max.in.flight.requests.per.connection" = 1
+            }
+            serialization-parallelism = 4
+          }
+        }
+      """)
+      .withFallback(ConfigFactory.load())
+  )
+
+  behavior.of("KafkaConfig")
+
+  it should "read the producer presets without interpreting dots in property names" in {
+    kafkaConfig.producerPresets.keySet should contain allOf ("throughput", "latency")
+    kafkaConfig.producerPresets("latency") should ===(Map("linger.ms" -> "0", "compression.type" -> "none"))
+  }
+
+  it should "read the settings of a configured topic" in {
+    val topicConfig = kafkaConfig.topicConfig("audit-events")
+    topicConfig.producerPreset should ===(Some("throughput"))
+    topicConfig.producerProperties should ===(Map("max.in.flight.requests.per.connection" -> "1"))
+    topicConfig.serializationParallelism should ===(Some(4))
+    topicConfig.producerParallelism should ===(None)
+  }
+
+  it should "default the settings of an unconfigured topic" in {
+    val topicConfig = kafkaConfig.topicConfig("notifications")
+    topicConfig.producerPreset should ===(None)
+    topicConfig.producerProperties should ===(Map.empty[String, String])
+    topicConfig.serializationParallelism should ===(None)
+  }
+
+  it should "reject a parallelism that isn't strictly greater than zero" in {
+    an[IllegalArgumentException] should be thrownBy TopicConfig(
+      ConfigFactory.parseString("serialization-parallelism = 0")
+    )
+    an[IllegalArgumentException] should be thrownBy TopicConfig(ConfigFactory.parseString("producer-parallelism = -1"))
+    an[IllegalArgumentException] should be thrownBy ProducerConfig(
+      ConfigFactory
+        .parseString("lagom.broker.kafka.client.producer.serialization-parallelism = 0")
+        .withFallback(ConfigFactory.load())
+    )
+  }
+}
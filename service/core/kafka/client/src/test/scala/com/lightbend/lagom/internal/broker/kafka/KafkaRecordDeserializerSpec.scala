@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.internal.broker.kafka
+
+import java.nio.charset.StandardCharsets
+
+import akka.actor.ActorSystem
+import akka.kafka.ConsumerSettings
+import akka.stream.ActorMaterializer
+import akka.stream.Materializer
+import akka.stream.scaladsl.Sink
+import akka.stream.scaladsl.Source
+import com.typesafe.config.ConfigFactory
+import org.apache.kafka.clients.consumer.ConsumerRecord
+import org.apache.kafka.common.serialization.ByteArrayDeserializer
+import org.apache.kafka.common.serialization.Deserializer
+import org.apache.kafka.common.serialization.StringDeserializer
+import org.scalatest.AsyncFlatSpec
+import org.scalatest.BeforeAndAfterAll
+import org.scalatest.Matchers
+
+import scala.concurrent.Await
+import scala.concurrent.ExecutionContext
+import scala.concurrent.duration._
+
+class KafkaRecordDeserializerSpec extends AsyncFlatSpec with Matchers with BeforeAndAfterAll {
+  private val system                        = ActorSystem("KafkaRecordDeserializerSpec")
+  private implicit val ec: ExecutionContext = system.dispatcher
+  private implicit val mat: Materializer    = ActorMaterializer.create(system)
+
+  protected override def afterAll(): Unit = {
+    Await.ready(system.terminate(), 10.seconds)
+    super.afterAll()
+  }
+
+  private val consumerSettings =
+    ConsumerSettings(system, new StringDeserializer, new ByteArrayDeserializer)
+
+  /** Deserializes numbers, failing on anything else. */
+  private object IntDeserializer extends Deserializer[Int] {
+    override def configure(configs: java.util.Map[String, _], isKey: Boolean): Unit = ()
+    override def deserialize(topic: String, data: Array[Byte]): Int =
+      new String(data, StandardCharsets.UTF_8).toInt
+    override def close(): Unit = ()
+  }
+
+  private def config(parallelism: Int, failureStrategy: String) = DeserializationConfig(
+    ConfigFactory.parseString(s"""
+      parallelism = $parallelism
+      failure-strategy = $failureStrategy
+      dead-letter-topic = ""
+    """)
+  )
+
+  private def records(values: String*) = values.zipWithIndex.map {
+    case (value, offset) =>
+      new ConsumerRecord[String, Array[Byte]]("topic", 0, offset.toLong, "key", value.getBytes(StandardCharsets.UTF_8))
+  }
+
+  private def deserialize(config: DeserializationConfig, values: String*) =
+    Source(records(values: _*).toList)
+      .via(new KafkaRecordDeserializer(IntDeserializer, config, system).recordFlow(consumerSettings))
+      .map(record => record.offset -> record.value)
+      .runWith(Sink.seq)
+
+  behavior.of("KafkaRecordDeserializer")
+
+  it should "deserialize records preserving their order and metadata" in {
+    deserialize(config(parallelism = 4, "fail"), (1 to 100).map(_.toString): _*).map { deserialized =>
+      deserialized should ===((0 until 100).map(offset => offset.toLong -> (offset + 1)))
+    }
+  }
+
+  it should "fail the stream on a deserialization failure by default" in {
+    recoverToSucceededIf[NumberFormatException] {
+      deserialize(config(parallelism = 1, "fail"), "1", "not a number", "3")
+    }
+  }
+
+  it should "drop records that fail to deserialize when skipping" in {
+    deserialize(config(parallelism = 2, "skip"), "1", "not a number", "3").map { deserialized =>
+      deserialized should ===(Seq(0L -> 1, 2L -> 3))
+    }
+  }
+
+  it should "reject an unknown failure strategy" in {
+    an[IllegalArgumentException] should be thrownBy config(parallelism = 1, "ignore").failureStrategy
+  }
+
+  it should "connect the dead letter producer to the brokers as the consumer does" in {
+    val settings = consumerSettings
+      .withBootstrapServers("broker-1:9093,broker-2:9093")
+      .withGroupId("group")
+      .withProperties(
+        "security.protocol"       -> "SASL_SSL",
+        "sasl.mechanism"          -> "PLAIN",
+        "sasl.jaas.config"        -> "org.apache.kafka.common.security.plain.PlainLoginModule required;",
+        "ssl.truststore.location" -> "/etc/kafka/truststore.jks",
+        "auto.offset.reset"       -> "earliest"
+      )
+
+    KafkaRecordDeserializer.connectionProperties(settings.properties) should ===(
+      Map(
+        "bootstrap.servers"       -> "broker-1:9093,broker-2:9093",
+        "security.protocol"       -> "SASL_SSL",
+        "sasl.mechanism"          -> "PLAIN",
+        "sasl.jaas.config"        -> "org.apache.kafka.common.security.plain.PlainLoginModule required;",
+        "ssl.truststore.location" -> "/etc/kafka/truststore.jks"
+      )
+    )
+  }
+}
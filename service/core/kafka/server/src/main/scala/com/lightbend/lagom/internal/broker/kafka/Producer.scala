@@ -32,12 +32,14 @@ private[lagom] object Producer {
       eventStreamFactory: (String, AkkaOffset) => Source[(Message, AkkaOffset), _],
       partitionKeyStrategy: Option[Message => String],
       serializer: Serializer[Message],
+      producerTuning: ProducerTuning,
       offsetStore: OffsetStore,
       projectionRegistry: ProjectionRegistry
   )(implicit mat: Materializer, ec: ExecutionContext): Unit = {
     val projectionName = s"kafkaProducer-$topicId"
 
-    val producerConfig = ProducerConfig(system.settings.config)
+    val producerConfig     = ProducerConfig(system.settings.config)
+    val producerProperties = producerTuning.resolve(kafkaConfig, topicId)
     val topicProducerProps = (coordinates: WorkerCoordinates) =>
       TopicProducerActor.props(
         coordinates,
@@ -48,6 +50,7 @@ private[lagom] object Producer {
         eventStreamFactory,
         partitionKeyStrategy,
         serializer,
+        producerProperties,
         offsetStore
       )
 
@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.internal.broker.kafka
+
+/**
+ * The Kafka producer tuning declared in a topic's descriptor.
+ *
+ * @param preset The name of a preset of producer properties.
+ * @param properties Kafka producer properties, applied on top of the preset.
+ */
+private[lagom] final case class ProducerTuning(preset: Option[String], properties: Map[String, String]) {
+
+  /**
+   * Resolves the Kafka producer properties to use when publishing to the given topic. From lowest to highest
+   * precedence: the preset of the descriptor, the properties of the descriptor, the preset configured for the
+   * topic and the properties configured for the topic.
+   */
+  def resolve(kafkaConfig: KafkaConfig, topicId: String): Map[String, String] = {
+    val topicConfig = kafkaConfig.topicConfig(topicId)
+    def presetProperties(name: String): Map[String, String] =
+      kafkaConfig.producerPresets.getOrElse(
+        name,
+        throw new IllegalArgumentException(
+          s"Unknown producer preset [$name] for topic [$topicId], " +
+            s"configured presets are [${kafkaConfig.producerPresets.keys.mkString(", ")}]"
+        )
+      )
+
+    preset.fold(Map.empty[String, String])(presetProperties) ++
+      properties ++
+      topicConfig.producerPreset.fold(Map.empty[String, String])(presetProperties) ++
+      topicConfig.producerProperties
+  }
+}
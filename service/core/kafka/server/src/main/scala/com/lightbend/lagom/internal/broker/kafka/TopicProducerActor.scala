@@ -36,6 +36,7 @@ import com.lightbend.lagom.internal.spi.projection.ProjectionSpi
 import com.lightbend.lagom.spi.persistence.OffsetDao
 import com.lightbend.lagom.spi.persistence.OffsetStore
 import org.apache.kafka.clients.producer.ProducerRecord
+import org.apache.kafka.common.serialization.ByteArraySerializer
 import org.apache.kafka.common.serialization.Serializer
 import org.apache.kafka.common.serialization.StringSerializer
 
@@ -52,6 +53,7 @@ private[lagom] object TopicProducerActor {
       eventStreamFactory: (String, AkkaOffset) => Source[(Message, AkkaOffset), _],
       partitionKeyStrategy: Option[Message => String],
       serializer: Serializer[Message],
+      producerProperties: Map[String, String],
       offsetStore: OffsetStore
   )(implicit mat: Materializer, ec: ExecutionContext) =
     Props(
@@ -64,11 +66,32 @@ private[lagom] object TopicProducerActor {
         eventStreamFactory,
         partitionKeyStrategy,
         serializer,
+        producerProperties,
         offsetStore
       )
     )
 
   case object Start
+
+  /**
+   * Computes the partition keys and serializes the messages ahead of the producer, so that they can be done in
+   * parallel while the producer is busy with previous records. The messages keep their order.
+   */
+  private[kafka] def producerMessages[Message](
+      topicName: String,
+      keyOf: Message => String,
+      serializer: Serializer[Message],
+      parallelism: Int
+  )(implicit ec: ExecutionContext): Flow[Message, ProducerMessage.Message[String, Array[Byte], NotUsed], NotUsed] = {
+    def toProducerMessage(message: Message) =
+      ProducerMessage.Message(
+        new ProducerRecord[String, Array[Byte]](topicName, keyOf(message), serializer.serialize(topicName, message)),
+        NotUsed
+      )
+
+    if (parallelism == 1) Flow[Message].map(toProducerMessage)
+    else Flow[Message].mapAsync(parallelism)(message => Future(toProducerMessage(message)))
+  }
 }
 
 /**
@@ -85,6 +108,7 @@ private[lagom] class TopicProducerActor[Message](
     eventStreamFactory: (String, AkkaOffset) => Source[(Message, AkkaOffset), _],
     partitionKeyStrategy: Option[Message => String],
     serializer: Serializer[Message],
+    producerProperties: Map[String, String],
     offsetStore: OffsetStore
 )(implicit mat: Materializer, ec: ExecutionContext)
     extends Actor
@@ -248,29 +272,31 @@ private[lagom] class TopicProducerActor[Message](
       }
     }
 
-    Flow[Message]
-      .map { message =>
-        ProducerMessage.Message(
-          new ProducerRecord[String, Message](
-            kafkaConfig.topicNameMapping.getOrElse(topicId, topicId),
-            keyOf(message),
-            message
-          ),
-          NotUsed
-        )
-      }
+    val topicConfig = kafkaConfig.topicConfig(topicId)
+    val topicName   = kafkaConfig.topicNameMapping.getOrElse(topicId, topicId)
+    val serializationParallelism =
+      topicConfig.serializationParallelism.getOrElse(producerConfig.serializationParallelism)
+
+    TopicProducerActor
+      .producerMessages(topicName, keyOf, serializer, serializationParallelism)
       .via {
-        ReactiveProducer.flexiFlow(producerSettings(endpoints))
+        ReactiveProducer.flexiFlow(producerSettings(endpoints, topicConfig))
       }
   }
 
-  private def producerSettings(endpoints: String): ProducerSettings[String, Message] = {
+  private def producerSettings(endpoints: String, topicConfig: TopicConfig): ProducerSettings[String, Array[Byte]] = {
     val keySerializer = new StringSerializer
 
     val baseSettings =
-      ProducerSettings(context.system, keySerializer, serializer)
+      ProducerSettings(context.system, keySerializer, new ByteArraySerializer)
+        .withProperties(producerProperties)
         .withProperty("client.id", self.path.toStringWithoutAddress)
 
-    baseSettings.withBootstrapServers(endpoints)
+    val settings = topicConfig.producerParallelism match {
+      case Some(parallelism) => baseSettings.withParallelism(parallelism)
+      case None              => baseSettings
+    }
+
+    settings.withBootstrapServers(endpoints)
   }
 }
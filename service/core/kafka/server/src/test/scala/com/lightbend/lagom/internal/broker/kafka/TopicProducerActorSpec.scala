@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.internal.broker.kafka
+
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.ThreadLocalRandom
+
+import akka.actor.ActorSystem
+import akka.stream.Materializer
+import akka.stream.SystemMaterializer
+import akka.stream.scaladsl.Sink
+import akka.stream.scaladsl.Source
+import org.apache.kafka.common.serialization.Serializer
+import org.scalatest.AsyncFlatSpec
+import org.scalatest.BeforeAndAfterAll
+import org.scalatest.Matchers
+
+import scala.concurrent.Await
+import scala.concurrent.ExecutionContext
+import scala.concurrent.duration._
+
+class TopicProducerActorSpec extends AsyncFlatSpec with Matchers with BeforeAndAfterAll {
+  private val system                        = ActorSystem("TopicProducerActorSpec")
+  private implicit val ec: ExecutionContext = system.dispatcher
+  private implicit val mat: Materializer    = SystemMaterializer(system).materializer
+
+  protected override def afterAll(): Unit = {
+    Await.ready(system.terminate(), 10.seconds)
+    super.afterAll()
+  }
+
+  /** Takes a random time to serialize each message, so that they complete out of order. */
+  private object SlowSerializer extends Serializer[Int] {
+    override def configure(configs: java.util.Map[String, _], isKey: Boolean): Unit = ()
+    override def serialize(topic: String, data: Int): Array[Byte] = {
+      Thread.sleep(ThreadLocalRandom.current.nextLong(5))
+      data.toString.getBytes(StandardCharsets.UTF_8)
+    }
+    override def close(): Unit = ()
+  }
+
+  behavior.of("TopicProducerActor")
+
+  it should "keep the order of the messages serialized in parallel" in {
+    Source(1 to 200)
+      .via(TopicProducerActor.producerMessages[Int]("topic", _.toString.take(1), SlowSerializer, parallelism = 8))
+      .runWith(Sink.seq)
+      .map { messages =>
+        messages.map(message => new String(message.record.value, StandardCharsets.UTF_8).toInt) should ===(1 to 200)
+        messages.map(_.record.key) should ===((1 to 200).map(_.toString.take(1)))
+        messages.map(_.record.topic).distinct should ===(Seq("topic"))
+      }
+  }
+}
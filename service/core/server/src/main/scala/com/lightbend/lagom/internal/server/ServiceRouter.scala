@@ -8,6 +8,7 @@ import java.net.URI
 import java.util.Base64
 import java.util.concurrent.CompletionException
 
+import akka.Done
 import akka.NotUsed
 import akka.stream._
 import akka.stream.scaladsl.Flow
@@ -20,16 +21,27 @@ import akka.stream.stage.InHandler
 import akka.stream.stage.OutHandler
 import akka.util.ByteString
 import com.lightbend.lagom.internal.api.HeaderUtils
+import com.lightbend.lagom.internal.api.Ndjson
 import com.lightbend.lagom.internal.api.Path
 import com.lightbend.lagom.internal.api.transport.LagomServiceApiBridge
+import com.lightbend.lagom.internal.client.FramedStreaming
+import com.lightbend.lagom.internal.client.LocalService
+import com.lightbend.lagom.internal.client.MessageBatching
+import com.lightbend.lagom.internal.client.MessageDeflate
+import com.lightbend.lagom.internal.client.MessageSerializationMetrics
+import com.lightbend.lagom.internal.client.ServiceClientPolicies
 import play.api.Logger
 import play.api.http.HeaderNames
 import play.api.http.HttpConfiguration
+import play.api.http.HttpChunk
+import play.api.http.HttpEntity.Chunked
 import play.api.http.HttpEntity.Strict
 import play.api.http.websocket.BinaryMessage
 import play.api.http.websocket.CloseMessage
 import play.api.http.websocket.Message
+import play.api.http.websocket.PingMessage
 import play.api.http.websocket.TextMessage
+import play.api.inject.ApplicationLifecycle
 import play.api.libs.streams.Accumulator
 import play.api.libs.streams.AkkaStreams
 import play.api.mvc.BodyParser
@@ -44,11 +56,13 @@ import play.api.routing.Router.Routes
 import play.api.routing.HandlerDef
 import play.api.routing.Router
 import play.api.routing.SimpleRouter
+import play.core.parsers.FormUrlEncodedParser
 
 import scala.collection.immutable
 import scala.concurrent.ExecutionContext
 import scala.concurrent.Future
 import scala.concurrent.Promise
+import scala.util.Success
 import scala.util.Try
 import scala.util.control.NonFatal
 
@@ -70,6 +84,13 @@ private[lagom] abstract class ServiceRouter(httpConfiguration: HttpConfiguration
 
   import ServiceRouter._
 
+  // The compression and batching of the streamed messages are configured separately from the ones the clients of the
+  // service ask for
+  private lazy val serverMessageDeflate =
+    new MessageDeflate(mat.system.settings.config.getConfig("lagom.server.message-deflate"))
+  private lazy val serverMessageBatching =
+    new MessageBatching(mat.system.settings.config.getConfig("lagom.server.message-batching"))
+
   protected trait ServiceRoute {
     val call: Call[Any, Any]
     val path: Path
@@ -107,9 +128,25 @@ private[lagom] abstract class ServiceRouter(httpConfiguration: HttpConfiguration
             val requestSerializer  = callRequestSerializer(route.call)
             val responseSerializer = callResponseSerializer(route.call)
 
-            // If both request and response are strict, handle it using an action, otherwise handle it using a websocket
+            // If both request and response are strict, handle it using an action. Otherwise handle it using a chunked
+            // response if the request is strict and the client asks for the framed streaming transport or for newline
+            // delimited JSON, or using a websocket.
+            val framedStreamingRequested =
+              request.headers.get(FramedStreaming.TransportHeader).contains(FramedStreaming.Framed)
+            val streamedResponse =
+              !messageSerializerIsStreamed(requestSerializer) && messageSerializerIsStreamed(responseSerializer)
             val handler =
-              if (messageSerializerIsStreamed(requestSerializer) || messageSerializerIsStreamed(responseSerializer)) {
+              if (streamedResponse && (framedStreamingRequested || ndjsonRequested(request, responseSerializer))) {
+                framedStreamAction(
+                  route.call.asInstanceOf[Call[Any, Any]],
+                  descriptor,
+                  serviceCall,
+                  requestSerializer.asInstanceOf[MessageSerializer[Any, ByteString]],
+                  responseSerializer.asInstanceOf[MessageSerializer[Any, AkkaStreamsSource[ByteString, NotUsed]]],
+                  framedStreamingRequested
+                )
+              } else if (messageSerializerIsStreamed(requestSerializer) ||
+                         messageSerializerIsStreamed(responseSerializer)) {
                 websocket(
                   route.call.asInstanceOf[Call[Any, Any]],
                   descriptor,
@@ -136,6 +173,91 @@ private[lagom] abstract class ServiceRouter(httpConfiguration: HttpConfiguration
     })
   }
 
+  /**
+   * Invokes the strict calls of this service for the service clients of the same actor system, without going through
+   * the network.
+   */
+  private object localService extends LocalService {
+    override def invoke(
+        method: String,
+        pathAndQuery: String,
+        requestHeader: Any,
+        request: Any
+    ): Option[Future[LocalService.Response]] = {
+      val uri = URI.create(pathAndQuery)
+      val queryString =
+        Option(uri.getRawQuery).fold(Map.empty[String, Seq[String]])(query => FormUrlEncodedParser.parse(query))
+      serviceRoutes
+        .collectFirst(Function.unlift { route =>
+          if (!route.isWebSocket && methodName(route.method) == method)
+            route.path.extract(uri.getRawPath, queryString).map(route -> _)
+          else None
+        })
+        .flatMap {
+          case (route, params) =>
+            Try(route.createServiceCall(params)) match {
+              case Success(serviceCall) if !isInvokableLocally(serviceCall) => None
+              case createdServiceCall =>
+                Some(invokeLocally(route.call, createdServiceCall, requestHeader.asInstanceOf[RequestHeader], request))
+            }
+        }
+    }
+  }
+
+  /** Invokes this service for the clients of this actor system without the network, until the application stops. */
+  private[lagom] def registerLocalService(lifecycle: ApplicationLifecycle): Unit = {
+    val localServices = ServiceClientPolicies(mat.system).localServices
+    localServices.register(descriptorName(descriptor), localService)
+    lifecycle.addStopHook { () =>
+      localServices.unregister(descriptorName(descriptor), localService)
+      Future.successful(Done)
+    }
+  }
+
+  /**
+   * Invokes a service call for a local client, applying the header filter and exception serializer of this service as
+   * the action handling it would.
+   */
+  private def invokeLocally(
+      call: Call[Any, Any],
+      serviceCall: Try[ServiceCall[Any, Any]],
+      unfilteredHeader: RequestHeader,
+      request: Any
+  ): Future[LocalService.Response] = {
+    val filteredHeader = headerFilterTransformServerRequest(descriptorHeaderFilter(descriptor), unfilteredHeader)
+    val response =
+      try Future.fromTry(serviceCall).flatMap(invokeServiceCall(_, filteredHeader, request))
+      catch { case NonFatal(e) => Future.failed(e) }
+    response
+      .map {
+        case (responseHeader, response) =>
+          LocalService.Success(
+            headerFilterTransformServerResponse(descriptorHeaderFilter(descriptor), responseHeader, filteredHeader),
+            response
+          )
+      }
+      .recover {
+        case NonFatal(e) =>
+          logException(e, descriptor, call)
+          val rawExceptionMessage = exceptionSerializerSerialize(
+            descriptorExceptionSerializer(descriptor),
+            e,
+            requestHeaderAcceptedResponseProtocols(filteredHeader)
+          )
+          LocalService.Failure(
+            headerFilterTransformServerResponse(
+              descriptorHeaderFilter(descriptor),
+              rawExceptionMessageToResponseHeader(rawExceptionMessage),
+              filteredHeader
+            ),
+            rawExceptionMessageMessage(rawExceptionMessage)
+          )
+      }
+  }
+
+  /** Whether the given service call can be invoked with a request header and message, as opposed to a Play action. */
+  protected def isInvokableLocally(serviceCall: ServiceCall[_, _]): Boolean = true
+
   private val inMemoryBodyParser = BodyParser { req =>
     val contentLength = req.headers.get(HeaderNames.CONTENT_LENGTH)
     val hasBody       = contentLength.filter(_ != "0").orElse(req.headers.get(HeaderNames.TRANSFER_ENCODING)).isDefined
@@ -178,7 +300,7 @@ private[lagom] abstract class ServiceRouter(httpConfiguration: HttpConfiguration
     val unfilteredHeader = toLagomRequestHeader(request)
     val filteredHeaders  = headerFilterTransformServerRequest(descriptorHeaderFilter(descriptor), unfilteredHeader)
     try {
-      handleServiceCall(serviceCall, descriptor, requestSerializer, responseSerializer, filteredHeaders, request)
+      handleServiceCall(call, serviceCall, descriptor, requestSerializer, responseSerializer, filteredHeaders, request)
         .recover {
           case NonFatal(e) =>
             logException(e, descriptor, call)
@@ -195,6 +317,7 @@ private[lagom] abstract class ServiceRouter(httpConfiguration: HttpConfiguration
    * Handle a regular service call, that is, either a ServerServiceCall, or a plain ServiceCall.
    */
   private def handleServiceCall[Request, Response](
+      call: Call[Request, Response],
       serviceCall: ServiceCall[Request, Response],
       descriptor: Descriptor,
       requestSerializer: MessageSerializer[Request, ByteString],
@@ -204,6 +327,8 @@ private[lagom] abstract class ServiceRouter(httpConfiguration: HttpConfiguration
   ): Accumulator[ByteString, Result] = {
     val requestMessageDeserializer =
       messageSerializerDeserializer(requestSerializer, messageHeaderProtocol(requestHeader))
+    val serializationMetrics = ServiceClientPolicies(mat.system).serializationMetrics
+      .forCall(MessageSerializationMetrics.Server, descriptorName(descriptor), callName(call))
 
     // Buffer the body in memory
     inMemoryBodyParser(playRequestHeader).mapFuture {
@@ -216,7 +341,9 @@ private[lagom] abstract class ServiceRouter(httpConfiguration: HttpConfiguration
       // Body was successfully buffered.
       case Right(Right(body)) =>
         // Deserialize request
-        val request = negotiatedDeserializerDeserialize(requestMessageDeserializer, body)
+        val request = MessageSerializationMetrics.deserialize(serializationMetrics, body)(
+          negotiatedDeserializerDeserialize(requestMessageDeserializer, body)
+        )
 
         // Invoke the service call
         invokeServiceCall(serviceCall, requestHeader, request).map {
@@ -226,7 +353,9 @@ private[lagom] abstract class ServiceRouter(httpConfiguration: HttpConfiguration
               responseSerializer,
               requestHeaderAcceptedResponseProtocols(requestHeader)
             )
-            val responseBody = negotiatedSerializerSerialize(serializer, response)
+            val responseBody = MessageSerializationMetrics.serialize(serializationMetrics)(
+              negotiatedSerializerSerialize(serializer, response)
+            )
 
             // If no content type was defined by the service call itself, then replace the protocol with the
             // serializers protocol
@@ -255,6 +384,117 @@ private[lagom] abstract class ServiceRouter(httpConfiguration: HttpConfiguration
     }
   }
 
+  /**
+   * Whether the given request, that isn't a WebSocket handshake, accepts the response stream as newline delimited JSON,
+   * which the response serializer negotiates.
+   */
+  private def ndjsonRequested(request: PlayRequestHeader, responseSerializer: MessageSerializer[_, _]): Boolean =
+    request.headers.get(HeaderNames.ACCEPT).exists(_.contains(Ndjson.ContentType)) &&
+      !request.headers.get(HeaderNames.UPGRADE).exists(_.equalsIgnoreCase("websocket")) && {
+      val accepted   = requestHeaderAcceptedResponseProtocols(toLagomRequestHeader(request))
+      val serializer = messageSerializerSerializerForResponse(responseSerializer, accepted)
+      messageProtocolContentType(negotiatedSerializerProtocol(serializer)).contains(Ndjson.ContentType)
+    }
+
+  /**
+   * Handle a service call that has a strict request and a streamed response as a chunked response, for the clients that
+   * ask for the framed streaming transport or for newline delimited JSON.
+   *
+   * The messages are sent as length prefixed frames, unless the response serializer negotiates newline delimited JSON,
+   * whose lines are sent as they are, so that any HTTP client can read them. A failure of a newline delimited JSON
+   * stream can't be sent after the status, so it aborts the response.
+   */
+  private def framedStreamAction[Request, Response](
+      call: Call[Request, Response],
+      descriptor: Descriptor,
+      serviceCall: ServiceCall[Request, Response],
+      requestSerializer: MessageSerializer[Request, ByteString],
+      responseSerializer: MessageSerializer[Response, AkkaStreamsSource[ByteString, NotUsed]],
+      framedStreamingRequested: Boolean
+  ): EssentialAction = EssentialAction { request =>
+    val unfilteredHeader = toLagomRequestHeader(request)
+    val requestHeader    = headerFilterTransformServerRequest(descriptorHeaderFilter(descriptor), unfilteredHeader)
+    val framedHeader =
+      if (framedStreamingRequested) List(FramedStreaming.TransportHeader -> FramedStreaming.Framed) else Nil
+
+    // Errors are answered with the framed header too, so that the client doesn't fall back to a WebSocket
+    def failed(e: Throwable): Result = {
+      logException(e, descriptor, call)
+      exceptionToResult(descriptor, requestHeader, e).withHeaders(framedHeader: _*)
+    }
+
+    try {
+      inMemoryBodyParser(request)
+        .mapFuture {
+          case Left(result) => Future.successful(result)
+          case Right(Left(_)) =>
+            throw newPayloadTooLarge("Request body larger than " + httpConfiguration.parser.maxMemoryBuffer)
+          case Right(Right(body)) =>
+            val deserializer = messageSerializerDeserializer(requestSerializer, messageHeaderProtocol(requestHeader))
+            val requestMessage = negotiatedDeserializerDeserialize(deserializer, body)
+
+            invokeServiceCall(serviceCall, requestHeader, requestMessage).map {
+              case (responseHeader, response) =>
+                val acceptedResponseProtocols = requestHeaderAcceptedResponseProtocols(requestHeader)
+                val serializer = messageSerializerSerializerForResponse(responseSerializer, acceptedResponseProtocols)
+                val messages   = akkaStreamsSourceAsScala(negotiatedSerializerSerialize(serializer, response))
+
+                val rhWithProtocol = if (messageProtocolContentType(messageHeaderProtocol(responseHeader)).isEmpty) {
+                  responseHeaderWithProtocol(responseHeader, negotiatedSerializerProtocol(serializer))
+                } else responseHeader
+                val transformedResponseHeader = headerFilterTransformServerResponse(
+                  descriptorHeaderFilter(descriptor),
+                  rhWithProtocol,
+                  requestHeader
+                )
+
+                val ndjson =
+                  messageProtocolContentType(negotiatedSerializerProtocol(serializer)).contains(Ndjson.ContentType)
+                val body =
+                  if (ndjson) {
+                    messages.mapError {
+                      case NonFatal(e) =>
+                        logException(e, descriptor, call)
+                        e
+                    }
+                  } else {
+                    // A failure of the response stream is sent as a last frame, as the status is already sent
+                    messages
+                      .map(FramedStreaming.messageFrame)
+                      .recover {
+                        case NonFatal(e) =>
+                          logException(e, descriptor, call)
+                          val rawExceptionMessage = exceptionSerializerSerialize(
+                            descriptorExceptionSerializer(descriptor),
+                            e,
+                            acceptedResponseProtocols
+                          )
+                          FramedStreaming.errorFrame(
+                            responseHeaderStatus(rawExceptionMessageToResponseHeader(rawExceptionMessage)),
+                            rawExceptionMessageMessage(rawExceptionMessage)
+                          )
+                      }
+                  }
+
+                Results
+                  .Status(responseHeaderStatus(transformedResponseHeader))
+                  .sendEntity(
+                    Chunked(
+                      body.map(HttpChunk.Chunk.apply),
+                      messageProtocolToContentTypeHeader(messageHeaderProtocol(transformedResponseHeader))
+                    )
+                  )
+                  .withHeaders(toResponseHeaders(transformedResponseHeader) ++ framedHeader: _*)
+            }
+        }
+        .recover {
+          case NonFatal(e) => failed(e)
+        }
+    } catch {
+      case NonFatal(e) => Accumulator.done(failed(e))
+    }
+  }
+
   private def logException(exc: Throwable, descriptor: Descriptor, call: Call[_, _]): Unit = {
     def log = Logger(descriptorName(descriptor))
 
@@ -339,6 +579,14 @@ private[lagom] abstract class ServiceRouter(httpConfiguration: HttpConfiguration
     val requestProtocol = messageHeaderProtocol(requestHeader)
     val acceptHeaders   = requestHeaderAcceptedResponseProtocols(requestHeader)
 
+    // Compress and batch the messages sent if the client asks for it, and the call enables it
+    val messageDeflate =
+      rh.headers.get(MessageDeflate.RequestHeader).contains(MessageDeflate.Deflate) &&
+        serverMessageDeflate.enabled(descriptorName(descriptor), callName(call))
+    val messageBatching =
+      rh.headers.get(MessageBatching.RequestHeader).contains(MessageBatching.LengthDelimited) &&
+        serverMessageBatching.enabled(descriptorName(descriptor), callName(call))
+
     // We need to return a future. Also, we need to handle any exceptions thrown. By doing this asynchronously, we can
     // ensure all exceptions are handled in one place, in the future recover block.
     Future {
@@ -483,15 +731,7 @@ private[lagom] abstract class ServiceRouter(httpConfiguration: HttpConfiguration
           }
           .via(Flow.fromSinkAndSource(incomingSink, outgoingSource))
           .via(
-            Flow[ByteString]
-              .map { bytes =>
-                val responseProtocol = negotiatedSerializerProtocol(responseMessageSerializer)
-                if (messageProtocolIsText(responseProtocol)) {
-                  TextMessage(bytes.decodeString(messageProtocolCharset(responseProtocol).getOrElse("utf-8")))
-                } else {
-                  BinaryMessage(bytes)
-                }
-              }
+            toMessages(negotiatedSerializerProtocol(responseMessageSerializer), messageDeflate, messageBatching)
               .recover {
                 case NonFatal(e) =>
                   logException(e, descriptor, call)
@@ -506,6 +746,43 @@ private[lagom] abstract class ServiceRouter(httpConfiguration: HttpConfiguration
     }
   }
 
+  /**
+   * Converts the outgoing bytes to WebSocket messages. When batched or compressed, the messages are preceded by the
+   * pings that confirm it to the client, see [[MessageBatching]] and [[MessageDeflate]].
+   */
+  private def toMessages(
+      responseProtocol: MessageProtocol,
+      messageDeflate: Boolean,
+      messageBatching: Boolean
+  ): Flow[ByteString, Message, _] =
+    if (messageDeflate || messageBatching) {
+      val batched =
+        if (messageBatching) Flow[ByteString].via(serverMessageBatching.batcher)
+        else Flow[ByteString]
+      val confirmations =
+        (if (messageDeflate) List(PingMessage(MessageDeflate.Confirmation)) else Nil) ++
+          (if (messageBatching) List(PingMessage(MessageBatching.Confirmation)) else Nil)
+      if (messageDeflate) {
+        val compressor = serverMessageDeflate.newCompressor()
+        batched
+          .map(bytes => BinaryMessage(compressor.compress(bytes)): Message)
+          .prepend(Source(confirmations))
+          .watchTermination() { (_, done) =>
+            done.onComplete(_ => compressor.close())
+          }
+      } else {
+        batched.map(bytes => BinaryMessage(bytes): Message).prepend(Source(confirmations))
+      }
+    } else {
+      Flow[ByteString].map { bytes =>
+        if (messageProtocolIsText(responseProtocol)) {
+          TextMessage(bytes.decodeString(messageProtocolCharset(responseProtocol).getOrElse("utf-8")))
+        } else {
+          BinaryMessage(bytes)
+        }
+      }
+    }
+
   /** Convert an exception to a close message */
   private def exceptionToCloseMessage(exception: Throwable, acceptHeaders: immutable.Seq[MessageProtocol]) = {
     val exceptionSerializer = descriptorExceptionSerializer(descriptor)
@@ -60,6 +60,8 @@ public final class Descriptor {
     private final MessageSerializer<Response, ?> responseSerializer;
     private final Optional<CircuitBreaker> circuitBreaker;
     private final Optional<Boolean> autoAcl;
+    private final Optional<Hedging> hedging;
+    private final StreamingTransport streamingTransport;
 
     Call(
         CallId callId,
@@ -68,6 +70,44 @@ public final class Descriptor {
         MessageSerializer<Response, ?> responseSerializer,
         Optional<CircuitBreaker> circuitBreaker,
         Optional<Boolean> autoAcl) {
+      this(
+          callId,
+          serviceCallHolder,
+          requestSerializer,
+          responseSerializer,
+          circuitBreaker,
+          autoAcl,
+          Optional.empty());
+    }
+
+    Call(
+        CallId callId,
+        ServiceCallHolder serviceCallHolder,
+        MessageSerializer<Request, ?> requestSerializer,
+        MessageSerializer<Response, ?> responseSerializer,
+        Optional<CircuitBreaker> circuitBreaker,
+        Optional<Boolean> autoAcl,
+        Optional<Hedging> hedging) {
+      this(
+          callId,
+          serviceCallHolder,
+          requestSerializer,
+          responseSerializer,
+          circuitBreaker,
+          autoAcl,
+          hedging,
+          StreamingTransport.WEBSOCKET);
+    }
+
+    Call(
+        CallId callId,
+        ServiceCallHolder serviceCallHolder,
+        MessageSerializer<Request, ?> requestSerializer,
+        MessageSerializer<Response, ?> responseSerializer,
+        Optional<CircuitBreaker> circuitBreaker,
+        Optional<Boolean> autoAcl,
+        Optional<Hedging> hedging,
+        StreamingTransport streamingTransport) {
 
       this.callId = callId;
       this.serviceCallHolder = serviceCallHolder;
@@ -75,6 +115,8 @@ public final class Descriptor {
       this.responseSerializer = responseSerializer;
       this.circuitBreaker = circuitBreaker;
       this.autoAcl = autoAcl;
+      this.hedging = hedging;
+      this.streamingTransport = streamingTransport;
     }
 
     /**
@@ -135,6 +177,24 @@ public final class Descriptor {
       return autoAcl;
     }
 
+    /**
+     * Get the hedging of the call.
+     *
+     * @return The hedging, if configured.
+     */
+    public Optional<Hedging> hedging() {
+      return hedging;
+    }
+
+    /**
+     * Get the transport of the call, if it has a streamed request or response.
+     *
+     * @return The streaming transport.
+     */
+    public StreamingTransport streamingTransport() {
+      return streamingTransport;
+    }
+
     /**
      * Return a copy of this call descriptor with the given service call ID configured.
      *
@@ -148,7 +208,9 @@ public final class Descriptor {
           requestSerializer,
           responseSerializer,
           circuitBreaker,
-          autoAcl);
+          autoAcl,
+          hedging,
+          streamingTransport);
     }
 
     /**
@@ -164,7 +226,9 @@ public final class Descriptor {
           requestSerializer,
           responseSerializer,
           circuitBreaker,
-          autoAcl);
+          autoAcl,
+          hedging,
+          streamingTransport);
     }
 
     /**
@@ -181,7 +245,9 @@ public final class Descriptor {
           requestSerializer,
           responseSerializer,
           circuitBreaker,
-          autoAcl);
+          autoAcl,
+          hedging,
+          streamingTransport);
     }
 
     /**
@@ -198,7 +264,9 @@ public final class Descriptor {
           requestSerializer,
           responseSerializer,
           circuitBreaker,
-          autoAcl);
+          autoAcl,
+          hedging,
+          streamingTransport);
     }
 
     /**
@@ -214,7 +282,9 @@ public final class Descriptor {
           requestSerializer,
           responseSerializer,
           Optional.of(circuitBreaker),
-          autoAcl);
+          autoAcl,
+          hedging,
+          streamingTransport);
     }
 
     /**
@@ -231,7 +301,46 @@ public final class Descriptor {
           requestSerializer,
           responseSerializer,
           circuitBreaker,
-          Optional.of(autoAcl));
+          Optional.of(autoAcl),
+          hedging,
+          streamingTransport);
+    }
+
+    /**
+     * Return a copy of this call descriptor with the given hedging configured.
+     *
+     * @param hedging The hedging of the call.
+     * @return A copy of this call descriptor.
+     */
+    public Call<Request, Response> withHedging(Hedging hedging) {
+      return new Call<>(
+          callId,
+          serviceCallHolder,
+          requestSerializer,
+          responseSerializer,
+          circuitBreaker,
+          autoAcl,
+          Optional.of(hedging),
+          streamingTransport);
+    }
+
+    /**
+     * Return a copy of this call descriptor with the given streaming transport configured.
+     *
+     * @param streamingTransport The transport of the call, if it has a streamed request or
+     *     response.
+     * @return A copy of this call descriptor.
+     */
+    public Call<Request, Response> withStreamingTransport(StreamingTransport streamingTransport) {
+      return new Call<>(
+          callId,
+          serviceCallHolder,
+          requestSerializer,
+          responseSerializer,
+          circuitBreaker,
+          autoAcl,
+          hedging,
+          streamingTransport);
     }
 
     @Override
@@ -264,6 +373,10 @@ public final class Descriptor {
           + circuitBreaker
           + ", autoAcl="
           + autoAcl
+          + ", hedging="
+          + hedging
+          + ", streamingTransport="
+          + streamingTransport
           + '}';
     }
   }
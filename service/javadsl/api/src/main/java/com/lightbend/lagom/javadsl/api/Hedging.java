@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.javadsl.api;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalDouble;
+
+/**
+ * Hedging descriptor. Describes when a client sends extra requests for a particular {@link
+ * ServiceCall} to other instances of the service, if the first request has not been answered yet.
+ * The first successful response is used, and the responses to the other requests are discarded:
+ * these requests are not aborted, and still run to completion on the instances they were sent to.
+ *
+ * <p>Hedging is only applied to calls that have a strict request and response, and an idempotent
+ * method: GET, HEAD, OPTIONS, PUT or DELETE. The number of extra requests is also bounded by the
+ * {@code lagom.client.hedging.budget-ratio} of the calls made by the client.
+ *
+ * <p>Only hedge calls whose implementation is actually idempotent, whatever their method, since a
+ * hedged call may be executed several times.
+ */
+public final class Hedging {
+
+  private final Optional<Duration> delay;
+  private final OptionalDouble percentile;
+  private final int maxExtraRequests;
+
+  private Hedging(Optional<Duration> delay, OptionalDouble percentile, int maxExtraRequests) {
+    if (maxExtraRequests < 1) {
+      throw new IllegalArgumentException(
+          "maxExtraRequests must be at least 1, was " + maxExtraRequests);
+    }
+    this.delay = delay;
+    this.percentile = percentile;
+    this.maxExtraRequests = maxExtraRequests;
+  }
+
+  /**
+   * Send an extra request whenever the previous requests have not been answered after the given
+   * delay, up to the given number of extra requests.
+   *
+   * @param delay The delay after which an extra request is sent.
+   * @param maxExtraRequests The maximum number of extra requests.
+   * @return The hedging descriptor.
+   */
+  public static Hedging after(Duration delay, int maxExtraRequests) {
+    return new Hedging(Optional.of(delay), OptionalDouble.empty(), maxExtraRequests);
+  }
+
+  /**
+   * Send one extra request if the first one has not been answered after the given delay.
+   *
+   * @param delay The delay after which an extra request is sent.
+   * @return The hedging descriptor.
+   */
+  public static Hedging after(Duration delay) {
+    return after(delay, 1);
+  }
+
+  /**
+   * Send an extra request whenever the previous requests have not been answered after the given
+   * percentile of the latency of the recent calls, up to the given number of extra requests.
+   *
+   * @param percentile The percentile of the latency, between 0 and 100 excluded, e.g. 95.
+   * @param maxExtraRequests The maximum number of extra requests.
+   * @return The hedging descriptor.
+   */
+  public static Hedging atPercentile(double percentile, int maxExtraRequests) {
+    if (percentile <= 0 || percentile >= 100) {
+      throw new IllegalArgumentException(
+          "percentile must be between 0 and 100 excluded, was " + percentile);
+    }
+    return new Hedging(Optional.empty(), OptionalDouble.of(percentile), maxExtraRequests);
+  }
+
+  /**
+   * Send one extra request if the first one has not been answered after the given percentile of
+   * the latency of the recent calls.
+   *
+   * @param percentile The percentile of the latency, between 0 and 100 excluded, e.g. 95.
+   * @return The hedging descriptor.
+   */
+  public static Hedging atPercentile(double percentile) {
+    return atPercentile(percentile, 1);
+  }
+
+  /**
+   * The fixed delay after which extra requests are sent, if any.
+   *
+   * @return The delay, if configured.
+   */
+  public Optional<Duration> delay() {
+    return delay;
+  }
+
+  /**
+   * The percentile of the latency of the recent calls after which extra requests are sent, if any.
+   *
+   * @return The percentile, if configured.
+   */
+  public OptionalDouble percentile() {
+    return percentile;
+  }
+
+  /**
+   * The maximum number of extra requests sent for a call.
+   *
+   * @return The maximum number of extra requests.
+   */
+  public int maxExtraRequests() {
+    return maxExtraRequests;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+
+    Hedging that = (Hedging) o;
+
+    return maxExtraRequests == that.maxExtraRequests
+        && delay.equals(that.delay)
+        && percentile.equals(that.percentile);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(delay, percentile, maxExtraRequests);
+  }
+
+  @Override
+  public String toString() {
+    return "Hedging{"
+        + "delay="
+        + delay
+        + ", percentile="
+        + percentile
+        + ", maxExtraRequests="
+        + maxExtraRequests
+        + '}';
+  }
+}
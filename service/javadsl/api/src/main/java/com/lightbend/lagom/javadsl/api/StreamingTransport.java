@@ -0,0 +1,23 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.javadsl.api;
+
+/**
+ * The transport of a {@link ServiceCall} that has a streamed request or response.
+ *
+ * <p>The transport is negotiated with the service: a client falls back to a WebSocket when the
+ * service doesn't support the requested transport.
+ */
+public enum StreamingTransport {
+  /** The request and response messages are sent as the frames of a WebSocket. */
+  WEBSOCKET,
+
+  /**
+   * The response messages are sent as length prefixed frames in a chunked HTTP response, which
+   * needs no upgrade round trip and is flow controlled by HTTP. Only calls with a strict request
+   * and a streamed response are made this way, other streamed calls use a WebSocket.
+   */
+  FRAMED
+}
@@ -8,6 +8,7 @@ import org.pcollections.HashTreePMap;
 import org.pcollections.PMap;
 
 import java.util.Optional;
+import java.util.function.Function;
 
 /**
  * A message broker message.
@@ -18,10 +19,15 @@ public final class Message<Payload> {
 
   private final Payload payload;
   private final PMap<MetadataKey<?>, Object> metadataMap;
+  private final Function<MetadataKey<?>, Object> metadataLookup;
 
-  private Message(Payload payload, PMap<MetadataKey<?>, Object> metadataMap) {
+  private Message(
+      Payload payload,
+      PMap<MetadataKey<?>, Object> metadataMap,
+      Function<MetadataKey<?>, Object> metadataLookup) {
     this.payload = payload;
     this.metadataMap = metadataMap;
+    this.metadataLookup = metadataLookup;
   }
 
   /** The payload of the message. */
@@ -37,7 +43,11 @@ public final class Message<Payload> {
    */
   @SuppressWarnings("unchecked")
   public <Metadata> Optional<Metadata> get(MetadataKey<Metadata> key) {
-    return Optional.ofNullable((Metadata) metadataMap.get(key));
+    Object metadata = metadataMap.get(key);
+    if (metadata == null && metadataLookup != null) {
+      metadata = metadataLookup.apply(key);
+    }
+    return Optional.ofNullable((Metadata) metadata);
   }
 
   /**
@@ -48,7 +58,7 @@ public final class Message<Payload> {
    * @return A copy of this message with the key and value added.
    */
   public <Metadata> Message<Payload> add(MetadataKey<Metadata> key, Metadata metadata) {
-    return new Message<>(payload, metadataMap.plus(key, metadata));
+    return new Message<>(payload, metadataMap.plus(key, metadata), metadataLookup);
   }
 
   /**
@@ -58,7 +68,7 @@ public final class Message<Payload> {
    * @return A copy of this message with the given payload.
    */
   public <P2> Message<P2> withPayload(P2 payload) {
-    return new Message<>(payload, metadataMap);
+    return new Message<>(payload, metadataMap, metadataLookup);
   }
 
   /**
@@ -76,6 +86,19 @@ public final class Message<Payload> {
 
   /** Create a message with the given payload. */
   public static <Payload> Message<Payload> create(Payload payload) {
-    return new Message<>(payload, HashTreePMap.empty());
+    return new Message<>(payload, HashTreePMap.empty(), null);
+  }
+
+  /**
+   * Create a message whose metadata is read on demand through <code>metadataLookup</code>, rather
+   * than being copied into the message upfront. The lookup returns <code>null</code> for unknown
+   * keys. Metadata added to the resulting message takes precedence over the one provided by the
+   * lookup.
+   *
+   * <p>The message broker implementations reach it through <code>Messages</code>.
+   */
+  static <Payload> Message<Payload> withMetadataLookup(
+      Payload payload, Function<MetadataKey<?>, Object> metadataLookup) {
+    return new Message<>(payload, HashTreePMap.empty(), metadataLookup);
   }
 }
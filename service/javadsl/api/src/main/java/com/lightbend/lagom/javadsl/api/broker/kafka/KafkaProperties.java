@@ -6,6 +6,8 @@ package com.lightbend.lagom.javadsl.api.broker.kafka;
 
 import com.lightbend.lagom.javadsl.api.Descriptor;
 
+import java.util.Map;
+
 /**
  * Provides a set of Kafka specific properties that can be used when creating a topic descriptor.
  */
@@ -15,6 +17,18 @@ public final class KafkaProperties {
   private static final Descriptor.Properties.Property PARTITION_KEY_STRATEGY =
       new Descriptor.Properties.Property<>(PartitionKeyStrategy.class, "kafkaPartitionKeyStrategy");
 
+  private static final Descriptor.Properties.Property PRODUCER_PROPERTIES =
+      new Descriptor.Properties.Property<>(Map.class, "kafkaProducerProperties");
+
+  private static final Descriptor.Properties.Property PRODUCER_PRESET =
+      new Descriptor.Properties.Property<>(String.class, "kafkaProducerPreset");
+
+  /** A producer preset that favours throughput, batching records for longer and compressing them. */
+  public static final String THROUGHPUT_PRESET = "throughput";
+
+  /** A producer preset that favours latency, sending records as soon as possible, uncompressed. */
+  public static final String LATENCY_PRESET = "latency";
+
   /**
    * A PartitionKeyStrategy produces a key for each message published to a Kafka topic.
    *
@@ -28,4 +42,30 @@ public final class KafkaProperties {
           partitionKeyStrategy() {
     return PARTITION_KEY_STRATEGY;
   }
+
+  /**
+   * Kafka producer properties used when publishing to this topic, such as <code>linger.ms</code>,
+   * <code>batch.size</code>, <code>compression.type</code> or <code>
+   * max.in.flight.requests.per.connection</code>.
+   *
+   * <p>They override the globally configured producer properties and the ones of the {@link
+   * #producerPreset()}, and can in turn be overridden in <code>
+   * lagom.broker.kafka.topics.&lt;topic-id&gt;.producer-properties</code>.
+   */
+  @SuppressWarnings("unchecked")
+  public static <Message>
+      Descriptor.Properties.Property<Message, Map<String, String>> producerProperties() {
+    return PRODUCER_PROPERTIES;
+  }
+
+  /**
+   * The name of a preset of Kafka producer properties, configured in <code>
+   * lagom.broker.kafka.producer-presets</code>, to use when publishing to this topic.
+   *
+   * <p>Lagom ships with the {@link #THROUGHPUT_PRESET} and {@link #LATENCY_PRESET} presets.
+   */
+  @SuppressWarnings("unchecked")
+  public static <Message> Descriptor.Properties.Property<Message, String> producerPreset() {
+    return PRODUCER_PRESET;
+  }
 }
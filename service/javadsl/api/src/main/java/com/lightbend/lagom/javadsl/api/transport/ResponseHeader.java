@@ -5,6 +5,7 @@
 package com.lightbend.lagom.javadsl.api.transport;
 
 import com.lightbend.lagom.internal.api.HeaderUtils;
+import java.time.Duration;
 import org.pcollections.HashTreePMap;
 import org.pcollections.PMap;
 import org.pcollections.PSequence;
@@ -57,6 +58,32 @@ public final class ResponseHeader extends MessageHeader {
     return new ResponseHeader(status, protocol, headers, lowercaseHeaders);
   }
 
+  /**
+   * Return a copy of this response header with a {@code Cache-Control} header that allows clients
+   * to reuse the response for the given duration without making any request.
+   *
+   * @param maxAge How long clients may reuse the response for.
+   * @return A copy of this response header.
+   */
+  public ResponseHeader withCacheControl(Duration maxAge) {
+    return withHeader("Cache-Control", "max-age=" + maxAge.getSeconds());
+  }
+
+  /**
+   * Return a copy of this response header with the given {@code ETag} header, that clients can
+   * revalidate their cached copy of the response with. The tag is quoted if it isn't already.
+   *
+   * @param etag The entity tag of the response.
+   * @return A copy of this response header.
+   */
+  public ResponseHeader withETag(String etag) {
+    if (etag.startsWith("\"") || etag.startsWith("W/\"")) {
+      return withHeader("ETag", etag);
+    } else {
+      return withHeader("ETag", "\"" + etag + "\"");
+    }
+  }
+
   @Override
   public ResponseHeader withProtocol(MessageProtocol protocol) {
     return new ResponseHeader(status, protocol, headers, lowercaseHeaders);
@@ -80,6 +107,12 @@ public final class ResponseHeader extends MessageHeader {
       new ResponseHeader(200, new MessageProtocol(), HashTreePMap.empty());
   public static final ResponseHeader NO_CONTENT =
       new ResponseHeader(204, new MessageProtocol(), HashTreePMap.empty());
+  /**
+   * A response telling the client that its cached copy of the response, whose {@code ETag} it sent
+   * in an {@code If-None-Match} header, is still valid.
+   */
+  public static final ResponseHeader NOT_MODIFIED =
+      new ResponseHeader(304, new MessageProtocol(), HashTreePMap.empty());
 
   @Override
   public String toString() {
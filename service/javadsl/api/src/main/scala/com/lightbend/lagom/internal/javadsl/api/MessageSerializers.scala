@@ -63,6 +63,8 @@ class UnresolvedStreamedMessageSerializer[MessageEntity](val messageType: Type)
     extends UnresolvedMessageSerializer[Source[MessageEntity, _]] {
   override def resolve(factory: SerializerFactory, typeInfo: Type): MessageSerializer[Source[MessageEntity, _], _] =
     factory.messageSerializerFor[MessageEntity](messageType) match {
+      case provider: StreamedMessageSerializerProvider[MessageEntity] =>
+        provider.streamedMessageSerializer()
       case strict: StrictMessageSerializer[MessageEntity] =>
         new DelegatingStreamedMessageSerializer[MessageEntity](strict)
       case other =>
@@ -70,6 +72,14 @@ class UnresolvedStreamedMessageSerializer[MessageEntity](val messageType: Type)
     }
 }
 
+/**
+ * A message serializer that provides the serializer of the streams of its messages, instead of a
+ * [[DelegatingStreamedMessageSerializer]] delegating to it.
+ */
+trait StreamedMessageSerializerProvider[MessageEntity] {
+  def streamedMessageSerializer(): StreamedMessageSerializer[MessageEntity]
+}
+
 trait PlaceholderExceptionSerializer extends ExceptionSerializer {
   override def serialize(exception: Throwable, accept: util.Collection[MessageProtocol]): RawExceptionMessage =
     throw new UnsupportedOperationException(
@@ -0,0 +1,26 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.javadsl.api.broker
+
+import java.util.function.{ Function => JFunction }
+
+/**
+ * INTERNAL API
+ *
+ * Creates the messages of the message broker implementations that aren't part of the API of [[Message]].
+ */
+private[lagom] object Messages {
+
+  /**
+   * Create a message whose metadata is read on demand through `metadataLookup`, rather than being copied into the
+   * message upfront. The lookup returns `null` for unknown keys. Metadata added to the resulting message takes
+   * precedence over the one provided by the lookup.
+   */
+  def withMetadataLookup[Payload](
+      payload: Payload,
+      metadataLookup: JFunction[MetadataKey[_], AnyRef]
+  ): Message[Payload] =
+    Message.withMetadataLookup(payload, metadataLookup)
+}
@@ -38,6 +38,10 @@ public class CircuitBreakersPanelImpl implements CircuitBreakersPanel {
     this.circuitBreakersPanelInternal = circuitBreakersPanelInternal;
   }
 
+  public CircuitBreakersPanelInternal internal() {
+    return circuitBreakersPanelInternal;
+  }
+
   @Override
   public <T> CompletionStage<T> withCircuitBreaker(String id, Supplier<CompletionStage<T>> body) {
 
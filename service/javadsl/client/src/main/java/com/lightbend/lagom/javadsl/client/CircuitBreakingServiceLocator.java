@@ -4,10 +4,18 @@
 
 package com.lightbend.lagom.javadsl.client;
 
+import com.lightbend.lagom.internal.api.Execution;
+import com.lightbend.lagom.internal.client.CircuitBreakersPanelInternal;
+import com.lightbend.lagom.internal.client.InstanceSelector;
 import com.lightbend.lagom.internal.javadsl.client.CircuitBreakersPanelImpl;
 import com.lightbend.lagom.javadsl.api.CircuitBreaker;
 import com.lightbend.lagom.javadsl.api.Descriptor;
 import com.lightbend.lagom.javadsl.api.ServiceLocator;
+import scala.collection.JavaConverters;
+import scala.compat.java8.FutureConverters;
+import scala.compat.java8.JFunction0;
+import scala.compat.java8.OptionConverters;
+import scala.concurrent.Future;
 
 import java.net.URI;
 import java.util.List;
@@ -31,6 +39,14 @@ public abstract class CircuitBreakingServiceLocator implements ServiceLocator {
     this.circuitBreakersPanel = circuitBreakersPanel;
   }
 
+  private Optional<CircuitBreakersPanelInternal> circuitBreakersInternal() {
+    if (circuitBreakersPanel instanceof CircuitBreakersPanelImpl) {
+      return Optional.of(((CircuitBreakersPanelImpl) circuitBreakersPanel).internal());
+    } else {
+      return Optional.empty();
+    }
+  }
+
   /**
    * Do the given block with the given service looked up.
    *
@@ -38,8 +54,11 @@ public abstract class CircuitBreakingServiceLocator implements ServiceLocator {
    * the passed in block in a circuit breaker if configured to do so.
    *
    * <p>The default implementation just delegates to the {@link #locate(String, Descriptor.Call)}
-   * method, but this method can be overridden if the service locator wants to inject other
-   * behaviour after the service call is complete.
+   * method, unless a load balancing strategy or outlier detection is configured for the service in
+   * {@code lagom.client.load-balancing} or {@code lagom.client.outlier-detection}, in which case the
+   * instance is selected among the ones returned by {@link #locateAll(String, Descriptor.Call)}.
+   * This method can be overridden if the service locator wants to inject other behaviour after the
+   * service call is complete.
    *
    * @param name The service name.
    * @param serviceCall The service call that needs the service lookup.
@@ -49,6 +68,21 @@ public abstract class CircuitBreakingServiceLocator implements ServiceLocator {
    */
   protected <T> CompletionStage<Optional<T>> doWithServiceImpl(
       String name, Descriptor.Call<?, ?> serviceCall, Function<URI, CompletionStage<T>> block) {
+    Optional<InstanceSelector> selector =
+        circuitBreakersInternal()
+            .flatMap(internal -> OptionConverters.toJava(internal.instanceSelector(name)));
+    if (selector.isPresent()) {
+      InstanceSelector instances = selector.get();
+      return locateAll(name, serviceCall)
+          .thenCompose(
+              uris -> {
+                Optional<URI> uri =
+                    OptionConverters.toJava(
+                        instances.select(JavaConverters.asScalaBufferConverter(uris).asScala()));
+                return uri.map(u -> block.apply(u).thenApply(Optional::of))
+                    .orElseGet(() -> CompletableFuture.completedFuture(Optional.empty()));
+              });
+    }
     return locate(name, serviceCall)
         .thenCompose(
             uri -> {
@@ -62,7 +96,30 @@ public abstract class CircuitBreakingServiceLocator implements ServiceLocator {
       String serviceName,
       Descriptor.Call<?, ?> serviceCall,
       Function<URI, CompletionStage<T>> block) {
+    return doWithServiceImpl(serviceName, serviceCall, onInstance(serviceName, serviceCall, block));
+  }
+
+  /**
+   * Runs the given block with the given instance of the service, through the circuit breaker and
+   * the instance selector of that instance, without locating the service. Used to send a hedged
+   * request to another instance than the one the service locator selected.
+   */
+  <T> CompletionStage<T> doWithInstance(
+      String serviceName,
+      Descriptor.Call<?, ?> serviceCall,
+      URI uri,
+      Function<URI, CompletionStage<T>> block) {
+    return onInstance(serviceName, serviceCall, block).apply(uri);
+  }
 
+  /**
+   * Wraps the given block in the circuit breaker and the instance selector of the instance it is
+   * run with.
+   */
+  private <T> Function<URI, CompletionStage<T>> onInstance(
+      String serviceName,
+      Descriptor.Call<?, ?> serviceCall,
+      Function<URI, CompletionStage<T>> block) {
     return serviceCall
         .circuitBreaker()
         .filter(cb -> !cb.equals(CircuitBreaker.none()))
@@ -76,13 +133,46 @@ public abstract class CircuitBreakingServiceLocator implements ServiceLocator {
                 circuitBreakerId = serviceName;
               }
 
-              return doWithServiceImpl(
-                  serviceName,
-                  serviceCall,
+              Function<URI, CompletionStage<T>> withCircuitBreaker =
                   uri ->
-                      circuitBreakersPanel.withCircuitBreaker(
-                          circuitBreakerId, () -> block.apply(uri)));
+                      circuitBreakersInternal()
+                          .map(
+                              internal ->
+                                  FutureConverters.toJava(
+                                      // The latency of the instance is the one measured by
+                                      // its circuit breaker
+                                      internal.withCircuitBreaker(
+                                          circuitBreakerId,
+                                          uri,
+                                          internal.instanceSelector(serviceName),
+                                          (JFunction0<Future<T>>)
+                                              () -> FutureConverters.toScala(block.apply(uri)))))
+                          .orElseGet(
+                              () ->
+                                  circuitBreakersPanel.withCircuitBreaker(
+                                      circuitBreakerId, () -> block.apply(uri)));
+              return withCircuitBreaker;
             })
-        .orElseGet(() -> doWithServiceImpl(serviceName, serviceCall, block));
+        .orElseGet(
+            () -> {
+              Optional<InstanceSelector> selector =
+                  circuitBreakersInternal()
+                      .flatMap(
+                          internal ->
+                              OptionConverters.toJava(internal.instanceSelector(serviceName)));
+              if (selector.isPresent()) {
+                return uri ->
+                    FutureConverters.toJava(
+                        selector
+                            .get()
+                            .track(
+                                uri,
+                                (JFunction0<Future<T>>)
+                                    () -> FutureConverters.toScala(block.apply(uri)),
+                                Execution.trampoline()));
+              } else {
+                return block;
+              }
+            });
   }
 }
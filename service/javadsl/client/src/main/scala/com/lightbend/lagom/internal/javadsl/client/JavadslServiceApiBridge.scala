@@ -7,18 +7,24 @@ package com.lightbend.lagom.internal.javadsl.client
 import java.net.URI
 import java.security.Principal
 import java.util.concurrent.CompletionStage
+import java.util.concurrent.TimeUnit
 
 import akka.stream.javadsl.{ Source => JSource }
 import akka.stream.scaladsl.Source
 import akka.util.ByteString
 import com.lightbend.lagom.internal.api.HeaderUtils
+import com.lightbend.lagom.internal.api.HedgingPolicy
 import com.lightbend.lagom.internal.api.transport.LagomServiceApiBridge
 import com.lightbend.lagom.javadsl.api
+import com.lightbend.lagom.javadsl.api.Descriptor.NamedCallId
+import com.lightbend.lagom.javadsl.api.Descriptor.PathCallId
 import com.lightbend.lagom.javadsl.api.Descriptor.RestCallId
 import com.lightbend.lagom.javadsl.api.deser.ExceptionMessage
 import com.lightbend.lagom.javadsl.api.security.ServicePrincipal
 import com.lightbend.lagom.javadsl.api.deser
 import com.lightbend.lagom.javadsl.api.transport
+import com.lightbend.lagom.javadsl.client.CircuitBreakingServiceLocator
+import com.lightbend.lagom.javadsl.client.CircuitBreakingServiceLocators
 import org.pcollections.HashTreePMap
 import org.pcollections.PSequence
 import org.pcollections.TreePVector
@@ -29,6 +35,7 @@ import scala.compat.java8.FutureConverters._
 import scala.compat.java8.OptionConverters._
 import scala.concurrent.ExecutionContext
 import scala.concurrent.Future
+import scala.concurrent.duration.FiniteDuration
 
 trait JavadslServiceApiBridge extends LagomServiceApiBridge {
   override type AkkaStreamsSource[T, M] = JSource[T, M]
@@ -63,7 +70,8 @@ trait JavadslServiceApiBridge extends LagomServiceApiBridge {
       }
 
   override type RequestHeader = transport.RequestHeader
-  override def requestHeaderUri(rh: RequestHeader): URI = rh.uri()
+  override def requestHeaderUri(rh: RequestHeader): URI                        = rh.uri()
+  override def requestHeaderWithUri(rh: RequestHeader, uri: URI): RequestHeader = rh.withUri(uri)
   override def requestHeaderAcceptedResponseProtocols(rh: RequestHeader): immutable.Seq[MessageProtocol] =
     rh.acceptedResponseProtocols().asScala.toIndexedSeq
   override def requestHeaderMethod(rh: RequestHeader): String = rh.method().name()
@@ -187,6 +195,23 @@ trait JavadslServiceApiBridge extends LagomServiceApiBridge {
     call.requestSerializer().asInstanceOf[MessageSerializer[Request, W]]
   override def callResponseSerializer[Response, W](call: Call[_, Response]): MessageSerializer[Response, W] =
     call.responseSerializer().asInstanceOf[MessageSerializer[Response, W]]
+  override def callName(call: Call[_, _]): String =
+    call.callId match {
+      case rest: RestCallId   => s"${rest.method().name()} ${rest.pathPattern()}"
+      case path: PathCallId   => path.pathPattern()
+      case named: NamedCallId => named.name()
+      case other              => other.toString
+    }
+  override def callHedging(call: Call[_, _]): Option[HedgingPolicy] =
+    call.hedging().asScala.map { hedging =>
+      HedgingPolicy(
+        hedging.delay().asScala.map(delay => FiniteDuration(delay.toNanos, TimeUnit.NANOSECONDS)),
+        hedging.percentile().asScala,
+        hedging.maxExtraRequests()
+      )
+    }
+  override def callFramedStreaming(call: Call[_, _]): Boolean =
+    call.streamingTransport() == api.StreamingTransport.FRAMED
 
   override type Method = transport.Method
   override def methodName(m: Method): String   = m.name()
@@ -241,5 +266,34 @@ trait JavadslServiceApiBridge extends LagomServiceApiBridge {
       .toScala
       .map(_.asScala)
 
+  override def serviceLocatorLocateAll(serviceLocator: ServiceLocator, descriptor: Descriptor, call: Call[_, _])(
+      implicit ec: ExecutionContext
+  ): Future[immutable.Seq[URI]] =
+    serviceLocator.locateAll(descriptor.name(), call).toScala.map(_.asScala.toList)
+
+  override def serviceLocatorDoWithInstance[T](
+      serviceLocator: ServiceLocator,
+      descriptor: Descriptor,
+      call: Call[_, _],
+      uri: URI,
+      block: URI => Future[T]
+  )(implicit ec: ExecutionContext): Option[Future[T]] = serviceLocator match {
+    case locator: CircuitBreakingServiceLocator =>
+      Some(
+        CircuitBreakingServiceLocators
+          .doWithInstance(
+            locator,
+            descriptor.name(),
+            call,
+            uri,
+            new java.util.function.Function[URI, CompletionStage[T]] {
+              override def apply(uri: URI): CompletionStage[T] = block(uri).toJava
+            }
+          )
+          .toScala
+      )
+    case _ => None
+  }
+
   override def newServicePrincipal(serviceName: String): Principal = ServicePrincipal.forServiceNamed(serviceName)
 }
@@ -30,6 +30,7 @@ import akka.util.ByteString
 import io.netty.handler.codec.http.websocketx.WebSocketVersion
 import javax.inject.Inject
 import javax.inject.Singleton
+import com.lightbend.lagom.internal.api.Path
 import com.lightbend.lagom.internal.client.ClientServiceCallInvoker
 import com.lightbend.lagom.internal.javadsl.api.JavadslPath
 import com.lightbend.lagom.internal.javadsl.api.MethodServiceCallHolder
@@ -128,26 +129,19 @@ private class JavadslServiceCallInvocationHandler[Request, Response](
     endpoint: Call[Request, Response],
     holder: MethodServiceCallHolder
 )(implicit ec: ExecutionContext, mat: Materializer) {
-  private val pathSpec = JavadslPath.fromCallId(endpoint.callId)
-
-  def invoke(args: Seq[AnyRef]): ServiceCall[Request, Response] = {
-    val (path, queryParams) = pathSpec.format(holder.invoke(args))
-
-    new JavadslClientServiceCall[Request, Response, Response](
-      new JavadslClientServiceCallInvoker[Request, Response](
-        ws,
-        webSocketClient,
-        serviceInfo,
-        serviceLocator,
-        descriptor,
-        endpoint,
-        path,
-        queryParams
-      ),
-      identity,
-      (_, msg) => msg
-    )
-  }
+  // The invoker is created once for each call, and shared by all its invocations
+  private val invoker = new JavadslClientServiceCallInvoker[Request, Response](
+    ws,
+    webSocketClient,
+    serviceInfo,
+    serviceLocator,
+    descriptor,
+    endpoint,
+    JavadslPath.fromCallId(endpoint.callId)
+  )
+
+  def invoke(args: Seq[AnyRef]): ServiceCall[Request, Response] =
+    new JavadslClientServiceCall[Request, Response, Response](invoker, holder.invoke(args), identity, (_, msg) => msg)
 }
 
 /**
@@ -156,18 +150,19 @@ private class JavadslServiceCallInvocationHandler[Request, Response](
  */
 private class JavadslClientServiceCall[Request, ResponseMessage, ServiceCallResponse](
     invoker: JavadslClientServiceCallInvoker[Request, ResponseMessage],
+    pathParams: Seq[Seq[String]],
     requestHeaderHandler: RequestHeader => RequestHeader,
     responseHandler: (ResponseHeader, ResponseMessage) => ServiceCallResponse
 )(implicit ec: ExecutionContext)
     extends ServiceCall[Request, ServiceCallResponse] {
   override def invoke(request: Request): CompletionStage[ServiceCallResponse] = {
-    invoker.doInvoke(request, requestHeaderHandler).map(responseHandler.tupled).toJava
+    invoker.doInvoke(pathParams, request, requestHeaderHandler).map(responseHandler.tupled).toJava
   }
 
   override def handleRequestHeader(
       handler: function.Function[RequestHeader, RequestHeader]
   ): ServiceCall[Request, ServiceCallResponse] = {
-    new JavadslClientServiceCall(invoker, requestHeaderHandler.andThen(handler.apply), responseHandler)
+    new JavadslClientServiceCall(invoker, pathParams, requestHeaderHandler.andThen(handler.apply), responseHandler)
   }
 
   override def handleResponseHeader[T](
@@ -175,6 +170,7 @@ private class JavadslClientServiceCall[Request, ResponseMessage, ServiceCallResp
   ): ServiceCall[Request, T] = {
     new JavadslClientServiceCall[Request, ResponseMessage, T](
       invoker,
+      pathParams,
       requestHeaderHandler,
       (header, message) => handler.apply(header, responseHandler(header, message))
     )
@@ -201,17 +197,25 @@ private class JavadslClientServiceCallInvoker[Request, Response](
     override val serviceLocator: ServiceLocator,
     override val descriptor: Descriptor,
     override val call: Call[Request, Response],
-    path: String,
-    queryParams: Map[String, Seq[String]]
+    pathSpec: Path
 )(implicit ec: ExecutionContext, mat: Materializer)
-    extends ClientServiceCallInvoker[Request, Response](ws, serviceInfo.serviceName(), path, queryParams)
+    extends ClientServiceCallInvoker[Request, Response](ws, serviceInfo.serviceName(), pathSpec)
     with JavadslServiceApiBridge {
   protected override def doMakeStreamedCall(
       requestStream: Source[ByteString, NotUsed],
       requestSerializer: MessageSerializer.NegotiatedSerializer[_, _],
-      requestHeader: RequestHeader
+      requestHeader: RequestHeader,
+      messageDeflate: Boolean,
+      messageBatching: Boolean
   ): Future[(ResponseHeader, Source[ByteString, NotUsed])] = {
-    webSocketClient.connect(descriptor.exceptionSerializer, WebSocketVersion.V13, requestHeader, requestStream)
+    webSocketClient.connect(
+      descriptor.exceptionSerializer,
+      WebSocketVersion.V13,
+      requestHeader,
+      requestStream,
+      messageDeflate,
+      messageBatching
+    )
   }
 }
 
@@ -33,7 +33,7 @@ class JavadslWebSocketClient(
     this(
       environment,
       WebSocketClientConfig(config),
-      WebSocketClient.createEventLoopGroup(applicationLifecycle),
+      WebSocketClient.createEventLoopGroup(WebSocketClientConfig(config), applicationLifecycle),
       applicationLifecycle
     )
   }
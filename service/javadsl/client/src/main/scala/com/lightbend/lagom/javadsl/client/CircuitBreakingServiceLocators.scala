@@ -0,0 +1,27 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.javadsl.client
+
+import java.net.URI
+import java.util.concurrent.CompletionStage
+import java.util.function.{ Function => JFunction }
+
+import com.lightbend.lagom.javadsl.api.Descriptor
+
+/**
+ * Gives the service clients access to the package private members of [[CircuitBreakingServiceLocator]].
+ */
+private[lagom] object CircuitBreakingServiceLocators {
+
+  /** See `CircuitBreakingServiceLocator.doWithInstance`. */
+  def doWithInstance[T](
+      serviceLocator: CircuitBreakingServiceLocator,
+      serviceName: String,
+      serviceCall: Descriptor.Call[_, _],
+      uri: URI,
+      block: JFunction[URI, CompletionStage[T]]
+  ): CompletionStage[T] =
+    serviceLocator.doWithInstance(serviceName, serviceCall, uri, block)
+}
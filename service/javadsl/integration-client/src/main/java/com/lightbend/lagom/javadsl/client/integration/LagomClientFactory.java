@@ -31,7 +31,6 @@ import com.lightbend.lagom.javadsl.jackson.JacksonExceptionSerializer;
 import com.lightbend.lagom.javadsl.jackson.JacksonSerializerFactory;
 import com.typesafe.config.Config;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
 import org.pcollections.PVector;
 import org.pcollections.TreePVector;
 import org.slf4j.Logger;
@@ -201,9 +200,6 @@ public class LagomClientFactory implements Closeable {
       Materializer materializer,
       boolean managedActorSystem) {
 
-    // Netty event loop
-    EventLoopGroup eventLoop = new NioEventLoopGroup();
-
     // WS
     WSClientConfig wsClientConfig =
         new WSConfigParser(configuration, environment.classLoader()).parse();
@@ -217,6 +213,8 @@ public class LagomClientFactory implements Closeable {
     // WebSocketClient
     WebSocketClientConfig webSocketClientConfig =
         WebSocketClientConfig$.MODULE$.apply(configuration);
+    // Netty event loop, shut down by close()
+    EventLoopGroup eventLoop = WebSocketClient$.MODULE$.newEventLoopGroup(webSocketClientConfig);
     // Use dummy lifecycle, we manage the lifecycle manually
     ApplicationLifecycle applicationLifecycle =
         new ApplicationLifecycle() {
@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.internal.javadsl.broker.kafka
+
+import java.util.function.{ Function => JFunction }
+
+import com.lightbend.lagom.javadsl.api.broker.MetadataKey
+import com.lightbend.lagom.javadsl.broker.kafka.KafkaMetadataKeys
+import org.apache.kafka.clients.consumer.ConsumerRecord
+
+/**
+ * Reads the metadata of a message straight from the Kafka record it was consumed from, so that no metadata
+ * is copied for messages whose metadata is never looked at.
+ */
+private[lagom] final class ConsumerRecordMetadata(record: ConsumerRecord[String, _])
+    extends JFunction[MetadataKey[_], AnyRef] {
+  import ConsumerRecordMetadata._
+
+  override def apply(key: MetadataKey[_]): AnyRef = key match {
+    case MessageKey                       => record.key
+    case KafkaMetadataKeys.OFFSET         => Long.box(record.offset)
+    case KafkaMetadataKeys.PARTITION      => Int.box(record.partition)
+    case KafkaMetadataKeys.TOPIC          => record.topic
+    case KafkaMetadataKeys.HEADERS        => record.headers
+    case KafkaMetadataKeys.TIMESTAMP      => Long.box(record.timestamp)
+    case KafkaMetadataKeys.TIMESTAMP_TYPE => record.timestampType
+    case _                                => null
+  }
+}
+
+private[lagom] object ConsumerRecordMetadata {
+  private val MessageKey = MetadataKey.messageKey[String]
+}
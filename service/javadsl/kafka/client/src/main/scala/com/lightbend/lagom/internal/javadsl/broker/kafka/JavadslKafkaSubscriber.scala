@@ -21,16 +21,17 @@ import akka.stream.javadsl.Source
 import com.lightbend.lagom.internal.api.UriUtils
 import com.lightbend.lagom.internal.broker.kafka.ConsumerConfig
 import com.lightbend.lagom.internal.broker.kafka.KafkaConfig
+import com.lightbend.lagom.internal.broker.kafka.KafkaRecordDeserializer
 import com.lightbend.lagom.internal.broker.kafka.KafkaSubscriberActor
 import com.lightbend.lagom.internal.broker.kafka.NoKafkaBrokersException
 import com.lightbend.lagom.javadsl.api.Descriptor.TopicCall
 import com.lightbend.lagom.javadsl.api.ServiceInfo
 import com.lightbend.lagom.javadsl.api.ServiceLocator
 import com.lightbend.lagom.javadsl.api.broker.Message
-import com.lightbend.lagom.javadsl.api.broker.MetadataKey
+import com.lightbend.lagom.javadsl.api.broker.Messages
 import com.lightbend.lagom.javadsl.api.broker.Subscriber
-import com.lightbend.lagom.javadsl.broker.kafka.KafkaMetadataKeys
 import org.apache.kafka.clients.consumer.ConsumerRecord
+import org.apache.kafka.common.serialization.ByteArrayDeserializer
 import org.apache.kafka.common.serialization.StringDeserializer
 import org.slf4j.LoggerFactory
 
@@ -90,26 +91,12 @@ private[lagom] class JavadslKafkaSubscriber[Payload, SubscriberPayload](
     wrapPayload
   )
 
-  private def wrapPayload(record: ConsumerRecord[String, Payload]): Message[SubscriberPayload] = {
-    Message
-      .create(transform(record))
-      .add(MetadataKey.messageKey[String], record.key())
-      .add(KafkaMetadataKeys.OFFSET, record.offset().asInstanceOf[java.lang.Long])
-      .add(KafkaMetadataKeys.PARTITION, record.partition().asInstanceOf[java.lang.Integer])
-      .add(KafkaMetadataKeys.TOPIC, record.topic())
-      .add(KafkaMetadataKeys.HEADERS, record.headers())
-      .add(KafkaMetadataKeys.TIMESTAMP, record.timestamp().asInstanceOf[java.lang.Long])
-      .add(KafkaMetadataKeys.TIMESTAMP_TYPE, record.timestampType())
-  }
+  private def wrapPayload(record: ConsumerRecord[String, Payload]): Message[SubscriberPayload] =
+    Messages.withMetadataLookup(transform(record), new ConsumerRecordMetadata(record))
 
   private def consumerSettings = {
-    val keyDeserializer = new StringDeserializer
-    val valueDeserializer = {
-      val messageSerializer = topicCall.messageSerializer()
-      val protocol          = messageSerializer.serializerForRequest().protocol()
-      val deserializer      = messageSerializer.deserializer(protocol)
-      new JavadslKafkaDeserializer(deserializer)
-    }
+    val keyDeserializer   = new StringDeserializer
+    val valueDeserializer = new ByteArrayDeserializer
 
     ConsumerSettings(system, keyDeserializer, valueDeserializer)
       .withBootstrapServers(kafkaConfig.brokers)
@@ -118,6 +105,16 @@ private[lagom] class JavadslKafkaSubscriber[Payload, SubscriberPayload](
       .withClientId(s"${info.serviceName()}-$consumerId")
   }
 
+  private def recordDeserializer = {
+    val valueDeserializer = {
+      val messageSerializer = topicCall.messageSerializer()
+      val protocol          = messageSerializer.serializerForRequest().protocol()
+      val deserializer      = messageSerializer.deserializer(protocol)
+      new JavadslKafkaDeserializer(deserializer)
+    }
+    new KafkaRecordDeserializer(valueDeserializer, consumerConfig.deserialization, system)
+  }
+
   private def subscription = Subscriptions.topics(
     kafkaConfig.topicNameMapping.getOrElse(topicCall.topicId().value, topicCall.topicId().value)
   )
@@ -135,11 +132,10 @@ private[lagom] class JavadslKafkaSubscriber[Payload, SubscriberPayload](
 
             val endpoints = UriUtils.hostAndPorts(uris)
             log.debug("Connecting to Kafka service named {} at {}", name: Any, endpoints)
+            val settings = consumerSettings.withBootstrapServers(endpoints)
             Consumer
-              .atMostOnceSource(
-                consumerSettings.withBootstrapServers(endpoints),
-                subscription
-              )
+              .atMostOnceSource(settings, subscription)
+              .via(recordDeserializer.recordFlow(settings))
               .map(transform)
           }
           .asJava
@@ -148,6 +144,7 @@ private[lagom] class JavadslKafkaSubscriber[Payload, SubscriberPayload](
         log.debug("Creating at most once source with configured brokers: {}", kafkaConfig.brokers)
         Consumer
           .atMostOnceSource(consumerSettings, subscription)
+          .via(recordDeserializer.recordFlow(consumerSettings))
           .map(transform)
           .asJava
     }
@@ -166,6 +163,7 @@ private[lagom] class JavadslKafkaSubscriber[Payload, SubscriberPayload](
         topicCall.topicId().value(),
         flow.asScala,
         consumerSettings,
+        recordDeserializer,
         subscription,
         streamCompleted,
         transform
@@ -4,6 +4,12 @@
 
 package com.lightbend.lagom.internal.javadsl.broker.kafka
 
+import java.util.Optional
+
+import com.lightbend.lagom.javadsl.api.broker.Messages
+import com.lightbend.lagom.javadsl.api.broker.MetadataKey
+import com.lightbend.lagom.javadsl.broker.kafka.KafkaMetadataKeys
+import org.apache.kafka.clients.consumer.ConsumerRecord
 import org.scalatest.FlatSpec
 import org.scalatest.Matchers
 
@@ -18,4 +24,25 @@ class JavadslKafkaSubscriberSpec extends FlatSpec with Matchers {
       new JavadslKafkaSubscriber(null, null, JavadslKafkaSubscriber.GroupId("old"), null, null, null, null)(null, null)
     subscriber.withGroupId("newGID") should not be subscriber
   }
+
+  it should "read message metadata from the consumed record" in {
+    val record  = new ConsumerRecord[String, String]("topic", 3, 42L, "key", "payload")
+    val message = Messages.withMetadataLookup(record.value, new ConsumerRecordMetadata(record))
+
+    message.messageKeyAsString should ===("key")
+    message.get(KafkaMetadataKeys.TOPIC) should ===(Optional.of("topic"))
+    message.get(KafkaMetadataKeys.PARTITION) should ===(Optional.of(3))
+    message.get(KafkaMetadataKeys.OFFSET) should ===(Optional.of(42L))
+    message.get(MetadataKey.named[String]("unknown")) should ===(Optional.empty())
+  }
+
+  it should "let added metadata take precedence over the consumed record" in {
+    val record  = new ConsumerRecord[String, String]("topic", 3, 42L, "key", "payload")
+    val message = Messages.withMetadataLookup(record.value, new ConsumerRecordMetadata(record))
+
+    val updated = message.add(KafkaMetadataKeys.TOPIC, "other").withPayload(1)
+    updated.getPayload should ===(1)
+    updated.get(KafkaMetadataKeys.TOPIC) should ===(Optional.of("other"))
+    updated.get(KafkaMetadataKeys.OFFSET) should ===(Optional.of(42L))
+  }
 }
@@ -20,6 +20,7 @@ import akka.stream.scaladsl.Source
 import com.lightbend.lagom.internal.broker.TaggedOffsetTopicProducer
 import com.lightbend.lagom.internal.broker.kafka.KafkaConfig
 import com.lightbend.lagom.internal.broker.kafka.Producer
+import com.lightbend.lagom.internal.broker.kafka.ProducerTuning
 import com.lightbend.lagom.internal.projection.ProjectionRegistry
 import com.lightbend.lagom.internal.javadsl.api.MethodTopicHolder
 import com.lightbend.lagom.internal.javadsl.api.broker.TopicFactory
@@ -85,6 +86,12 @@ class JavadslRegisterTopicProducers @Inject() (
                   } else None
                 }
 
+                val producerTuning = ProducerTuning(
+                  Option(topicCall.properties().getValueOf(KafkaProperties.producerPreset())),
+                  Option(topicCall.properties().getValueOf(KafkaProperties.producerProperties()))
+                    .fold(Map.empty[String, String])(_.asScala.toMap)
+                )
+
                 Producer.startTaggedOffsetProducer(
                   actorSystem,
                   tags.map(_.tag),
@@ -94,6 +101,7 @@ class JavadslRegisterTopicProducers @Inject() (
                   eventStreamFactory,
                   partitionKeyStrategy,
                   new JavadslKafkaSerializer(topicCall.messageSerializer().serializerForRequest()),
+                  producerTuning,
                   offsetStore,
                   projectionRegistryImpl
                 )
@@ -33,6 +33,7 @@ import javax.inject.Singleton
 import play.api.Environment
 import play.api.Logger
 import play.api.http.HttpConfiguration
+import play.api.inject.ApplicationLifecycle
 import play.api.inject.Injector
 import play.api.mvc.{ RequestHeader => PlayRequestHeader, ResponseHeader => _, _ }
 import play.api.routing.Router.Routes
@@ -145,12 +146,15 @@ class JavadslServicesRouter @Inject() (
     resolvedServices: ResolvedServices,
     httpConfiguration: HttpConfiguration,
     parsers: PlayBodyParsers,
-    additionalRouters: JList[Router]
+    additionalRouters: JList[Router],
+    lifecycle: ApplicationLifecycle
 )(implicit ec: ExecutionContext, mat: Materializer)
     extends SimpleRouter
     with LagomServiceRouter {
   private val serviceRouters = resolvedServices.services.map { service =>
-    new JavadslServiceRouter(service.descriptor, service.service, httpConfiguration, parsers)
+    val router = new JavadslServiceRouter(service.descriptor, service.service, httpConfiguration, parsers)
+    router.registerLocalService(lifecycle)
+    router
   }
 
   override val routes: Routes = {
@@ -238,6 +242,9 @@ class JavadslServiceRouter(
     }
   }
 
+  protected override def isInvokableLocally(serviceCall: ServiceCall[_, _]): Boolean =
+    !serviceCall.isInstanceOf[PlayServiceCall[_, _]]
+
   protected override def invokeServiceCall[Request, Response](
       serviceCall: ServiceCall[Request, Response],
       requestHeader: RequestHeader,
@@ -15,6 +15,7 @@ import com.lightbend.lagom.scaladsl.api.transport.Method
 import com.lightbend.lagom.scaladsl.api.transport.UserAgentHeaderFilter
 
 import scala.collection.immutable
+import scala.concurrent.duration.FiniteDuration
 import scala.reflect.ClassTag
 
 /**
@@ -141,6 +142,19 @@ object Descriptor {
      */
     val autoAcl: Option[Boolean]
 
+    /**
+     * The configured hedging.
+     *
+     * @return Some value if extra requests should be sent to other instances of the service when the first request
+     *         isn't answered in time, otherwise empty.
+     */
+    val hedging: Option[Hedging]
+
+    /**
+     * The transport of this call, if it has a streamed request or response.
+     */
+    val streamingTransport: StreamingTransport
+
     /**
      * Return a copy of this call with the given service call holder configured.
      */
@@ -169,6 +183,16 @@ object Descriptor {
      * This will override auto ACL setting configured on the service descriptor.
      */
     def withAutoAcl(autoAcl: Boolean): Call[Request, Response]
+
+    /**
+     * Return a copy of this call with the given hedging configured.
+     */
+    def withHedging(hedging: Hedging): Call[Request, Response]
+
+    /**
+     * Return a copy of this call with the given streaming transport configured.
+     */
+    def withStreamingTransport(streamingTransport: StreamingTransport): Call[Request, Response]
   }
 
   val NoCall: Call[NotUsed, NotUsed] = CallImpl(
@@ -375,7 +399,9 @@ object Descriptor {
       requestSerializer: MessageSerializer[Request, _],
       responseSerializer: MessageSerializer[Response, _],
       circuitBreaker: Option[CircuitBreaker] = None,
-      autoAcl: Option[Boolean] = None
+      autoAcl: Option[Boolean] = None,
+      hedging: Option[Hedging] = None,
+      streamingTransport: StreamingTransport = StreamingTransport.WebSocket
   ) extends Call[Request, Response] {
     override def withServiceCallHolder(serviceCallHolder: ServiceCallHolder): Call[Request, Response] =
       copy(serviceCallHolder = serviceCallHolder)
@@ -386,6 +412,9 @@ object Descriptor {
     override def withCircuitBreaker(circuitBreaker: CircuitBreaker): Call[Request, Response] =
       copy(circuitBreaker = Some(circuitBreaker))
     override def withAutoAcl(autoAcl: Boolean): Call[Request, Response] = copy(autoAcl = Some(autoAcl))
+    override def withHedging(hedging: Hedging): Call[Request, Response] = copy(hedging = Some(hedging))
+    override def withStreamingTransport(streamingTransport: StreamingTransport): Call[Request, Response] =
+      copy(streamingTransport = streamingTransport)
   }
 
   private[api] case class NamedCallIdImpl(name: String)                       extends NamedCallId
@@ -441,3 +470,80 @@ object CircuitBreaker {
 
   private case class CircuitBreakerIdImpl(id: String) extends CircuitBreakerId
 }
+
+/**
+ * Describes when a client sends extra requests for a service call to other instances of the service, if the first
+ * request hasn't been answered yet. The first successful response is used, and the responses to the other requests
+ * are discarded: these requests aren't aborted, and still run to completion on the instances they were sent to.
+ *
+ * Hedging is only applied to calls that have a strict request and response, and an idempotent method: GET, HEAD,
+ * OPTIONS, PUT or DELETE. The number of extra requests is also bounded by the `lagom.client.hedging.budget-ratio` of
+ * the calls made by the client.
+ *
+ * Only hedge calls whose implementation is actually idempotent, whatever their method, since a hedged call may be
+ * executed several times.
+ */
+sealed trait Hedging {
+
+  /**
+   * The fixed delay after which extra requests are sent, if any.
+   */
+  val delay: Option[FiniteDuration]
+
+  /**
+   * The percentile of the latency of the recent calls after which extra requests are sent, if any.
+   */
+  val percentile: Option[Double]
+
+  /**
+   * The maximum number of extra requests sent for a call.
+   */
+  val maxExtraRequests: Int
+}
+
+object Hedging {
+
+  /**
+   * Send an extra request whenever the previous requests haven't been answered after the given delay, up to the given
+   * number of extra requests.
+   */
+  def after(delay: FiniteDuration, maxExtraRequests: Int = 1): Hedging =
+    HedgingImpl(Some(delay), None, maxExtraRequests)
+
+  /**
+   * Send an extra request whenever the previous requests haven't been answered after the given percentile, between 0
+   * and 100 excluded, of the latency of the recent calls, up to the given number of extra requests.
+   */
+  def atPercentile(percentile: Double, maxExtraRequests: Int = 1): Hedging = {
+    require(percentile > 0 && percentile < 100, s"percentile must be between 0 and 100 excluded, was [$percentile]")
+    HedgingImpl(None, Some(percentile), maxExtraRequests)
+  }
+
+  private case class HedgingImpl(delay: Option[FiniteDuration], percentile: Option[Double], maxExtraRequests: Int)
+      extends Hedging {
+    require(maxExtraRequests >= 1, s"maxExtraRequests must be at least 1, was [$maxExtraRequests]")
+  }
+}
+
+/**
+ * The transport of a service call that has a streamed request or response.
+ *
+ * The transport is negotiated with the service: a client falls back to a WebSocket when the service doesn't support
+ * the requested transport.
+ */
+sealed trait StreamingTransport
+
+object StreamingTransport {
+
+  /**
+   * The request and response messages are sent as the frames of a WebSocket.
+   */
+  case object WebSocket extends StreamingTransport
+
+  /**
+   * The response messages are sent as length prefixed frames in a chunked HTTP response, which needs no upgrade round
+   * trip and is flow controlled by HTTP. Only calls with a strict request and a streamed response are made this way,
+   * other streamed calls use a WebSocket.
+   */
+  case object Framed extends StreamingTransport
+}
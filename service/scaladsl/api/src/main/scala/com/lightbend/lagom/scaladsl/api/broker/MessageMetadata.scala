@@ -61,6 +61,18 @@ object Message {
     MessageImpl(payload, Map.empty)
   }
 
+  /**
+   * INTERNAL API
+   *
+   * Create a message whose metadata is read on demand through `lookup`, rather than being copied into the message
+   * upfront. Metadata added to the resulting message takes precedence over the one provided by `lookup`.
+   */
+  private[lagom] def withMetadataLookup[Payload](
+      payload: Payload,
+      lookup: MetadataKey[_] => Option[Any]
+  ): Message[Payload] =
+    LookupMessageImpl(payload, lookup, Map.empty)
+
   private case class MessageImpl[Payload](payload: Payload, metadataMap: Map[MetadataKey[_], _])
       extends Message[Payload] {
     override def get[Metadata](key: MetadataKey[Metadata]): Option[Metadata] = {
@@ -72,6 +84,21 @@ object Message {
 
     override def withPayload[P2](payload: P2): Message[P2] = MessageImpl(payload, metadataMap)
   }
+
+  private case class LookupMessageImpl[Payload](
+      payload: Payload,
+      lookup: MetadataKey[_] => Option[Any],
+      metadataMap: Map[MetadataKey[_], _]
+  ) extends Message[Payload] {
+    override def get[Metadata](key: MetadataKey[Metadata]): Option[Metadata] = {
+      metadataMap.get(key).orElse(lookup(key)).asInstanceOf[Option[Metadata]]
+    }
+    override def +[Metadata](keyValue: (MetadataKey[Metadata], Metadata)): Message[Payload] = {
+      LookupMessageImpl(payload, lookup, metadataMap + keyValue)
+    }
+
+    override def withPayload[P2](payload: P2): Message[P2] = LookupMessageImpl(payload, lookup, metadataMap)
+  }
 }
 
 /**
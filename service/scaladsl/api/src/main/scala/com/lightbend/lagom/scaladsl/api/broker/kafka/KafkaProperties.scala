@@ -19,4 +19,33 @@ object KafkaProperties {
    */
   def partitionKeyStrategy[Message]: Descriptor.Property[Message, PartitionKeyStrategy[Message]] =
     Descriptor.Property[Message, PartitionKeyStrategy[Message]]("kafkaPartitionKeyStrategy")
+
+  /**
+   * Kafka producer properties used when publishing to this topic, such as `linger.ms`, `batch.size`,
+   * `compression.type` or `max.in.flight.requests.per.connection`.
+   *
+   * They override the globally configured producer properties and the ones of the [[producerPreset]], and can in
+   * turn be overridden in `lagom.broker.kafka.topics.<topic-id>.producer-properties`.
+   */
+  def producerProperties[Message]: Descriptor.Property[Message, Map[String, String]] =
+    Descriptor.Property[Message, Map[String, String]]("kafkaProducerProperties")
+
+  /**
+   * The name of a preset of Kafka producer properties, configured in `lagom.broker.kafka.producer-presets`, to use
+   * when publishing to this topic.
+   *
+   * Lagom ships with the [[ThroughputPreset]] and [[LatencyPreset]] presets.
+   */
+  def producerPreset[Message]: Descriptor.Property[Message, String] =
+    Descriptor.Property[Message, String]("kafkaProducerPreset")
+
+  /**
+   * A producer preset that favours throughput, batching records for longer and compressing them.
+   */
+  val ThroughputPreset: String = "throughput"
+
+  /**
+   * A producer preset that favours latency, sending records as soon as possible, uncompressed.
+   */
+  val LatencyPreset: String = "latency"
 }
@@ -6,10 +6,17 @@ package com.lightbend.lagom.scaladsl.api.deser
 
 import akka.Done
 import akka.NotUsed
+import akka.stream.scaladsl.Framing.FramingException
 import akka.stream.scaladsl.Source
 import akka.util.ByteString
+import com.fasterxml.jackson.core.JsonProcessingException
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory
+import com.fasterxml.jackson.dataformat.smile.SmileFactory
+import com.lightbend.lagom.internal.api.Ndjson
 import com.lightbend.lagom.scaladsl.api.transport._
 import play.api.libs.json._
+import play.api.libs.json.jackson.PlayJsonModule
 
 import scala.collection.immutable
 import scala.util.control.NonFatal
@@ -172,6 +179,166 @@ object MessageSerializer extends LowPriorityMessageSerializerImplicits {
       new JsValueSerializer(defaultProtocol)
   }
 
+  /**
+   * A serializer of JSON values that negotiates the CBOR and Smile binary formats alongside JSON, with the Content-Type
+   * and Accept headers. Clients accept CBOR and Smile responses in preference to JSON, and send requests in JSON, since
+   * a service that doesn't use this serializer can't read the binary formats. Services answer in the first accepted
+   * format they support, JSON by default.
+   *
+   * To use it for the messages of the calls of a descriptor that have a play-json `Format`, declare it as an implicit
+   * where the descriptor is defined, so that it takes precedence over [[JsValueMessageSerializer]]:
+   *
+   * {{{
+   * implicit val jsValueMessageSerializer: MessageSerializer[JsValue, ByteString] =
+   *   MessageSerializer.BinaryJsValueMessageSerializer
+   * }}}
+   */
+  val BinaryJsValueMessageSerializer: StrictMessageSerializer[JsValue] = new StrictMessageSerializer[JsValue] {
+    private val Cbor  = "application/cbor"
+    private val Smile = "application/x-jackson-smile"
+
+    private val jsonProtocol  = MessageProtocol(Some("application/json"), None, None)
+    private val cborProtocol  = MessageProtocol(Some(Cbor), None, None)
+    private val smileProtocol = MessageProtocol(Some(Smile), None, None)
+
+    override val acceptResponseProtocols: immutable.Seq[MessageProtocol] =
+      immutable.Seq(cborProtocol, smileProtocol, jsonProtocol)
+
+    private class BinarySerializer(mapper: ObjectMapper, override val protocol: MessageProtocol)
+        extends NegotiatedSerializer[JsValue, ByteString] {
+      override def serialize(message: JsValue): ByteString =
+        try {
+          ByteString.fromArrayUnsafe(mapper.writeValueAsBytes(message))
+        } catch {
+          case NonFatal(e) => throw SerializationException(e)
+        }
+    }
+
+    private class BinaryDeserializer(mapper: ObjectMapper) extends NegotiatedDeserializer[JsValue, ByteString] {
+      override def deserialize(wire: ByteString): JsValue =
+        try {
+          if (wire.isEmpty) {
+            JsNull
+          } else {
+            mapper.readValue(wire.iterator.asInputStream, classOf[JsValue])
+          }
+        } catch {
+          case NonFatal(e) => throw DeserializationException(e)
+        }
+    }
+
+    private def mapper(factory: com.fasterxml.jackson.core.JsonFactory) =
+      new ObjectMapper(factory).registerModule(new PlayJsonModule(JsonParserSettings.settings))
+
+    private lazy val cborMapper  = mapper(new CBORFactory())
+    private lazy val smileMapper = mapper(new SmileFactory())
+
+    override def deserializer(protocol: MessageProtocol): NegotiatedDeserializer[JsValue, ByteString] =
+      protocol.contentType match {
+        case Some(Cbor)  => new BinaryDeserializer(cborMapper)
+        case Some(Smile) => new BinaryDeserializer(smileMapper)
+        case _           => JsValueMessageSerializer.deserializer(protocol)
+      }
+
+    override def serializerForResponse(
+        acceptedMessageProtocols: immutable.Seq[MessageProtocol]
+    ): NegotiatedSerializer[JsValue, ByteString] =
+      acceptedMessageProtocols
+        .collectFirst {
+          case cbor if cbor.contentType.contains(Cbor)    => new BinarySerializer(cborMapper, cborProtocol)
+          case smile if smile.contentType.contains(Smile) => new BinarySerializer(smileMapper, smileProtocol)
+          case json if json.contentType.forall(_ == "application/json") =>
+            JsValueMessageSerializer.serializerForResponse(List(json))
+        }
+        .getOrElse(JsValueMessageSerializer.serializerForResponse(acceptedMessageProtocols))
+
+    override def serializerForRequest: NegotiatedSerializer[JsValue, ByteString] =
+      JsValueMessageSerializer.serializerForRequest
+  }
+
+  private lazy val JsValueMapper = new ObjectMapper().registerModule(new PlayJsonModule(JsonParserSettings.settings))
+
+  /**
+   * A serializer of streams of messages that have a play-json `Format`, that sends streamed responses as newline
+   * delimited JSON (`application/x-ndjson`) when the client accepts it, and as a message per element, with the message
+   * serializer, otherwise. Only the streamed responses of the calls that use the framed streaming transport are
+   * negotiated, as WebSocket responses are always in the default format. Services also answer newline delimited JSON
+   * to the plain HTTP requests that accept it, with the lines as the chunks of the response.
+   *
+   * The messages are written and read as the stream goes, so a large stream is sent with constant memory. To use it for
+   * the responses of a call, declare it as an implicit where the descriptor is defined:
+   *
+   * {{{
+   * implicit val eventsSerializer: StreamedMessageSerializer[Event] =
+   *   MessageSerializer.ndjsonSourceMessageSerializer[Event]
+   * }}}
+   */
+  def ndjsonSourceMessageSerializer[Message](
+      implicit format: Format[Message],
+      delegate: MessageSerializer[Message, ByteString]
+  ): StreamedMessageSerializer[Message] = new StreamedMessageSerializer[Message] {
+    private val perMessage     = sourceMessageSerializer(delegate)
+    private val ndjsonProtocol = MessageProtocol(Some(Ndjson.ContentType), None, None)
+
+    private object NdjsonSerializer
+        extends NegotiatedSerializer[Source[Message, NotUsed], Source[ByteString, NotUsed]] {
+      override def protocol: MessageProtocol = ndjsonProtocol
+
+      override def serialize(messages: Source[Message, NotUsed]): Source[ByteString, NotUsed] =
+        messages
+          .map { message =>
+            try {
+              format.writes(message)
+            } catch {
+              case NonFatal(e) => throw SerializationException(e)
+            }
+          }
+          .via(Ndjson.encoder[JsValue](JsValueMapper.writerFor(classOf[JsValue])))
+          .mapError {
+            case e: JsonProcessingException => SerializationException(e)
+          }
+    }
+
+    private object NdjsonDeserializer
+        extends NegotiatedDeserializer[Source[Message, NotUsed], Source[ByteString, NotUsed]] {
+      override def deserialize(wire: Source[ByteString, NotUsed]): Source[Message, NotUsed] =
+        wire
+          .via(Ndjson.decoder[JsValue](JsValueMapper.readerFor(classOf[JsValue]), Ndjson.DefaultMaxLineLength))
+          .mapError {
+            case e @ (_: JsonProcessingException | _: FramingException) => DeserializationException(e)
+          }
+          .map { jsValue =>
+            jsValue.validate[Message] match {
+              case JsSuccess(message, _) => message
+              case JsError(errors)       => throw DeserializationException(JsResultException(errors))
+            }
+          }
+    }
+
+    override val acceptResponseProtocols: immutable.Seq[MessageProtocol] =
+      ndjsonProtocol +: perMessage.acceptResponseProtocols
+
+    private val contentTypes = acceptResponseProtocols.flatMap(_.contentType).toSet
+
+    override def deserializer(
+        protocol: MessageProtocol
+    ): NegotiatedDeserializer[Source[Message, NotUsed], Source[ByteString, NotUsed]] =
+      if (protocol.contentType.contains(Ndjson.ContentType)) NdjsonDeserializer
+      else perMessage.deserializer(protocol)
+
+    /** NDJSON if it is accepted before any other supported format. */
+    override def serializerForResponse(
+        acceptedMessageProtocols: immutable.Seq[MessageProtocol]
+    ): NegotiatedSerializer[Source[Message, NotUsed], Source[ByteString, NotUsed]] =
+      acceptedMessageProtocols.find(_.contentType.exists(contentTypes)) match {
+        case Some(accepted) if accepted.contentType.contains(Ndjson.ContentType) => NdjsonSerializer
+        case _ => perMessage.serializerForResponse(acceptedMessageProtocols)
+      }
+
+    override def serializerForRequest: NegotiatedSerializer[Source[Message, NotUsed], Source[ByteString, NotUsed]] =
+      perMessage.serializerForRequest
+  }
+
   implicit val StringMessageSerializer: StrictMessageSerializer[String] = new StrictMessageSerializer[String] {
     private val defaultProtocol                                          = MessageProtocol(Some("text/plain"), Some("utf-8"), None)
     override val acceptResponseProtocols: immutable.Seq[MessageProtocol] = immutable.Seq(defaultProtocol)
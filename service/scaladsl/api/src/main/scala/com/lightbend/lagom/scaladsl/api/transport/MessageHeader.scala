@@ -11,6 +11,7 @@ import com.lightbend.lagom.internal.api.HeaderUtils
 
 import scala.collection.immutable
 import scala.collection.immutable.Seq
+import scala.concurrent.duration.FiniteDuration
 
 /**
  * A message header.
@@ -261,6 +262,20 @@ sealed trait ResponseHeader extends MessageHeader {
    */
   def withStatus(status: Int): ResponseHeader
 
+  /**
+   * Return a copy of this response with a `Cache-Control` header that allows clients to reuse it for the given
+   * duration without making any request.
+   */
+  def withCacheControl(maxAge: FiniteDuration): ResponseHeader =
+    withHeader("Cache-Control", s"max-age=${maxAge.toSeconds}")
+
+  /**
+   * Return a copy of this response with the given `ETag` header, that clients can revalidate their cached copy of the
+   * response with. The tag is quoted if it isn't already.
+   */
+  def withETag(etag: String): ResponseHeader =
+    withHeader("ETag", if (etag.startsWith("\"") || etag.startsWith("W/\"")) etag else "\"" + etag + "\"")
+
   override def withProtocol(protocol: MessageProtocol): ResponseHeader
   override def withHeaders(headers: immutable.Seq[(String, String)]): ResponseHeader
   override def withHeader(name: String, value: String): ResponseHeader
@@ -283,6 +298,12 @@ object ResponseHeader {
 
   val Ok: ResponseHeader = ResponseHeaderImpl(200, MessageProtocol.empty, Map.empty)
 
+  /**
+   * A response telling the client that its cached copy of the response, whose `ETag` it sent in an `If-None-Match`
+   * header, is still valid.
+   */
+  val NotModified: ResponseHeader = ResponseHeaderImpl(304, MessageProtocol.empty, Map.empty)
+
   private case class ResponseHeaderImpl(
       status: Int,
       protocol: MessageProtocol,
@@ -4,18 +4,31 @@
 
 package com.lightbend.lagom.scaladsl.api.deser
 
+import akka.NotUsed
+import akka.actor.ActorSystem
+import akka.stream.scaladsl.Sink
+import akka.stream.scaladsl.Source
 import akka.util.ByteString
 import com.lightbend.lagom.scaladsl.api.deser.MessageSerializer._
 import com.lightbend.lagom.scaladsl.api.transport.DeserializationException
 import com.lightbend.lagom.scaladsl.api.transport.MessageProtocol
+import org.scalatest.BeforeAndAfterAll
 import org.scalatest.Matchers
 import org.scalatest.WordSpec
 import play.api.libs.json._
 import scala.collection.immutable.Seq
+import scala.concurrent.Await
+import scala.concurrent.duration._
 
-class MessageSerializerSpec extends WordSpec with Matchers {
+class MessageSerializerSpec extends WordSpec with Matchers with BeforeAndAfterAll {
   case class Dummy(prop: Option[String])
 
+  private implicit val system: ActorSystem = ActorSystem("MessageSerializerSpec")
+
+  override protected def afterAll(): Unit = Await.ready(system.terminate(), 10.seconds)
+
+  private def run[T](source: Source[T, NotUsed]): Seq[T] = Await.result(source.runWith(Sink.seq), 10.seconds)
+
   "ByteString-to-PlayJson (via JsValueMessageSerializer)" should {
     "deserialize empty ByteString as JSON null" in {
       val deserializer = JsValueMessageSerializer.deserializer(MessageProtocol.empty)
@@ -63,6 +76,73 @@ class MessageSerializerSpec extends WordSpec with Matchers {
     }
   }
 
+  "JsValue-to-ByteString (via BinaryJsValueMessageSerializer)" should {
+    val json = Json.obj("name" -> "widget", "price" -> 10, "tags" -> Json.arr("a", "b"), "discount" -> JsNull)
+
+    "accept the binary formats in preference to JSON" in {
+      BinaryJsValueMessageSerializer.acceptResponseProtocols.map(_.contentType) shouldBe
+        Seq(Some("application/cbor"), Some("application/x-jackson-smile"), Some("application/json"))
+    }
+
+    "serialize responses in the first accepted format it supports" in {
+      for (contentType <- Seq("application/cbor", "application/x-jackson-smile")) {
+        val protocol = MessageProtocol(Some(contentType))
+        val serializer =
+          BinaryJsValueMessageSerializer.serializerForResponse(Seq(MessageProtocol(Some("text/html")), protocol))
+        serializer.protocol shouldBe protocol
+        val bytes = serializer.serialize(json)
+        bytes should not be ByteString(Json.stringify(json))
+        BinaryJsValueMessageSerializer.deserializer(protocol).deserialize(bytes) shouldBe json
+      }
+    }
+
+    "serialize responses in JSON when no supported format is accepted" in {
+      val serializer = BinaryJsValueMessageSerializer.serializerForResponse(Seq(MessageProtocol(Some("text/html"))))
+      serializer.protocol.contentType shouldBe Some("application/json")
+      serializer.serialize(json) shouldBe ByteString(Json.stringify(json))
+    }
+
+    "serialize requests in JSON" in {
+      val serializer = BinaryJsValueMessageSerializer.serializerForRequest
+      serializer.protocol.contentType shouldBe Some("application/json")
+      val deserializer = BinaryJsValueMessageSerializer.deserializer(MessageProtocol.empty)
+      deserializer.deserialize(serializer.serialize(json)) shouldBe json
+    }
+  }
+
+  "Source-to-Source (via ndjsonSourceMessageSerializer)" should {
+    implicit val format: Format[Dummy] = Json.format
+    val serializer                     = ndjsonSourceMessageSerializer[Dummy]
+    val dummies                        = Seq(Dummy(Some("abc")), Dummy(None), Dummy(Some("d\ne")))
+
+    "accept NDJSON in preference to a message per element" in {
+      serializer.acceptResponseProtocols.map(_.contentType) shouldBe
+        Seq(Some("application/x-ndjson"), Some("application/json"))
+    }
+
+    "serialize responses as lines of JSON, and read them whatever the chunks they are received in" in {
+      val negotiated = serializer.serializerForResponse(serializer.acceptResponseProtocols)
+      negotiated.protocol.contentType shouldBe Some("application/x-ndjson")
+      val body = run(negotiated.serialize(Source(dummies))).reduce(_ ++ _)
+      body.utf8String shouldBe "{\"prop\":\"abc\"}\n{}\n{\"prop\":\"d\\ne\"}\n"
+
+      val chunks = Source(body.grouped(3).toList)
+      run(serializer.deserializer(negotiated.protocol).deserialize(chunks)) shouldBe dummies
+    }
+
+    "serialize responses as a message per element when NDJSON isn't accepted" in {
+      val negotiated = serializer.serializerForResponse(Nil)
+      negotiated.protocol.contentType shouldBe Some("application/json")
+      run(negotiated.serialize(Source(dummies))).map(_.utf8String).head shouldBe "{\"prop\":\"abc\"}"
+    }
+
+    "fail to deserialize a stream that ends within a line" in {
+      val deserializer = serializer.deserializer(MessageProtocol(Some("application/x-ndjson")))
+      a[DeserializationException] should be thrownBy
+        run(deserializer.deserialize(Source.single(ByteString("{\"prop\":\"abc\"}\n{\"prop\""))))
+    }
+  }
+
   "ByteString-to-ByteString" should {
     "serialize any request of type ByteString to the same ByteSting" in {
       val serializer = NoopMessageSerializer.serializerForRequest
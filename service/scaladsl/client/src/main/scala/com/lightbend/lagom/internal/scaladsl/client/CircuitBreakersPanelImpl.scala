@@ -12,7 +12,7 @@ import com.lightbend.lagom.scaladsl.client.CircuitBreakersPanel
 
 import scala.concurrent.Future
 
-private[lagom] class CircuitBreakersPanelImpl(circuitBreakersInternal: CircuitBreakersPanelInternal)
+private[lagom] class CircuitBreakersPanelImpl(private[lagom] val circuitBreakersInternal: CircuitBreakersPanelInternal)
     extends CircuitBreakersPanel {
   def this(system: ActorSystem, config: CircuitBreakerConfig, metricsProvider: CircuitBreakerMetricsProvider) =
     this(new CircuitBreakersPanelInternal(system, config, metricsProvider))
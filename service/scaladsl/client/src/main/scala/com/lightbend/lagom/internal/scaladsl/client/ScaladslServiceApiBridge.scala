@@ -9,13 +9,17 @@ import java.security.Principal
 
 import akka.stream.scaladsl.Source
 import akka.util.ByteString
+import com.lightbend.lagom.internal.api.HedgingPolicy
 import com.lightbend.lagom.internal.api.transport.LagomServiceApiBridge
 import com.lightbend.lagom.scaladsl.api.deser
 import com.lightbend.lagom.scaladsl.api.transport
 import com.lightbend.lagom.scaladsl.api
+import com.lightbend.lagom.scaladsl.api.Descriptor.NamedCallId
+import com.lightbend.lagom.scaladsl.api.Descriptor.PathCallId
 import com.lightbend.lagom.scaladsl.api.Descriptor.RestCallId
 import com.lightbend.lagom.scaladsl.api.security.ServicePrincipal
 import com.lightbend.lagom.scaladsl.api.transport.ExceptionMessage
+import com.lightbend.lagom.scaladsl.client.CircuitBreakingServiceLocator
 
 import scala.collection.immutable
 import scala.concurrent.ExecutionContext
@@ -44,7 +48,8 @@ trait ScaladslServiceApiBridge extends LagomServiceApiBridge {
   override def messageHeaderHeaders(mh: MessageHeader): Map[String, immutable.Seq[(String, String)]] = mh.headerMap
 
   override type RequestHeader = transport.RequestHeader
-  override def requestHeaderUri(rh: RequestHeader): URI = rh.uri
+  override def requestHeaderUri(rh: RequestHeader): URI                        = rh.uri
+  override def requestHeaderWithUri(rh: RequestHeader, uri: URI): RequestHeader = rh.withUri(uri)
   override def requestHeaderAcceptedResponseProtocols(rh: RequestHeader): immutable.Seq[MessageProtocol] =
     rh.acceptedResponseProtocols
   override def requestHeaderMethod(rh: RequestHeader): String = rh.method.name
@@ -153,6 +158,16 @@ trait ScaladslServiceApiBridge extends LagomServiceApiBridge {
     call.requestSerializer.asInstanceOf[MessageSerializer[Request, W]]
   override def callResponseSerializer[Response, W](call: Call[_, Response]): MessageSerializer[Response, W] =
     call.responseSerializer.asInstanceOf[MessageSerializer[Response, W]]
+  override def callName(call: Call[_, _]): String =
+    call.callId match {
+      case rest: RestCallId   => s"${rest.method.name} ${rest.pathPattern}"
+      case path: PathCallId   => path.pathPattern
+      case named: NamedCallId => named.name
+    }
+  override def callHedging(call: Call[_, _]): Option[HedgingPolicy] =
+    call.hedging.map(hedging => HedgingPolicy(hedging.delay, hedging.percentile, hedging.maxExtraRequests))
+  override def callFramedStreaming(call: Call[_, _]): Boolean =
+    call.streamingTransport == api.StreamingTransport.Framed
 
   override type Method = transport.Method
   override def methodName(m: Method): String   = m.name
@@ -201,5 +216,21 @@ trait ScaladslServiceApiBridge extends LagomServiceApiBridge {
       call
     )(block)
 
+  override def serviceLocatorLocateAll(serviceLocator: ServiceLocator, descriptor: Descriptor, call: Call[_, _])(
+      implicit ec: ExecutionContext
+  ): Future[immutable.Seq[URI]] =
+    serviceLocator.locateAll(descriptor.name, call)
+
+  override def serviceLocatorDoWithInstance[T](
+      serviceLocator: ServiceLocator,
+      descriptor: Descriptor,
+      call: Call[_, _],
+      uri: URI,
+      block: URI => Future[T]
+  )(implicit ec: ExecutionContext): Option[Future[T]] = serviceLocator match {
+    case locator: CircuitBreakingServiceLocator => Some(locator.doWithInstance(descriptor.name, call, uri)(block))
+    case _                                      => None
+  }
+
   override def newServicePrincipal(serviceName: String): Principal = ServicePrincipal.forServiceNamed(serviceName)
 }
@@ -51,7 +51,17 @@ private[lagom] class ScaladslServiceClient(
         call.serviceCallHolder match {
           case methodServiceCall: ScalaMethodServiceCall[_, _] =>
             val pathSpec = ScaladslPath.fromCallId(call.callId)
-            methodServiceCall.method.getName -> ScalaServiceCall(call, pathSpec, methodServiceCall.pathParamSerializers)
+            // The invoker is created once for each call, and shared by all its invocations
+            val invoker = new ScaladslClientServiceCallInvoker[Any, Any](
+              ws,
+              webSocketClient,
+              serviceInfo,
+              serviceLocator,
+              descriptor,
+              call.asInstanceOf[Call[Any, Any]],
+              pathSpec
+            )
+            methodServiceCall.method.getName -> ScalaServiceCall(invoker, methodServiceCall.pathParamSerializers)
         }
       }.toMap
 
@@ -67,25 +77,18 @@ private[lagom] class ScaladslServiceClient(
           params: immutable.Seq[Any]
       ): ServiceCall[Request, Response] = {
         serviceCalls.get(methodName) match {
-          case Some(ScalaServiceCall(call, pathSpec, pathParamSerializers)) =>
+          case Some(ScalaServiceCall(invoker, pathParamSerializers)) =>
             val serializedParams = pathParamSerializers.zip(params).map {
               case (serializer: PathParamSerializer[Any], param) => serializer.serialize(param)
             }
-            val (path, queryParams) = pathSpec.format(serializedParams)
 
-            val invoker = new ScaladslClientServiceCallInvoker[Request, Response](
-              ws,
-              webSocketClient,
-              serviceInfo,
-              serviceLocator,
-              descriptor,
-              call.asInstanceOf[Call[Request, Response]],
-              path,
-              queryParams
+            new ScaladslClientServiceCall[Request, Response, Response](
+              invoker.asInstanceOf[ScaladslClientServiceCallInvoker[Request, Response]],
+              serializedParams,
+              identity,
+              (header, message) => message
             )
 
-            new ScaladslClientServiceCall[Request, Response, Response](invoker, identity, (header, message) => message)
-
           case None => throw new RuntimeException("No descriptor for service call method: " + methodName)
         }
       }
@@ -109,8 +112,7 @@ private[lagom] class ScaladslServiceClient(
   override def construct[S <: Service](constructor: (ServiceClientImplementationContext) => S): S = constructor(ctx)
 
   private case class ScalaServiceCall(
-      call: Call[_, _],
-      pathSpec: Path,
+      invoker: ScaladslClientServiceCallInvoker[_, _],
       pathParamSerializers: immutable.Seq[PathParamSerializer[_]]
   )
 }
@@ -121,23 +123,25 @@ private[lagom] class ScaladslServiceClient(
  */
 private class ScaladslClientServiceCall[Request, ResponseMessage, ServiceCallResponse](
     invoker: ScaladslClientServiceCallInvoker[Request, ResponseMessage],
+    pathParams: Seq[Seq[String]],
     requestHeaderHandler: RequestHeader => RequestHeader,
     responseHandler: (ResponseHeader, ResponseMessage) => ServiceCallResponse
 )(implicit ec: ExecutionContext)
     extends ServiceCall[Request, ServiceCallResponse] {
   override def invoke(request: Request): Future[ServiceCallResponse] = {
-    invoker.doInvoke(request, requestHeaderHandler).map(responseHandler.tupled)
+    invoker.doInvoke(pathParams, request, requestHeaderHandler).map(responseHandler.tupled)
   }
 
   override def handleRequestHeader(
       handler: RequestHeader => RequestHeader
   ): ServiceCall[Request, ServiceCallResponse] = {
-    new ScaladslClientServiceCall(invoker, requestHeaderHandler.andThen(handler), responseHandler)
+    new ScaladslClientServiceCall(invoker, pathParams, requestHeaderHandler.andThen(handler), responseHandler)
   }
 
   override def handleResponseHeader[T](handler: (ResponseHeader, ServiceCallResponse) => T): ServiceCall[Request, T] = {
     new ScaladslClientServiceCall[Request, ResponseMessage, T](
       invoker,
+      pathParams,
       requestHeaderHandler,
       (header, message) => handler.apply(header, responseHandler(header, message))
     )
@@ -151,17 +155,25 @@ private class ScaladslClientServiceCallInvoker[Request, Response](
     override val serviceLocator: ServiceLocator,
     override val descriptor: Descriptor,
     override val call: Call[Request, Response],
-    path: String,
-    queryParams: Map[String, Seq[String]]
+    pathSpec: Path
 )(implicit ec: ExecutionContext, mat: Materializer)
-    extends ClientServiceCallInvoker[Request, Response](ws, serviceInfo.serviceName, path, queryParams)
+    extends ClientServiceCallInvoker[Request, Response](ws, serviceInfo.serviceName, pathSpec)
     with ScaladslServiceApiBridge {
   protected override def doMakeStreamedCall(
       requestStream: Source[ByteString, NotUsed],
       requestSerializer: NegotiatedSerializer[_, _],
-      requestHeader: RequestHeader
+      requestHeader: RequestHeader,
+      messageDeflate: Boolean,
+      messageBatching: Boolean
   ): Future[(ResponseHeader, Source[ByteString, NotUsed])] =
-    webSocketClient.connect(descriptor.exceptionSerializer, WebSocketVersion.V13, requestHeader, requestStream)
+    webSocketClient.connect(
+      descriptor.exceptionSerializer,
+      WebSocketVersion.V13,
+      requestHeader,
+      requestStream,
+      messageDeflate,
+      messageBatching
+    )
 }
 
 private[lagom] class ScaladslServiceResolver(defaultExceptionSerializer: ExceptionSerializer) extends ServiceResolver {
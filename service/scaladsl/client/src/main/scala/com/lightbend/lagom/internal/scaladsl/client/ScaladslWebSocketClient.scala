@@ -25,6 +25,6 @@ private[lagom] class ScaladslWebSocketClient(
   def this(environment: Environment, config: WebSocketClientConfig, applicationLifecycle: ApplicationLifecycle)(
       implicit ec: ExecutionContext
   ) = {
-    this(environment, config, WebSocketClient.createEventLoopGroup(applicationLifecycle), applicationLifecycle)
+    this(environment, config, WebSocketClient.createEventLoopGroup(config, applicationLifecycle), applicationLifecycle)
   }
 }
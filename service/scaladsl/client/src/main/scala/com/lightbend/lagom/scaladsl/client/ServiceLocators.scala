@@ -10,6 +10,7 @@ import java.util.concurrent.atomic.AtomicInteger
 
 import akka.actor.ActorSystem
 import com.lightbend.lagom.internal.client.CircuitBreakerConfig
+import com.lightbend.lagom.internal.client.CircuitBreakersPanelInternal
 import com.lightbend.lagom.internal.client.ConfigExtensions
 import com.lightbend.lagom.internal.scaladsl.client.CircuitBreakersPanelImpl
 import com.lightbend.lagom.internal.spi.CircuitBreakerMetricsProvider
@@ -36,14 +37,21 @@ import scala.concurrent.Future
 abstract class CircuitBreakingServiceLocator(circuitBreakers: CircuitBreakersPanel)(implicit ec: ExecutionContext)
     extends ServiceLocator {
 
+  private lazy val circuitBreakersInternal: Option[CircuitBreakersPanelInternal] = circuitBreakers match {
+    case panel: CircuitBreakersPanelImpl => Some(panel.circuitBreakersInternal)
+    case _                               => None
+  }
+
   /**
    * Do the given block with the given service looked up.
    *
    * This is invoked by [[doWithService()]], after wrapping the passed in block
    * in a circuit breaker if configured to do so.
    *
-   * The default implementation just delegates to the [[locate()]] method, but this method
-   * can be overridden if the service locator wants to inject other behaviour after the service call is complete.
+   * The default implementation just delegates to the [[locate()]] method, unless a load balancing strategy or outlier
+   * detection is configured for the service in `lagom.client.load-balancing` or `lagom.client.outlier-detection`, in
+   * which case the instance is selected among the ones returned by [[locateAll()]]. This method can be overridden if
+   * the service locator wants to inject other behaviour after the service call is complete.
    *
    * @param name        The service name.
    * @param serviceCall The service call that needs the service lookup.
@@ -53,31 +61,58 @@ abstract class CircuitBreakingServiceLocator(circuitBreakers: CircuitBreakersPan
   protected def doWithServiceImpl[T](name: String, serviceCall: Descriptor.Call[_, _])(
       block: URI => Future[T]
   ): Future[Option[T]] = {
-    locate(name, serviceCall).flatMap {
-      case (Some(uri)) => block(uri).map(Some.apply)
-      case None        => Future.successful(None)
+    circuitBreakersInternal.flatMap(_.instanceSelector(name)) match {
+      case Some(selector) =>
+        locateAll(name, serviceCall).flatMap { uris =>
+          selector.select(uris) match {
+            case Some(uri) => block(uri).map(Some.apply)
+            case None      => Future.successful(None)
+          }
+        }
+      case None =>
+        locate(name, serviceCall).flatMap {
+          case (Some(uri)) => block(uri).map(Some.apply)
+          case None        => Future.successful(None)
+        }
     }
   }
 
   final override def doWithService[T](name: String, serviceCall: Call[_, _])(
       block: (URI) => Future[T]
-  )(implicit ec: ExecutionContext): Future[Option[T]] = {
-    serviceCall.circuitBreaker
-      .filter(_ != CircuitBreaker.None)
-      .map { cb =>
+  )(implicit ec: ExecutionContext): Future[Option[T]] =
+    doWithServiceImpl(name, serviceCall)(onInstance(name, serviceCall)(block))
+
+  /**
+   * Runs the given block with the given instance of the service, through the circuit breaker and the instance selector
+   * of that instance, without locating the service. Used to send a hedged request to another instance than the one the
+   * service locator selected.
+   */
+  private[lagom] final def doWithInstance[T](name: String, serviceCall: Call[_, _], uri: URI)(
+      block: URI => Future[T]
+  ): Future[T] =
+    onInstance(name, serviceCall)(block).apply(uri)
+
+  /** Wraps the given block in the circuit breaker and the instance selector of the instance it is run with. */
+  private def onInstance[T](name: String, serviceCall: Call[_, _])(block: URI => Future[T]): URI => Future[T] =
+    serviceCall.circuitBreaker.filter(_ != CircuitBreaker.None) match {
+      case Some(cb) =>
         val circuitBreakerId = cb match {
           case cbid: CircuitBreaker.CircuitBreakerId => cbid.id
           case _                                     => name
         }
-
-        doWithServiceImpl(name, serviceCall) { uri =>
-          circuitBreakers.withCircuitBreaker(circuitBreakerId)(block(uri))
+        uri =>
+          circuitBreakersInternal match {
+            case Some(internal) =>
+              // The latency of the instance is the one measured by its circuit breaker
+              internal.withCircuitBreaker(circuitBreakerId, uri, internal.instanceSelector(name))(block(uri))
+            case None => circuitBreakers.withCircuitBreaker(circuitBreakerId)(block(uri))
+          }
+      case None =>
+        circuitBreakersInternal.flatMap(_.instanceSelector(name)) match {
+          case Some(selector) => uri => selector.track(uri)(block(uri))
+          case None           => block
         }
-      }
-      .getOrElse {
-        doWithServiceImpl(name, serviceCall)(block)
-      }
-  }
+    }
 }
 
 /**
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.scaladsl.it
+
+import java.util.concurrent.atomic.AtomicInteger
+
+import com.lightbend.lagom.scaladsl.api.AdditionalConfiguration
+import com.lightbend.lagom.scaladsl.api.transport.TransportException
+import com.lightbend.lagom.scaladsl.it.mocks.MockRequestEntity
+import com.lightbend.lagom.scaladsl.it.mocks.MockService
+import com.lightbend.lagom.scaladsl.it.mocks.MockServiceImpl
+import com.lightbend.lagom.scaladsl.server.LagomApplication
+import com.lightbend.lagom.scaladsl.server.LagomApplicationContext
+import com.lightbend.lagom.scaladsl.server.LocalServiceLocator
+import com.lightbend.lagom.scaladsl.testkit.ServiceTest
+import com.typesafe.config.ConfigFactory
+import org.scalatest.Matchers
+import org.scalatest.WordSpec
+import play.api.libs.ws.ahc.AhcWSComponents
+
+import scala.concurrent.Await
+import scala.concurrent.duration._
+
+class ScaladslClientPoliciesSpec extends WordSpec with Matchers {
+  "A service client" when {
+    "coalescing requests" should {
+      "run the request header handler once per call" in withServer(
+        """lagom.client.request-coalescing.services { "mockservice" = on }"""
+      ) { client =>
+        val handled = new AtomicInteger(0)
+        val result = client
+          .queryParamId(Some("foo"))
+          .handleRequestHeader { requestHeader =>
+            handled.incrementAndGet()
+            requestHeader
+          }
+          .invoke()
+        Await.result(result, 10.seconds) should ===("foo")
+        handled.get should ===(1)
+      }
+    }
+
+    "invoking the services of the same application locally" should {
+      val localTransport = """lagom.client.local-transport.services { "mockservice" = on }"""
+
+      "pass the messages without serializing them" in withServer(localTransport) { client =>
+        val request  = MockRequestEntity("bar", 20)
+        val response = Await.result(client.mockCall(10).invoke(request), 10.seconds)
+        response.incomingId should ===(10L)
+        response.incomingRequest should be theSameInstanceAs request
+      }
+
+      "apply the header filters and request header handlers of both ends" in withServer(localTransport) { client =>
+        Await.result(client.serviceName.invoke(), 10.seconds) should ===("mockservice")
+        val (responseHeader, value) = Await.result(
+          client.customHeaders
+            .handleRequestHeader(_.withHeader("Foo", "Bar"))
+            .withResponseHeader
+            .invoke("Foo"),
+          10.seconds
+        )
+        value should ===("Bar")
+        responseHeader.status should ===(201)
+        responseHeader.getHeader("Header-Name") should ===(Some("Foo"))
+      }
+
+      "deserialize the exceptions of the service with the exception serializer of the client" in withServer(
+        localTransport
+      ) { client =>
+        MockService.invoked.set(false)
+        a[TransportException] should be thrownBy Await.result(client.alwaysFail.invoke(), 10.seconds)
+        MockService.invoked.get() should ===(true)
+      }
+
+      "send the messages over the network to the services it isn't enabled for" in withServer("") { client =>
+        val request  = MockRequestEntity("bar", 20)
+        val response = Await.result(client.mockCall(10).invoke(request), 10.seconds)
+        response.incomingRequest should ===(request)
+        response.incomingRequest should not be theSameInstanceAs(request)
+      }
+    }
+  }
+
+  private def withServer(config: String)(block: MockService => Unit): Unit = {
+    ServiceTest.withServer(ServiceTest.defaultSetup) { ctx =>
+      new LagomApplication(LagomApplicationContext.Test) with AhcWSComponents with LocalServiceLocator {
+        override lazy val lagomServer = serverFor[MockService](new MockServiceImpl)
+
+        override def additionalConfiguration: AdditionalConfiguration =
+          super.additionalConfiguration ++ ConfigFactory.parseString(config)
+      }
+    } { server =>
+      block(server.serviceClient.implement[MockService])
+    }
+  }
+}
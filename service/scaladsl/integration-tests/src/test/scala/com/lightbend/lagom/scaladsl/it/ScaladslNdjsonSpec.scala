@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.scaladsl.it
+
+import java.net.HttpURLConnection
+import java.net.URL
+
+import akka.NotUsed
+import akka.stream.scaladsl.Sink
+import akka.stream.scaladsl.Source
+import com.lightbend.lagom.scaladsl.api.Service
+import com.lightbend.lagom.scaladsl.api.ServiceCall
+import com.lightbend.lagom.scaladsl.api.StreamingTransport
+import com.lightbend.lagom.scaladsl.api.deser.MessageSerializer
+import com.lightbend.lagom.scaladsl.api.deser.StreamedMessageSerializer
+import com.lightbend.lagom.scaladsl.server.LagomApplication
+import com.lightbend.lagom.scaladsl.server.LagomApplicationContext
+import com.lightbend.lagom.scaladsl.server.LocalServiceLocator
+import com.lightbend.lagom.scaladsl.testkit.ServiceTest
+import org.scalatest.Matchers
+import org.scalatest.WordSpec
+import play.api.libs.json.Format
+import play.api.libs.json.Json
+import play.api.libs.ws.ahc.AhcWSComponents
+
+import scala.concurrent.Await
+import scala.concurrent.Future
+import scala.concurrent.duration._
+import scala.io.Source.fromInputStream
+
+case class Tick(n: Int)
+
+object Tick {
+  implicit val format: Format[Tick] = Json.format[Tick]
+}
+
+trait NdjsonService extends Service {
+  def ticks(count: Int): ServiceCall[NotUsed, Source[Tick, NotUsed]]
+
+  override def descriptor = {
+    import Service._
+    implicit val ticksSerializer: StreamedMessageSerializer[Tick] =
+      MessageSerializer.ndjsonSourceMessageSerializer[Tick]
+    named("ndjson")
+      .withCalls(pathCall("/ticks/:count", ticks _).withStreamingTransport(StreamingTransport.Framed))
+  }
+}
+
+class NdjsonServiceImpl extends NdjsonService {
+  override def ticks(count: Int) = ServiceCall { _ =>
+    Future.successful(Source(1 to count).map(Tick(_)))
+  }
+}
+
+class ScaladslNdjsonSpec extends WordSpec with Matchers {
+  "A service streaming newline delimited JSON" should {
+    "send the lines as they are to a plain HTTP client" in withServer { server =>
+      val port       = server.playServer.httpPort.get
+      val connection = new URL(s"http://localhost:$port/ticks/3").openConnection().asInstanceOf[HttpURLConnection]
+      try {
+        connection.setRequestProperty("Accept", "application/x-ndjson")
+        connection.getResponseCode should ===(200)
+        connection.getContentType should startWith("application/x-ndjson")
+        val body = fromInputStream(connection.getInputStream, "utf-8").mkString
+        body should ===("{\"n\":1}\n{\"n\":2}\n{\"n\":3}\n")
+      } finally connection.disconnect()
+    }
+
+    "be read by a service client" in withServer { server =>
+      implicit val mat = server.materializer
+      val client       = server.serviceClient.implement[NdjsonService]
+      val stream       = Await.result(client.ticks(3).invoke(), 10.seconds)
+      Await.result(stream.runWith(Sink.seq), 10.seconds) should ===(Seq(Tick(1), Tick(2), Tick(3)))
+    }
+  }
+
+  private def withServer(block: ServiceTest.TestServer[LagomApplication] => Unit): Unit =
+    ServiceTest.withServer[LagomApplication, Unit](ServiceTest.defaultSetup) { ctx =>
+      new LagomApplication(LagomApplicationContext.Test) with AhcWSComponents with LocalServiceLocator {
+        override lazy val lagomServer = serverFor[NdjsonService](new NdjsonServiceImpl)
+      }
+    }(block)
+}
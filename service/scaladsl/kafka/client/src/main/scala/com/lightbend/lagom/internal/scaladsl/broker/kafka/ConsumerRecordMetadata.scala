@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.internal.scaladsl.broker.kafka
+
+import com.lightbend.lagom.scaladsl.api.broker.MetadataKey
+import com.lightbend.lagom.scaladsl.broker.kafka.KafkaMetadataKeys
+import org.apache.kafka.clients.consumer.ConsumerRecord
+
+/**
+ * Reads the metadata of a message straight from the Kafka record it was consumed from, so that no metadata
+ * is copied for messages whose metadata is never looked at.
+ */
+private[lagom] final class ConsumerRecordMetadata(record: ConsumerRecord[String, _])
+    extends (MetadataKey[_] => Option[Any]) {
+  import ConsumerRecordMetadata._
+
+  override def apply(key: MetadataKey[_]): Option[Any] = key match {
+    case MessageKey                      => Some(record.key)
+    case KafkaMetadataKeys.Offset        => Some(record.offset)
+    case KafkaMetadataKeys.Partition     => Some(record.partition)
+    case KafkaMetadataKeys.Topic         => Some(record.topic)
+    case KafkaMetadataKeys.Headers       => Some(record.headers)
+    case KafkaMetadataKeys.Timestamp     => Some(record.timestamp)
+    case KafkaMetadataKeys.TimestampType => Some(record.timestampType)
+    case _                               => None
+  }
+}
+
+private[lagom] object ConsumerRecordMetadata {
+  private val MessageKey = MetadataKey.MessageKey[String]
+}
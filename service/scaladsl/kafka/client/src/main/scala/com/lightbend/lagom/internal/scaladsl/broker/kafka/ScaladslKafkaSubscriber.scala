@@ -19,16 +19,16 @@ import akka.stream.scaladsl.Source
 import com.lightbend.lagom.internal.api.UriUtils
 import com.lightbend.lagom.internal.broker.kafka.ConsumerConfig
 import com.lightbend.lagom.internal.broker.kafka.KafkaConfig
+import com.lightbend.lagom.internal.broker.kafka.KafkaRecordDeserializer
 import com.lightbend.lagom.internal.broker.kafka.KafkaSubscriberActor
 import com.lightbend.lagom.internal.broker.kafka.NoKafkaBrokersException
 import com.lightbend.lagom.scaladsl.api.Descriptor.TopicCall
 import com.lightbend.lagom.scaladsl.api.ServiceInfo
 import com.lightbend.lagom.scaladsl.api.ServiceLocator
 import com.lightbend.lagom.scaladsl.api.broker.Message
-import com.lightbend.lagom.scaladsl.api.broker.MetadataKey
 import com.lightbend.lagom.scaladsl.api.broker.Subscriber
-import com.lightbend.lagom.scaladsl.broker.kafka.KafkaMetadataKeys
 import org.apache.kafka.clients.consumer.ConsumerRecord
+import org.apache.kafka.common.serialization.ByteArrayDeserializer
 import org.apache.kafka.common.serialization.StringDeserializer
 import org.slf4j.LoggerFactory
 
@@ -86,25 +86,12 @@ private[lagom] class ScaladslKafkaSubscriber[Payload, SubscriberPayload](
     wrapPayload
   )
 
-  private def wrapPayload(record: ConsumerRecord[String, Payload]): Message[SubscriberPayload] = {
-    Message(transform(record)) +
-      (MetadataKey.MessageKey[String]  -> record.key()) +
-      (KafkaMetadataKeys.Offset        -> record.offset()) +
-      (KafkaMetadataKeys.Partition     -> record.partition()) +
-      (KafkaMetadataKeys.Topic         -> record.topic()) +
-      (KafkaMetadataKeys.Headers       -> record.headers()) +
-      (KafkaMetadataKeys.Timestamp     -> record.timestamp()) +
-      (KafkaMetadataKeys.TimestampType -> record.timestampType())
-  }
+  private def wrapPayload(record: ConsumerRecord[String, Payload]): Message[SubscriberPayload] =
+    Message.withMetadataLookup(transform(record), new ConsumerRecordMetadata(record))
 
   private def consumerSettings = {
-    val keyDeserializer = new StringDeserializer
-    val valueDeserializer = {
-      val messageSerializer = topicCall.messageSerializer
-      val protocol          = messageSerializer.serializerForRequest.protocol
-      val deserializer      = messageSerializer.deserializer(protocol)
-      new ScaladslKafkaDeserializer(deserializer)
-    }
+    val keyDeserializer   = new StringDeserializer
+    val valueDeserializer = new ByteArrayDeserializer
 
     ConsumerSettings(system, keyDeserializer, valueDeserializer)
       .withBootstrapServers(kafkaConfig.brokers)
@@ -113,6 +100,16 @@ private[lagom] class ScaladslKafkaSubscriber[Payload, SubscriberPayload](
       .withClientId(s"${info.serviceName}-$consumerId")
   }
 
+  private def recordDeserializer = {
+    val valueDeserializer = {
+      val messageSerializer = topicCall.messageSerializer
+      val protocol          = messageSerializer.serializerForRequest.protocol
+      val deserializer      = messageSerializer.deserializer(protocol)
+      new ScaladslKafkaDeserializer(deserializer)
+    }
+    new KafkaRecordDeserializer(valueDeserializer, consumerConfig.deserialization, system)
+  }
+
   private def subscription = Subscriptions.topics(
     kafkaConfig.topicNameMapping.getOrElse(topicCall.topicId.name, topicCall.topicId.name)
   )
@@ -131,11 +128,10 @@ private[lagom] class ScaladslKafkaSubscriber[Payload, SubscriberPayload](
             case uris =>
               val endpoints = UriUtils.hostAndPorts(uris)
               log.debug("Connecting to Kafka service named {} at {}", name: Any, endpoints)
+              val settings = consumerSettings.withBootstrapServers(endpoints)
               Consumer
-                .atMostOnceSource(
-                  consumerSettings.withBootstrapServers(endpoints),
-                  subscription
-                )
+                .atMostOnceSource(settings, subscription)
+                .via(recordDeserializer.recordFlow(settings))
                 .map(transform)
           }
 
@@ -143,6 +139,7 @@ private[lagom] class ScaladslKafkaSubscriber[Payload, SubscriberPayload](
         log.debug("Creating at most once source with configured brokers: {}", kafkaConfig.brokers)
         Consumer
           .atMostOnceSource(consumerSettings, subscription)
+          .via(recordDeserializer.recordFlow(consumerSettings))
           .map(transform)
     }
   }
@@ -157,6 +154,7 @@ private[lagom] class ScaladslKafkaSubscriber[Payload, SubscriberPayload](
         topicCall.topicId.name,
         flow,
         consumerSettings,
+        recordDeserializer,
         subscription,
         streamCompleted,
         transform
@@ -4,6 +4,10 @@
 
 package com.lightbend.lagom.internal.scaladsl.broker.kafka
 
+import com.lightbend.lagom.scaladsl.api.broker.Message
+import com.lightbend.lagom.scaladsl.api.broker.MetadataKey
+import com.lightbend.lagom.scaladsl.broker.kafka.KafkaMetadataKeys
+import org.apache.kafka.clients.consumer.ConsumerRecord
 import org.scalatest.FlatSpec
 import org.scalatest.Matchers
 
@@ -21,4 +25,26 @@ class ScaladslKafkaSubscriberSpec extends FlatSpec with Matchers {
       )
     subscriber.withGroupId("newGID") should not be subscriber
   }
+
+  it should "read message metadata from the consumed record" in {
+    val record  = new ConsumerRecord[String, String]("topic", 3, 42L, "key", "payload")
+    val message = Message.withMetadataLookup(record.value, new ConsumerRecordMetadata(record))
+
+    message.messageKeyAsString should ===("key")
+    message.get(KafkaMetadataKeys.Topic) should ===(Some("topic"))
+    message.get(KafkaMetadataKeys.Partition) should ===(Some(3))
+    message.get(KafkaMetadataKeys.Offset) should ===(Some(42L))
+    message.get(KafkaMetadataKeys.Headers) should ===(Some(record.headers))
+    message.get(MetadataKey[String]("unknown")) should ===(None)
+  }
+
+  it should "let added metadata take precedence over the consumed record" in {
+    val record  = new ConsumerRecord[String, String]("topic", 3, 42L, "key", "payload")
+    val message = Message.withMetadataLookup(record.value, new ConsumerRecordMetadata(record))
+
+    val updated = (message + (KafkaMetadataKeys.Topic -> "other")).withPayload(1)
+    updated.payload should ===(1)
+    updated.get(KafkaMetadataKeys.Topic) should ===(Some("other"))
+    updated.get(KafkaMetadataKeys.Offset) should ===(Some(42L))
+  }
 }
@@ -11,6 +11,7 @@ import akka.stream.scaladsl.Source
 import com.lightbend.internal.broker.TaggedOffsetTopicProducer
 import com.lightbend.lagom.internal.broker.kafka.KafkaConfig
 import com.lightbend.lagom.internal.broker.kafka.Producer
+import com.lightbend.lagom.internal.broker.kafka.ProducerTuning
 import com.lightbend.lagom.internal.projection.ProjectionRegistry
 import com.lightbend.lagom.internal.scaladsl.api.broker.TopicFactory
 import com.lightbend.lagom.scaladsl.api.Descriptor.TopicCall
@@ -69,6 +70,11 @@ class ScaladslRegisterTopicProducers(
                   }
                 }
 
+                val producerTuning = ProducerTuning(
+                  topicCall.properties.get(KafkaProperties.producerPreset),
+                  topicCall.properties.get(KafkaProperties.producerProperties).getOrElse(Map.empty)
+                )
+
                 Producer.startTaggedOffsetProducer(
                   actorSystem,
                   tags.map(_.tag),
@@ -78,6 +84,7 @@ class ScaladslRegisterTopicProducers(
                   eventStreamFactory,
                   partitionKeyStrategy,
                   new ScaladslKafkaSerializer(topicCall.messageSerializer.serializerForRequest),
+                  producerTuning,
                   offsetStore,
                   projectionRegistryImpl
                 )
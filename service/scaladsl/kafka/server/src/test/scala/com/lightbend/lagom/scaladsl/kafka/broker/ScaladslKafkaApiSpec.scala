@@ -11,6 +11,10 @@ import java.util.concurrent.CountDownLatch
 import java.util.concurrent.TimeUnit
 
 import akka.cluster.Cluster
+import akka.kafka.ConsumerSettings
+import akka.kafka.ProducerSettings
+import akka.kafka.Subscriptions
+import akka.kafka.scaladsl.Consumer
 import akka.persistence.query.NoOffset
 import akka.persistence.query.Offset
 import akka.persistence.query.Sequence
@@ -39,6 +43,12 @@ import com.lightbend.lagom.scaladsl.playjson.EmptyJsonSerializerRegistry
 import com.lightbend.lagom.scaladsl.server._
 import com.lightbend.lagom.spi.persistence.InMemoryOffsetStore
 import com.typesafe.config.ConfigFactory
+import org.apache.kafka.clients.consumer.ConsumerConfig
+import org.apache.kafka.clients.producer.ProducerRecord
+import org.apache.kafka.common.serialization.ByteArrayDeserializer
+import org.apache.kafka.common.serialization.ByteArraySerializer
+import org.apache.kafka.common.serialization.StringDeserializer
+import org.apache.kafka.common.serialization.StringSerializer
 import org.scalatest.concurrent.ScalaFutures
 import org.scalatest._
 import org.slf4j.LoggerFactory
@@ -86,7 +96,9 @@ class ScaladslKafkaApiSpec
             "akka.persistence.snapshot-store.plugin"        -> "akka.persistence.snapshot-store.local",
             "lagom.cluster.exit-jvm-when-system-terminated" -> "off",
             "lagom.cluster.bootstrap.enabled"               -> "off",
-            "lagom.services.kafka_native"                   -> s"tcp://localhost:$kafkaPort"
+            "lagom.services.kafka_native"                   -> s"tcp://localhost:$kafkaPort",
+            // Only the test8 topic has records that fail to deserialize
+            "lagom.broker.kafka.client.consumer.deserialization.failure-strategy" -> "dead-letter"
           ).asJava
         )
       }
@@ -345,6 +357,39 @@ class ScaladslKafkaApiSpec
       messages(2).payload shouldBe "A3"
       messages(2).get(KafkaMetadataKeys.Offset).value shouldBe (offset + 2)
     }
+
+    "publish the records that fail to deserialize to the dead letter topic and skip them" in {
+      val producer = ProducerSettings(application.actorSystem, new StringSerializer, new ByteArraySerializer)
+        .withBootstrapServers(s"localhost:$kafkaPort")
+        .createKafkaProducer()
+      try producer.send(new ProducerRecord("test8", "key", "not a number".getBytes("UTF-8"))).get(10, TimeUnit.SECONDS)
+      finally producer.close()
+      test8EventJournal.append(8)
+
+      val messageReceived = Promise[Int]()
+      testService.test8Topic.subscribe
+        .withGroupId("testservice8")
+        .atLeastOnce {
+          Flow[Int].map { message =>
+            messageReceived.trySuccess(message)
+            Done
+          }
+        }
+      messageReceived.future.futureValue shouldBe 8
+
+      val deadLetter = Consumer
+        .plainSource(
+          ConsumerSettings(application.actorSystem, new StringDeserializer, new ByteArrayDeserializer)
+            .withBootstrapServers(s"localhost:$kafkaPort")
+            .withGroupId("testservice8-dead-letters")
+            .withProperty(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest"),
+          Subscriptions.topics("test8.DLT")
+        )
+        .runWith(Sink.head)
+        .futureValue
+      deadLetter.key shouldBe "key"
+      new String(deadLetter.value, "UTF-8") shouldBe "not a number"
+    }
   }
 }
 
@@ -356,6 +401,7 @@ object ScaladslKafkaApiSpec {
   private val test5EventJournal = new EventJournal[String]
   private val test6EventJournal = new EventJournal[String]
   private val test7EventJournal = new EventJournal[String]
+  private val test8EventJournal = new EventJournal[Int]
 
   // Allows tests to insert logic into the producer stream
   @volatile var messageTransformer: String => String = identity
@@ -368,6 +414,7 @@ object ScaladslKafkaApiSpec {
     def test5Topic: Topic[String]
     def test6Topic: Topic[String]
     def test7Topic: Topic[String]
+    def test8Topic: Topic[Int]
 
     import Service._
 
@@ -384,7 +431,8 @@ object ScaladslKafkaApiSpec {
             .addProperty(
               KafkaProperties.partitionKeyStrategy,
               PartitionKeyStrategy[String](_.take(1))
-            )
+            ),
+          topic("test8", test8Topic)
         )
     }
   }
@@ -399,6 +447,7 @@ object ScaladslKafkaApiSpec {
     override def test5Topic: Topic[String] = createTopicProducer(test5EventJournal)
     override def test6Topic: Topic[String] = createTopicProducer(test6EventJournal)
     override def test7Topic: Topic[String] = createTopicProducer(test7EventJournal)
+    override def test8Topic: Topic[Int]    = TopicProducer.singleStreamWithOffset(test8EventJournal.eventStream)
 
     private def createTopicProducer(eventJournal: EventJournal[String]): Topic[String] = {
       TopicProducer.singleStreamWithOffset { fromOffset =>
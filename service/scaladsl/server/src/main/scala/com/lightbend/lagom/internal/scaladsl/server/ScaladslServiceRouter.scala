@@ -101,6 +101,9 @@ class ScaladslServiceRouter(
     }
   }
 
+  protected override def isInvokableLocally(serviceCall: ServiceCall[_, _]): Boolean =
+    !serviceCall.isInstanceOf[PlayServiceCall[_, _]]
+
   protected override def invokeServiceCall[Request, Response](
       serviceCall: ServiceCall[Request, Response],
       requestHeader: RequestHeader,
@@ -12,7 +12,9 @@ import com.lightbend.lagom.scaladsl.api.Service
 import com.lightbend.lagom.scaladsl.api.ServiceInfo
 import com.lightbend.lagom.scaladsl.client.ServiceResolver
 import com.lightbend.lagom.scaladsl.server.status.MetricsServiceComponents
+import play.api.BuiltInComponents
 import play.api.http.HttpConfiguration
+import play.api.inject.ApplicationLifecycle
 import play.api.mvc.PlayBodyParsers
 import play.api.routing.Router
 import play.api.routing.Router.Routes
@@ -113,8 +115,16 @@ trait LagomServerComponents extends MetricsServiceComponents {
   def executionContext: ExecutionContext
   def serviceResolver: ServiceResolver
 
-  lazy val lagomServerBuilder: LagomServerBuilder =
-    new LagomServerBuilder(httpConfiguration, playBodyParsers, serviceResolver)(materializer, executionContext)
+  lazy val lagomServerBuilder: LagomServerBuilder = this match {
+    // The services of a Play application are invoked locally until it stops
+    case components: BuiltInComponents =>
+      new LagomServerBuilder(httpConfiguration, playBodyParsers, serviceResolver, components.applicationLifecycle)(
+        materializer,
+        executionContext
+      )
+    case _ =>
+      new LagomServerBuilder(httpConfiguration, playBodyParsers, serviceResolver)(materializer, executionContext)
+  }
 
   @deprecated("Use LagomServerComponents#serverFor instead", "1.5.0")
   protected def bindService[T <: Service]: LagomServiceBinder[T] = macro ScaladslServerMacroImpl.createBinder[T]
@@ -137,16 +147,39 @@ trait LagomServerComponents extends MetricsServiceComponents {
   def lagomServer: LagomServer
 }
 
-final class LagomServerBuilder(
+final class LagomServerBuilder private (
     httpConfiguration: HttpConfiguration,
     parsers: PlayBodyParsers,
-    serviceResolver: ServiceResolver
+    serviceResolver: ServiceResolver,
+    applicationLifecycle: Option[ApplicationLifecycle]
 )(implicit materializer: Materializer, executionContext: ExecutionContext) {
+
+  /**
+   * The routers built invoke their service for the clients of the same actor system without the network, until the
+   * application stops.
+   */
+  def this(
+      httpConfiguration: HttpConfiguration,
+      parsers: PlayBodyParsers,
+      serviceResolver: ServiceResolver,
+      applicationLifecycle: ApplicationLifecycle
+  )(implicit materializer: Materializer, executionContext: ExecutionContext) =
+    this(httpConfiguration, parsers, serviceResolver, Some(applicationLifecycle))
+
+  /** The routers built are only invoked through the network. */
+  def this(httpConfiguration: HttpConfiguration, parsers: PlayBodyParsers, serviceResolver: ServiceResolver)(
+      implicit materializer: Materializer,
+      executionContext: ExecutionContext
+  ) = this(httpConfiguration, parsers, serviceResolver, None)
+
   def buildRouter(service: Service): LagomServiceRouter = {
-    new ScaladslServiceRouter(serviceResolver.resolve(service.descriptor), service, httpConfiguration, parsers)(
-      executionContext,
-      materializer
-    )
+    val router =
+      new ScaladslServiceRouter(serviceResolver.resolve(service.descriptor), service, httpConfiguration, parsers)(
+        executionContext,
+        materializer
+      )
+    applicationLifecycle.foreach(router.registerLocalService)
+    router
   }
 }
 
@@ -13,17 +13,23 @@ import akka.stream.scaladsl.Sink
 import akka.stream.scaladsl.Source
 import akka.stream.ActorMaterializer
 import akka.stream.Materializer
+import akka.util.ByteString
+import com.lightbend.lagom.internal.client.MessageBatching
+import com.lightbend.lagom.internal.client.MessageDeflate
 import com.lightbend.lagom.internal.scaladsl.server.ScaladslServiceRouter
 import com.lightbend.lagom.scaladsl.api.Service
 import com.lightbend.lagom.scaladsl.api.transport._
 import com.lightbend.lagom.scaladsl.server.mocks._
 import com.lightbend.lagom.scaladsl.server.testkit.FakeRequest
+import com.typesafe.config.ConfigFactory
 import org.scalatest.Assertion
 import org.scalatest.AsyncFlatSpec
 import org.scalatest.BeforeAndAfterAll
 import org.scalatest.Matchers
 import play.api.http.HttpConfiguration
+import play.api.http.websocket.BinaryMessage
 import play.api.http.websocket.Message
+import play.api.http.websocket.PingMessage
 import play.api.http.websocket.TextMessage
 import play.api.mvc
 import play.api.mvc.Handler
@@ -81,10 +87,79 @@ class ScaladslStreamedServiceRouterSpec extends AsyncFlatSpec with Matchers with
   // are invoked while processing the response but Play doesn't support adding custom headers on a websocket handshake.
   ignore should "propagate headers added by a Play Filter and a Lagom HeaderFilter down to the ServiceImpl (invoking Play Filter first). [String message]"
 
+  it should "compress the streamed messages when the client asks for it and the server enables it" in {
+    streamedMessages("lagom.server.message-deflate.enabled = on").map { messages =>
+      messages.head should ===(PingMessage(MessageDeflate.Confirmation))
+      messages.collect { case BinaryMessage(bytes) => bytes } should not be empty
+    }
+  }
+
+  it should "not compress the streamed messages when only the client configuration enables it" in {
+    streamedMessages("lagom.client.message-deflate.enabled = on").map { messages =>
+      messages should not contain PingMessage(MessageDeflate.Confirmation)
+      messages should contain(TextMessage("streamed"))
+    }
+  }
+
+  it should "batch the streamed messages when the client asks for it and the server enables it" in {
+    streamedMessages("lagom.server.message-batching.enabled = on", batchingRequested).map { messages =>
+      messages.head should ===(PingMessage(MessageBatching.Confirmation))
+      messages.collect { case BinaryMessage(bytes) => MessageBatching.decode(bytes) }.flatten should ===(
+        Seq(ByteString("streamed"))
+      )
+    }
+  }
+
+  it should "not batch the streamed messages when only the client configuration enables it" in {
+    streamedMessages("lagom.client.message-batching.enabled = on", batchingRequested).map { messages =>
+      messages should not contain PingMessage(MessageBatching.Confirmation)
+      messages should contain(TextMessage("streamed"))
+    }
+  }
+
   type WSFlow = Flow[Message, Message, _]
 
   // ---------------------------------------------------------------------------------------------------
 
+  private val deflateRequested  = MessageDeflate.RequestHeader  -> MessageDeflate.Deflate
+  private val batchingRequested = MessageBatching.RequestHeader -> MessageBatching.LengthDelimited
+
+  /**
+   * The messages the service streams to a client that asks for compressed, or otherwise transformed, messages with the
+   * given request header, with the given configuration.
+   */
+  private def streamedMessages(
+      config: String,
+      requestHeader: (String, String) = deflateRequested
+  ): Future[Seq[Message]] = {
+    val configuredSystem = ActorSystem(
+      "ScaladslServiceRouterSpec-deflate",
+      ConfigFactory.parseString(config).withFallback(ConfigFactory.load())
+    )
+    implicit val mat: Materializer = ActorMaterializer.create(configuredSystem)
+
+    val service = new SimpleStreamedService {
+      override def streamed(): ServerServiceCall[Source[String, NotUsed], Source[String, NotUsed]] = ServerServiceCall {
+        (_, _) =>
+          Future.successful((ResponseHeader.Ok, Source.single("streamed")))
+      }
+    }
+    val router =
+      new ScaladslServiceRouter(service.descriptor, service, HttpConfiguration.createWithDefaults(), PlayBodyParsers())
+    val plainRequest = new FakeRequest(method = "GET", path = PathProvider.PATH)
+    val req          = plainRequest.withHeaders(plainRequest.headers.add(requestHeader))
+    val messages = Handler.applyStages(req, router.routes(req)) match {
+      case (_, action: mvc.WebSocket) =>
+        action(req).flatMap { flow =>
+          // The incoming stream is kept open, so that the outgoing stream completes on its own
+          Source.single(TextMessage("41")).concat(Source.maybe).via(flow.right.get).runWith(Sink.seq)
+        }
+      case _ => Future.failed(new AssertionError("Not a WebSocket."))
+    }
+    messages.onComplete(_ => configuredSystem.terminate())
+    messages
+  }
+
   private def runRequest(
       service: Service
   )(x: mvc.WebSocket => mvc.RequestHeader => Future[WSFlow])(block: => Assertion): Future[Assertion] = {
@@ -43,6 +43,28 @@ public interface CircuitBreakerMetrics {
    */
   void onCallBreakerOpenFailure();
 
+  /**
+   * Invoked when the concurrency limit of the circuit breaker changes, if concurrency limiting is
+   * enabled for it.
+   *
+   * @param limit the new concurrency limit
+   */
+  default void onConcurrencyLimitChanged(int limit) {}
+
+  /**
+   * Invoked when a call starts or completes, if concurrency limiting is enabled for the circuit
+   * breaker.
+   *
+   * @param inFlight the number of calls in progress
+   */
+  default void onInFlightChanged(int inFlight) {}
+
+  /**
+   * Invoked for each call rejected because the concurrency limit of the circuit breaker was
+   * reached.
+   */
+  default void onCallConcurrencyLimitRejection() {}
+
   /**
    * Called when the circuit breaker is removed, e.g. expired due to inactivity. It is also called
    * if the circuit breaker is re-configured, before calling {@link
@@ -0,0 +1,24 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.internal.spi;
+
+public interface SerializationMetrics {
+
+  /**
+   * Invoked for each message serialized.
+   *
+   * @param elapsedNanos the elapsed duration of the serialization in nanoseconds
+   * @param bytes the size of the serialized payload, after compression if any
+   */
+  void onSerialization(long elapsedNanos, int bytes);
+
+  /**
+   * Invoked for each message deserialized.
+   *
+   * @param elapsedNanos the elapsed duration of the deserialization in nanoseconds
+   * @param bytes the size of the deserialized payload, before decompression if any
+   */
+  void onDeserialization(long elapsedNanos, int bytes);
+}
@@ -0,0 +1,25 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package com.lightbend.lagom.internal.spi;
+
+/** Service Provider Interface (SPI) for collecting metrics from serializers. */
+public interface SerializationMetricsProvider {
+  /**
+   * Start metrics collection for the messages with `key` identifier written and read by the
+   * `serializer`. Create (new or existing) instance of a {@link SerializationMetrics} that will be
+   * used for these messages.
+   *
+   * <p>The play-json serializer of the persistent entities identifies the messages by their class
+   * name, and the service clients and servers by the name of the service and of the call. It is
+   * invoked once per identifier, and the returned metrics are then invoked for each message, from
+   * many threads, so they must be thread safe and cheap to update.
+   *
+   * @param serializer the identifier of the serializer, `play-json`, `service-client` or
+   *     `service-server`.
+   * @param key the identifier of the messages.
+   * @return the metrics for the messages with the given identifier
+   */
+  SerializationMetrics start(String serializer, String key);
+}